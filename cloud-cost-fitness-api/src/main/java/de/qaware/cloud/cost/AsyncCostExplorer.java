@@ -0,0 +1,114 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Representation of a non-blocking Cost Explorer.
+ * Implementations are immutable: setting a filter returns a new instance, so one instance can be shared between threads.
+ */
+public interface AsyncCostExplorer {
+    /**
+     * Sets a time range for the request
+     *
+     * @param timeRange a time range
+     * @return an AsyncCostExplorer with the time range
+     */
+    AsyncCostExplorer during(TimeRange timeRange);
+
+    /**
+     * Sets a filter for an instance name
+     * Wildcards are allowed when calling {@link #getNames()} or {@link #getCosts()}
+     *
+     * @param instance an instance name
+     * @return an AsyncCostExplorer with the instance filter
+     */
+    AsyncCostExplorer forInstance(String instance);
+
+    /**
+     * Sets a filter for a cloud provider service
+     * Wildcards are allowed when calling {@link #getNames()}
+     *
+     * @param service a cloud provider service
+     * @return an AsyncCostExplorer with the service filter
+     */
+    AsyncCostExplorer forService(String service);
+
+    /**
+     * Sets the time range, the filters and the granularity of the request at once, replacing all of them.
+     * Not supported by default, since the filters of an implementation can not be reset through this interface.
+     *
+     * @param query the query
+     * @return an AsyncCostExplorer with the query
+     * @throws UnsupportedOperationException if the cost explorer does not support queries or their granularity
+     */
+    default AsyncCostExplorer withQuery(CostQuery query) {
+        throw new UnsupportedOperationException("Queries are not supported");
+    }
+
+    /**
+     * Sets the granularity of the request, daily by default
+     *
+     * @param granularity the granularity
+     * @return a AsyncCostExplorer with the granularity
+     * @throws UnsupportedOperationException if the granularity is not supported
+     */
+    default AsyncCostExplorer withGranularity(Granularity granularity) {
+        return withQuery(getQuery().withGranularity(granularity));
+    }
+
+    /**
+     * Returns the time range and the filters of the request
+     *
+     * @return the query
+     * @throws UnsupportedOperationException if the cost explorer does not expose its query
+     */
+    default CostQuery getQuery() {
+        throw new UnsupportedOperationException("Queries are not supported");
+    }
+
+    /**
+     * Fetch the names without blocking
+     *
+     * @return a future of the list of names according to the filters
+     */
+    CompletableFuture<List<String>> getNames();
+
+    /**
+     * Fetch the costs without blocking
+     *
+     * @return a future of the time series containing costs
+     */
+    CompletableFuture<TimeSeries> getCosts();
+
+    /**
+     * Fetch the instance usage without blocking
+     *
+     * @param usage a usage filter
+     * @return a future of the time series containing usage
+     */
+    CompletableFuture<TimeSeries> getUsage(Usage usage);
+
+    /**
+     * Determine if Cost explorer supports given cloud provider.
+     *
+     * @param cloudProvider the {@link CloudProvider} to check
+     * @return true if supported, otherwise false
+     */
+    boolean supports(CloudProvider cloudProvider);
+}
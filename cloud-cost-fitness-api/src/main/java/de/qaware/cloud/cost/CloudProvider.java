@@ -15,26 +15,45 @@
  */
 package de.qaware.cloud.cost;
 
-import java.util.ServiceLoader;
+import java.util.List;
 
 /**
  * The cloud provider enum used to get CostExplorer instances.
+ * The implementations are discovered on the classpath once, and each call returns new instances.
  */
 public enum CloudProvider {
     AMAZON_AWS, GOOGLE_CLOUD, MICROSOFT_AZURE;
 
     /**
-     * Return a new CostExplorer instance.
-     * 
+     * Return the first CostExplorer on the classpath supporting the cloud provider.
+     *
      * @return a cost explorer
      * @throws UnsupportedOperationException if no cost explorer could be found
      */
     public CostExplorer getCostExplorer() {
-        ServiceLoader<CostExplorer> loader = ServiceLoader.load(CostExplorer.class);
+        return getCostExplorers().stream()
+                .findFirst()
+                .orElseThrow(UnsupportedOperationException::new);
+    }
+
+    /**
+     * Return all CostExplorers on the classpath supporting the cloud provider.
+     *
+     * @return the cost explorers, empty if none could be found
+     */
+    public List<CostExplorer> getCostExplorers() {
+        return ServiceRegistry.costExplorers().findAll(costExplorer -> costExplorer.supports(this));
+    }
 
-        // this here only allows one matching implementation on the classpath
-        return loader.findFirst()
-                .filter(costExplorer -> costExplorer.supports(this))
+    /**
+     * Return the first AsyncCostExplorer on the classpath supporting the cloud provider.
+     *
+     * @return a non-blocking cost explorer
+     * @throws UnsupportedOperationException if no non-blocking cost explorer could be found
+     */
+    public AsyncCostExplorer getAsyncCostExplorer() {
+        return ServiceRegistry.asyncCostExplorers().findAll(costExplorer -> costExplorer.supports(this)).stream()
+                .findFirst()
                 .orElseThrow(UnsupportedOperationException::new);
     }
 }
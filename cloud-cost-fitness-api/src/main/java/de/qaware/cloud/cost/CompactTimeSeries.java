@@ -0,0 +1,339 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Compact columnar representation of a time series with a single unit.
+ * Dates are stored as epoch days, or as epoch hours in UTC for hourly series, and values as primitive doubles,
+ * so aggregations do not allocate.
+ */
+public final class CompactTimeSeries {
+    private static final int HOURS_PER_DAY = 24;
+
+    private final int[] starts;
+    private final int[] ends;
+    private final double[] values;
+    private final int size;
+    private final String unit;
+    private final boolean hourly;
+
+    private CompactTimeSeries(int[] starts, int[] ends, double[] values, int size, String unit, boolean hourly) {
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+        this.size = size;
+        this.unit = unit;
+        this.hourly = hourly;
+    }
+
+    /**
+     * Creates a builder for a compact time series
+     *
+     * @param capacity the expected number of elements
+     * @param unit     the unit of all elements
+     * @return a new builder
+     */
+    public static Builder builder(int capacity, String unit) {
+        return new Builder(capacity, unit, false);
+    }
+
+    /**
+     * Creates a builder for a compact time series of hourly values, added as epoch hours
+     *
+     * @param capacity the expected number of elements
+     * @param unit     the unit of all elements
+     * @return a new builder
+     */
+    public static Builder hourlyBuilder(int capacity, String unit) {
+        return new Builder(capacity, unit, true);
+    }
+
+    /**
+     * Returns the number of elements
+     *
+     * @return number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the unit of all elements
+     *
+     * @return the unit
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Whether the elements are hourly values
+     *
+     * @return true if the time intervals are hours
+     */
+    public boolean isHourly() {
+        return hourly;
+    }
+
+    /**
+     * Returns the first day of the time interval of an element
+     *
+     * @param index the index of the element
+     * @return the first day as epoch day
+     */
+    public int getStartDay(int index) {
+        int start = starts[checkIndex(index)];
+        return hourly ? Math.floorDiv(start, HOURS_PER_DAY) : start;
+    }
+
+    /**
+     * Returns the last day of the time interval of an element
+     *
+     * @param index the index of the element
+     * @return the last day as epoch day
+     */
+    public int getEndDay(int index) {
+        int end = ends[checkIndex(index)];
+        return hourly ? Math.floorDiv(end, HOURS_PER_DAY) : end;
+    }
+
+    /**
+     * Returns the first hour of the time interval of an element
+     *
+     * @param index the index of the element
+     * @return the first hour as epoch hour, the beginning of the first day for daily series
+     */
+    public int getStartHour(int index) {
+        int start = starts[checkIndex(index)];
+        return hourly ? start : start * HOURS_PER_DAY;
+    }
+
+    /**
+     * Returns the value of an element
+     *
+     * @param index the index of the element
+     * @return the value
+     */
+    public double getValue(int index) {
+        return values[checkIndex(index)];
+    }
+
+    /**
+     * Computes the sum of all values
+     *
+     * @return the sum, 0 if empty
+     */
+    public double sum() {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the index of the first element with the maximum value
+     *
+     * @return the index of the maximum
+     * @throws NoSuchElementException if the time series is empty
+     */
+    public int indexOfMax() {
+        if (size == 0) {
+            throw new NoSuchElementException("Empty time series");
+        }
+        int index = 0;
+        for (int i = 1; i < size; i++) {
+            if (Double.compare(values[i], values[index]) > 0) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Finds the index of the first element with the minimum value
+     *
+     * @return the index of the minimum
+     * @throws NoSuchElementException if the time series is empty
+     */
+    public int indexOfMin() {
+        if (size == 0) {
+            throw new NoSuchElementException("Empty time series");
+        }
+        int index = 0;
+        for (int i = 1; i < size; i++) {
+            if (Double.compare(values[i], values[index]) < 0) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Whether both time series have the same unit and the same time intervals
+     *
+     * @param other the other time series
+     * @return true if the elements can be added index by index
+     */
+    public boolean isAlignedWith(CompactTimeSeries other) {
+        return size == other.size
+                && hourly == other.hourly
+                && Objects.equals(unit, other.unit)
+                && Arrays.equals(starts, 0, size, other.starts, 0, size)
+                && Arrays.equals(ends, 0, size, other.ends, 0, size);
+    }
+
+    /**
+     * Adds the values of an aligned time series
+     *
+     * @param other the other time series
+     * @return a new time series with added values
+     * @throws ArithmeticException if the time series are not aligned
+     */
+    public CompactTimeSeries add(CompactTimeSeries other) {
+        if (!isAlignedWith(other)) {
+            throw new ArithmeticException("Time series are not aligned");
+        }
+        double[] sum = new double[size];
+        for (int i = 0; i < size; i++) {
+            sum[i] = values[i] + other.values[i];
+        }
+        return new CompactTimeSeries(starts, ends, sum, size, unit, hourly);
+    }
+
+    /**
+     * Creates an element object for one element
+     *
+     * @param index the index of the element
+     * @return a new element
+     */
+    public ValueWithUnit get(int index) {
+        checkIndex(index);
+        if (hourly) {
+            LocalDateTime hour = LocalDateTime.ofEpochSecond(starts[index] * 3600L, 0, ZoneOffset.UTC);
+            return ValueWithUnit.ofHour(hour, values[index], unit);
+        }
+        LocalDate dateFrom = LocalDate.ofEpochDay(starts[index]);
+        if (starts[index] == ends[index]) {
+            return new ValueWithUnit(dateFrom, values[index], unit);
+        }
+        return new ValueWithUnit(dateFrom, LocalDate.ofEpochDay(ends[index]), values[index], unit);
+    }
+
+    /**
+     * Creates element objects for all elements
+     *
+     * @return a new mutable list of elements
+     */
+    public List<ValueWithUnit> toElements() {
+        List<ValueWithUnit> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(get(i));
+        }
+        return elements;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Builder appending elements to growing primitive arrays
+     */
+    public static final class Builder {
+        private final String unit;
+        private final boolean hourly;
+        private int[] starts;
+        private int[] ends;
+        private double[] values;
+        private int size;
+        private boolean singleDays = true;
+
+        private Builder(int capacity, String unit, boolean hourly) {
+            int initialCapacity = Math.max(capacity, 1);
+            this.unit = unit;
+            this.hourly = hourly;
+            this.starts = new int[initialCapacity];
+            this.ends = new int[initialCapacity];
+            this.values = new double[initialCapacity];
+        }
+
+        /**
+         * Appends an element for a single day, or a single hour for hourly series
+         *
+         * @param day   the day as epoch day, or the hour as epoch hour
+         * @param value the value
+         * @return the current builder
+         */
+        public Builder add(int day, double value) {
+            return add(day, day, value);
+        }
+
+        /**
+         * Appends an element for a time interval
+         *
+         * @param startDay the first day as epoch day, or the first hour as epoch hour
+         * @param endDay   the last day as epoch day, or the last hour as epoch hour
+         * @param value    the value
+         * @return the current builder
+         */
+        public Builder add(int startDay, int endDay, double value) {
+            if (size == values.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            starts[size] = startDay;
+            ends[size] = endDay;
+            values[size] = value;
+            singleDays &= startDay == endDay;
+            size++;
+            return this;
+        }
+
+        /**
+         * Builds the time series, the builder must not be used afterwards
+         *
+         * @return the compact time series
+         */
+        public CompactTimeSeries build() {
+            if (values.length > size) {
+                starts = Arrays.copyOf(starts, size);
+                ends = Arrays.copyOf(ends, size);
+                values = Arrays.copyOf(values, size);
+            }
+            // single day elements share the date column
+            CompactTimeSeries timeSeries = new CompactTimeSeries(starts, singleDays ? starts : ends, values, size, unit, hourly);
+            starts = null;
+            ends = null;
+            values = null;
+            return timeSeries;
+        }
+    }
+}
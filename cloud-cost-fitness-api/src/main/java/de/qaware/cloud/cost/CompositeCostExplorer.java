@@ -0,0 +1,296 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cost explorer combining several cost explorers, e.g. of different accounts or cloud providers.
+ * Each request is sent to all cost explorers concurrently and the resulting time series are summed up.
+ * The filters are passed on with {@link CostExplorer#withQuery(CostQuery)}, so the cost explorers have to support it.
+ */
+public class CompositeCostExplorer implements CostExplorer {
+    private final List<CostExplorer> costExplorers;
+    private final CostQuery query;
+
+    private CompositeCostExplorer(List<CostExplorer> costExplorers, CostQuery query) {
+        this.costExplorers = costExplorers;
+        this.query = query;
+    }
+
+    /**
+     * Combines the given cost explorers
+     *
+     * @param costExplorers the cost explorers
+     * @return a composite cost explorer
+     * @throws IllegalArgumentException if no cost explorer is given or a cost explorer does not support queries
+     */
+    public static CompositeCostExplorer of(CostExplorer... costExplorers) {
+        return of(Arrays.asList(costExplorers));
+    }
+
+    /**
+     * Combines the given cost explorers
+     *
+     * @param costExplorers the cost explorers
+     * @return a composite cost explorer
+     * @throws IllegalArgumentException if no cost explorer is given or a cost explorer does not support queries
+     */
+    public static CompositeCostExplorer of(Collection<? extends CostExplorer> costExplorers) {
+        if (costExplorers.isEmpty()) {
+            throw new IllegalArgumentException("At least one cost explorer is required");
+        }
+        for (CostExplorer costExplorer : costExplorers) {
+            try {
+                costExplorer.withQuery(CostQuery.create());
+            } catch (UnsupportedOperationException e) {
+                throw new IllegalArgumentException("Cost explorer does not support queries: " + costExplorer, e);
+            }
+        }
+        return new CompositeCostExplorer(List.copyOf(costExplorers), CostQuery.create());
+    }
+
+    /**
+     * Combines all cost explorers on the classpath supporting one of the given cloud providers
+     *
+     * @param cloudProviders the cloud providers
+     * @return a composite cost explorer
+     * @throws UnsupportedOperationException if no cost explorer could be found
+     */
+    public static CompositeCostExplorer ofProviders(CloudProvider... cloudProviders) {
+        List<CostExplorer> found = ServiceRegistry.costExplorers()
+                .findAll(costExplorer -> Arrays.stream(cloudProviders).anyMatch(costExplorer::supports));
+        if (found.isEmpty()) {
+            throw new UnsupportedOperationException();
+        }
+        return of(found);
+    }
+
+    /**
+     * Returns the combined cost explorers
+     *
+     * @return the cost explorers
+     */
+    public List<CostExplorer> getCostExplorers() {
+        return costExplorers;
+    }
+
+    @Override
+    public CompositeCostExplorer during(TimeRange timeRange) {
+        return withQuery(query.during(timeRange));
+    }
+
+    @Override
+    public CompositeCostExplorer forInstance(String instance) {
+        return withQuery(query.forInstance(instance));
+    }
+
+    @Override
+    public CompositeCostExplorer forService(String service) {
+        return withQuery(query.forService(service));
+    }
+
+    @Override
+    public CompositeCostExplorer withQuery(CostQuery query) {
+        return new CompositeCostExplorer(costExplorers, query);
+    }
+
+    @Override
+    public CompositeCostExplorer withGranularity(Granularity granularity) {
+        return withQuery(query.withGranularity(granularity));
+    }
+
+    @Override
+    public CostQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Fetch the names of all cost explorers
+     *
+     * @return the distinct names according to the filters
+     */
+    @Override
+    public List<String> getNames() {
+        Set<String> names = new LinkedHashSet<>();
+        fanOut(CostExplorer::getNames).forEach(names::addAll);
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Fetch the summed costs of all cost explorers
+     *
+     * @return a time series containing costs
+     * @throws ArithmeticException if the cost explorers report costs in different currencies
+     */
+    @Override
+    public TimeSeries getCosts() {
+        return TimeSeries.sumOf(fanOut(CostExplorer::getCosts));
+    }
+
+    /**
+     * Fetch the costs of all cost explorers summed up per currency
+     *
+     * @return a time series containing costs per currency
+     */
+    public Map<String, TimeSeries> getCostsByCurrency() {
+        Map<String, List<TimeSeries>> byCurrency = fanOut(CostExplorer::getCosts).stream()
+                .filter(costs -> costs.size() > 0)
+                .collect(Collectors.groupingBy(TimeSeries::getUnit, TreeMap::new, Collectors.toList()));
+
+        Map<String, TimeSeries> costs = new TreeMap<>();
+        byCurrency.forEach((currency, series) -> costs.put(currency, TimeSeries.sumOf(series)));
+        return costs;
+    }
+
+    /**
+     * Fetch the costs of all cost explorers by service, summed up per service
+     *
+     * @return a time series containing costs by service name, sorted by service name
+     * @throws ArithmeticException if the cost explorers report costs in different currencies
+     */
+    @Override
+    public Map<String, TimeSeries> getCostsByService() {
+        return sumByKey(fanOut(CostExplorer::getCostsByService));
+    }
+
+    /**
+     * Fetch the costs of all cost explorers by tag value, summed up per tag value
+     *
+     * @param key the key of the tag
+     * @return a time series containing costs by tag value, sorted by tag value
+     * @throws ArithmeticException if the cost explorers report costs in different currencies
+     */
+    @Override
+    public Map<String, TimeSeries> getCostsByTag(String key) {
+        return sumByKey(fanOut(costExplorer -> costExplorer.getCostsByTag(key)));
+    }
+
+    /**
+     * Fetch the most expensive instances of all cost explorers.
+     * Instances of different cost explorers are ranked separately, even if they have the same name.
+     *
+     * @param limit the maximum number of instances
+     * @return the most expensive instances, most expensive first
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws ArithmeticException      if the cost explorers report costs in different currencies
+     */
+    @Override
+    public List<RankedCost> getMostExpensiveInstances(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit has to be positive");
+        }
+        List<RankedCost> instances = fanOut(costExplorer -> costExplorer.getMostExpensiveInstances(limit)).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        // costs in different currencies can not be ranked, even if the sort does not compare them
+        long units = instances.stream().map(instance -> instance.getCost().getUnit()).distinct().count();
+        if (units > 1) {
+            throw new ArithmeticException("Units do not match");
+        }
+        return instances.stream()
+                .sorted(Comparator.comparing(RankedCost::getCost).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Fetch the summed usage of all cost explorers
+     *
+     * @param usage a usage filter
+     * @return a time series containing usage
+     * @throws ArithmeticException if the cost explorers report the usage in different units
+     */
+    @Override
+    public TimeSeries getUsage(Usage usage) {
+        return TimeSeries.sumOf(fanOut(costExplorer -> costExplorer.getUsage(usage)));
+    }
+
+    /**
+     * Fetch several metrics of all cost explorers, summed up per metric
+     *
+     * @param metrics the metrics to fetch
+     * @return a time series per requested metric
+     * @throws ArithmeticException if the cost explorers report a metric in different units
+     */
+    @Override
+    public Map<Metric, TimeSeries> getMetrics(Metric... metrics) {
+        Map<Metric, List<TimeSeries>> byMetric = new EnumMap<>(Metric.class);
+        for (Map<Metric, TimeSeries> partial : fanOut(costExplorer -> costExplorer.getMetrics(metrics))) {
+            partial.forEach((metric, series) -> byMetric.computeIfAbsent(metric, m -> new ArrayList<>()).add(series));
+        }
+
+        Map<Metric, TimeSeries> result = new EnumMap<>(Metric.class);
+        byMetric.forEach((metric, series) -> result.put(metric, TimeSeries.sumOf(series)));
+        return result;
+    }
+
+    @Override
+    public boolean supports(CloudProvider cloudProvider) {
+        return costExplorers.stream().anyMatch(costExplorer -> costExplorer.supports(cloudProvider));
+    }
+
+    private static Map<String, TimeSeries> sumByKey(List<Map<String, TimeSeries>> partials) {
+        Map<String, List<TimeSeries>> byKey = new TreeMap<>();
+        for (Map<String, TimeSeries> partial : partials) {
+            partial.forEach((key, series) -> byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(series));
+        }
+
+        Map<String, TimeSeries> result = new TreeMap<>();
+        byKey.forEach((key, series) -> result.put(key, TimeSeries.sumOf(series)));
+        return result;
+    }
+
+    private <T> List<T> fanOut(Function<CostExplorer, T> request) {
+        if (costExplorers.size() == 1) {
+            return Collections.singletonList(request.apply(costExplorers.get(0).withQuery(query)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(costExplorers.size());
+        try {
+            List<CompletableFuture<T>> futures = costExplorers.stream()
+                    .map(costExplorer -> CompletableFuture.supplyAsync(
+                            () -> request.apply(costExplorer.withQuery(query)), executor))
+                    .collect(Collectors.toList());
+            return futures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -15,17 +15,20 @@
  */
 package de.qaware.cloud.cost;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Representation of a Cost Explorer
+ * Representation of a Cost Explorer.
+ * Implementations are immutable: setting a filter returns a new instance, so one instance can be shared between threads.
  */
 public interface CostExplorer {
     /**
      * Sets a time range for the request
      *
      * @param timeRange a time range
-     * @return the current CostExplorer
+     * @return a CostExplorer with the time range
      */
     CostExplorer during(TimeRange timeRange);
 
@@ -34,7 +37,7 @@ public interface CostExplorer {
      * Wildcards are allowed when calling {@link #getNames()} or {@link #getCosts()}
      *
      * @param instance an instance name
-     * @return the current CostExplorer
+     * @return a CostExplorer with the instance filter
      */
     CostExplorer forInstance(String instance);
 
@@ -43,10 +46,43 @@ public interface CostExplorer {
      * Wildcards are allowed when calling {@link #getNames()}
      *
      * @param service a cloud provider service
-     * @return the current CostExplorer
+     * @return a CostExplorer with the service filter
      */
     CostExplorer forService(String service);
 
+    /**
+     * Sets the time range, the filters and the granularity of the request at once, replacing all of them.
+     * Not supported by default, since the filters of an implementation can not be reset through this interface.
+     *
+     * @param query the query
+     * @return a CostExplorer with the query
+     * @throws UnsupportedOperationException if the cost explorer does not support queries or their granularity
+     */
+    default CostExplorer withQuery(CostQuery query) {
+        throw new UnsupportedOperationException("Queries are not supported");
+    }
+
+    /**
+     * Sets the granularity of the request, daily by default
+     *
+     * @param granularity the granularity
+     * @return a CostExplorer with the granularity
+     * @throws UnsupportedOperationException if the granularity is not supported
+     */
+    default CostExplorer withGranularity(Granularity granularity) {
+        return withQuery(getQuery().withGranularity(granularity));
+    }
+
+    /**
+     * Returns the time range and the filters of the request
+     *
+     * @return the query
+     * @throws UnsupportedOperationException if the cost explorer does not expose its query
+     */
+    default CostQuery getQuery() {
+        throw new UnsupportedOperationException("Queries are not supported");
+    }
+
     /**
      * Fetch the names
      *
@@ -61,6 +97,42 @@ public interface CostExplorer {
      */
     TimeSeries getCosts();
 
+    /**
+     * Fetch the costs of all services matching the filters at once, e.g. to feed parameterized tests from memory
+     *
+     * @return a time series containing costs by service name, sorted by service name
+     * @throws UnsupportedOperationException if the cost explorer can not group the costs
+     */
+    default Map<String, TimeSeries> getCostsByService() {
+        throw new UnsupportedOperationException("Costs by service are not supported");
+    }
+
+    /**
+     * Fetch the costs of all values of a tag matching the filters at once.
+     * Costs of resources without the tag are returned for the empty value.
+     *
+     * @param key the key of the tag, e.g. "Name" for instances
+     * @return a time series containing costs by tag value, sorted by tag value
+     * @throws UnsupportedOperationException if the cost explorer can not group the costs
+     */
+    default Map<String, TimeSeries> getCostsByTag(String key) {
+        throw new UnsupportedOperationException("Costs by tag are not supported");
+    }
+
+    /**
+     * Fetch the most expensive instances matching the filters.
+     * The instances are ranked by their highest cost in a single period of the granularity, e.g. a day, so a
+     * ranking of the total costs requires a time range of one period like {@link TimeRange#YESTERDAY}.
+     *
+     * @param limit the maximum number of instances
+     * @return the most expensive instances with the cost and date of their most expensive period, most expensive first
+     * @throws IllegalArgumentException      if the limit is not positive
+     * @throws UnsupportedOperationException if the cost explorer can not rank the instances
+     */
+    default List<RankedCost> getMostExpensiveInstances(int limit) {
+        throw new UnsupportedOperationException("Ranking instances is not supported");
+    }
+
     /**
      * Fetch the instance usage
      *
@@ -69,6 +141,25 @@ public interface CostExplorer {
      */
     TimeSeries getUsage(Usage usage);
 
+    /**
+     * Fetch several metrics with one request.
+     * By default, only the unblended costs are supported, fetched with {@link #getCosts()}.
+     *
+     * @param metrics the metrics to fetch
+     * @return a time series per requested metric
+     * @throws UnsupportedOperationException if a metric is not supported by the cost explorer
+     */
+    default Map<Metric, TimeSeries> getMetrics(Metric... metrics) {
+        Map<Metric, TimeSeries> timeSeriesByMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : metrics) {
+            if (metric != Metric.UNBLENDED_COST) {
+                throw new UnsupportedOperationException(metric + " is not supported");
+            }
+            timeSeriesByMetric.put(metric, getCosts());
+        }
+        return timeSeriesByMetric;
+    }
+
     /**
      * Determine if Cost explorer supports given cloud provider.
      *
@@ -0,0 +1,148 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.util.Objects;
+
+/**
+ * Immutable description of the data to fetch: the time range, its granularity and the scope given by instance and service.
+ * Every change creates a new query, so a query can be shared between threads.
+ */
+public final class CostQuery {
+    private static final CostQuery DEFAULT = new CostQuery(TimeRange.LAST_30_DAYS, Granularity.DAILY, null, null);
+
+    private final TimeRange timeRange;
+    private final Granularity granularity;
+    private final String instance;
+    private final String service;
+
+    private CostQuery(TimeRange timeRange, Granularity granularity, String instance, String service) {
+        this.timeRange = Objects.requireNonNull(timeRange, "timeRange");
+        this.granularity = Objects.requireNonNull(granularity, "granularity");
+        this.instance = instance;
+        this.service = service;
+    }
+
+    /**
+     * Returns the query for the daily values of the last 30 days without instance and service
+     *
+     * @return the default query
+     */
+    public static CostQuery create() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a query with another time range
+     *
+     * @param timeRange a time range
+     * @return the new query
+     */
+    public CostQuery during(TimeRange timeRange) {
+        return new CostQuery(timeRange, granularity, instance, service);
+    }
+
+    /**
+     * Returns a query with another granularity
+     *
+     * @param granularity a granularity
+     * @return the new query
+     */
+    public CostQuery withGranularity(Granularity granularity) {
+        return new CostQuery(timeRange, granularity, instance, service);
+    }
+
+    /**
+     * Returns a query with another instance name
+     *
+     * @param instance an instance name, null for all instances
+     * @return the new query
+     */
+    public CostQuery forInstance(String instance) {
+        return new CostQuery(timeRange, granularity, instance, service);
+    }
+
+    /**
+     * Returns a query with another cloud provider service
+     *
+     * @param service a cloud provider service, null for all services
+     * @return the new query
+     */
+    public CostQuery forService(String service) {
+        return new CostQuery(timeRange, granularity, instance, service);
+    }
+
+    /**
+     * Returns the time range
+     *
+     * @return the time range
+     */
+    public TimeRange getTimeRange() {
+        return timeRange;
+    }
+
+    /**
+     * Returns the granularity
+     *
+     * @return the granularity
+     */
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Returns the instance name
+     *
+     * @return the instance name, null if not set
+     */
+    public String getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the cloud provider service
+     *
+     * @return the service, null if not set
+     */
+    public String getService() {
+        return service;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CostQuery costQuery = (CostQuery) o;
+        return timeRange == costQuery.timeRange
+                && granularity == costQuery.granularity
+                && Objects.equals(instance, costQuery.instance)
+                && Objects.equals(service, costQuery.service);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeRange, granularity, instance, service);
+    }
+
+    @Override
+    public String toString() {
+        return "CostQuery{timeRange=" + timeRange + ", granularity=" + granularity + ", instance=" + instance + ", service=" + service + "}";
+    }
+}
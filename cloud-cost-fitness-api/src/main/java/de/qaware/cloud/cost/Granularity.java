@@ -0,0 +1,34 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+/**
+ * The length of the time intervals the data is aggregated to
+ */
+public enum Granularity {
+    /**
+     * One value per hour, available for the last 14 days only
+     */
+    HOURLY,
+    /**
+     * One value per day
+     */
+    DAILY,
+    /**
+     * One value per calendar month, the first and the last month may be partial
+     */
+    MONTHLY
+}
@@ -0,0 +1,170 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Weighted linear least-squares fit of values over time.
+ * Values are added one by one, each one located at the middle of its time interval and
+ * weighted by the number of days, so hourly values count as a 24th of a day. The fit is updated with every value, so it can be
+ * extended as new days arrive and evaluated at any number of dates without refitting.
+ */
+public final class LinearTrend {
+    private static final double HOURS_PER_DAY = 24.0;
+    private static final long SECONDS_PER_HOUR = 3600L;
+
+    private final String unit;
+
+    private int count;
+    private double sumOfWeights;
+    private double meanDay;
+    private double meanValue;
+    private double sumOfSquares;
+    private double sumOfProducts;
+
+    /**
+     * Creates an empty trend
+     *
+     * @param unit the unit of the values
+     */
+    public LinearTrend(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Adds a value of one day
+     *
+     * @param epochDay the day as epoch day
+     * @param value    the value
+     * @return the current instance of the trend
+     */
+    public LinearTrend add(long epochDay, double value) {
+        return add(epochDay, epochDay, value);
+    }
+
+    /**
+     * Adds a value of a time interval
+     *
+     * @param startDay the first day of the interval as epoch day
+     * @param endDay   the last day of the interval as epoch day
+     * @param value    the value
+     * @return the current instance of the trend
+     */
+    public LinearTrend add(long startDay, long endDay, double value) {
+        return add(0.5 * (startDay + endDay), endDay - startDay + 1.0, value);
+    }
+
+    /**
+     * Adds a value of one hour
+     *
+     * @param epochHour the hour as epoch hour in UTC
+     * @param value     the value
+     * @return the current instance of the trend
+     */
+    public LinearTrend addHour(long epochHour, double value) {
+        // a day is centered on its epoch day, so its first hour starts half a day earlier
+        return add((epochHour + 0.5) / HOURS_PER_DAY - 0.5, 1.0 / HOURS_PER_DAY, value);
+    }
+
+    private LinearTrend add(double day, double weight, double value) {
+        // weighted variant of Welford's algorithm, avoids cancellation for large epoch days
+        count++;
+        sumOfWeights += weight;
+        double deltaDay = day - meanDay;
+        meanDay += deltaDay * weight / sumOfWeights;
+        double deltaValue = value - meanValue;
+        meanValue += deltaValue * weight / sumOfWeights;
+        sumOfSquares += weight * deltaDay * (day - meanDay);
+        sumOfProducts += weight * deltaDay * (value - meanValue);
+        return this;
+    }
+
+    /**
+     * Adds an element of a time series
+     *
+     * @param element the element
+     * @return the current instance of the trend
+     * @throws IllegalStateException if the unit of the element does not match
+     */
+    public LinearTrend add(ValueWithUnit element) {
+        if (!Objects.equals(unit, element.getUnit())) {
+            throw new IllegalStateException("Units do not match");
+        }
+        if (element.getHour() != null) {
+            return addHour(element.getHour().toEpochSecond(ZoneOffset.UTC) / SECONDS_PER_HOUR, element.getValue());
+        }
+        return add(element.getDateFrom().toEpochDay(), element.getDateTo().toEpochDay(), element.getValue());
+    }
+
+    /**
+     * Returns the number of added values
+     *
+     * @return number of values
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the unit of the values
+     *
+     * @return the unit
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns the change of the value per day
+     *
+     * @return the slope of the fitted line
+     * @throws NoSuchElementException if less than two values were added
+     */
+    public double getSlope() {
+        if (count < 2) {
+            throw new NoSuchElementException("Time series too short");
+        }
+        // all values in the same interval do not define a direction
+        return sumOfSquares > 0.0 ? sumOfProducts / sumOfSquares : 0.0;
+    }
+
+    /**
+     * Evaluates the fitted line at a date
+     *
+     * @param date the date
+     * @return the value of the fitted line at noon of the date
+     * @throws NoSuchElementException if less than two values were added
+     */
+    public double valueAt(LocalDate date) {
+        return meanValue + getSlope() * (date.toEpochDay() - meanDay);
+    }
+
+    /**
+     * Extrapolates the values to a date
+     *
+     * @param date the date to extrapolate to in the format YYYY-MM-DD
+     * @return the extrapolated value
+     * @throws NoSuchElementException if less than two values were added
+     */
+    public ValueWithUnit extrapolate(String date) {
+        LocalDate localDate = LocalDate.parse(date, ValueWithUnit.DATE_FORMATTER);
+        return new ValueWithUnit(localDate, valueAt(localDate), unit);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.util.Objects;
+
+/**
+ * The costs of a named resource, e.g. an instance, within a ranking of the most expensive resources
+ */
+public final class RankedCost {
+    private final String name;
+    private final ValueWithUnit cost;
+
+    /**
+     * Construct a ranked cost
+     *
+     * @param name the name of the resource
+     * @param cost the cost of the resource with its time interval
+     */
+    public RankedCost(String name, ValueWithUnit cost) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.cost = Objects.requireNonNull(cost, "cost");
+    }
+
+    /**
+     * Returns the name of the resource
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the cost of the resource
+     *
+     * @return the cost with its time interval
+     */
+    public ValueWithUnit getCost() {
+        return cost;
+    }
+
+    /**
+     * Pretty-prints the name and the cost
+     *
+     * @return pretty-printed output
+     */
+    public String toString() {
+        return name + " : " + cost;
+    }
+}
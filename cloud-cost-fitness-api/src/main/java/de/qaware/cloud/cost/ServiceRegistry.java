@@ -0,0 +1,81 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of the implementations of a service found on the classpath.
+ * The classpath is searched once on first use, while each lookup creates new instances of the implementations, so
+ * they are never shared between callers and pick up e.g. changed system properties.
+ *
+ * @param <T> the service type
+ */
+final class ServiceRegistry<T> {
+    private final List<ServiceLoader.Provider<T>> providers;
+
+    private ServiceRegistry(Class<T> service) {
+        this.providers = ServiceLoader.load(service).stream().collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Returns the registry of all cost explorers
+     *
+     * @return the registry
+     */
+    static ServiceRegistry<CostExplorer> costExplorers() {
+        return CostExplorers.REGISTRY;
+    }
+
+    /**
+     * Returns the registry of all non-blocking cost explorers
+     *
+     * @return the registry
+     */
+    static ServiceRegistry<AsyncCostExplorer> asyncCostExplorers() {
+        return AsyncCostExplorers.REGISTRY;
+    }
+
+    /**
+     * Returns new instances of all implementations matching a condition, in classpath order
+     *
+     * @param condition the condition
+     * @return the matching instances
+     * @throws java.util.ServiceConfigurationError if an implementation cannot be instantiated
+     */
+    List<T> findAll(Predicate<T> condition) {
+        List<T> found = new ArrayList<>();
+        for (ServiceLoader.Provider<T> provider : providers) {
+            T instance = provider.get();
+            if (condition.test(instance)) {
+                found.add(instance);
+            }
+        }
+        return found;
+    }
+
+    private static final class CostExplorers {
+        private static final ServiceRegistry<CostExplorer> REGISTRY = new ServiceRegistry<>(CostExplorer.class);
+    }
+
+    private static final class AsyncCostExplorers {
+        private static final ServiceRegistry<AsyncCostExplorer> REGISTRY = new ServiceRegistry<>(AsyncCostExplorer.class);
+    }
+}
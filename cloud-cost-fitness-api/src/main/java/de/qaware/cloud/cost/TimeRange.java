@@ -19,8 +19,10 @@ package de.qaware.cloud.cost;
  * The time range of the data
  */
 public enum TimeRange {
+    LAST_12_MONTHS,
     LAST_6_MONTHS,
     LAST_30_DAYS,
+    LAST_14_DAYS,
     LAST_7_DAYS,
     YESTERDAY
 }
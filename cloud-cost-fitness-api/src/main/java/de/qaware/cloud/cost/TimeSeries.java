@@ -15,23 +15,23 @@
  */
 package de.qaware.cloud.cost;
 
-import org.apache.commons.math3.fitting.PolynomialCurveFitter;
-import org.apache.commons.math3.fitting.WeightedObservedPoint;
-
 import java.time.LocalDate;
-import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
- * Collection of values given at certain times
+ * Collection of values given at certain times.
+ * The values are either kept as list of elements or in a compact columnar form.
  */
 public class TimeSeries {
     private List<ValueWithUnit> elements = new ArrayList<>();
+    private CompactTimeSeries compact;
 
     /**
      * Insert elements into the time series
@@ -41,15 +41,34 @@ public class TimeSeries {
      */
     public TimeSeries withElements(List<ValueWithUnit> elements) {
         this.elements = elements;
+        this.compact = null;
         return this;
     }
 
     /**
-     * Returns the elements of the time series
+     * Insert elements in compact form into the time series
+     *
+     * @param compact the compact elements to be inserted
+     * @return the time series
+     */
+    public TimeSeries withElements(CompactTimeSeries compact) {
+        this.elements = null;
+        this.compact = compact;
+        return this;
+    }
+
+    /**
+     * Returns the elements of the time series.
+     * Compact elements are converted to element objects on the first call.
      *
      * @return list of elements
      */
     public List<ValueWithUnit> getElements() {
+        if (compact != null) {
+            // the list is mutable, so it replaces the compact form
+            elements = compact.toElements();
+            compact = null;
+        }
         return elements;
     }
 
@@ -59,7 +78,19 @@ public class TimeSeries {
      * @return number of elements
      */
     public int getSize() {
-        return elements.size();
+        return size();
+    }
+
+    /**
+     * Returns the unit of the time series without converting compact elements
+     *
+     * @return the unit of the first element, null if the time series is empty
+     */
+    public String getUnit() {
+        if (size() == 0) {
+            return null;
+        }
+        return compact != null ? compact.getUnit() : elements.get(0).getUnit();
     }
 
     /**
@@ -69,6 +100,9 @@ public class TimeSeries {
      * @throws NoSuchElementException if the time series is empty
      */
     public ValueWithUnit max() {
+        if (compact != null) {
+            return compact.get(compact.indexOfMax());
+        }
         return elements.stream()
                 .max(ValueWithUnit::compareTo)
                 .orElseThrow(NoSuchElementException::new);
@@ -82,6 +116,9 @@ public class TimeSeries {
      * @throws NoSuchElementException if the time series is empty
      */
     public ValueWithUnit min() {
+        if (compact != null) {
+            return compact.get(compact.indexOfMin());
+        }
         return elements.stream()
                 .min(ValueWithUnit::compareTo)
                 .orElseThrow(NoSuchElementException::new);
@@ -96,7 +133,7 @@ public class TimeSeries {
      */
     public ValueWithUnit mean() {
         ValueWithUnit sum = sum();
-        sum.setValue(sum().getValue() / elements.size());
+        sum.setValue(sum().getValue() / size());
         return sum;
     }
 
@@ -108,6 +145,10 @@ public class TimeSeries {
      * @throws IllegalStateException  if the units of the elements do not match
      */
     public ValueWithUnit sum() {
+        if (compact != null) {
+            return sumCompact();
+        }
+
         if (elements.isEmpty()) {
             throw new NoSuchElementException("Empty time series");
         } else if (elements.size() == 1) {
@@ -129,27 +170,90 @@ public class TimeSeries {
     }
 
     /**
-     * Zips two time series and adds all the values
+     * Adds the values of another time series day by day, days missing in one of the series count as zero
      *
      * @param other the other time series
      * @return a new time series with added values
-     * @throws ArithmeticException if the time series have different number of elements or
-     *                             if the units do not match or
-     *                             if the dates of the elements do not match
+     * @throws ArithmeticException if the units do not match or
+     *                             if the time intervals of the elements overlap
      */
     public TimeSeries add(TimeSeries other) {
-        if (elements.size() != other.getSize() && !elements.isEmpty()) {
-            throw new ArithmeticException("Time series lengths do not match");
+        if (size() == 0) {
+            return other;
+        }
+        if (other.size() == 0) {
+            return this;
         }
 
-        if (elements.isEmpty()) {
-            return other;
+        if (compact != null && other.compact != null && compact.isAlignedWith(other.compact)) {
+            return new TimeSeries().withElements(compact.add(other.compact));
         }
 
-        TimeSeries sum = new TimeSeries();
-        return sum.withElements(IntStream.range(0, elements.size())
-                .mapToObj(index -> elements.get(index).add(other.getElements().get(index)))
-                .collect(Collectors.toList()));
+        return sumOf(List.of(this, other));
+    }
+
+    /**
+     * Adds the values of any number of time series in one pass.
+     * The elements are matched by their time intervals, intervals missing in some of the series count as zero.
+     * No intermediate time series are created.
+     *
+     * @param timeSeries the time series, each in chronological order
+     * @return a new time series with the summed values
+     * @throws ArithmeticException if the units do not match or
+     *                             if the time intervals of the elements overlap or are not in chronological order
+     */
+    public static TimeSeries sumOf(Collection<TimeSeries> timeSeries) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(timeSeries.size(), 1));
+        int capacity = 0;
+        for (TimeSeries series : timeSeries) {
+            Cursor cursor = new Cursor(series);
+            if (cursor.next()) {
+                cursors.add(cursor);
+                capacity = Math.max(capacity, series.size());
+            }
+        }
+        if (cursors.isEmpty()) {
+            return new TimeSeries();
+        }
+
+        Cursor first = cursors.peek();
+        String unit = first.unit;
+        boolean hourly = first.hourly;
+        CompactTimeSeries.Builder builder = hourly
+                ? CompactTimeSeries.hourlyBuilder(capacity, unit)
+                : CompactTimeSeries.builder(capacity, unit);
+
+        long previousEnd = Long.MIN_VALUE;
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            long start = cursor.start;
+            long end = cursor.end;
+            if (start <= previousEnd) {
+                throw new ArithmeticException("Time intervals overlap");
+            }
+
+            double sum = 0.0;
+            while (true) {
+                if (!Objects.equals(unit, cursor.unit)) {
+                    throw new ArithmeticException("Units do not match");
+                }
+                if (hourly != cursor.hourly || end != cursor.end) {
+                    throw new ArithmeticException("Date intervals do not match");
+                }
+                sum += cursor.value;
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+                if (cursors.isEmpty() || cursors.peek().start != start) {
+                    break;
+                }
+                cursor = cursors.poll();
+            }
+
+            builder.add((int) start, (int) end, sum);
+            previousEnd = end;
+        }
+        return new TimeSeries().withElements(builder.build());
     }
 
     /**
@@ -161,25 +265,35 @@ public class TimeSeries {
      * @throws IllegalStateException  if the units of the elements are different
      */
     public ValueWithUnit extrapolate(String date) {
-        if (elements.size() < 2) {
+        return trend().extrapolate(date);
+    }
+
+    /**
+     * Fits a linear trend to the time series.
+     * The trend can be extrapolated to several dates and extended by further values.
+     *
+     * @return the linear trend
+     * @throws NoSuchElementException if the time series does not contain enough elements
+     * @throws IllegalStateException  if the units of the elements are different
+     */
+    public LinearTrend trend() {
+        if (size() < 2) {
             throw new NoSuchElementException("Time series too short");
         }
 
-        if (!haveAllSameUnit()) {
-            throw new IllegalStateException("Units do not match");
+        LinearTrend trend = new LinearTrend(getUnit());
+        if (compact != null) {
+            for (int i = 0; i < compact.size(); i++) {
+                if (compact.isHourly()) {
+                    trend.addHour(compact.getStartHour(i), compact.getValue(i));
+                } else {
+                    trend.add(compact.getStartDay(i), compact.getEndDay(i), compact.getValue(i));
+                }
+            }
+        } else {
+            elements.forEach(trend::add);
         }
-
-        PolynomialCurveFitter fitter = PolynomialCurveFitter.create(1);
-
-        List<WeightedObservedPoint> points = elements.stream()
-                .map(element -> new WeightedObservedPoint(element.getNumDays(), extractDataPoint(element), element.getValue()))
-                .collect(Collectors.toList());
-
-        double[] coefficients = fitter.fit(points);
-
-        LocalDate localDate = LocalDate.parse(date, ValueWithUnit.DATE_FORMATTER);
-        double extrapolated = coefficients[0] + coefficients[1] * convertDateToDataPoint(localDate);
-        return new ValueWithUnit(localDate, extrapolated, elements.get(0).getUnit());
+        return trend;
     }
 
     /**
@@ -188,7 +302,7 @@ public class TimeSeries {
      * @return the number of elements
      */
     public int size() {
-        return elements.size();
+        return compact != null ? compact.size() : elements.size();
     }
 
     /**
@@ -198,6 +312,12 @@ public class TimeSeries {
      */
     public String toString() {
         StringBuilder stringBuilder = new StringBuilder();
+        if (compact != null) {
+            for (int i = 0; i < compact.size(); i++) {
+                stringBuilder.append(compact.get(i)).append("\n");
+            }
+            return stringBuilder.toString();
+        }
         elements.stream()
                 .map(ValueWithUnit::toString)
                 .forEach(item -> stringBuilder.append(item)
@@ -205,15 +325,82 @@ public class TimeSeries {
         return stringBuilder.toString();
     }
 
+    private ValueWithUnit sumCompact() {
+        if (compact.size() == 0) {
+            throw new NoSuchElementException("Empty time series");
+        } else if (compact.size() == 1) {
+            return compact.get(0);
+        }
+
+        LocalDate dateFrom = LocalDate.ofEpochDay(compact.getStartDay(0));
+        if (compact.getStartDay(0) == compact.getEndDay(compact.size() - 1)) {
+            // hourly values of a single day
+            return new ValueWithUnit(dateFrom, compact.sum(), compact.getUnit());
+        }
+        LocalDate dateTo = LocalDate.ofEpochDay(compact.getEndDay(compact.size() - 1));
+        return new ValueWithUnit(dateFrom, dateTo, compact.sum(), compact.getUnit());
+    }
+
     private boolean haveAllSameUnit() {
         return elements.stream().map(ValueWithUnit::getUnit).collect(Collectors.toSet()).size() == 1;
     }
 
-    private double extractDataPoint(ValueWithUnit valueWithUnit) {
-        return 0.5 * (convertDateToDataPoint(valueWithUnit.getDateFrom()) + convertDateToDataPoint(valueWithUnit.getDateTo()));
-    }
+    /**
+     * Reads the time intervals and values of a time series element by element, without creating element objects
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private static final long SECONDS_PER_HOUR = 3600;
+
+        private final CompactTimeSeries compact;
+        private final List<ValueWithUnit> elements;
+        private final int size;
+        private int index = -1;
+
+        private long start;
+        private long end;
+        private boolean hourly;
+        private double value;
+        private String unit;
+
+        private Cursor(TimeSeries timeSeries) {
+            this.compact = timeSeries.compact;
+            this.elements = timeSeries.elements;
+            this.size = timeSeries.size();
+        }
+
+        private boolean next() {
+            if (++index >= size) {
+                return false;
+            }
+            long previousStart = start;
+            if (compact != null) {
+                hourly = compact.isHourly();
+                start = hourly ? compact.getStartHour(index) : compact.getStartDay(index);
+                end = hourly ? start : compact.getEndDay(index);
+                value = compact.getValue(index);
+                unit = compact.getUnit();
+            } else {
+                ValueWithUnit element = elements.get(index);
+                if (element.getDateFrom() == null) {
+                    throw new ArithmeticException("Elements without dates cannot be aligned");
+                }
+                hourly = element.getHour() != null;
+                start = hourly
+                        ? element.getHour().toEpochSecond(ZoneOffset.UTC) / SECONDS_PER_HOUR
+                        : element.getDateFrom().toEpochDay();
+                end = hourly ? start : element.getDateTo().toEpochDay();
+                value = element.getValue();
+                unit = element.getUnit();
+            }
+            if (index > 0 && start <= previousStart) {
+                throw new ArithmeticException("Time series is not in chronological order");
+            }
+            return true;
+        }
 
-    private double convertDateToDataPoint(LocalDate date) {
-        return date.atTime(LocalTime.NOON).toEpochSecond(ZoneOffset.UTC);
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(start, other.start);
+        }
     }
 }
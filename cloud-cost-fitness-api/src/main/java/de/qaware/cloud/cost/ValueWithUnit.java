@@ -17,20 +17,24 @@ package de.qaware.cloud.cost;
 
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * Represents a value with its unit and a time range
+ * Represents a value with its unit and a time range.
+ * The time range is a date interval or, for hourly values, one hour.
  */
 public class ValueWithUnit implements Comparable<ValueWithUnit> {
     private static final int NUMBER_DIGITS_CURRENCY = 2;
     public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    public static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
     private LocalDate dateFrom;
     private LocalDate dateTo;
+    private LocalDateTime hour;
     private double value;
     private String unit;
 
@@ -49,6 +53,20 @@ public class ValueWithUnit implements Comparable<ValueWithUnit> {
         this.unit = unit;
     }
 
+    /**
+     * Creates a value of one hour
+     *
+     * @param hour  the beginning of the hour in UTC
+     * @param value the value
+     * @param unit  the unit
+     * @return the value of the hour
+     */
+    public static ValueWithUnit ofHour(LocalDateTime hour, double value, String unit) {
+        ValueWithUnit valueWithUnit = new ValueWithUnit(hour.toLocalDate(), value, unit);
+        valueWithUnit.hour = hour;
+        return valueWithUnit;
+    }
+
     /**
      * Sets the date and the date interval to one day
      *
@@ -57,6 +75,7 @@ public class ValueWithUnit implements Comparable<ValueWithUnit> {
     public void setDate(LocalDate date) {
         this.dateFrom = date;
         this.dateTo = date;
+        this.hour = null;
     }
 
     /**
@@ -75,6 +94,15 @@ public class ValueWithUnit implements Comparable<ValueWithUnit> {
         throw new IllegalStateException("The value is associated with more than one day");
     }
 
+    /**
+     * Returns the hour if the value corresponds to one hour
+     *
+     * @return the beginning of the hour in UTC, null for daily or longer time intervals
+     */
+    public LocalDateTime getHour() {
+        return hour;
+    }
+
     /**
      * Returns the beginning of the time interval
      *
@@ -153,6 +181,9 @@ public class ValueWithUnit implements Comparable<ValueWithUnit> {
         if (!hasSameDateInterval(other)) {
             throw new ArithmeticException("Date intervals do not match");
         }
+        if (hour != null) {
+            return ofHour(hour, value + other.getValue(), unit);
+        }
         return new ValueWithUnit(dateFrom, dateTo, value + other.getValue(), unit);
     }
 
@@ -202,6 +233,9 @@ public class ValueWithUnit implements Comparable<ValueWithUnit> {
             return valueToString();
         }
 
+        if (hour != null) {
+            return hour.format(HOUR_FORMATTER) + " : " + valueToString();
+        }
         if (dateFrom == dateTo) {
             return dateFrom.format(DATE_FORMATTER) + " : " + valueToString();
         }
@@ -227,6 +261,6 @@ public class ValueWithUnit implements Comparable<ValueWithUnit> {
     private boolean hasSameDateInterval(ValueWithUnit other) {
         boolean hasSameStart = (this.getDateFrom() == null && other.getDateFrom() == null) || Objects.equals(this.getDateFrom(), other.getDateFrom());
         boolean hasSameEnd = (this.getDateTo() == null && other.getDateTo() == null) || Objects.equals(this.getDateTo(), other.getDateTo());
-        return hasSameStart && hasSameEnd;
+        return hasSameStart && hasSameEnd && Objects.equals(this.getHour(), other.getHour());
     }
 }
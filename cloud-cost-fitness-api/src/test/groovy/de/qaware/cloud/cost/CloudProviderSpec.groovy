@@ -25,6 +25,21 @@ class CloudProviderSpec extends Specification {
         CloudProvider.AMAZON_AWS.costExplorer
     }
 
+    def "Get new AWS cost explorer per call"() {
+        expect:
+        !CloudProvider.AMAZON_AWS.costExplorer.is(CloudProvider.AMAZON_AWS.costExplorer)
+    }
+
+    def "Get all AWS cost explorers"() {
+        expect:
+        CloudProvider.AMAZON_AWS.costExplorers*.class == [TestableCostExplorer]
+    }
+
+    def "Get all Google cost explorers"() {
+        expect:
+        CloudProvider.GOOGLE_CLOUD.costExplorers.empty
+    }
+
     def "Get Google cost explorer"() {
         when:
         CloudProvider.GOOGLE_CLOUD.getCostExplorer()
@@ -41,6 +56,22 @@ class CloudProviderSpec extends Specification {
         thrown(UnsupportedOperationException)
     }
 
+    def "Get Google async cost explorer"() {
+        when:
+        CloudProvider.GOOGLE_CLOUD.getAsyncCostExplorer()
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "Get Azure async cost explorer"() {
+        when:
+        CloudProvider.MICROSOFT_AZURE.getAsyncCostExplorer()
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
     def "Supported Cloud Providers"() {
         expect:
         CloudProvider.values().length == 3
@@ -0,0 +1,127 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.LocalDate
+
+class CompactTimeSeriesSpec extends Specification {
+    static final int DAY = LocalDate.parse("2020-11-09").toEpochDay()
+
+    @Subject
+    CompactTimeSeries series = CompactTimeSeries.builder(1, "USD")
+            .add(DAY, 1.0d)
+            .add(DAY + 1, DAY + 2, -2.5d)
+            .add(DAY + 3, 4.0d)
+            .build()
+
+    def "stores the elements in columns"() {
+        expect: "the elements to be stored"
+        series.size() == 3
+        series.unit == "USD"
+        series.getStartDay(1) == DAY + 1
+        series.getEndDay(1) == DAY + 2
+        series.getValue(2) == 4.0d
+    }
+
+    def "aggregates the values"() {
+        expect: "the aggregations to be correct"
+        series.sum() == 2.5d
+        series.indexOfMax() == 2
+        series.indexOfMin() == 1
+    }
+
+    def "throws an exception if empty"() {
+        given: "an empty series"
+        def empty = CompactTimeSeries.builder(0, "USD").build()
+
+        when: "the maximum is requested"
+        empty.indexOfMax()
+
+        then: "an exception is thrown"
+        thrown NoSuchElementException
+    }
+
+    def "throws an exception for invalid indexes"() {
+        when: "an invalid index is requested"
+        series.getValue(3)
+
+        then: "an exception is thrown"
+        thrown IndexOutOfBoundsException
+    }
+
+    def "creates element objects"() {
+        when: "the elements are created"
+        def elements = series.toElements()
+
+        then: "they contain the dates and values"
+        elements.size() == 3
+        elements[0].date == LocalDate.parse("2020-11-09")
+        elements[1].dateFrom == LocalDate.parse("2020-11-10")
+        elements[1].dateTo == LocalDate.parse("2020-11-11")
+        elements[2].value == 4.0d
+        elements.every { it.unit == "USD" }
+    }
+
+    def "adds aligned time series"() {
+        given: "an aligned series"
+        def other = CompactTimeSeries.builder(3, "USD")
+                .add(DAY, 1.0d)
+                .add(DAY + 1, DAY + 2, 1.0d)
+                .add(DAY + 3, 1.0d)
+                .build()
+
+        when: "the series are added"
+        def result = series.add(other)
+
+        then: "the values are added"
+        (0..2).collect { result.getValue(it) } == [2.0d, -1.5d, 5.0d]
+    }
+
+    def "throws an exception when adding unaligned time series"() {
+        given: "a series with another unit"
+        def other = CompactTimeSeries.builder(3, "EUR")
+                .add(DAY, 1.0d)
+                .add(DAY + 1, DAY + 2, 1.0d)
+                .add(DAY + 3, 1.0d)
+                .build()
+
+        when: "the series are added"
+        series.add(other)
+
+        then: "an exception is thrown"
+        thrown ArithmeticException
+    }
+
+    def "stores hourly elements"() {
+        given: "an hourly series over midnight"
+        def hour = DAY * 24 + 23
+        def hourly = CompactTimeSeries.hourlyBuilder(2, "USD")
+                .add(hour, 1.0d)
+                .add(hour + 1, 2.0d)
+                .build()
+
+        expect: "the hours and their days"
+        hourly.hourly
+        hourly.getStartHour(1) == hour + 1
+        hourly.getStartDay(0) == DAY
+        hourly.getStartDay(1) == DAY + 1
+        hourly.get(0).hour == LocalDate.parse("2020-11-09").atTime(23, 0)
+        !hourly.isAlignedWith(CompactTimeSeries.builder(2, "USD").add(hour, 1.0d).add(hour + 1, 2.0d).build())
+    }
+}
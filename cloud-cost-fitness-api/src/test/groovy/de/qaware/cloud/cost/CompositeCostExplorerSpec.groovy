@@ -0,0 +1,258 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost
+
+import spock.lang.Specification
+
+import java.time.LocalDate
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class CompositeCostExplorerSpec extends Specification {
+
+    def "requires at least one cost explorer"() {
+        when: "a composite is created without cost explorers"
+        CompositeCostExplorer.of()
+
+        then: "an exception is thrown"
+        thrown IllegalArgumentException
+    }
+
+    def "rejects cost explorers without query support"() {
+        given: "a cost explorer not supporting queries"
+        def costExplorer = Stub(CostExplorer)
+        costExplorer.withQuery(_) >> { throw new UnsupportedOperationException() }
+
+        when: "a composite is created with it"
+        CompositeCostExplorer.of(explorer([:]), costExplorer)
+
+        then: "an exception is thrown"
+        thrown IllegalArgumentException
+    }
+
+    def "combines the cost explorers of the classpath"() {
+        when: "the cost explorers of all cloud providers are combined"
+        def composite = CompositeCostExplorer.ofProviders(CloudProvider.values())
+
+        then: "the registered cost explorer is used once"
+        composite.costExplorers*.class == [TestableCostExplorer]
+        composite.supports(CloudProvider.AMAZON_AWS)
+        !composite.supports(CloudProvider.GOOGLE_CLOUD)
+    }
+
+    def "throws an exception if no cost explorer supports the cloud providers"() {
+        when: "the cost explorers of unsupported cloud providers are combined"
+        CompositeCostExplorer.ofProviders(CloudProvider.GOOGLE_CLOUD, CloudProvider.MICROSOFT_AZURE)
+
+        then: "an exception is thrown"
+        thrown UnsupportedOperationException
+    }
+
+    def "passes the query to all cost explorers"() {
+        given: "two cost explorers"
+        def first = Mock(CostExplorer)
+        def second = Mock(CostExplorer)
+        def composite = CompositeCostExplorer.of(first, second)
+        def filtered = composite.during(TimeRange.LAST_7_DAYS).forService("Storage")
+
+        when: "the filtered composite is queried"
+        def names = filtered.getNames()
+
+        then: "each cost explorer receives the query"
+        1 * first.withQuery(filtered.query) >> first
+        1 * second.withQuery(filtered.query) >> second
+        1 * first.getNames() >> ["a", "b"]
+        1 * second.getNames() >> ["b", "c"]
+        names == ["a", "b", "c"]
+
+        and: "the filter does not change the shared composite"
+        filtered.query.timeRange == TimeRange.LAST_7_DAYS
+        filtered.query.service == "Storage"
+        composite.query == CostQuery.create()
+    }
+
+    def "sends the requests concurrently"() {
+        given: "cost explorers which only answer once all of them are requested"
+        def latch = new CountDownLatch(3)
+        def explorers = (0..<3).collect {
+            explorer(costs: {
+                latch.countDown()
+                assert latch.await(5, TimeUnit.SECONDS)
+                series("USD", 1.0d, 2.0d)
+            })
+        }
+
+        when: "the costs are fetched"
+        def costs = CompositeCostExplorer.of(explorers).getCosts()
+
+        then: "the costs are summed up day by day"
+        costs.elements*.value == [3.0d, 6.0d]
+    }
+
+    def "sums the costs per currency"() {
+        given: "cost explorers of accounts billed in different currencies"
+        def composite = CompositeCostExplorer.of(
+                explorer(costs: { series("USD", 1.0d, 2.0d) }),
+                explorer(costs: { series("EUR", 5.0d) }),
+                explorer(costs: { series("USD", 3.0d) }),
+                explorer(costs: { new TimeSeries() }))
+
+        when: "the costs are fetched per currency"
+        def costs = composite.getCostsByCurrency()
+
+        then: "each currency is summed up separately"
+        costs.keySet() as List == ["EUR", "USD"]
+        costs["EUR"].sum().value == 5.0d
+        costs["USD"].elements*.value == [4.0d, 2.0d]
+    }
+
+    def "throws an exception if the total costs have different currencies"() {
+        given: "cost explorers of accounts billed in different currencies"
+        def composite = CompositeCostExplorer.of(
+                explorer(costs: { series("USD", 1.0d) }),
+                explorer(costs: { series("EUR", 1.0d) }))
+
+        when: "the total costs are fetched"
+        composite.getCosts()
+
+        then: "an exception is thrown"
+        thrown ArithmeticException
+    }
+
+    def "sums the metrics per metric"() {
+        given: "two cost explorers"
+        def first = explorer([:])
+        first.getMetrics(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY) >> [
+                (Metric.UNBLENDED_COST): series("USD", 1.0d),
+                (Metric.USAGE_QUANTITY): series("Hrs", 24.0d)
+        ]
+        def second = explorer([:])
+        second.getMetrics(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY) >> [
+                (Metric.UNBLENDED_COST): series("USD", 2.0d)
+        ]
+
+        when: "the metrics are fetched"
+        def metrics = CompositeCostExplorer.of(first, second).getMetrics(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY)
+
+        then: "each metric is summed up"
+        metrics[Metric.UNBLENDED_COST].sum().value == 3.0d
+        metrics[Metric.USAGE_QUANTITY].sum().value == 24.0d
+    }
+
+    def "sums the costs per service"() {
+        given: "two accounts using partly the same services"
+        def first = explorer([:])
+        first.getCostsByService() >> ["Amazon EC2": series("USD", 1.0d), "Amazon S3": series("USD", 2.0d)]
+        def second = explorer([:])
+        second.getCostsByService() >> ["Amazon EC2": series("USD", 3.0d)]
+
+        when: "the costs are fetched per service"
+        def costs = CompositeCostExplorer.of(first, second).getCostsByService()
+
+        then: "each service is summed up"
+        costs.keySet() as List == ["Amazon EC2", "Amazon S3"]
+        costs["Amazon EC2"].sum().value == 4.0d
+        costs["Amazon S3"].sum().value == 2.0d
+    }
+
+    def "passes the tag key to all cost explorers"() {
+        given: "two cost explorers"
+        def first = Mock(CostExplorer)
+        def second = Mock(CostExplorer)
+        first.withQuery(_) >> first
+        second.withQuery(_) >> second
+
+        when: "the costs are fetched per tag value"
+        def costs = CompositeCostExplorer.of(first, second).getCostsByTag("team")
+
+        then: "each cost explorer groups by the tag"
+        1 * first.getCostsByTag("team") >> ["search": series("USD", 1.0d)]
+        1 * second.getCostsByTag("team") >> ["": series("USD", 2.0d)]
+        costs.keySet() as List == ["", "search"]
+    }
+
+    def "ranks the most expensive instances of all cost explorers"() {
+        given: "two accounts with their most expensive instances"
+        def first = explorer([:])
+        first.getMostExpensiveInstances(2) >> [ranked("solr-0", 5.0d), ranked("solr-1", 1.0d)]
+        def second = explorer([:])
+        second.getMostExpensiveInstances(2) >> [ranked("solr-0", 3.0d), ranked("kafka-0", 2.0d)]
+
+        when: "the two most expensive instances are fetched"
+        def instances = CompositeCostExplorer.of(first, second).getMostExpensiveInstances(2)
+
+        then: "the instances of both accounts are ranked together"
+        instances*.name == ["solr-0", "solr-0"]
+        instances*.cost*.value == [5.0d, 3.0d]
+    }
+
+    def "throws an exception if the ranked instances have different currencies"() {
+        given: "cost explorers of accounts billed in different currencies"
+        def first = explorer([:])
+        first.getMostExpensiveInstances(2) >> [ranked("solr-0", 5.0d)]
+        def second = explorer([:])
+        second.getMostExpensiveInstances(2) >> [new RankedCost("kafka-0", new ValueWithUnit(LocalDate.parse("2021-01-01"), 3.0d, "EUR"))]
+
+        when: "the most expensive instances are fetched"
+        CompositeCostExplorer.of(first, second).getMostExpensiveInstances(2)
+
+        then: "an exception is thrown"
+        thrown ArithmeticException
+    }
+
+    def "does not support grouped costs by default"() {
+        given: "a cost explorer without grouped costs"
+        def costExplorer = new TestableCostExplorer()
+
+        when: "the costs by service are fetched"
+        costExplorer.getCostsByService()
+
+        then: "an exception is thrown"
+        thrown UnsupportedOperationException
+    }
+
+    def "rethrows the exception of a cost explorer"() {
+        given: "a failing cost explorer"
+        def composite = CompositeCostExplorer.of(
+                explorer(costs: { series("USD", 1.0d) }),
+                explorer(costs: { throw new IllegalStateException("failed") }))
+
+        when: "the costs are fetched"
+        composite.getCosts()
+
+        then: "the exception is not wrapped"
+        def e = thrown(IllegalStateException)
+        e.message == "failed"
+    }
+
+    CostExplorer explorer(Map properties) {
+        def costExplorer = Stub(CostExplorer)
+        costExplorer.withQuery(_) >> costExplorer
+        costExplorer.getCosts() >> { (properties.costs as Closure).call() }
+        costExplorer
+    }
+
+    static RankedCost ranked(String name, double value) {
+        new RankedCost(name, new ValueWithUnit(LocalDate.parse("2021-01-01"), value, "USD"))
+    }
+
+    static TimeSeries series(String unit, double... values) {
+        def start = LocalDate.parse("2021-01-01")
+        new TimeSeries().withElements(values.toList().withIndex().collect { value, index ->
+            new ValueWithUnit(start.plusDays(index), value, unit)
+        })
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost
+
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+class CostExplorerSpec extends Specification {
+
+    def "fetches the unblended costs as metric by default"() {
+        given: "a cost explorer implementing only the required methods"
+        def costExplorer = new MinimalCostExplorer()
+
+        when: "the unblended costs are fetched as metric"
+        def metrics = costExplorer.getMetrics(Metric.UNBLENDED_COST)
+
+        then: "the costs are returned"
+        metrics[Metric.UNBLENDED_COST].sum().value == 1.0d
+    }
+
+    def "does not support other metrics by default"() {
+        when: "another metric is fetched"
+        new MinimalCostExplorer().getMetrics(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY)
+
+        then: "an exception is thrown"
+        thrown UnsupportedOperationException
+    }
+
+    def "does not support queries by default"() {
+        when: "a query is set"
+        new MinimalCostExplorer().withQuery(CostQuery.create().during(TimeRange.LAST_7_DAYS))
+
+        then: "an exception is thrown"
+        thrown UnsupportedOperationException
+    }
+
+    def "does not support other granularities by default"() {
+        when: "another granularity is set"
+        new MinimalCostExplorer().withGranularity(Granularity.HOURLY)
+
+        then: "an exception is thrown"
+        thrown UnsupportedOperationException
+    }
+
+    def "does not expose the query by default"() {
+        when: "the query is requested"
+        new MinimalCostExplorer().getQuery()
+
+        then: "an exception is thrown"
+        thrown UnsupportedOperationException
+    }
+
+    /**
+     * A cost explorer of a third party, implementing only the abstract methods
+     */
+    static class MinimalCostExplorer implements CostExplorer {
+        TimeRange timeRange
+        String instance
+        String service
+
+        @Override
+        CostExplorer during(TimeRange timeRange) {
+            new MinimalCostExplorer(timeRange: timeRange, instance: instance, service: service)
+        }
+
+        @Override
+        CostExplorer forInstance(String instance) {
+            new MinimalCostExplorer(timeRange: timeRange, instance: instance, service: service)
+        }
+
+        @Override
+        CostExplorer forService(String service) {
+            new MinimalCostExplorer(timeRange: timeRange, instance: instance, service: service)
+        }
+
+        @Override
+        List<String> getNames() {
+            []
+        }
+
+        @Override
+        TimeSeries getCosts() {
+            new TimeSeries().withElements([new ValueWithUnit(LocalDate.parse("2021-01-01"), 1.0d, "USD")])
+        }
+
+        @Override
+        TimeSeries getUsage(Usage usage) {
+            new TimeSeries()
+        }
+
+        @Override
+        boolean supports(CloudProvider cloudProvider) {
+            false
+        }
+    }
+}
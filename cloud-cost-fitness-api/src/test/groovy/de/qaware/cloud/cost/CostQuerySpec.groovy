@@ -0,0 +1,83 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost
+
+import spock.lang.Specification
+
+class CostQuerySpec extends Specification {
+
+    def "creates the default query"() {
+        expect: "the last 30 days without filters"
+        CostQuery.create().timeRange == TimeRange.LAST_30_DAYS
+        CostQuery.create().granularity == Granularity.DAILY
+        CostQuery.create().instance == null
+        CostQuery.create().service == null
+    }
+
+    def "creates new queries when changed"() {
+        given: "a query"
+        def query = CostQuery.create()
+
+        when: "the query is changed"
+        def changed = query.during(TimeRange.YESTERDAY).forInstance("test-*").forService("EC2")
+
+        then: "the new query contains the changes"
+        changed.timeRange == TimeRange.YESTERDAY
+        changed.instance == "test-*"
+        changed.service == "EC2"
+
+        and: "the original query is unchanged"
+        query == CostQuery.create()
+    }
+
+    def "compares queries by value"() {
+        given: "two equal queries"
+        def first = CostQuery.create().during(TimeRange.LAST_7_DAYS).forService("EC2")
+        def second = CostQuery.create().forService("EC2").during(TimeRange.LAST_7_DAYS)
+
+        expect: "they are equal"
+        first == second
+        first.hashCode() == second.hashCode()
+        first != first.forService("S3")
+        first.toString() == "CostQuery{timeRange=LAST_7_DAYS, granularity=DAILY, instance=null, service=EC2}"
+    }
+
+    def "changes the granularity"() {
+        when: "the granularity is changed"
+        def hourly = CostQuery.create().during(TimeRange.LAST_14_DAYS).withGranularity(Granularity.HOURLY)
+
+        then: "only the granularity differs"
+        hourly.granularity == Granularity.HOURLY
+        hourly.timeRange == TimeRange.LAST_14_DAYS
+        hourly != hourly.withGranularity(Granularity.DAILY)
+    }
+
+    def "throws an exception without time range"() {
+        when: "the time range is removed"
+        CostQuery.create().during(null)
+
+        then: "an exception is thrown"
+        thrown NullPointerException
+    }
+
+    def "throws an exception without granularity"() {
+        when: "the granularity is removed"
+        CostQuery.create().withGranularity(null)
+
+        then: "an exception is thrown"
+        thrown NullPointerException
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost
+
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+class LinearTrendSpec extends Specification {
+    static final long DAY = LocalDate.parse("2020-11-09").toEpochDay()
+
+    def "fits a line through daily values"() {
+        given: "a trend with increasing values"
+        def trend = new LinearTrend("USD")
+                .add(DAY, 10.0d)
+                .add(DAY + 1, 12.0d)
+                .add(DAY + 2, 14.0d)
+
+        expect: "the slope and values are correct"
+        trend.size() == 3
+        Math.abs(trend.slope - 2.0d) < 1e-9
+        Math.abs(trend.valueAt(LocalDate.parse("2020-11-19")) - 30.0d) < 1e-9
+    }
+
+    def "weights values by the number of days"() {
+        given: "a trend with a value spanning two days"
+        def trend = new LinearTrend("USD")
+                .add(DAY, 10.0d)
+                .add(DAY + 1, DAY + 2, 25.0d)
+                .add(DAY + 3, 40.0d)
+
+        expect: "the middle of the interval is used"
+        Math.round(trend.valueAt(LocalDate.parse("2020-11-12"))) == 40
+    }
+
+    def "is updated with new values"() {
+        given: "a trend of two days"
+        def trend = new LinearTrend("USD")
+                .add(DAY, 10.0d)
+                .add(DAY + 1, 10.0d)
+
+        when: "a new day arrives"
+        trend.add(DAY + 2, 13.0d)
+
+        then: "the trend is updated"
+        Math.abs(trend.slope - 1.5d) < 1e-9
+    }
+
+    def "extrapolates to several dates"() {
+        given: "a trend"
+        def trend = new LinearTrend("USD")
+                .add(DAY, 1.0d)
+                .add(DAY + 1, 2.0d)
+
+        when: "the values are extrapolated"
+        def values = ["2020-11-11", "2020-11-12"].collect { trend.extrapolate(it) }
+
+        then: "the values are correct"
+        values.collect { Math.round(it.value) } == [3, 4]
+        values.every { it.unit == "USD" }
+        values[1].date == LocalDate.parse("2020-11-12")
+    }
+
+    def "is flat for values of the same day"() {
+        given: "a trend with values of one day"
+        def trend = new LinearTrend("USD")
+                .add(DAY, 1.0d)
+                .add(DAY, 3.0d)
+
+        expect: "the mean is extrapolated"
+        trend.slope == 0.0d
+        trend.valueAt(LocalDate.parse("2020-12-24")) == 2.0d
+    }
+
+    def "throws an exception if too short"() {
+        given: "a trend with one value"
+        def trend = new LinearTrend("USD").add(DAY, 1.0d)
+
+        when: "the slope is requested"
+        trend.slope
+
+        then: "an exception is thrown"
+        thrown NoSuchElementException
+    }
+
+    def "throws an exception for different units"() {
+        given: "a trend"
+        def trend = new LinearTrend("USD")
+
+        when: "a value with another unit is added"
+        trend.add(new ValueWithUnit(LocalDate.parse("2020-11-09"), 1.0d, "EUR"))
+
+        then: "an exception is thrown"
+        thrown IllegalStateException
+    }
+
+    def "accepts values without unit"() {
+        given: "a time series of values without unit"
+        def timeSeries = new TimeSeries().withElements([
+                new ValueWithUnit(LocalDate.parse("2020-11-09"), 1.0d, null),
+                new ValueWithUnit(LocalDate.parse("2020-11-10"), 2.0d, null)
+        ])
+
+        when: "the trend is extrapolated"
+        def value = timeSeries.extrapolate("2020-11-11")
+
+        then: "the value has no unit either"
+        Math.round(value.value) == 3
+        value.unit == null
+    }
+
+    def "fits a line through hourly values"() {
+        given: "a trend increasing by one per hour"
+        def trend = new LinearTrend("USD")
+        (0..<48).each { trend.addHour(DAY * 24 + it, it as double) }
+
+        expect: "the slope is per day"
+        trend.size() == 48
+        Math.abs(trend.slope - 24.0d) < 1e-6
+    }
+}
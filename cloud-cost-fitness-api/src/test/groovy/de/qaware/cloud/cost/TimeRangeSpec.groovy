@@ -20,7 +20,7 @@ import spock.lang.Specification
 class TimeRangeSpec extends Specification {
     def "Check time range values"() {
         expect:
-        TimeRange.values().length == 4
+        TimeRange.values().length == 6
     }
 
     def "Check valueOf"() {
@@ -28,6 +28,6 @@ class TimeRangeSpec extends Specification {
         TimeRange.valueOf(provider)
 
         where:
-        provider << ['YESTERDAY', 'LAST_7_DAYS', 'LAST_30_DAYS', 'LAST_6_MONTHS']
+        provider << ['YESTERDAY', 'LAST_7_DAYS', 'LAST_14_DAYS', 'LAST_30_DAYS', 'LAST_6_MONTHS', 'LAST_12_MONTHS']
     }
 }
@@ -37,6 +37,12 @@ class TimeSeriesSpec extends Specification {
         elements.size() == 2
     }
 
+    def "returns the unit"() {
+        expect: "the unit of the elements and no unit for an empty time series"
+        elements.unit == "USD"
+        new TimeSeries().unit == null
+    }
+
     def "converts the series nicely to String"() {
         when: "the elements are converted to String"
         def result = elements.toString()
@@ -163,6 +169,97 @@ class TimeSeriesSpec extends Specification {
         result.getElements().collect { it.value } == [1.0d, -99.812341324]
     }
 
+    def "adds time series of different lengths by date"() {
+        given: "a time series starting one day later"
+        def other = new TimeSeries().withElements([
+                new ValueWithUnit(getDate("2020-11-10"), 2.0, "USD"),
+                new ValueWithUnit(getDate("2020-11-11"), 3.0, "USD")
+        ])
+
+        when: "the two series are added"
+        def result = elements.add(other)
+
+        then: "missing days count as zero"
+        result.getElements().collect { it.date } == [getDate("2020-11-09"), getDate("2020-11-10"), getDate("2020-11-11")]
+        result.getElements().collect { it.value } == [1.0d, -99.812341324d + 2.0d, 3.0d]
+    }
+
+    def "sums many time series in one pass"() {
+        given: "compact and list series with gaps"
+        def day = getDate("2020-11-09").toEpochDay() as int
+        def compact = new TimeSeries().withElements(CompactTimeSeries.builder(2, "USD").add(day + 1, 10.0d).add(day + 3, 20.0d).build())
+        def single = new TimeSeries().withElements([new ValueWithUnit(getDate("2020-11-09"), 100.0, "USD")])
+
+        when: "the series are summed"
+        def result = TimeSeries.sumOf([elements, compact, single, new TimeSeries()])
+
+        then: "the values are summed by date"
+        result.getElements().collect { it.date } == [getDate("2020-11-09"), getDate("2020-11-10"), getDate("2020-11-12")]
+        result.getElements().collect { it.value } == [101.0d, -99.812341324d + 10.0d, 20.0d]
+    }
+
+    @Unroll
+    def "throws an exception when summing series with #problem"() {
+        when: "the series are summed"
+        TimeSeries.sumOf([elements, new TimeSeries().withElements([other])])
+
+        then: "an exception is thrown"
+        thrown ArithmeticException
+
+        where:
+        problem                    | other
+        "different units"          | new ValueWithUnit(LocalDate.parse("2020-11-09"), 1.0, "EUR")
+        "different date intervals" | new ValueWithUnit(LocalDate.parse("2020-11-09"), LocalDate.parse("2020-11-10"), 1.0, "USD")
+        "elements without dates"   | new ValueWithUnit(1.0, "USD")
+    }
+
+    def "aggregates compact elements"() {
+        given: "a compact time series"
+        def day = getDate("2020-11-09").toEpochDay() as int
+        def series = new TimeSeries().withElements(CompactTimeSeries.builder(2, "USD")
+                .add(day, 1.0d)
+                .add(day + 1, -99.812341324d)
+                .build())
+
+        expect: "the aggregations are computed correctly"
+        series.size() == 2
+        series.min().value == -99.812341324d
+        series.max().value == 1.0d
+        series.mean().value == -49.406170662d
+        series.sum().dateFrom == getDate("2020-11-09")
+        series.sum().dateTo == getDate("2020-11-10")
+        series.toString() == "2020-11-09 : 1.0 USD\n2020-11-10 : -99.81 USD\n"
+    }
+
+    def "adds compact time series"() {
+        given: "two compact time series"
+        def day = getDate("2020-11-09").toEpochDay() as int
+        def first = new TimeSeries().withElements(CompactTimeSeries.builder(2, "USD").add(day, 1.0d).add(day + 1, 2.0d).build())
+        def second = new TimeSeries().withElements(CompactTimeSeries.builder(2, "USD").add(day, 3.0d).add(day + 1, 4.0d).build())
+
+        when: "the two series are added"
+        def result = first.add(second)
+
+        then: "they contain the correct data"
+        result.getElements().collect { it.value } == [4.0d, 6.0d]
+        result.getElements().every { it.unit == "USD" }
+    }
+
+    def "converts compact elements to mutable element objects"() {
+        given: "a compact time series"
+        def day = getDate("2020-11-09").toEpochDay() as int
+        def series = new TimeSeries().withElements(CompactTimeSeries.builder(2, "USD").add(day, 1.0d).add(day + 1, 2.0d).build())
+
+        when: "an element is changed"
+        series.getElements().get(1).setUnit("EUR")
+
+        and: "the minimum is requested"
+        series.min()
+
+        then: "the change is visible"
+        thrown ArithmeticException
+    }
+
     @Unroll
     def "extrapolates to a future date"() {
         given: "a time series"
@@ -190,6 +287,35 @@ class TimeSeriesSpec extends Specification {
         10.0d  | 25.0d  | 40.0d  | "2020-11-12" | 40.0d
     }
 
+    def "extrapolates compact elements to several dates"() {
+        given: "a compact time series"
+        def day = getDate("2020-11-09").toEpochDay() as int
+        def series = new TimeSeries().withElements(CompactTimeSeries.builder(3, "USD")
+                .add(day, 10.0d)
+                .add(day + 1, day + 2, 25.0d)
+                .add(day + 3, 40.0d)
+                .build())
+
+        when: "the trend is fitted once"
+        def trend = series.trend()
+
+        then: "it is extrapolated to several dates"
+        Math.round(trend.extrapolate("2020-11-12").value) == 40
+        Math.round(trend.extrapolate("2020-11-13").value) == 50
+        trend.unit == "USD"
+    }
+
+    def "throws an exception if the time series is too short to be extrapolated"() {
+        given: "a time series with one element"
+        def series = new TimeSeries().withElements([new ValueWithUnit(getDate("2020-11-09"), 1.0d, "USD")])
+
+        when: "the extrapolated value is requested"
+        series.extrapolate("2020-12-24")
+
+        then: "an exception is thrown"
+        thrown NoSuchElementException
+    }
+
     LocalDate getDate(String date) {
         LocalDate.parse(date, ValueWithUnit.DATE_FORMATTER)
     }
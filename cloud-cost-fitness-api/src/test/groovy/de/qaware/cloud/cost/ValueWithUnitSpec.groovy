@@ -19,6 +19,7 @@ import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.time.LocalDate
+import java.time.LocalDateTime
 
 import static de.qaware.cloud.cost.ValueWithUnit.DATE_FORMATTER
 
@@ -146,4 +147,32 @@ class ValueWithUnitSpec extends Specification {
         "Birnen" | "42.12645678 Birnen"
         "EUR"    | "42.13 EUR"
     }
+
+    def "creates values of one hour"() {
+        given: "a value of one hour"
+        def hour = LocalDateTime.parse("2020-11-09T13:00")
+        def value = ValueWithUnit.ofHour(hour, 42.0, "Birnen")
+
+        expect: "the hour and its date"
+        value.hour == hour
+        value.date == LocalDate.parse("2020-11-09")
+        value.toString() == "2020-11-09T13:00 : 42.0 Birnen"
+    }
+
+    def "adds values of the same hour only"() {
+        given: "values of two hours"
+        def value1 = ValueWithUnit.ofHour(LocalDateTime.parse("2020-11-09T13:00"), 42.0, "USD")
+        def value2 = ValueWithUnit.ofHour(LocalDateTime.parse("2020-11-09T13:00"), 40.0, "USD")
+        def value3 = ValueWithUnit.ofHour(LocalDateTime.parse("2020-11-09T14:00"), 40.0, "USD")
+
+        expect: "values of the same hour are added"
+        value1.add(value2).value == 82.0d
+        value1.add(value2).hour == LocalDateTime.parse("2020-11-09T13:00")
+
+        when: "values of different hours are added"
+        value1.add(value3)
+
+        then: "an exception is thrown"
+        thrown ArithmeticException
+    }
 }
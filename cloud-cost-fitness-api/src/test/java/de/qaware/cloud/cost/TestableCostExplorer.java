@@ -17,6 +17,7 @@ package de.qaware.cloud.cost;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class TestableCostExplorer implements CostExplorer {
     @Override
@@ -34,6 +35,16 @@ public class TestableCostExplorer implements CostExplorer {
         return this;
     }
 
+    @Override
+    public CostExplorer withQuery(CostQuery query) {
+        return this;
+    }
+
+    @Override
+    public CostQuery getQuery() {
+        return CostQuery.create();
+    }
+
     @Override
     public List<String> getNames() {
         return Collections.emptyList();
@@ -49,6 +60,11 @@ public class TestableCostExplorer implements CostExplorer {
         return null;
     }
 
+    @Override
+    public Map<Metric, TimeSeries> getMetrics(Metric... metrics) {
+        return Collections.emptyMap();
+    }
+
     @Override
     public boolean supports(CloudProvider cloudProvider) {
         return CloudProvider.AMAZON_AWS.equals(cloudProvider);
@@ -0,0 +1,203 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws;
+
+import de.qaware.cloud.cost.*;
+import de.qaware.cloud.cost.aws.client.ClientRegistry;
+import de.qaware.cloud.cost.aws.client.InstrumentedCostExplorerAsyncClient;
+import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher;
+import de.qaware.cloud.cost.aws.fetcher.DimensionalValuesFetcher;
+import de.qaware.cloud.cost.aws.fetcher.TagNamesFetcher;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collect data from the AWS API without blocking
+ */
+public class AwsAsyncCostExplorer implements AsyncCostExplorer {
+    private final CostExplorerAsyncClient costExplorerClient;
+    private final CostQuery query;
+
+    /**
+     * Construct default AWS cost explorer from system properties aws.access.key and aws.secret.key.
+     * The endpoint can be overridden with the system property aws.cost.explorer.endpoint.
+     */
+    public AwsAsyncCostExplorer() {
+        this(System.getProperty("aws.access.key"), System.getProperty("aws.secret.key"), getEndpointOverride());
+    }
+
+    /**
+     * Construct AWS cost explorer from explicit access key and secret key.
+     * The AWS client is shared by all cost explorers with the same credentials.
+     *
+     * @param accessKey the AWS access key
+     * @param secretKey the AWS secret key
+     */
+    public AwsAsyncCostExplorer(String accessKey, String secretKey) {
+        this(accessKey, secretKey, null);
+    }
+
+    /**
+     * Construct AWS cost explorer from explicit access key and secret key sending the requests to the given endpoint,
+     * e.g. a local simulator. The requests are recorded by the shared {@link Instrumentation}.
+     *
+     * @param accessKey the AWS access key
+     * @param secretKey the AWS secret key
+     * @param endpoint  the endpoint of the Cost Explorer API, null for the AWS default
+     */
+    public AwsAsyncCostExplorer(String accessKey, String secretKey, URI endpoint) {
+        this(new InstrumentedCostExplorerAsyncClient(
+                ClientRegistry.shared().getAsyncClient(AwsBasicCredentials.create(accessKey, secretKey), Region.US_EAST_1, endpoint),
+                Instrumentation.shared()));
+    }
+
+    /**
+     * Construct AWS cost explorer from given non-blocking AWS cost explorer client.
+     *
+     * @param costExplorerClient the non-blocking AWS cost explorer client instance
+     */
+    AwsAsyncCostExplorer(CostExplorerAsyncClient costExplorerClient) {
+        this(costExplorerClient, CostQuery.create());
+    }
+
+    private AwsAsyncCostExplorer(CostExplorerAsyncClient costExplorerClient, CostQuery query) {
+        this.costExplorerClient = costExplorerClient;
+        this.query = query;
+    }
+
+    private static URI getEndpointOverride() {
+        String endpoint = System.getProperty(AwsCostExplorer.ENDPOINT_PROPERTY);
+        return endpoint == null || endpoint.isEmpty() ? null : URI.create(endpoint);
+    }
+
+    @Override
+    public AwsAsyncCostExplorer during(TimeRange timeRange) {
+        return withQuery(query.during(timeRange));
+    }
+
+    @Override
+    public AwsAsyncCostExplorer withGranularity(Granularity granularity) {
+        return withQuery(query.withGranularity(granularity));
+    }
+
+    @Override
+    public AwsAsyncCostExplorer forInstance(String instance) {
+        return withQuery(query.forInstance(instance));
+    }
+
+    @Override
+    public AwsAsyncCostExplorer forService(String service) {
+        return withQuery(query.forService(service));
+    }
+
+    @Override
+    public AwsAsyncCostExplorer withQuery(CostQuery query) {
+        return new AwsAsyncCostExplorer(costExplorerClient, query);
+    }
+
+    @Override
+    public CostQuery getQuery() {
+        return query;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getNames() {
+        if (query.getInstance() != null) {
+            return getInstances();
+        }
+        if (query.getService() != null) {
+            return getServices();
+        }
+        return CompletableFuture.failedFuture(new IllegalStateException("Don't know what names to fetch."));
+    }
+
+    CompletableFuture<List<String>> getInstances() {
+        return TagNamesFetcher.withAsyncClient(costExplorerClient)
+                .searchFor(query.getInstance())
+                .during(query.getTimeRange())
+                .fetchAsync();
+    }
+
+    CompletableFuture<List<String>> getServices() {
+        return DimensionalValuesFetcher.withAsyncClient(costExplorerClient)
+                .searchFor(query.getService())
+                .during(query.getTimeRange())
+                .fetchServicesAsync();
+    }
+
+    @Override
+    public CompletableFuture<TimeSeries> getCosts() {
+        if (query.getInstance() != null) {
+            return getInstanceCosts();
+        }
+        if (query.getService() != null) {
+            return getServiceCosts();
+        }
+        return getTotalCosts();
+    }
+
+    CompletableFuture<TimeSeries> getTotalCosts() {
+        return CostAndUsageFetcher.withAsyncClient(costExplorerClient)
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
+                .fetchCostAsync();
+    }
+
+    CompletableFuture<TimeSeries> getServiceCosts() {
+        return CostAndUsageFetcher.withAsyncClient(costExplorerClient)
+                .filterByService(query.getService())
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
+                .fetchCostAsync();
+    }
+
+    CompletableFuture<TimeSeries> getInstanceCosts() {
+        TimeRange range = query.getTimeRange();
+        return getInstances().thenCompose(tagNames -> {
+            if (tagNames.isEmpty()) {
+                return CompletableFuture.completedFuture(new TimeSeries());
+            }
+            return CostAndUsageFetcher.withAsyncClient(costExplorerClient)
+                    .filterByTagNames(tagNames)
+                    .groupByTagName()
+                    .during(range)
+                    .withGranularity(query.getGranularity())
+                    .fetchGroupedCostAsync()
+                    .thenApply(costsByTagName -> TimeSeries.sumOf(costsByTagName.values()));
+        });
+    }
+
+    @Override
+    public CompletableFuture<TimeSeries> getUsage(Usage usage) {
+        return CostAndUsageFetcher.withAsyncClient(costExplorerClient)
+                .filterByTagName(query.getInstance())
+                .filterByUsage(usage)
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
+                .fetchUsageAsync();
+    }
+
+    @Override
+    public boolean supports(CloudProvider cloudProvider) {
+        return CloudProvider.AMAZON_AWS.equals(cloudProvider);
+    }
+}
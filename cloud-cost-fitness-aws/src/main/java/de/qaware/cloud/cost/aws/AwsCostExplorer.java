@@ -16,86 +16,214 @@
 package de.qaware.cloud.cost.aws;
 
 import de.qaware.cloud.cost.*;
+import de.qaware.cloud.cost.aws.cache.CostStore;
+import de.qaware.cloud.cost.aws.cache.QueryCache;
+import de.qaware.cloud.cost.aws.client.CachingCostExplorerClient;
+import de.qaware.cloud.cost.aws.client.ClientRegistry;
+import de.qaware.cloud.cost.aws.client.CoalescingCostExplorerClient;
+import de.qaware.cloud.cost.aws.client.InstrumentedCostExplorerClient;
+import de.qaware.cloud.cost.aws.client.RateLimiter;
+import de.qaware.cloud.cost.aws.client.ThrottlingCostExplorerClient;
 import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher;
 import de.qaware.cloud.cost.aws.fetcher.DimensionalValuesFetcher;
 import de.qaware.cloud.cost.aws.fetcher.TagNamesFetcher;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import de.qaware.cloud.cost.aws.prefetch.Grouping;
+import de.qaware.cloud.cost.aws.prefetch.PrefetchPlanner;
+import de.qaware.cloud.cost.aws.prefetch.PrefetchedCosts;
+import de.qaware.cloud.cost.aws.prefetch.Prefetcher;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.Dimension;
 
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 /**
  * Collect data from the AWS API
  */
 public class AwsCostExplorer implements CostExplorer {
-    private CostExplorerClient costExplorerClient;
-    private TimeRange timeRange = TimeRange.LAST_30_DAYS;
-    private String instance;
-    private String service;
+    public static final String ENDPOINT_PROPERTY = "aws.cost.explorer.endpoint";
+
+    private final CostExplorerClient costExplorerClient;
+    private final CostStore costStore;
+    private final PrefetchedCosts prefetchedCosts;
+    private final CostQuery query;
 
     /**
-     * Construct default AWS cost explorer from system properties aws.access.key and aws.secret.key
+     * Construct default AWS cost explorer from system properties aws.access.key and aws.secret.key.
+     * The endpoint can be overridden with the system property aws.cost.explorer.endpoint.
      */
     public AwsCostExplorer() {
-        this(System.getProperty("aws.access.key"), System.getProperty("aws.secret.key"));
+        this(System.getProperty("aws.access.key"), System.getProperty("aws.secret.key"), getEndpointOverride());
     }
 
     /**
      * Construct AWS cost explorer from explicit access key and secret key.
+     * The AWS client is shared by all cost explorers with the same credentials and created on the first request.
+     * Repeated queries are answered from an in-process query cache, concurrent equal queries share one request,
+     * and the requests are rate limited and retried when throttled. All requests are reported to the shared
+     * {@link Instrumentation}. Prefetched costs are shared by all cost explorers with the same access key and endpoint.
      *
      * @param accessKey the AWS access key
      * @param secretKey the AWS secret key
      */
     public AwsCostExplorer(String accessKey, String secretKey) {
-        this(createCostExplorerClient(accessKey, secretKey));
+        this(accessKey, secretKey, null);
+    }
+
+    /**
+     * Construct AWS cost explorer from explicit access key and secret key sending the requests to the given endpoint,
+     * e.g. a local simulator.
+     *
+     * @param accessKey the AWS access key
+     * @param secretKey the AWS secret key
+     * @param endpoint  the endpoint of the Cost Explorer API, null for the AWS default
+     */
+    public AwsCostExplorer(String accessKey, String secretKey, URI endpoint) {
+        this(createClient(accessKey, secretKey, endpoint), getAccountStore(accessKey, endpoint),
+                PrefetchedCosts.shared(accessKey, endpoint), CostQuery.create());
     }
 
     /**
      * Construct AWS cost explorer from given AWS cost explorer client.
+     * The account of the client is unknown, so no persistent cost store is used by default, and the costs prefetched
+     * with this client are not shared with other cost explorers.
      *
      * @param costExplorerClient the AWS cost explorer client instance
      */
     AwsCostExplorer(CostExplorerClient costExplorerClient) {
+        this(costExplorerClient, null, new PrefetchedCosts(), CostQuery.create());
+    }
+
+    private AwsCostExplorer(CostExplorerClient costExplorerClient, CostStore costStore, PrefetchedCosts prefetchedCosts,
+                            CostQuery query) {
         this.costExplorerClient = costExplorerClient;
+        this.costStore = costStore;
+        this.prefetchedCosts = prefetchedCosts;
+        this.query = query;
     }
 
-    private static CostExplorerClient createCostExplorerClient(String accessKey, String secretKey) {
-        AwsCredentials awsCredentials = AwsBasicCredentials.create(accessKey, secretKey);
-        StaticCredentialsProvider credentialProvider = StaticCredentialsProvider.create(awsCredentials);
+    private static CostExplorerClient createClient(String accessKey, String secretKey, URI endpoint) {
+        return new CachingCostExplorerClient(
+                new CoalescingCostExplorerClient(
+                        new ThrottlingCostExplorerClient(
+                                new InstrumentedCostExplorerClient(ClientRegistry.shared().getClient(
+                                        AwsBasicCredentials.create(accessKey, secretKey), Region.US_EAST_1, endpoint),
+                                        Instrumentation.shared()),
+                                RateLimiter.shared())),
+                new QueryCache<>());
+    }
 
-        return CostExplorerClient.builder()
-                .region(Region.US_EAST_1)
-                .credentialsProvider(credentialProvider)
-                .build();
+    private static CostStore getAccountStore(String accessKey, URI endpoint) {
+        CostStore costStore = CostStore.fromSystemProperties();
+        return costStore == null ? null : costStore.forAccount(accessKey, endpoint);
+    }
+
+    private static URI getEndpointOverride() {
+        String endpoint = System.getProperty(ENDPOINT_PROPERTY);
+        return endpoint == null || endpoint.isEmpty() ? null : URI.create(endpoint);
+    }
+
+    /**
+     * Returns the hit and miss statistics of the query cache
+     *
+     * @return the cache statistics
+     * @throws IllegalStateException if no query cache is used
+     */
+    public QueryCache.Statistics getCacheStatistics() {
+        if (costExplorerClient instanceof CachingCostExplorerClient) {
+            return ((CachingCostExplorerClient) costExplorerClient).getCache().getStatistics();
+        }
+        throw new IllegalStateException("No query cache used");
+    }
+
+    /**
+     * Sets a persistent store for daily costs and usage, so only missing and recent days are fetched.
+     * By default, a subdirectory per access key and endpoint of the directory given by the system property
+     * cloud.cost.store is used, if set. A given store is used as is, so it must not be shared with other accounts.
+     *
+     * @param costStore the cost store, null to disable it
+     * @return an AwsCostExplorer using the cost store
+     */
+    public AwsCostExplorer withCostStore(CostStore costStore) {
+        return new AwsCostExplorer(costExplorerClient, costStore, prefetchedCosts, query);
+    }
+
+    /**
+     * Sets the in-memory costs which answer queries before any request is sent.
+     * By default, the costs prefetched by any cost explorer of the process with the same access key and endpoint
+     * are used.
+     *
+     * @param prefetchedCosts the prefetched costs, null to disable them
+     * @return an AwsCostExplorer using the prefetched costs
+     */
+    public AwsCostExplorer withPrefetchedCosts(PrefetchedCosts prefetchedCosts) {
+        return new AwsCostExplorer(costExplorerClient, costStore, prefetchedCosts, query);
+    }
+
+    /**
+     * Fetches the costs of several queries with the fewest requests, sent concurrently.
+     * Afterwards the queries and any narrower ones are answered from memory.
+     *
+     * @param queries the queries to prefetch
+     * @param metrics the metrics to prefetch
+     * @throws IllegalStateException if no prefetched costs are used
+     */
+    public void prefetch(Collection<CostQuery> queries, Collection<Metric> metrics) {
+        if (prefetchedCosts == null) {
+            throw new IllegalStateException("No prefetched costs used");
+        }
+        Prefetcher.withClient(costExplorerClient)
+                .into(prefetchedCosts)
+                .execute(new PrefetchPlanner().plan(queries, metrics));
     }
 
     @Override
     public AwsCostExplorer during(TimeRange timeRange) {
-        this.timeRange = timeRange;
-        return this;
+        return withQuery(query.during(timeRange));
+    }
+
+    @Override
+    public AwsCostExplorer withGranularity(Granularity granularity) {
+        return withQuery(query.withGranularity(granularity));
     }
 
     @Override
     public AwsCostExplorer forInstance(String instance) {
-        this.instance = instance;
-        return this;
+        return withQuery(query.forInstance(instance));
     }
 
     @Override
     public AwsCostExplorer forService(String service) {
-        this.service = service;
-        return this;
+        return withQuery(query.forService(service));
+    }
+
+    @Override
+    public AwsCostExplorer withQuery(CostQuery query) {
+        return new AwsCostExplorer(costExplorerClient, costStore, prefetchedCosts, query);
+    }
+
+    @Override
+    public CostQuery getQuery() {
+        return query;
     }
 
     @Override
     public List<String> getNames() {
-        if (instance != null) {
+        if (query.getInstance() != null) {
             return getInstances();
         }
-        if (service != null) {
+        if (query.getService() != null) {
             return getServices();
         }
         throw new IllegalStateException("Don't know what names to fetch.");
@@ -103,69 +231,259 @@ public class AwsCostExplorer implements CostExplorer {
 
     List<String> getInstances() {
         return TagNamesFetcher.withClient(costExplorerClient)
-                .searchFor(instance)
-                .during(timeRange)
+                .searchFor(query.getInstance())
+                .during(query.getTimeRange())
                 .fetch();
     }
 
     List<String> getServices() {
         return DimensionalValuesFetcher.withClient(costExplorerClient)
-                .searchFor(service)
-                .during(timeRange)
+                .searchFor(query.getService())
+                .during(query.getTimeRange())
                 .fetchServices();
     }
 
     @Override
     public TimeSeries getCosts() {
-        if (instance != null) {
+        if (query.getInstance() != null) {
             return getInstanceCosts();
         }
-        if (service != null) {
+        if (query.getService() != null) {
             return getServiceCosts();
         }
         return getTotalCosts();
     }
 
     TimeSeries getTotalCosts() {
+        Optional<TimeSeries> prefetched = getPrefetched(Metric.UNBLENDED_COST);
+        if (prefetched.isPresent()) {
+            return prefetched.get();
+        }
         return CostAndUsageFetcher.withClient(costExplorerClient)
-                .during(timeRange)
+                .withStore(costStore)
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
                 .fetchCost();
     }
 
     TimeSeries getServiceCosts() {
+        Optional<TimeSeries> prefetched = getPrefetched(Metric.UNBLENDED_COST);
+        if (prefetched.isPresent()) {
+            return prefetched.get();
+        }
         return CostAndUsageFetcher.withClient(costExplorerClient)
-                .filterByService(service)
-                .during(timeRange)
+                .withStore(costStore)
+                .filterByService(query.getService())
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
                 .fetchCost();
     }
 
     TimeSeries getInstanceCosts() {
         List<String> tagNames = TagNamesFetcher.withClient(costExplorerClient)
-                .searchFor(instance)
-                .during(timeRange)
+                .searchFor(query.getInstance())
+                .during(query.getTimeRange())
                 .fetch();
 
-        TimeSeries timeSeries = new TimeSeries();
+        if (tagNames.isEmpty()) {
+            return new TimeSeries();
+        }
+
+        Optional<TimeSeries> prefetched = getPrefetched(Grouping.INSTANCE, tagNames, Metric.UNBLENDED_COST);
+        if (prefetched.isPresent()) {
+            return prefetched.get();
+        }
+
+        Map<String, TimeSeries> costsByTagName = CostAndUsageFetcher.withClient(costExplorerClient)
+                .filterByTagNames(tagNames)
+                .groupByTagName()
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
+                .fetchGroupedCost();
+
+        return TimeSeries.sumOf(costsByTagName.values());
+    }
+
+    /**
+     * Fetch the costs of all services with one grouped request.
+     * A service filter is resolved to the matching services first, like {@link #getNames()}.
+     *
+     * @return a time series containing costs by service name, sorted by service name
+     */
+    @Override
+    public Map<String, TimeSeries> getCostsByService() {
+        List<String> services = query.getService() == null ? null : getServices();
+        if (query.getInstance() == null) {
+            Optional<Map<String, TimeSeries>> prefetched = getPrefetchedServices(services);
+            if (prefetched.isPresent()) {
+                return prefetched.get();
+            }
+        }
+        return createGroupedFetcher(services)
+                .map(fetcher -> fetcher.groupByDimension(Dimension.SERVICE).fetchGroupedCost())
+                .orElseGet(TreeMap::new);
+    }
 
-        for (String tagName : tagNames) {
-            timeSeries = timeSeries.add(CostAndUsageFetcher.withClient(costExplorerClient)
-                    .filterByTagName(tagName)
-                    .during(timeRange)
-                    .fetchCost());
+    /**
+     * Fetch the costs of all values of a tag with one grouped request
+     *
+     * @param key the key of the tag, e.g. "Name" for instances
+     * @return a time series containing costs by tag value, sorted by tag value
+     * @throws IllegalArgumentException if no key is given
+     */
+    @Override
+    public Map<String, TimeSeries> getCostsByTag(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("No tag key given");
         }
+        List<String> services = query.getService() == null ? null : getServices();
+        return createGroupedFetcher(services)
+                .map(fetcher -> fetcher.groupByTag(key).fetchGroupedCost())
+                .orElseGet(TreeMap::new);
+    }
 
-        return timeSeries;
+    /**
+     * Fetch the most expensive instances with one grouped request.
+     * The pages of the response are streamed, only the current candidates are kept in memory.
+     *
+     * @param limit the maximum number of instances
+     * @return the most expensive instances with the cost and date of their most expensive period, most expensive first
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    @Override
+    public List<RankedCost> getMostExpensiveInstances(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit has to be positive");
+        }
+
+        List<String> services = query.getService() == null ? null : getServices();
+        return createGroupedFetcher(services)
+                .map(fetcher -> fetcher.groupByTagName().fetchTopCost(limit))
+                .orElse(Collections.emptyList());
+    }
+
+    private Optional<CostAndUsageFetcher> createGroupedFetcher(List<String> services) {
+        CostAndUsageFetcher fetcher = CostAndUsageFetcher.withClient(costExplorerClient)
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity());
+
+        // filters matching nothing would match everything in the request
+        if (services != null) {
+            if (services.isEmpty()) {
+                return Optional.empty();
+            }
+            fetcher.filterByServices(services);
+        }
+        if (query.getInstance() != null) {
+            List<String> tagNames = getInstances();
+            if (tagNames.isEmpty()) {
+                return Optional.empty();
+            }
+            fetcher.filterByTagNames(tagNames);
+        }
+        return Optional.of(fetcher);
     }
 
     @Override
     public TimeSeries getUsage(Usage usage) {
         return CostAndUsageFetcher.withClient(costExplorerClient)
-                .filterByTagName(instance)
+                .withStore(costStore)
+                .filterByTagName(query.getInstance())
                 .filterByUsage(usage)
-                .during(timeRange)
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
                 .fetchUsage();
     }
 
+    @Override
+    public Map<Metric, TimeSeries> getMetrics(Metric... metrics) {
+        if (query.getInstance() != null) {
+            return getInstanceMetrics(metrics);
+        }
+        Map<Metric, TimeSeries> prefetched = getPrefetched(metrics, this::getPrefetched);
+        if (prefetched != null) {
+            return prefetched;
+        }
+        return CostAndUsageFetcher.withClient(costExplorerClient)
+                .filterByService(query.getService())
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
+                .fetchMetrics(Arrays.asList(metrics));
+    }
+
+    Map<Metric, TimeSeries> getInstanceMetrics(Metric... metrics) {
+        List<String> tagNames = getInstances();
+
+        Map<Metric, TimeSeries> timeSeriesByMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : metrics) {
+            timeSeriesByMetric.put(metric, new TimeSeries());
+        }
+
+        if (tagNames.isEmpty()) {
+            return timeSeriesByMetric;
+        }
+
+        Map<Metric, TimeSeries> prefetched = getPrefetched(metrics, metric -> getPrefetched(Grouping.INSTANCE, tagNames, metric));
+        if (prefetched != null) {
+            return prefetched;
+        }
+
+        Map<Metric, Map<String, TimeSeries>> metricsByTagName = CostAndUsageFetcher.withClient(costExplorerClient)
+                .filterByTagNames(tagNames)
+                .groupByTagName()
+                .during(query.getTimeRange())
+                .withGranularity(query.getGranularity())
+                .fetchGroupedMetrics(Arrays.asList(metrics));
+
+        metricsByTagName.forEach((metric, timeSeriesByTagName) ->
+                timeSeriesByMetric.put(metric, TimeSeries.sumOf(timeSeriesByTagName.values())));
+        return timeSeriesByMetric;
+    }
+
+    private Optional<TimeSeries> getPrefetched(Metric metric) {
+        if (query.getGranularity() != Granularity.DAILY) {
+            return Optional.empty();
+        }
+        if (query.getService() != null) {
+            return getPrefetched(Grouping.SERVICE, Collections.singletonList(query.getService()), metric);
+        }
+        return prefetchedCosts == null ? Optional.empty() : prefetchedCosts.getTotal(metric, query.getTimeRange());
+    }
+
+    private Optional<TimeSeries> getPrefetched(Grouping grouping, List<String> groups, Metric metric) {
+        // only daily values are prefetched
+        if (prefetchedCosts == null || query.getGranularity() != Granularity.DAILY) {
+            return Optional.empty();
+        }
+        return prefetchedCosts.get(grouping, groups, metric, query.getTimeRange());
+    }
+
+    private Optional<Map<String, TimeSeries>> getPrefetchedServices(List<String> services) {
+        if (prefetchedCosts == null || query.getGranularity() != Granularity.DAILY) {
+            return Optional.empty();
+        }
+        Optional<Map<String, TimeSeries>> prefetched = prefetchedCosts.getAll(Grouping.SERVICE, Metric.UNBLENDED_COST, query.getTimeRange());
+        if (services != null) {
+            prefetched.ifPresent(costsByService -> costsByService.keySet().retainAll(services));
+        }
+        return prefetched;
+    }
+
+    private Map<Metric, TimeSeries> getPrefetched(Metric[] metrics, Function<Metric, Optional<TimeSeries>> lookup) {
+        if (metrics.length == 0) {
+            return null;
+        }
+        Map<Metric, TimeSeries> timeSeriesByMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : metrics) {
+            Optional<TimeSeries> prefetched = lookup.apply(metric);
+            if (prefetched.isEmpty()) {
+                return null;
+            }
+            timeSeriesByMetric.put(metric, prefetched.get());
+        }
+        return timeSeriesByMetric;
+    }
+
     @Override
     public boolean supports(CloudProvider cloudProvider) {
         return CloudProvider.AMAZON_AWS.equals(cloudProvider);
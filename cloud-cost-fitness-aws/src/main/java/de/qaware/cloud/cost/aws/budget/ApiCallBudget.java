@@ -0,0 +1,59 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget;
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the maximum number of requests to the Cost Explorer API sent by the AWS cost explorers during a test or a
+ * test class. The test fails if the budget is exceeded. On a class, the budget covers all tests and the prefetching of
+ * the class; on a test method, the budget covers the single test or each iteration of a Spock feature.
+ * Only successful requests are counted, since requests answered from a cache and throttled requests are not billed.
+ * Non-blocking requests are counted when their response arrives, so a test has to wait for its responses.
+ * The requests can not be attributed to a test, so budgeted tests must not run concurrently with tests of other
+ * classes, and a budgeted test method not with any other test. A test fails if its budget would overlap with
+ * another one.
+ * Works with JUnit 5 and Spock without further registration.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@ExtendWith(ApiCallBudgetExtension.class)
+public @interface ApiCallBudget {
+
+    /**
+     * The maximum number of requests
+     *
+     * @return the maximum number of requests
+     */
+    int value();
+
+    /**
+     * The operations to count, all operations if empty
+     *
+     * @return the operations
+     */
+    ApiOperation[] operations() default {};
+}
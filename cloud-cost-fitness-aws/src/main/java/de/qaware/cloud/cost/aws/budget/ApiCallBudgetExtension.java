@@ -0,0 +1,71 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * JUnit 5 extension checking the {@link ApiCallBudget} of a test class after all tests
+ * and the budget of a test method after the test.
+ * Extensions sending requests before all tests call {@link #beforeAll(ExtensionContext)} first, since they may be
+ * registered before this extension; the requests of a test class are counted once.
+ */
+public class ApiCallBudgetExtension implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(ApiCallBudgetExtension.class);
+    private static final String COUNTER = "counter";
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        Class<?> testClass = context.getRequiredTestClass();
+        ApiCallBudget budget = testClass.getAnnotation(ApiCallBudget.class);
+        if (budget != null) {
+            // keyed by the test class, so the counter of an enclosing test class is not found in its parent store
+            context.getStore(NAMESPACE).getOrComputeIfAbsent(testClass,
+                    key -> ApiCallCounter.startForClass(testClass, budget), ApiCallCounter.class);
+        }
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        check(context, context.getRequiredTestClass());
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        ApiCallBudget budget = context.getTestMethod().map(method -> method.getAnnotation(ApiCallBudget.class)).orElse(null);
+        if (budget != null) {
+            context.getStore(NAMESPACE).put(COUNTER, ApiCallCounter.startForTest(context.getRequiredTestClass(), budget));
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        check(context, COUNTER);
+    }
+
+    private static void check(ExtensionContext context, Object key) {
+        // removes the counter of this context only, not the one of the test class
+        ApiCallCounter counter = context.getStore(NAMESPACE).remove(key, ApiCallCounter.class);
+        if (counter != null) {
+            counter.stop();
+            counter.check(context.getDisplayName());
+        }
+    }
+}
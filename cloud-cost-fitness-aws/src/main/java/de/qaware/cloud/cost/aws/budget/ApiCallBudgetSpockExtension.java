@@ -0,0 +1,67 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget;
+
+import org.spockframework.runtime.extension.IGlobalExtension;
+import org.spockframework.runtime.extension.IMethodInterceptor;
+import org.spockframework.runtime.model.FeatureInfo;
+import org.spockframework.runtime.model.SpecInfo;
+
+/**
+ * Spock global extension checking the {@link ApiCallBudget} of a spec after all features
+ * and the budget of a feature after each iteration
+ */
+public class ApiCallBudgetSpockExtension implements IGlobalExtension {
+
+    @Override
+    public void start() {
+        // the counters are started per spec and feature
+    }
+
+    @Override
+    public void visitSpec(SpecInfo spec) {
+        ApiCallBudget specBudget = spec.getReflection().getAnnotation(ApiCallBudget.class);
+        if (specBudget != null) {
+            spec.addInterceptor(budgeted(specBudget, spec.getReflection(), false, spec.getName()));
+        }
+
+        for (FeatureInfo feature : spec.getAllFeatures()) {
+            ApiCallBudget featureBudget = feature.getFeatureMethod().getReflection().getAnnotation(ApiCallBudget.class);
+            if (featureBudget != null) {
+                feature.addIterationInterceptor(budgeted(featureBudget, spec.getReflection(), true, feature.getName()));
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        // each counter is stopped by its interceptor
+    }
+
+    private static IMethodInterceptor budgeted(ApiCallBudget budget, Class<?> testClass, boolean perTest, String scope) {
+        return invocation -> {
+            ApiCallCounter counter = perTest
+                    ? ApiCallCounter.startForTest(testClass, budget)
+                    : ApiCallCounter.startForClass(testClass, budget);
+            try {
+                invocation.proceed();
+            } finally {
+                counter.stop();
+            }
+            counter.check(scope);
+        };
+    }
+}
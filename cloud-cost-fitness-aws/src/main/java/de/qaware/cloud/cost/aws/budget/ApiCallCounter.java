@@ -0,0 +1,158 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget;
+
+import de.qaware.cloud.cost.aws.instrument.ApiCallListener;
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the successful requests of the budgeted operations while it is registered at the instrumentation.
+ * The instrumentation does not know which test sent a request, so a counter fails to start while a test of another
+ * test class or another budgeted test is counted concurrently.
+ */
+class ApiCallCounter implements ApiCallListener {
+    // guarded by itself
+    private static final List<ApiCallCounter> ACTIVE = new ArrayList<>();
+
+    private final Instrumentation instrumentation;
+    private final Class<?> testClass;
+    private final boolean perTest;
+    private final int budget;
+    private final Set<ApiOperation> operations;
+    private final Map<ApiOperation, LongAdder> requests = new EnumMap<>(ApiOperation.class);
+
+    private ApiCallCounter(Instrumentation instrumentation, Class<?> testClass, boolean perTest, ApiCallBudget budget) {
+        this.instrumentation = instrumentation;
+        this.testClass = testClass;
+        this.perTest = perTest;
+        this.budget = budget.value();
+        this.operations = budget.operations().length == 0
+                ? EnumSet.allOf(ApiOperation.class)
+                : EnumSet.of(budget.operations()[0], budget.operations());
+        for (ApiOperation operation : operations) {
+            requests.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Starts counting the requests of all tests of a test class sent to the shared instrumentation
+     *
+     * @param testClass the test class
+     * @param budget    the budget
+     * @return the counter
+     * @throws IllegalStateException if requests of another test are counted concurrently
+     */
+    static ApiCallCounter startForClass(Class<?> testClass, ApiCallBudget budget) {
+        return start(Instrumentation.shared(), testClass, false, budget);
+    }
+
+    /**
+     * Starts counting the requests of a single test sent to the shared instrumentation
+     *
+     * @param testClass the test class of the test
+     * @param budget    the budget
+     * @return the counter
+     * @throws IllegalStateException if requests of another test are counted concurrently
+     */
+    static ApiCallCounter startForTest(Class<?> testClass, ApiCallBudget budget) {
+        return start(Instrumentation.shared(), testClass, true, budget);
+    }
+
+    static ApiCallCounter start(Instrumentation instrumentation, Class<?> testClass, boolean perTest, ApiCallBudget budget) {
+        ApiCallCounter counter = new ApiCallCounter(instrumentation, testClass, perTest, budget);
+        synchronized (ACTIVE) {
+            for (ApiCallCounter active : ACTIVE) {
+                // only the counter of a test class may overlap with the counters of its own and its nested tests
+                if (active.instrumentation == instrumentation && (active.perTest || !active.encloses(testClass))) {
+                    throw new IllegalStateException(String.format(
+                            "The API call budget of %s can not be checked while %s runs concurrently",
+                            testClass.getName(), active.testClass.getName()));
+                }
+            }
+            ACTIVE.add(counter);
+        }
+        instrumentation.addListener(counter);
+        return counter;
+    }
+
+    private boolean encloses(Class<?> other) {
+        for (Class<?> current = other; current != null; current = current.getEnclosingClass()) {
+            if (current == testClass) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onRequest(ApiOperation operation, long durationNanos, boolean successful) {
+        LongAdder counter = requests.get(operation);
+        if (successful && counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Stops counting
+     */
+    void stop() {
+        instrumentation.removeListener(this);
+        synchronized (ACTIVE) {
+            ACTIVE.remove(this);
+        }
+    }
+
+    /**
+     * Returns the number of counted requests
+     *
+     * @return the number of requests
+     */
+    long getRequests() {
+        return requests.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Checks the counted requests against the budget
+     *
+     * @param scope the name of the test or test class
+     * @throws ApiCallBudgetExceededError if the budget is exceeded
+     */
+    void check(String scope) {
+        long total = getRequests();
+        if (total <= budget) {
+            return;
+        }
+        StringJoiner perOperation = new StringJoiner(", ", " (", ")");
+        requests.forEach((operation, count) -> {
+            if (count.sum() > 0) {
+                perOperation.add(operation.getApiName() + ": " + count.sum());
+            }
+        });
+        throw new ApiCallBudgetExceededError(String.format(
+                "%s sent %d requests to the Cost Explorer API, but the budget is %d%s",
+                scope, total, budget, perOperation));
+    }
+}
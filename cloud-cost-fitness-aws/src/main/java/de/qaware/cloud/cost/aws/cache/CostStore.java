@@ -0,0 +1,197 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cache;
+
+import de.qaware.cloud.cost.ValueWithUnit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Persistent local store of daily values, one file per query key.
+ * Cost Explorer data older than a few days does not change anymore, so it only has to be fetched once.
+ */
+public class CostStore {
+    /**
+     * System property for the directory of the default store
+     */
+    public static final String DIRECTORY_PROPERTY = "cloud.cost.store";
+
+    /**
+     * Default number of recent days which may still change and are always fetched again
+     */
+    public static final int DEFAULT_MUTABLE_DAYS = 3;
+
+    private static final String SEPARATOR = ";";
+    private static final String INTERVAL_SEPARATOR = "/";
+
+    private final Path directory;
+    private final int mutableDays;
+
+    /**
+     * Construct store in the given directory with the default number of mutable days.
+     *
+     * @param directory the directory of the store files
+     */
+    public CostStore(Path directory) {
+        this(directory, DEFAULT_MUTABLE_DAYS);
+    }
+
+    /**
+     * Construct store in the given directory.
+     *
+     * @param directory   the directory of the store files
+     * @param mutableDays the number of recent days which are always fetched again
+     */
+    public CostStore(Path directory, int mutableDays) {
+        this.directory = directory;
+        this.mutableDays = mutableDays;
+    }
+
+    /**
+     * Creates the store configured by the system property cloud.cost.store
+     *
+     * @return the store or null if the system property is not set
+     */
+    public static CostStore fromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        return new CostStore(Paths.get(directory));
+    }
+
+    /**
+     * Returns a store in a subdirectory of this store for the given account and endpoint.
+     * Stored values are never fetched again, so the values of different accounts or of a simulator must not share files.
+     *
+     * @param accessKey the AWS access key of the account
+     * @param endpoint  the endpoint of the Cost Explorer API, null for the AWS default
+     * @return the store of the account
+     */
+    public CostStore forAccount(String accessKey, URI endpoint) {
+        return new CostStore(directory.resolve(hash(accessKey + SEPARATOR + endpoint)), mutableDays);
+    }
+
+    /**
+     * Returns the first day which may still change for a query ending at the given day
+     *
+     * @param end the exclusive end of the query
+     * @return the first mutable day
+     */
+    public LocalDate getFirstMutableDay(LocalDate end) {
+        return end.minusDays(mutableDays);
+    }
+
+    /**
+     * Loads all stored values of a query
+     *
+     * @param key the query key
+     * @return the stored values by their first day, empty if nothing was stored yet
+     * @throws UncheckedIOException if the file can not be read
+     */
+    public NavigableMap<LocalDate, ValueWithUnit> load(String key) {
+        NavigableMap<LocalDate, ValueWithUnit> values = new TreeMap<>();
+        Path file = getFile(key);
+        if (!Files.exists(file)) {
+            return values;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] fields = line.split(SEPARATOR, 3);
+                String[] dates = fields[0].split(INTERVAL_SEPARATOR, 2);
+                LocalDate date = LocalDate.parse(dates[0], ValueWithUnit.DATE_FORMATTER);
+                if (dates.length == 1) {
+                    values.put(date, new ValueWithUnit(date, Double.parseDouble(fields[1]), fields[2]));
+                } else {
+                    LocalDate dateTo = LocalDate.parse(dates[1], ValueWithUnit.DATE_FORMATTER);
+                    values.put(date, new ValueWithUnit(date, dateTo, Double.parseDouble(fields[1]), fields[2]));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read cost store " + file, e);
+        } catch (RuntimeException e) {
+            // a corrupt file is treated like a missing one and rewritten on the next store
+            values.clear();
+        }
+        return values;
+    }
+
+    /**
+     * Stores the values of a query, replacing all previously stored values
+     *
+     * @param key    the query key
+     * @param values the daily values
+     * @throws UncheckedIOException if the file can not be written
+     */
+    public void store(String key, Collection<ValueWithUnit> values) {
+        Path file = getFile(key);
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (ValueWithUnit value : values) {
+                    writer.write(formatInterval(value) + SEPARATOR + value.getValue() + SEPARATOR + value.getUnit());
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write cost store " + file, e);
+        }
+    }
+
+    private static String formatInterval(ValueWithUnit value) {
+        String dateFrom = value.getDateFrom().format(ValueWithUnit.DATE_FORMATTER);
+        if (value.getDateFrom().equals(value.getDateTo())) {
+            return dateFrom;
+        }
+        return dateFrom + INTERVAL_SEPARATOR + value.getDateTo().format(ValueWithUnit.DATE_FORMATTER);
+    }
+
+    private Path getFile(String key) {
+        return directory.resolve(hash(key) + ".csv");
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
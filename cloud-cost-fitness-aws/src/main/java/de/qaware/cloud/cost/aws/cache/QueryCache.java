@@ -0,0 +1,209 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache for query results with a time to live and a least recently used eviction
+ *
+ * @param <K> the type of the keys, i.e. the normalized requests
+ * @param <V> the type of the values, i.e. the responses
+ */
+public class QueryCache<K, V> {
+    /**
+     * Default time to live of cached results
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(15);
+
+    /**
+     * Default maximum number of cached results
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Duration timeToLive;
+    private final int maximumSize;
+    private final Clock clock;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Construct cache with default time to live and maximum size.
+     */
+    public QueryCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Construct cache.
+     *
+     * @param timeToLive  the duration after which a result expires
+     * @param maximumSize the maximum number of results, least recently used results are evicted first
+     */
+    public QueryCache(Duration timeToLive, int maximumSize) {
+        this(timeToLive, maximumSize, Clock.systemUTC());
+    }
+
+    QueryCache(Duration timeToLive, int maximumSize, Clock clock) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum size must not be negative");
+        }
+        this.timeToLive = timeToLive;
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached value for the key or loads and caches it.
+     * The loader is called without holding the lock of the cache.
+     *
+     * @param key    the key
+     * @param loader the loader for the value in case of a miss
+     * @return the cached or loaded value
+     */
+    public V get(K key, Supplier<V> loader) {
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt.isAfter(clock.instant())) {
+                hits++;
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions++;
+            }
+            misses++;
+        }
+
+        V value = loader.get();
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Removes all cached values
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached values, including expired ones not evicted yet
+     *
+     * @return the number of cached values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a snapshot of the hit and miss statistics
+     *
+     * @return the statistics
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions);
+    }
+
+    private synchronized void put(K key, V value) {
+        if (maximumSize == 0) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, clock.instant().plus(timeToLive)));
+
+        Iterator<K> eldest = entries.keySet().iterator();
+        while (entries.size() > maximumSize) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final Instant expiresAt;
+
+        private Entry(V value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Hit and miss statistics of a query cache
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Statistics(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Returns the number of requests answered from the cache
+         *
+         * @return number of hits
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Returns the number of requests not answered from the cache
+         *
+         * @return number of misses
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Returns the number of values removed because they expired or the cache was full
+         *
+         * @return number of evictions
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Returns the ratio of hits to all requests
+         *
+         * @return the hit rate between 0 and 1
+         */
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+        }
+    }
+}
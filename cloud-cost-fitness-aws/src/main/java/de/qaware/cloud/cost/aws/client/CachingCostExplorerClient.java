@@ -0,0 +1,94 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import de.qaware.cloud.cost.aws.cache.QueryCache;
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.*;
+
+import java.util.function.Supplier;
+
+/**
+ * Cost explorer client answering repeated requests from a query cache.
+ * The requests are normalized by the fetchers, so equal queries result in equal requests.
+ */
+public class CachingCostExplorerClient extends ForwardingCostExplorerClient {
+    private final QueryCache<CostExplorerRequest, CostExplorerResponse> cache;
+    private final Instrumentation instrumentation;
+
+    /**
+     * Construct caching client reporting the cache hits to the shared instrumentation.
+     *
+     * @param delegate the client to forward cache misses to
+     * @param cache    the cache for the responses
+     */
+    public CachingCostExplorerClient(CostExplorerClient delegate, QueryCache<CostExplorerRequest, CostExplorerResponse> cache) {
+        this(delegate, cache, Instrumentation.shared());
+    }
+
+    /**
+     * Construct caching client.
+     *
+     * @param delegate        the client to forward cache misses to
+     * @param cache           the cache for the responses
+     * @param instrumentation the instrumentation to report the cache hits to
+     */
+    public CachingCostExplorerClient(CostExplorerClient delegate, QueryCache<CostExplorerRequest, CostExplorerResponse> cache,
+                                     Instrumentation instrumentation) {
+        super(delegate);
+        this.cache = cache;
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns the cache for the responses
+     *
+     * @return the query cache
+     */
+    public QueryCache<CostExplorerRequest, CostExplorerResponse> getCache() {
+        return cache;
+    }
+
+    @Override
+    public GetCostAndUsageResponse getCostAndUsage(GetCostAndUsageRequest request) {
+        return (GetCostAndUsageResponse) get(ApiOperation.GET_COST_AND_USAGE, request, () -> super.getCostAndUsage(request));
+    }
+
+    @Override
+    public GetTagsResponse getTags(GetTagsRequest request) {
+        return (GetTagsResponse) get(ApiOperation.GET_TAGS, request, () -> super.getTags(request));
+    }
+
+    @Override
+    public GetDimensionValuesResponse getDimensionValues(GetDimensionValuesRequest request) {
+        return (GetDimensionValuesResponse) get(ApiOperation.GET_DIMENSION_VALUES, request, () -> super.getDimensionValues(request));
+    }
+
+    private CostExplorerResponse get(ApiOperation operation, CostExplorerRequest request,
+                                     Supplier<CostExplorerResponse> loader) {
+        boolean[] loaded = new boolean[1];
+        CostExplorerResponse response = cache.get(request, () -> {
+            loaded[0] = true;
+            return loader.get();
+        });
+        if (!loaded[0]) {
+            instrumentation.cacheHit(operation);
+        }
+        return response;
+    }
+}
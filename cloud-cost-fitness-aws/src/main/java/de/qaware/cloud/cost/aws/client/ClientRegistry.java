@@ -0,0 +1,299 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClientBuilder;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClientBuilder;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of the AWS clients shared by all cost explorers of the process.
+ * There is one client per credentials, region and endpoint, created on its first request. All clients of the same
+ * HTTP client type share one HTTP client, so connections are kept alive and reused.
+ * The shared registry closes all clients when the JVM shuts down.
+ */
+public class ClientRegistry {
+    public static final String HTTP_CLIENT_PROPERTY = "aws.cost.explorer.http.client";
+
+    private static final int MAX_CONNECTIONS = 50;
+
+    private final HttpClientType httpClientType;
+    private final Function<ClientKey, CostExplorerClient> clientFactory;
+    private final Map<ClientKey, CostExplorerClient> clients = new ConcurrentHashMap<>();
+    private final Map<ClientKey, CostExplorerAsyncClient> asyncClients = new ConcurrentHashMap<>();
+    private final Map<HttpClientType, SdkHttpClient> httpClients = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Construct a registry creating the clients with the given HTTP client type.
+     *
+     * @param httpClientType the HTTP client type
+     */
+    public ClientRegistry(HttpClientType httpClientType) {
+        this.httpClientType = httpClientType;
+        this.clientFactory = this::createClient;
+    }
+
+    ClientRegistry(HttpClientType httpClientType, Function<ClientKey, CostExplorerClient> clientFactory) {
+        this.httpClientType = httpClientType;
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * Returns the registry shared by all cost explorers of the process.
+     * The HTTP client type is given by the system property aws.cost.explorer.http.client, apache by default.
+     *
+     * @return the shared registry
+     */
+    public static ClientRegistry shared() {
+        return Shared.REGISTRY;
+    }
+
+    /**
+     * Returns the client for the given credentials, which is created on its first request.
+     * Closing the returned client has no effect, the shared client is closed with the registry.
+     *
+     * @param credentials the AWS credentials
+     * @param region      the AWS region
+     * @param endpoint    the endpoint of the Cost Explorer API, null for the AWS default
+     * @return the client
+     */
+    public CostExplorerClient getClient(AwsCredentials credentials, Region region, URI endpoint) {
+        return new LazyClient(this, new ClientKey(credentials, region, endpoint, httpClientType));
+    }
+
+    /**
+     * Returns the non-blocking client for the given credentials, created once and shared.
+     *
+     * @param credentials the AWS credentials
+     * @param region      the AWS region
+     * @param endpoint    the endpoint of the Cost Explorer API, null for the AWS default
+     * @return the non-blocking client
+     * @throws IllegalStateException if the registry is closed
+     */
+    public CostExplorerAsyncClient getAsyncClient(AwsCredentials credentials, Region region, URI endpoint) {
+        return asyncClients.computeIfAbsent(new ClientKey(credentials, region, endpoint, httpClientType),
+                key -> createAsyncClient(checkOpen(key)));
+    }
+
+    /**
+     * Returns the number of clients created so far
+     *
+     * @return the number of clients
+     */
+    public int size() {
+        return clients.size() + asyncClients.size();
+    }
+
+    /**
+     * Closes all clients and their HTTP clients. Further requests fail.
+     */
+    public synchronized void close() {
+        closed = true;
+        clients.values().forEach(CostExplorerClient::close);
+        clients.clear();
+        asyncClients.values().forEach(CostExplorerAsyncClient::close);
+        asyncClients.clear();
+        httpClients.values().forEach(SdkHttpClient::close);
+        httpClients.clear();
+    }
+
+    CostExplorerClient resolve(ClientKey key) {
+        CostExplorerClient client = clients.get(key);
+        if (client == null) {
+            client = clients.computeIfAbsent(key, k -> clientFactory.apply(checkOpen(k)));
+        }
+        return client;
+    }
+
+    private ClientKey checkOpen(ClientKey key) {
+        if (closed) {
+            throw new IllegalStateException("Client registry is closed");
+        }
+        return key;
+    }
+
+    private CostExplorerClient createClient(ClientKey key) {
+        SdkHttpClient httpClient = httpClients.computeIfAbsent(key.httpClientType, HttpClientType::create);
+        CostExplorerClientBuilder builder = CostExplorerClient.builder()
+                .region(key.region)
+                .credentialsProvider(key.getCredentialsProvider())
+                .httpClient(httpClient)
+                // retries are done by the throttling client, which adapts the request rate
+                .overrideConfiguration(ClientOverrideConfiguration.builder().retryPolicy(RetryPolicy.none()).build());
+        if (key.endpoint != null) {
+            builder.endpointOverride(key.endpoint);
+        }
+        return builder.build();
+    }
+
+    private static CostExplorerAsyncClient createAsyncClient(ClientKey key) {
+        CostExplorerAsyncClientBuilder builder = CostExplorerAsyncClient.builder()
+                .region(key.region)
+                .credentialsProvider(key.getCredentialsProvider());
+        if (key.endpoint != null) {
+            builder.endpointOverride(key.endpoint);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The HTTP client implementations of the blocking clients
+     */
+    public enum HttpClientType {
+        /**
+         * Apache HTTP client with a pool of kept alive connections
+         */
+        APACHE {
+            @Override
+            SdkHttpClient create() {
+                return ApacheHttpClient.builder()
+                        .maxConnections(MAX_CONNECTIONS)
+                        .tcpKeepAlive(true)
+                        .build();
+            }
+        },
+        /**
+         * Lightweight HTTP client of the JDK, which starts faster but sends requests less efficiently
+         */
+        URL_CONNECTION {
+            @Override
+            SdkHttpClient create() {
+                return UrlConnectionHttpClient.create();
+            }
+        };
+
+        abstract SdkHttpClient create();
+
+        /**
+         * Returns the HTTP client type given by the system property aws.cost.explorer.http.client
+         *
+         * @return the HTTP client type, apache by default
+         * @throws IllegalArgumentException if the property names an unknown HTTP client type
+         */
+        public static HttpClientType fromSystemProperties() {
+            String type = System.getProperty(HTTP_CLIENT_PROPERTY);
+            if (type == null || type.isEmpty()) {
+                return APACHE;
+            }
+            return valueOf(type.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Identifies a client by the credentials, region, endpoint and HTTP client type
+     */
+    static final class ClientKey {
+        private final String accessKeyId;
+        private final String secretAccessKey;
+        private final Region region;
+        private final URI endpoint;
+        private final HttpClientType httpClientType;
+
+        ClientKey(AwsCredentials credentials, Region region, URI endpoint, HttpClientType httpClientType) {
+            this.accessKeyId = credentials.accessKeyId();
+            this.secretAccessKey = credentials.secretAccessKey();
+            this.region = region;
+            this.endpoint = endpoint;
+            this.httpClientType = httpClientType;
+        }
+
+        private StaticCredentialsProvider getCredentialsProvider() {
+            return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKeyId, secretAccessKey));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return accessKeyId.equals(other.accessKeyId)
+                    && secretAccessKey.equals(other.secretAccessKey)
+                    && region.equals(other.region)
+                    && Objects.equals(endpoint, other.endpoint)
+                    && httpClientType == other.httpClientType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(accessKeyId, secretAccessKey, region, endpoint, httpClientType);
+        }
+    }
+
+    /**
+     * Client resolving the shared client of the registry on its first request
+     */
+    private static final class LazyClient extends ForwardingCostExplorerClient {
+        private final ClientRegistry registry;
+        private final ClientKey key;
+        private volatile CostExplorerClient delegate;
+
+        private LazyClient(ClientRegistry registry, ClientKey key) {
+            super(null);
+            this.registry = registry;
+            this.key = key;
+        }
+
+        @Override
+        protected CostExplorerClient delegate() {
+            CostExplorerClient client = delegate;
+            if (client == null) {
+                client = registry.resolve(key);
+                delegate = client;
+            }
+            return client;
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+            // the shared client is closed with the registry
+        }
+    }
+
+    private static final class Shared {
+        private static final ClientRegistry REGISTRY = new ClientRegistry(HttpClientType.fromSystemProperties());
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(REGISTRY::close, "cost-explorer-client-shutdown"));
+        }
+    }
+}
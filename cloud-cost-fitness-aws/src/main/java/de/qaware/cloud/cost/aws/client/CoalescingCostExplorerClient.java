@@ -0,0 +1,116 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cost explorer client sharing one call between concurrent equal requests.
+ * Requests arriving while an equal request is in flight wait for its response instead of calling the delegate.
+ */
+public class CoalescingCostExplorerClient extends ForwardingCostExplorerClient {
+    private final ConcurrentMap<CostExplorerRequest, CompletableFuture<CostExplorerResponse>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final Instrumentation instrumentation;
+
+    /**
+     * Construct coalescing client reporting the coalesced requests to the shared instrumentation as cache hits.
+     *
+     * @param delegate the client to forward the requests to
+     */
+    public CoalescingCostExplorerClient(CostExplorerClient delegate) {
+        this(delegate, Instrumentation.shared());
+    }
+
+    /**
+     * Construct coalescing client.
+     *
+     * @param delegate        the client to forward the requests to
+     * @param instrumentation the instrumentation to report the coalesced requests to as cache hits
+     */
+    public CoalescingCostExplorerClient(CostExplorerClient delegate, Instrumentation instrumentation) {
+        super(delegate);
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns the number of requests answered by the call of an equal concurrent request
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    @Override
+    public GetCostAndUsageResponse getCostAndUsage(GetCostAndUsageRequest request) {
+        return (GetCostAndUsageResponse) call(ApiOperation.GET_COST_AND_USAGE, request, () -> super.getCostAndUsage(request));
+    }
+
+    @Override
+    public GetTagsResponse getTags(GetTagsRequest request) {
+        return (GetTagsResponse) call(ApiOperation.GET_TAGS, request, () -> super.getTags(request));
+    }
+
+    @Override
+    public GetDimensionValuesResponse getDimensionValues(GetDimensionValuesRequest request) {
+        return (GetDimensionValuesResponse) call(ApiOperation.GET_DIMENSION_VALUES, request, () -> super.getDimensionValues(request));
+    }
+
+    private CostExplorerResponse call(ApiOperation operation, CostExplorerRequest request,
+                                      Supplier<CostExplorerResponse> loader) {
+        CompletableFuture<CostExplorerResponse> future = new CompletableFuture<>();
+        CompletableFuture<CostExplorerResponse> running = inFlight.putIfAbsent(request, future);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            instrumentation.cacheHit(operation);
+            return join(running);
+        }
+
+        try {
+            CostExplorerResponse response = loader.get();
+            future.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            // later requests call the delegate again, caching is done by the query cache
+            inFlight.remove(request, future);
+        }
+    }
+
+    private static CostExplorerResponse join(CompletableFuture<CostExplorerResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.*;
+
+/**
+ * Cost explorer client forwarding all requests used by the fetchers to a delegate client.
+ * Subclasses decorate single requests, e.g. for caching.
+ */
+public abstract class ForwardingCostExplorerClient implements CostExplorerClient {
+    private final CostExplorerClient delegate;
+
+    /**
+     * Construct forwarding client for the given delegate.
+     *
+     * @param delegate the client to forward the requests to
+     */
+    protected ForwardingCostExplorerClient(CostExplorerClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the client the requests are forwarded to
+     *
+     * @return the delegate client
+     */
+    protected CostExplorerClient delegate() {
+        return delegate;
+    }
+
+    @Override
+    public GetCostAndUsageResponse getCostAndUsage(GetCostAndUsageRequest request) {
+        return delegate().getCostAndUsage(request);
+    }
+
+    @Override
+    public GetTagsResponse getTags(GetTagsRequest request) {
+        return delegate().getTags(request);
+    }
+
+    @Override
+    public GetDimensionValuesResponse getDimensionValues(GetDimensionValuesRequest request) {
+        return delegate().getDimensionValues(request);
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate().serviceName();
+    }
+
+    @Override
+    public void close() {
+        delegate().close();
+    }
+}
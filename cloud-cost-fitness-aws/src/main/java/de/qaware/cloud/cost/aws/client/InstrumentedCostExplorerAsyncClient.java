@@ -0,0 +1,68 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient;
+import software.amazon.awssdk.services.costexplorer.model.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking cost explorer client recording the duration and outcome of every request sent to the API.
+ * The requests are neither rate limited nor retried, since waiting for a permit would block the caller.
+ */
+public class InstrumentedCostExplorerAsyncClient implements CostExplorerAsyncClient {
+    private final CostExplorerAsyncClient delegate;
+    private final Instrumentation instrumentation;
+
+    /**
+     * Construct instrumented non-blocking client.
+     *
+     * @param delegate        the client to forward the requests to
+     * @param instrumentation the instrumentation, e.g. the shared one
+     */
+    public InstrumentedCostExplorerAsyncClient(CostExplorerAsyncClient delegate, Instrumentation instrumentation) {
+        this.delegate = delegate;
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public CompletableFuture<GetCostAndUsageResponse> getCostAndUsage(GetCostAndUsageRequest request) {
+        return instrumentation.recordAsync(ApiOperation.GET_COST_AND_USAGE, () -> delegate.getCostAndUsage(request));
+    }
+
+    @Override
+    public CompletableFuture<GetTagsResponse> getTags(GetTagsRequest request) {
+        return instrumentation.recordAsync(ApiOperation.GET_TAGS, () -> delegate.getTags(request));
+    }
+
+    @Override
+    public CompletableFuture<GetDimensionValuesResponse> getDimensionValues(GetDimensionValuesRequest request) {
+        return instrumentation.recordAsync(ApiOperation.GET_DIMENSION_VALUES, () -> delegate.getDimensionValues(request));
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.*;
+
+/**
+ * Cost explorer client recording the duration and outcome of every request sent to the API.
+ * It is the innermost client, so every attempt is recorded while cache hits never reach it.
+ */
+public class InstrumentedCostExplorerClient extends ForwardingCostExplorerClient {
+    private final Instrumentation instrumentation;
+
+    /**
+     * Construct instrumented client.
+     *
+     * @param delegate        the client to forward the requests to
+     * @param instrumentation the instrumentation, e.g. the shared one
+     */
+    public InstrumentedCostExplorerClient(CostExplorerClient delegate, Instrumentation instrumentation) {
+        super(delegate);
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public GetCostAndUsageResponse getCostAndUsage(GetCostAndUsageRequest request) {
+        return instrumentation.record(ApiOperation.GET_COST_AND_USAGE, () -> super.getCostAndUsage(request));
+    }
+
+    @Override
+    public GetTagsResponse getTags(GetTagsRequest request) {
+        return instrumentation.record(ApiOperation.GET_TAGS, () -> super.getTags(request));
+    }
+
+    @Override
+    public GetDimensionValuesResponse getDimensionValues(GetDimensionValuesRequest request) {
+        return instrumentation.record(ApiOperation.GET_DIMENSION_VALUES, () -> super.getDimensionValues(request));
+    }
+}
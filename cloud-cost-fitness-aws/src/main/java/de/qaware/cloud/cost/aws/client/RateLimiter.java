@@ -0,0 +1,154 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting the rate of requests, adapting the rate to throttling responses.
+ * The rate increases additively with every successful request and is halved when a request is throttled,
+ * so it approaches the maximum sustainable rate. Throttled requests sent before the last decrease were sent at the
+ * old rate and do not decrease it again, so a burst of concurrent throttles halves the rate only once. The shared instance is used for all requests of the process,
+ * since the limits of the Cost Explorer API apply per account.
+ */
+public class RateLimiter {
+    public static final double DEFAULT_INITIAL_RATE = 5.0;
+    public static final double DEFAULT_MINIMUM_RATE = 0.2;
+    public static final double DEFAULT_MAXIMUM_RATE = 20.0;
+    public static final int DEFAULT_BURST = 5;
+
+    private static final double RATE_INCREASE = 0.1;
+    private static final double RATE_DECREASE_FACTOR = 0.5;
+    private static final RateLimiter SHARED = new RateLimiter(
+            DEFAULT_INITIAL_RATE, DEFAULT_MINIMUM_RATE, DEFAULT_MAXIMUM_RATE, DEFAULT_BURST);
+
+    private final double minimumRate;
+    private final double maximumRate;
+    private final int burst;
+    private final LongSupplier nanoTime;
+    private final LongConsumer sleeper;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long issued;
+    private long issuedBeforeDecrease;
+
+    /**
+     * Construct rate limiter.
+     *
+     * @param initialRate the initial number of requests per second
+     * @param minimumRate the lower bound of the rate
+     * @param maximumRate the upper bound of the rate
+     * @param burst       the maximum number of requests sent without waiting
+     */
+    public RateLimiter(double initialRate, double minimumRate, double maximumRate, int burst) {
+        this(initialRate, minimumRate, maximumRate, burst, System::nanoTime, RateLimiter::sleep);
+    }
+
+    RateLimiter(double initialRate, double minimumRate, double maximumRate, int burst,
+                LongSupplier nanoTime, LongConsumer sleeper) {
+        if (minimumRate <= 0 || minimumRate > maximumRate || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate limits");
+        }
+        this.rate = Math.max(minimumRate, Math.min(maximumRate, initialRate));
+        this.minimumRate = minimumRate;
+        this.maximumRate = maximumRate;
+        this.burst = burst;
+        this.nanoTime = nanoTime;
+        this.sleeper = sleeper;
+        this.tokens = burst;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /**
+     * Returns the rate limiter shared by all clients of the process
+     *
+     * @return the shared rate limiter
+     */
+    public static RateLimiter shared() {
+        return SHARED;
+    }
+
+    /**
+     * Waits until a request may be sent
+     *
+     * @return the permit of the request, passed to {@link #onThrottle(long)} if the request is throttled
+     */
+    public long acquire() {
+        long waitNanos;
+        long permit;
+        synchronized (this) {
+            refill();
+            // reserve the token, a negative balance is the waiting time of the queued requests
+            tokens -= 1.0;
+            waitNanos = tokens < 0 ? (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1)) : 0;
+            permit = issued++;
+        }
+        if (waitNanos > 0) {
+            sleeper.accept(waitNanos);
+        }
+        return permit;
+    }
+
+    /**
+     * Increases the rate after a successful request
+     */
+    public synchronized void onSuccess() {
+        refill();
+        rate = Math.min(maximumRate, rate + RATE_INCREASE);
+    }
+
+    /**
+     * Decreases the rate after a throttled request, unless the request was sent before the last decrease
+     *
+     * @param permit the permit acquired for the request
+     */
+    public synchronized void onThrottle(long permit) {
+        if (permit < issuedBeforeDecrease) {
+            return;
+        }
+        refill();
+        rate = Math.max(minimumRate, rate * RATE_DECREASE_FACTOR);
+        issuedBeforeDecrease = issued;
+    }
+
+    /**
+     * Returns the current number of requests per second
+     *
+     * @return the current rate
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the rate limiter", e);
+        }
+    }
+}
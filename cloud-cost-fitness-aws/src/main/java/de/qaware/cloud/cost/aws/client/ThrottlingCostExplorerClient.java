@@ -0,0 +1,140 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client;
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation;
+import de.qaware.cloud.cost.aws.instrument.Instrumentation;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Cost explorer client sending the requests through a rate limiter.
+ * Throttled requests, server errors and I/O errors are retried with exponential backoff and full jitter.
+ */
+public class ThrottlingCostExplorerClient extends ForwardingCostExplorerClient {
+    public static final int DEFAULT_MAXIMUM_ATTEMPTS = 8;
+    public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(200);
+    public static final Duration DEFAULT_MAXIMUM_DELAY = Duration.ofSeconds(20);
+
+    private final RateLimiter rateLimiter;
+    private final int maximumAttempts;
+    private final long baseDelayNanos;
+    private final long maximumDelayNanos;
+    private final LongConsumer sleeper;
+    private final Instrumentation instrumentation;
+
+    /**
+     * Construct throttling client with the default retry settings, reporting the retries to the shared instrumentation.
+     *
+     * @param delegate    the client to forward the requests to
+     * @param rateLimiter the rate limiter, e.g. the shared one
+     */
+    public ThrottlingCostExplorerClient(CostExplorerClient delegate, RateLimiter rateLimiter) {
+        this(delegate, rateLimiter, DEFAULT_MAXIMUM_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAXIMUM_DELAY,
+                ThrottlingCostExplorerClient::sleep);
+    }
+
+    ThrottlingCostExplorerClient(CostExplorerClient delegate, RateLimiter rateLimiter, int maximumAttempts,
+                                 Duration baseDelay, Duration maximumDelay, LongConsumer sleeper) {
+        this(delegate, rateLimiter, maximumAttempts, baseDelay, maximumDelay, sleeper, Instrumentation.shared());
+    }
+
+    ThrottlingCostExplorerClient(CostExplorerClient delegate, RateLimiter rateLimiter, int maximumAttempts,
+                                 Duration baseDelay, Duration maximumDelay, LongConsumer sleeper,
+                                 Instrumentation instrumentation) {
+        super(delegate);
+        this.rateLimiter = rateLimiter;
+        this.maximumAttempts = maximumAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maximumDelayNanos = maximumDelay.toNanos();
+        this.sleeper = sleeper;
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public GetCostAndUsageResponse getCostAndUsage(GetCostAndUsageRequest request) {
+        return call(ApiOperation.GET_COST_AND_USAGE, () -> super.getCostAndUsage(request));
+    }
+
+    @Override
+    public GetTagsResponse getTags(GetTagsRequest request) {
+        return call(ApiOperation.GET_TAGS, () -> super.getTags(request));
+    }
+
+    @Override
+    public GetDimensionValuesResponse getDimensionValues(GetDimensionValuesRequest request) {
+        return call(ApiOperation.GET_DIMENSION_VALUES, () -> super.getDimensionValues(request));
+    }
+
+    private <T> T call(ApiOperation operation, Supplier<T> request) {
+        for (int attempt = 1; ; attempt++) {
+            long permit = rateLimiter.acquire();
+            try {
+                T response = request.get();
+                rateLimiter.onSuccess();
+                return response;
+            } catch (SdkException e) {
+                boolean throttled = isThrottled(e);
+                if (throttled) {
+                    rateLimiter.onThrottle(permit);
+                }
+                if (!(throttled || isTransient(e)) || attempt >= maximumAttempts) {
+                    throw e;
+                }
+                instrumentation.retry(operation, throttled);
+                sleeper.accept(backoff(attempt));
+            }
+        }
+    }
+
+    private static boolean isThrottled(SdkException e) {
+        return e instanceof LimitExceededException
+                || e instanceof SdkServiceException && ((SdkServiceException) e).isThrottlingException();
+    }
+
+    private static boolean isTransient(SdkException e) {
+        return e instanceof SdkServiceException && ((SdkServiceException) e).statusCode() >= 500
+                || e instanceof SdkClientException && e.getCause() instanceof IOException;
+    }
+
+    private long backoff(int attempt) {
+        // full jitter: a random delay up to the exponentially growing limit
+        long limit = baseDelayNanos << Math.min(attempt - 1, 30);
+        if (limit <= 0 || limit > maximumDelayNanos) {
+            limit = maximumDelayNanos;
+        }
+        return ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a retry", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.converter;
+
+/**
+ * Allocation-free parsing of the ISO dates and timestamps of the AWS API.
+ * Strings of other shapes are left to the java.time parsers by returning {@link #NO_MATCH}.
+ */
+final class IsoDates {
+    static final long NO_MATCH = Long.MIN_VALUE;
+
+    private static final int DATE_LENGTH = "yyyy-MM-dd".length();
+    private static final int TIMESTAMP_LENGTH = "yyyy-MM-ddTHH:mm:ssZ".length();
+    private static final long DAYS_0000_TO_1970 = 719528L;
+    private static final int HOURS_PER_DAY = 24;
+
+    private IsoDates() {
+    }
+
+    /**
+     * Parses a date of the form yyyy-MM-dd
+     *
+     * @param date the date
+     * @return the epoch day or {@link #NO_MATCH}
+     */
+    static long toEpochDay(String date) {
+        if (date.length() != DATE_LENGTH) {
+            return NO_MATCH;
+        }
+        return parseEpochDay(date);
+    }
+
+    /**
+     * Parses a full hour of the form yyyy-MM-ddTHH:00:00Z
+     *
+     * @param time the timestamp
+     * @return the epoch hour or {@link #NO_MATCH}
+     */
+    static long toEpochHour(String time) {
+        if (time.length() != TIMESTAMP_LENGTH || time.charAt(10) != 'T' || !time.startsWith(":00:00Z", 13)) {
+            return NO_MATCH;
+        }
+        long day = parseEpochDay(time);
+        int hour = parseDigits(time, 11, 13);
+        if (day == NO_MATCH || hour < 0 || hour >= HOURS_PER_DAY) {
+            return NO_MATCH;
+        }
+        return day * HOURS_PER_DAY + hour;
+    }
+
+    private static long parseEpochDay(String date) {
+        if (date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return NO_MATCH;
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return NO_MATCH;
+        }
+
+        // same computation as LocalDate.toEpochDay() for non-negative years
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static int parseDigits(String text, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+}
@@ -15,16 +15,43 @@
  */
 package de.qaware.cloud.cost.aws.converter;
 
+import de.qaware.cloud.cost.Granularity;
+import de.qaware.cloud.cost.Metric;
 import de.qaware.cloud.cost.TimeRange;
 import software.amazon.awssdk.services.costexplorer.model.DateInterval;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Converter for request towards AWS API
  */
 public class RequestConverter {
+    // the Cost Explorer keeps hourly data for 14 days only
+    private static final Set<TimeRange> HOURLY_TIME_RANGES = EnumSet.of(TimeRange.YESTERDAY, TimeRange.LAST_7_DAYS, TimeRange.LAST_14_DAYS);
+    private static final String START_OF_DAY = "T00:00:00Z";
+
+    private final Clock clock;
+
+    /**
+     * Construct request converter for time ranges ending today
+     */
+    public RequestConverter() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Construct request converter for time ranges ending on the current day of the given clock
+     *
+     * @param clock the clock
+     */
+    public RequestConverter(Clock clock) {
+        this.clock = clock;
+    }
+
     /**
      * Creates a date interval for the AWS API
      *
@@ -32,19 +59,97 @@ public class RequestConverter {
      * @return a date interval from the past to now
      */
     public DateInterval createDateInterval(TimeRange timeRange) {
-        return createDateIntervalFrom(timeRange, LocalDate.now());
+        return createDateIntervalFrom(timeRange, LocalDate.now(clock));
+    }
+
+    /**
+     * Creates a date interval for the AWS API in the format required by the granularity
+     *
+     * @param timeRange   the time range for the beginning of the interval
+     * @param granularity the granularity of the request
+     * @return a date interval from the past to now, with times of day for hourly granularity
+     * @throws IllegalArgumentException if hourly granularity is requested for more than 14 days
+     */
+    public DateInterval createDateInterval(TimeRange timeRange, Granularity granularity) {
+        DateInterval interval = createDateInterval(timeRange);
+        if (granularity != Granularity.HOURLY) {
+            return interval;
+        }
+        if (!HOURLY_TIME_RANGES.contains(timeRange)) {
+            throw new IllegalArgumentException("Hourly granularity is only available for the last 14 days");
+        }
+        return DateInterval.builder()
+                .start(interval.start() + START_OF_DAY)
+                .end(interval.end() + START_OF_DAY)
+                .build();
+    }
+
+    /**
+     * Converts a granularity to the one used by the AWS API
+     *
+     * @param granularity the granularity
+     * @return the granularity of the AWS API
+     */
+    public software.amazon.awssdk.services.costexplorer.model.Granularity convertGranularity(Granularity granularity) {
+        return software.amazon.awssdk.services.costexplorer.model.Granularity.valueOf(granularity.name());
+    }
+
+    /**
+     * Creates a date interval for the AWS API from explicit dates
+     *
+     * @param start the inclusive start of the interval
+     * @param end   the exclusive end of the interval
+     * @return a date interval from start to end
+     */
+    public DateInterval createDateInterval(LocalDate start, LocalDate end) {
+        return DateInterval.builder()
+                .start(start.format(DateTimeFormatter.ISO_DATE))
+                .end(end.format(DateTimeFormatter.ISO_DATE))
+                .build();
+    }
+
+    /**
+     * Converts a metric to the name used by the AWS API
+     *
+     * @param metric the metric
+     * @return the name of the metric
+     */
+    public String convertMetric(Metric metric) {
+        switch (metric) {
+            case BLENDED_COST:
+                return "BlendedCost";
+            case AMORTIZED_COST:
+                return "AmortizedCost";
+            case NET_UNBLENDED_COST:
+                return "NetUnblendedCost";
+            case NET_AMORTIZED_COST:
+                return "NetAmortizedCost";
+            case USAGE_QUANTITY:
+                return "UsageQuantity";
+            case NORMALIZED_USAGE_AMOUNT:
+                return "NormalizedUsageAmount";
+            case UNBLENDED_COST:
+            default:
+                return "UnblendedCost";
+        }
     }
 
     protected DateInterval createDateIntervalFrom(TimeRange timeRange, LocalDate fromDate) {
         String startDateString = "";
 
         switch (timeRange) {
+            case LAST_12_MONTHS:
+                startDateString = fromDate.minusMonths(12).format(DateTimeFormatter.ISO_DATE);
+                break;
             case LAST_6_MONTHS:
                 startDateString = fromDate.minusMonths(6).format(DateTimeFormatter.ISO_DATE);
                 break;
             case LAST_30_DAYS:
                 startDateString = fromDate.minusMonths(1).format(DateTimeFormatter.ISO_DATE);
                 break;
+            case LAST_14_DAYS:
+                startDateString = fromDate.minusDays(14).format(DateTimeFormatter.ISO_DATE);
+                break;
             case LAST_7_DAYS:
                 startDateString = fromDate.minusDays(7).format(DateTimeFormatter.ISO_DATE);
                 break;
@@ -15,39 +15,258 @@
  */
 package de.qaware.cloud.cost.aws.converter;
 
+import de.qaware.cloud.cost.CompactTimeSeries;
+import de.qaware.cloud.cost.Granularity;
+import de.qaware.cloud.cost.RankedCost;
 import de.qaware.cloud.cost.TimeSeries;
 import de.qaware.cloud.cost.ValueWithUnit;
+import software.amazon.awssdk.services.costexplorer.model.DateInterval;
+import software.amazon.awssdk.services.costexplorer.model.Group;
+import software.amazon.awssdk.services.costexplorer.model.MetricValue;
 import software.amazon.awssdk.services.costexplorer.model.ResultByTime;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeParseException;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Converter for responses from the AWS API
+ * Converter for responses from the AWS API.
+ * The values are decoded directly into compact time series, without objects per element.
  */
 public class ResponseConverter {
+    private static final long SECONDS_PER_HOUR = 3600L;
+    private static final int MAX_UNITS = 64;
+    private static final Map<String, String> UNITS = new ConcurrentHashMap<>();
+
     /**
-     * Extract all values (amount and unit) from the AWS API response
+     * Extract all values (amount and unit) from the AWS API response of daily data
      *
      * @param result the AWS API response
      * @param key    the key needed to extract the correct data
      * @return a time series with the extracted data
      */
     public TimeSeries extractValues(List<ResultByTime> result, String key) {
-        return new TimeSeries().withElements(result.stream()
-                .map(data -> new ValueWithUnit(
-                        convertStringToDate(data.timePeriod().start()),
-                        convertAmountToDouble(data.total().get(key).amount()),
-                        data.total().get(key).unit()
-                ))
-                .collect(Collectors.toList()));
+        return extractValues(result, key, Granularity.DAILY);
+    }
+
+    /**
+     * Extract all values (amount and unit) from the AWS API response
+     *
+     * @param result      the AWS API response
+     * @param key         the key needed to extract the correct data
+     * @param granularity the granularity of the request
+     * @return a time series with the extracted data
+     */
+    public TimeSeries extractValues(List<ResultByTime> result, String key, Granularity granularity) {
+        if (result.isEmpty()) {
+            return new TimeSeries();
+        }
+
+        String unit = internUnit(result.get(0).total().get(key).unit());
+        CompactTimeSeries.Builder builder = createBuilder(result.size(), unit, granularity);
+        for (ResultByTime data : result) {
+            MetricValue metricValue = data.total().get(key);
+            if (!Objects.equals(unit, metricValue.unit())) {
+                // mixed units can not be stored in compact form
+                return extractElements(result, key, granularity);
+            }
+            int start = convertStart(data.timePeriod(), granularity);
+            builder.add(start, convertEnd(data.timePeriod(), granularity, start), convertAmountToDouble(metricValue.amount()));
+        }
+        return new TimeSeries().withElements(builder.build());
+    }
+
+    private TimeSeries extractElements(List<ResultByTime> result, String key, Granularity granularity) {
+        List<ValueWithUnit> elements = new ArrayList<>(result.size());
+        for (ResultByTime data : result) {
+            MetricValue metricValue = data.total().get(key);
+            int start = convertStart(data.timePeriod(), granularity);
+            elements.add(createElement(start, convertEnd(data.timePeriod(), granularity, start), granularity,
+                    convertAmountToDouble(metricValue.amount()), internUnit(metricValue.unit())));
+        }
+        return new TimeSeries().withElements(elements);
+    }
+
+    /**
+     * Extract all values (amount and unit) per group from a grouped AWS API response of daily data.
+     * All time series are aligned to the time periods of the response, periods without data for a group are zero.
+     *
+     * @param result the AWS API response
+     * @param key    the key needed to extract the correct data
+     * @return the time series with the extracted data by group key, sorted by group key
+     */
+    public Map<String, TimeSeries> extractGroupedValues(List<ResultByTime> result, String key) {
+        return extractGroupedValues(result, key, Granularity.DAILY);
+    }
+
+    /**
+     * Extract all values (amount and unit) per group from a grouped AWS API response.
+     * All time series are aligned to the time periods of the response, periods without data for a group are zero.
+     *
+     * @param result      the AWS API response
+     * @param key         the key needed to extract the correct data
+     * @param granularity the granularity of the request
+     * @return the time series with the extracted data by group key, sorted by group key
+     */
+    public Map<String, TimeSeries> extractGroupedValues(List<ResultByTime> result, String key, Granularity granularity) {
+        Periods periods = new Periods(result.size());
+        Map<String, GroupValues> valuesByGroupKey = new HashMap<>();
+        // the raw keys repeat for every period, so each one is converted only once
+        Map<List<String>, GroupValues> valuesByRawKeys = new HashMap<>();
+
+        for (ResultByTime data : result) {
+            int start = convertStart(data.timePeriod(), granularity);
+            int period = periods.indexOf(start, convertEnd(data.timePeriod(), granularity, start));
+            for (Group group : data.groups()) {
+                MetricValue metricValue = group.metrics().get(key);
+                GroupValues values = valuesByRawKeys.get(group.keys());
+                if (values == null) {
+                    values = valuesByGroupKey.computeIfAbsent(convertGroupKey(group.keys()),
+                            groupKey -> new GroupValues(internUnit(metricValue.unit()), result.size()));
+                    valuesByRawKeys.put(group.keys(), values);
+                }
+                // the groups of one period may be split across pages
+                values.set(period, convertAmountToDouble(metricValue.amount()));
+            }
+        }
+
+        Map<String, TimeSeries> timeSeriesByGroup = new TreeMap<>();
+        valuesByGroupKey.forEach((groupKey, values) -> {
+            CompactTimeSeries.Builder builder = createBuilder(periods.size, values.unit, granularity);
+            for (int i = 0; i < periods.size; i++) {
+                builder.add(periods.starts[i], periods.ends[i], values.get(i));
+            }
+            timeSeriesByGroup.put(groupKey, new TimeSeries().withElements(builder.build()));
+        });
+        return timeSeriesByGroup;
+    }
+
+    /**
+     * Selects the groups with the highest values in a single period from a grouped AWS API response while it is streamed.
+     * Only the candidates are kept in a bounded min-heap, so the memory does not grow with the number of groups.
+     * Groups without a value of the grouping tag are not ranked.
+     *
+     * @param result      the AWS API response, e.g. streamed page by page
+     * @param key         the key needed to extract the correct data
+     * @param granularity the granularity of the request
+     * @param limit       the maximum number of groups
+     * @return the groups with the value and time interval of their highest period, highest first
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public List<RankedCost> selectTopGroups(Stream<ResultByTime> result, String key, Granularity granularity, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit has to be positive");
+        }
+
+        TopGroups topGroups = new TopGroups(limit);
+        result.forEach(data -> {
+            for (Group group : data.groups()) {
+                MetricValue metricValue = group.metrics().get(key);
+                double amount = convertAmountToDouble(metricValue.amount());
+                // most groups are rejected here, before their key and period are converted
+                if (!topGroups.accepts(amount)) {
+                    continue;
+                }
+                String groupKey = convertGroupKey(group.keys());
+                if (groupKey.isEmpty()) {
+                    continue;
+                }
+                int start = convertStart(data.timePeriod(), granularity);
+                int end = convertEnd(data.timePeriod(), granularity, start);
+                topGroups.offer(groupKey, amount, start, end, internUnit(metricValue.unit()));
+            }
+        });
+
+        return topGroups.candidates.stream()
+                .sorted(Comparator.comparingDouble((Candidate candidate) -> candidate.amount).reversed()
+                        .thenComparing(candidate -> candidate.groupKey))
+                .map(candidate -> new RankedCost(candidate.groupKey,
+                        createElement(candidate.start, candidate.end, granularity, candidate.amount, candidate.unit)))
+                .collect(Collectors.toList());
+    }
+
+    private String convertGroupKey(List<String> keys) {
+        // tag group keys are returned as "<tag key>$<tag value>"
+        if (keys.size() == 1) {
+            String key = keys.get(0);
+            return key.substring(key.indexOf('$') + 1);
+        }
+        return keys.stream()
+                .map(key -> key.substring(key.indexOf('$') + 1))
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String internUnit(String unit) {
+        if (unit == null) {
+            return null;
+        }
+        String interned = UNITS.get(unit);
+        if (interned != null) {
+            return interned;
+        }
+        // only a handful of units exist, the limit guards against unexpected ones
+        if (UNITS.size() < MAX_UNITS) {
+            interned = UNITS.putIfAbsent(unit, unit);
+        }
+        return interned != null ? interned : unit;
+    }
+
+    private static CompactTimeSeries.Builder createBuilder(int capacity, String unit, Granularity granularity) {
+        return granularity == Granularity.HOURLY
+                ? CompactTimeSeries.hourlyBuilder(capacity, unit)
+                : CompactTimeSeries.builder(capacity, unit);
+    }
+
+    private static ValueWithUnit createElement(int start, int end, Granularity granularity, double amount, String unit) {
+        if (granularity == Granularity.HOURLY) {
+            return ValueWithUnit.ofHour(LocalDateTime.ofEpochSecond(start * SECONDS_PER_HOUR, 0, ZoneOffset.UTC), amount, unit);
+        }
+        LocalDate dateFrom = LocalDate.ofEpochDay(start);
+        if (start == end) {
+            return new ValueWithUnit(dateFrom, amount, unit);
+        }
+        return new ValueWithUnit(dateFrom, LocalDate.ofEpochDay(end), amount, unit);
     }
 
-    private LocalDate convertStringToDate(String date) {
+    private int convertStart(DateInterval timePeriod, Granularity granularity) {
+        return granularity == Granularity.HOURLY
+                ? convertStringToEpochHour(timePeriod.start())
+                : convertStringToEpochDay(timePeriod.start());
+    }
+
+    private int convertEnd(DateInterval timePeriod, Granularity granularity, int start) {
+        if (granularity != Granularity.MONTHLY) {
+            return start;
+        }
+        // the end of the period is exclusive
+        return Math.max(start, convertStringToEpochDay(timePeriod.end()) - 1);
+    }
+
+    private int convertStringToEpochHour(String time) {
+        long hour = IsoDates.toEpochHour(time);
+        if (hour != IsoDates.NO_MATCH) {
+            return (int) hour;
+        }
         try {
-            return LocalDate.parse(date, ValueWithUnit.DATE_FORMATTER);
+            return (int) (Instant.parse(time).getEpochSecond() / SECONDS_PER_HOUR);
+        } catch (DateTimeParseException e) {
+            throw new IllegalStateException("Failed to convert time string to timestamp", e);
+        }
+    }
+
+    private int convertStringToEpochDay(String date) {
+        long day = IsoDates.toEpochDay(date);
+        if (day != IsoDates.NO_MATCH) {
+            return (int) day;
+        }
+        try {
+            return (int) LocalDate.parse(date, ValueWithUnit.DATE_FORMATTER).toEpochDay();
         } catch (DateTimeParseException e) {
             throw new IllegalStateException("Failed to convert date string to timestamp", e);
         }
@@ -60,4 +279,139 @@ public class ResponseConverter {
             throw new IllegalStateException("Failed to convert amount to double", e);
         }
     }
+
+    /**
+     * The distinct time periods of a response in order, periods split across pages are merged
+     */
+    private static final class Periods {
+        private int[] starts;
+        private int[] ends;
+        private int size;
+        private Map<Integer, Integer> indexByStart;
+
+        private Periods(int capacity) {
+            starts = new int[Math.max(capacity, 1)];
+            ends = new int[starts.length];
+        }
+
+        private int indexOf(int start, int end) {
+            // split periods are consecutive, so the index map is only needed for unordered responses
+            if (size > 0 && starts[size - 1] == start) {
+                return size - 1;
+            }
+            if (indexByStart != null || size > 0 && starts[size - 1] > start) {
+                Integer index = getIndexByStart().get(start);
+                if (index != null) {
+                    return index;
+                }
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            if (indexByStart != null) {
+                indexByStart.put(start, size);
+            }
+            return size++;
+        }
+
+        private Map<Integer, Integer> getIndexByStart() {
+            if (indexByStart == null) {
+                indexByStart = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    indexByStart.put(starts[i], i);
+                }
+            }
+            return indexByStart;
+        }
+    }
+
+    /**
+     * The groups with the highest values seen so far, at most one candidate per group
+     */
+    private static final class TopGroups {
+        private final int limit;
+        private final PriorityQueue<Candidate> candidates;
+        private final Map<String, Candidate> candidateByGroupKey;
+
+        private TopGroups(int limit) {
+            this.limit = limit;
+            this.candidates = new PriorityQueue<>(limit, Comparator.comparingDouble(candidate -> candidate.amount));
+            this.candidateByGroupKey = new HashMap<>(limit * 2);
+        }
+
+        private boolean accepts(double amount) {
+            // a candidate with a lower value than the cheapest one can not improve
+            return candidates.size() < limit || amount > candidates.peek().amount;
+        }
+
+        private void offer(String groupKey, double amount, int start, int end, String unit) {
+            Candidate candidate = candidateByGroupKey.get(groupKey);
+            if (candidate != null) {
+                if (amount > candidate.amount) {
+                    // the heap is small, so removing and re-adding is cheap
+                    candidates.remove(candidate);
+                    candidate.set(amount, start, end, unit);
+                    candidates.add(candidate);
+                }
+                return;
+            }
+
+            if (candidates.size() == limit) {
+                candidateByGroupKey.remove(candidates.poll().groupKey);
+            }
+            candidate = new Candidate(groupKey);
+            candidate.set(amount, start, end, unit);
+            candidates.add(candidate);
+            candidateByGroupKey.put(groupKey, candidate);
+        }
+    }
+
+    /**
+     * The highest value of a group and its period
+     */
+    private static final class Candidate {
+        private final String groupKey;
+        private double amount;
+        private int start;
+        private int end;
+        private String unit;
+
+        private Candidate(String groupKey) {
+            this.groupKey = groupKey;
+        }
+
+        private void set(double amount, int start, int end, String unit) {
+            this.amount = amount;
+            this.start = start;
+            this.end = end;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * The values of one group by period index
+     */
+    private static final class GroupValues {
+        private final String unit;
+        private double[] values;
+
+        private GroupValues(String unit, int capacity) {
+            this.unit = unit;
+            this.values = new double[Math.max(capacity, 1)];
+        }
+
+        private void set(int period, double value) {
+            if (period >= values.length) {
+                values = Arrays.copyOf(values, Math.max(period + 1, values.length * 2));
+            }
+            values[period] = value;
+        }
+
+        private double get(int period) {
+            return period < values.length ? values[period] : 0.0;
+        }
+    }
 }
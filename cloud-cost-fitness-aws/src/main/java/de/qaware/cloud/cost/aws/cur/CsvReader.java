@@ -0,0 +1,492 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for CSV files, plain ones are memory-mapped and gzip compressed ones are decompressed in chunks.
+ * Only the projected columns of a record are looked at, and their values are decoded without creating objects
+ * for values seen before in the same file.
+ */
+final class CsvReader {
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Receives the header and the records of a file
+     */
+    interface Handler {
+        /**
+         * Selects the columns to read
+         *
+         * @param header the column names
+         * @return the slot for each column, -1 to skip the column
+         */
+        int[] project(List<String> header);
+
+        /**
+         * Processes a record, which is only valid during the call
+         *
+         * @param record the projected values of the record
+         */
+        void accept(Record record);
+    }
+
+    private final Handler handler;
+    private final Record record = new Record();
+    private List<String> header;
+    private int[] slotByColumn;
+
+    private CsvReader(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Reads a CSV file, compressed with gzip if its name ends with .gz
+     *
+     * @param file    the file
+     * @param handler the handler of the records
+     * @throws IOException           if the file can not be read
+     * @throws IllegalStateException if the file is not a valid CSV file
+     */
+    static void read(Path file, Handler handler) throws IOException {
+        CsvReader reader = new CsvReader(handler);
+        if (file.getFileName().toString().endsWith(GZIP_SUFFIX)) {
+            try (InputStream input = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+                reader.read(input);
+            }
+        } else {
+            reader.map(file);
+        }
+    }
+
+    private void map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(SEGMENT_SIZE, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = parse(buffer, (int) length, last);
+                if (consumed == 0 && !last) {
+                    throw new IllegalStateException("Record too large in " + file);
+                }
+                position += consumed;
+            }
+        }
+    }
+
+    private void read(InputStream input) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int filled = 0;
+        boolean last = false;
+        while (!last) {
+            int read = input.read(bytes, filled, bytes.length - filled);
+            if (read < 0) {
+                last = true;
+            } else {
+                filled += read;
+                if (filled < bytes.length) {
+                    continue;
+                }
+            }
+
+            int consumed = parse(ByteBuffer.wrap(bytes), filled, last);
+            System.arraycopy(bytes, consumed, bytes, 0, filled - consumed);
+            filled -= consumed;
+            if (filled == bytes.length) {
+                // a single record fills the whole buffer
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Parses the complete records of a buffer
+     *
+     * @return the number of bytes of the complete records
+     */
+    private int parse(ByteBuffer buffer, int limit, boolean last) {
+        record.buffer = buffer;
+        // an incomplete record of the previous buffer is parsed again
+        record.clear();
+        if (header == null) {
+            record.headerFields.clear();
+        }
+        int recordStart = 0;
+        int column = 0;
+        int i = 0;
+        while (i < limit) {
+            int start;
+            int end;
+            boolean escaped = false;
+            if (buffer.get(i) == '"') {
+                start = i + 1;
+                int j = start;
+                while (true) {
+                    if (j >= limit) {
+                        return incomplete(recordStart, limit, last);
+                    }
+                    if (buffer.get(j) == '"') {
+                        if (j + 1 < limit && buffer.get(j + 1) == '"') {
+                            escaped = true;
+                            j += 2;
+                            continue;
+                        }
+                        if (j + 1 >= limit && !last) {
+                            return recordStart;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                end = j;
+                i = j + 1;
+            } else {
+                start = i;
+                int j = i;
+                while (j < limit && !isDelimiter(buffer.get(j))) {
+                    j++;
+                }
+                if (j >= limit && !last) {
+                    return recordStart;
+                }
+                end = j;
+                i = j;
+            }
+            set(column, start, end, escaped);
+
+            if (i >= limit) {
+                endRecord();
+                return limit;
+            }
+            byte delimiter = buffer.get(i++);
+            if (delimiter == ',') {
+                column++;
+                if (i >= limit) {
+                    if (!last) {
+                        return recordStart;
+                    }
+                    set(column, i, i, false);
+                    endRecord();
+                    return limit;
+                }
+                continue;
+            }
+            if (delimiter == '\r') {
+                if (i < limit && buffer.get(i) == '\n') {
+                    i++;
+                } else if (i >= limit && !last) {
+                    return recordStart;
+                }
+            } else if (delimiter != '\n') {
+                throw new IllegalStateException("Unexpected character after quoted value at byte " + (i - 1));
+            }
+            endRecord();
+            recordStart = i;
+            column = 0;
+        }
+        return recordStart;
+    }
+
+    private int incomplete(int recordStart, int limit, boolean last) {
+        if (last) {
+            throw new IllegalStateException("Unterminated quoted value at byte " + limit);
+        }
+        return recordStart;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '\n' || b == '\r';
+    }
+
+    private void set(int column, int start, int end, boolean escaped) {
+        if (header == null) {
+            record.headerFields.add(record.decode(start, end, escaped));
+        } else if (column < slotByColumn.length && slotByColumn[column] >= 0) {
+            record.set(slotByColumn[column], start, end, escaped);
+        }
+    }
+
+    private void endRecord() {
+        if (header == null) {
+            header = record.headerFields;
+            slotByColumn = handler.project(header);
+            int slots = Arrays.stream(slotByColumn).max().orElse(-1) + 1;
+            record.init(slots);
+        } else if (!record.isBlank()) {
+            handler.accept(record);
+        }
+        record.clear();
+    }
+
+    /**
+     * The projected values of one record, valid until the next record is read
+     */
+    static final class Record {
+        private static final int MAX_CACHED_VALUES = 1 << 16;
+        private static final long NOT_PARSED = Long.MIN_VALUE;
+        private static final long SECONDS_PER_HOUR = 3600;
+        private static final long MAX_EXACT_MANTISSA = 1L << 53;
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+        private final List<String> headerFields = new ArrayList<>();
+        private ByteBuffer buffer;
+        private int[] starts = new int[0];
+        private int[] ends = new int[0];
+        private boolean[] escaped = new boolean[0];
+
+        // open addressing table of the decoded values, with the parsed hour of timestamps
+        private byte[][] keys = new byte[1024][];
+        private String[] values = new String[1024];
+        private long[] hours = new long[1024];
+        private int cached;
+
+        private void init(int slots) {
+            starts = new int[slots];
+            ends = new int[slots];
+            escaped = new boolean[slots];
+        }
+
+        private void set(int slot, int start, int end, boolean isEscaped) {
+            starts[slot] = start;
+            ends[slot] = end;
+            escaped[slot] = isEscaped;
+        }
+
+        private void clear() {
+            Arrays.fill(starts, 0);
+            Arrays.fill(ends, 0);
+        }
+
+        private boolean isBlank() {
+            for (int slot = 0; slot < starts.length; slot++) {
+                if (ends[slot] > starts[slot]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Whether the value of a slot is empty or missing
+         *
+         * @param slot the slot
+         * @return true if empty
+         */
+        boolean isEmpty(int slot) {
+            return ends[slot] <= starts[slot];
+        }
+
+        /**
+         * Returns the value of a slot, equal values of one file are the same instance
+         *
+         * @param slot the slot
+         * @return the value, empty if missing
+         */
+        String getString(int slot) {
+            if (isEmpty(slot)) {
+                return "";
+            }
+            int index = lookup(slot);
+            return index >= 0 ? values[index] : decode(starts[slot], ends[slot], escaped[slot]);
+        }
+
+        /**
+         * Parses the value of a slot as number
+         *
+         * @param slot the slot
+         * @return the number, zero if missing
+         * @throws IllegalStateException if the value is not a number
+         */
+        double getDouble(int slot) {
+            int start = starts[slot];
+            int end = ends[slot];
+            if (end <= start) {
+                return 0.0;
+            }
+
+            // exact for up to 15 significant digits, other numbers are left to Double.parseDouble
+            int i = start;
+            boolean negative = buffer.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            long mantissa = 0;
+            int scale = -1;
+            boolean digits = false;
+            for (; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits = true;
+                    if (scale >= 0) {
+                        scale++;
+                    }
+                    if (mantissa >= MAX_EXACT_MANTISSA) {
+                        break;
+                    }
+                } else if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else {
+                    break;
+                }
+            }
+            if (i == end && digits && scale < POWERS_OF_TEN.length) {
+                double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+                return negative ? -value : value;
+            }
+            String text = decode(start, end, escaped[slot]);
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Failed to convert amount to double: " + text, e);
+            }
+        }
+
+        /**
+         * Parses the ISO timestamp of a slot
+         *
+         * @param slot the slot
+         * @return the epoch hour, rounded down
+         * @throws IllegalStateException if the value is not a timestamp
+         */
+        long getEpochHour(int slot) {
+            int index = lookup(slot);
+            if (index >= 0 && hours[index] != NOT_PARSED) {
+                return hours[index];
+            }
+            String text = index >= 0 ? values[index] : getString(slot);
+            long hour;
+            try {
+                hour = Math.floorDiv(Instant.parse(text).getEpochSecond(), SECONDS_PER_HOUR);
+            } catch (DateTimeParseException e) {
+                throw new IllegalStateException("Failed to convert time string to timestamp: " + text, e);
+            }
+            if (index >= 0) {
+                hours[index] = hour;
+            }
+            return hour;
+        }
+
+        private String decode(int start, int end, boolean isEscaped) {
+            byte[] bytes = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                bytes[i - start] = buffer.get(i);
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            return isEscaped ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * Finds or adds the value of a slot in the table of decoded values
+         *
+         * @return the index in the table, -1 if the table is full
+         */
+        private int lookup(int slot) {
+            int start = starts[slot];
+            int end = ends[slot];
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = keys.length - 1;
+            int index = mix(hash) & mask;
+            while (keys[index] != null) {
+                if (equals(keys[index], start, end)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            if (cached >= MAX_CACHED_VALUES) {
+                return -1;
+            }
+
+            byte[] key = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                key[i - start] = buffer.get(i);
+            }
+            keys[index] = key;
+            values[index] = decode(start, end, escaped[slot]);
+            hours[index] = NOT_PARSED;
+            if (++cached * 2 > keys.length) {
+                resize();
+                return lookup(slot);
+            }
+            return index;
+        }
+
+        private boolean equals(byte[] key, int start, int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            long[] oldHours = hours;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[keys.length];
+            hours = new long[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int hash = 1;
+                    for (byte b : oldKeys[i]) {
+                        hash = 31 * hash + b;
+                    }
+                    int index = mix(hash) & mask;
+                    while (keys[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                    hours[index] = oldHours[i];
+                }
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
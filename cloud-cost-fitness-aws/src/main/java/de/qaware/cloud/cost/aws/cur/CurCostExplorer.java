@@ -0,0 +1,137 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur;
+
+import de.qaware.cloud.cost.*;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers the queries of a cost explorer from local AWS Cost and Usage Report files instead of the AWS API.
+ * Services are matched by the product name and instances by the tag "Name", which has to be activated as cost
+ * allocation tag. Usage filters are matched against the usage type of the line items, as the reports do not contain
+ * the usage type groups of the Cost Explorer.
+ */
+public class CurCostExplorer implements CostExplorer {
+    private final CurReport report;
+    private final CostQuery query;
+
+    /**
+     * Construct a cost explorer of report files and directories containing them
+     *
+     * @param paths the CSV files, optionally compressed with gzip, or directories containing them
+     */
+    public CurCostExplorer(Path... paths) {
+        this(CurReport.of(paths));
+    }
+
+    /**
+     * Construct a cost explorer of a report
+     *
+     * @param report the report
+     */
+    public CurCostExplorer(CurReport report) {
+        this(report, CostQuery.create());
+    }
+
+    private CurCostExplorer(CurReport report, CostQuery query) {
+        this.report = report;
+        this.query = query;
+    }
+
+    @Override
+    public CurCostExplorer during(TimeRange timeRange) {
+        return withQuery(query.during(timeRange));
+    }
+
+    @Override
+    public CurCostExplorer withGranularity(Granularity granularity) {
+        return withQuery(query.withGranularity(granularity));
+    }
+
+    @Override
+    public CurCostExplorer forInstance(String instance) {
+        return withQuery(query.forInstance(instance));
+    }
+
+    @Override
+    public CurCostExplorer forService(String service) {
+        return withQuery(query.forService(service));
+    }
+
+    @Override
+    public CurCostExplorer withQuery(CostQuery query) {
+        return new CurCostExplorer(report, query);
+    }
+
+    @Override
+    public CostQuery getQuery() {
+        return query;
+    }
+
+    @Override
+    public List<String> getNames() {
+        if (query.getInstance() != null) {
+            return report.scan(CurScan.of(query).collectNames(CurScan.TAG_NAME, query.getInstance())).getNames();
+        }
+        if (query.getService() != null) {
+            return report.scan(CurScan.of(query).collectNames(CurScan.PRODUCT_NAME, query.getService())).getNames();
+        }
+        throw new IllegalStateException("Don't know what names to fetch.");
+    }
+
+    @Override
+    public TimeSeries getCosts() {
+        return getMetrics(Metric.UNBLENDED_COST).get(Metric.UNBLENDED_COST);
+    }
+
+    @Override
+    public TimeSeries getUsage(Usage usage) {
+        CurScan scan = CurScan.of(query)
+                .withMetrics(List.of(Metric.USAGE_QUANTITY))
+                .filterByInstance(query.getInstance())
+                .filterByUsageType(usage == null ? null : usage.toString());
+        return scan.toTimeSeries(report.scan(scan), Metric.USAGE_QUANTITY);
+    }
+
+    @Override
+    public Map<Metric, TimeSeries> getMetrics(Metric... metrics) {
+        CurScan scan = CurScan.of(query).withMetrics(Arrays.asList(metrics));
+        if (query.getInstance() != null) {
+            scan.filterByInstance(query.getInstance());
+        } else {
+            scan.filterByService(query.getService());
+        }
+        CurScan.Result result = report.scan(scan);
+
+        // like the Cost Explorer, no instance matching the filter gives empty time series
+        boolean noInstance = query.getInstance() != null && !result.isMatched();
+        Map<Metric, TimeSeries> timeSeriesByMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : metrics) {
+            timeSeriesByMetric.put(metric, noInstance ? new TimeSeries() : scan.toTimeSeries(result, metric));
+        }
+        return timeSeriesByMetric;
+    }
+
+    @Override
+    public boolean supports(CloudProvider cloudProvider) {
+        return CloudProvider.AMAZON_AWS.equals(cloudProvider);
+    }
+}
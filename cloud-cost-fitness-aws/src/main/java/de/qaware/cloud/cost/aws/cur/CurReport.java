@@ -0,0 +1,164 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files of an AWS Cost and Usage Report, exported as CSV files which may be compressed with gzip.
+ * The files are scanned concurrently.
+ */
+public final class CurReport {
+    private static final String PARQUET_SUFFIX = ".parquet";
+
+    private final List<Path> files;
+    private final int parallelism;
+
+    private CurReport(List<Path> files, int parallelism) {
+        this.files = files;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Creates a report of files and directories, which are searched recursively for .csv and .csv.gz files
+     *
+     * @param paths the files and directories
+     * @return the report
+     * @throws UncheckedIOException          if a directory can not be read
+     * @throws UnsupportedOperationException if the report contains Parquet files
+     */
+    public static CurReport of(Path... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    /**
+     * Creates a report of files and directories, which are searched recursively for .csv and .csv.gz files
+     *
+     * @param paths the files and directories
+     * @return the report
+     * @throws UncheckedIOException          if a directory can not be read
+     * @throws UnsupportedOperationException if the report contains Parquet files
+     */
+    public static CurReport of(Collection<Path> paths) {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> isCsv(file) || isParquet(file))
+                            .sorted()
+                            .forEach(files::add);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        for (Path file : files) {
+            if (isParquet(file)) {
+                throw new UnsupportedOperationException("Parquet files are not supported, export the report as CSV: " + file);
+            }
+        }
+        return new CurReport(Collections.unmodifiableList(files), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sets the maximum number of files scanned concurrently, the number of processors by default
+     *
+     * @param parallelism the number of threads
+     * @return a report using the number of threads
+     */
+    public CurReport withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        return new CurReport(files, parallelism);
+    }
+
+    /**
+     * Returns the report files
+     *
+     * @return the CSV files
+     */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Scans all files concurrently and merges their results
+     *
+     * @param scan the scan
+     * @return the merged result
+     * @throws UncheckedIOException  if a file can not be read
+     * @throws IllegalStateException if a file is not a valid report file
+     */
+    CurScan.Result scan(CurScan scan) {
+        if (files.isEmpty()) {
+            return scan.emptyResult();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        try {
+            List<CompletableFuture<CurScan.Result>> results = files.stream()
+                    .map(file -> CompletableFuture.supplyAsync(() -> scan(scan, file), executor))
+                    .collect(Collectors.toList());
+            CurScan.Result result = scan.emptyResult();
+            for (CompletableFuture<CurScan.Result> partial : results) {
+                result.merge(partial.join());
+            }
+            return result;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CurScan.Result scan(CurScan scan, Path file) {
+        try {
+            return scan.scan(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+    }
+
+    private static boolean isCsv(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".csv") || name.endsWith(".csv.gz");
+    }
+
+    private static boolean isParquet(Path file) {
+        return file.getFileName().toString().endsWith(PARQUET_SUFFIX);
+    }
+}
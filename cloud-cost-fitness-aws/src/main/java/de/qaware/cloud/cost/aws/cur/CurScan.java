@@ -0,0 +1,404 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur;
+
+import de.qaware.cloud.cost.CompactTimeSeries;
+import de.qaware.cloud.cost.CostQuery;
+import de.qaware.cloud.cost.Granularity;
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeSeries;
+import de.qaware.cloud.cost.ValueWithUnit;
+import de.qaware.cloud.cost.aws.converter.RequestConverter;
+import software.amazon.awssdk.services.costexplorer.model.DateInterval;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * A query evaluated on Cost and Usage Report files while their records are streamed.
+ * Each file is scanned into a partial result, the partial results of several files are merged.
+ */
+final class CurScan {
+    static final String USAGE_START_DATE = "lineItem/UsageStartDate";
+    static final String PRODUCT_NAME = "product/ProductName";
+    static final String TAG_NAME = "resourceTags/user:Name";
+    static final String USAGE_TYPE = "lineItem/UsageType";
+    static final String CURRENCY_CODE = "lineItem/CurrencyCode";
+    static final String PRICING_UNIT = "pricing/unit";
+
+    private static final Map<Metric, String> METRIC_COLUMNS = new EnumMap<>(Metric.class);
+    private static final String MIXED_UNITS = "N/A";
+    private static final String DEFAULT_CURRENCY = "USD";
+    private static final int DATE_LENGTH = "yyyy-MM-dd".length();
+    private static final int HOURS_PER_DAY = 24;
+
+    static {
+        METRIC_COLUMNS.put(Metric.UNBLENDED_COST, "lineItem/UnblendedCost");
+        METRIC_COLUMNS.put(Metric.BLENDED_COST, "lineItem/BlendedCost");
+        METRIC_COLUMNS.put(Metric.NET_UNBLENDED_COST, "lineItem/NetUnblendedCost");
+        METRIC_COLUMNS.put(Metric.USAGE_QUANTITY, "lineItem/UsageAmount");
+        METRIC_COLUMNS.put(Metric.NORMALIZED_USAGE_AMOUNT, "lineItem/NormalizedUsageAmount");
+    }
+
+    private final Granularity granularity;
+    private final long startDay;
+    private final int days;
+    private List<Metric> metrics = new ArrayList<>();
+    private String service;
+    private SearchPattern instances;
+    private SearchPattern usageTypes;
+    private String nameColumn;
+    private SearchPattern names;
+
+    private CurScan(CostQuery query) {
+        // the same time period as requested from the Cost Explorer API
+        DateInterval interval = new RequestConverter().createDateInterval(query.getTimeRange(), query.getGranularity());
+        LocalDate start = LocalDate.parse(interval.start().substring(0, DATE_LENGTH), ValueWithUnit.DATE_FORMATTER);
+        LocalDate end = LocalDate.parse(interval.end().substring(0, DATE_LENGTH), ValueWithUnit.DATE_FORMATTER);
+        this.granularity = query.getGranularity();
+        this.startDay = start.toEpochDay();
+        this.days = (int) (end.toEpochDay() - startDay);
+    }
+
+    /**
+     * Creates a scan for the time range and granularity of a query
+     *
+     * @param query the query
+     * @return a new scan
+     * @throws IllegalArgumentException if the granularity is not available for the time range
+     */
+    static CurScan of(CostQuery query) {
+        return new CurScan(query);
+    }
+
+    /**
+     * Sums up the values of metrics
+     *
+     * @param metrics the metrics
+     * @return the current scan
+     * @throws IllegalArgumentException      if no metric is given
+     * @throws UnsupportedOperationException if a metric is not contained in the report files
+     */
+    CurScan withMetrics(Collection<Metric> metrics) {
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("At least one metric is required");
+        }
+        for (Metric metric : metrics) {
+            if (!METRIC_COLUMNS.containsKey(metric)) {
+                throw new UnsupportedOperationException(metric + " is not available from Cost and Usage Report files");
+            }
+        }
+        this.metrics = new ArrayList<>(metrics);
+        return this;
+    }
+
+    /**
+     * Sets a filter for the product name of the AWS service
+     *
+     * @param service the service name, null for all services
+     * @return the current scan
+     */
+    CurScan filterByService(String service) {
+        this.service = service == null || service.isEmpty() ? null : service;
+        return this;
+    }
+
+    /**
+     * Sets a filter for the tag "Name" (=instance name)
+     *
+     * @param instance the search string for the instance names, null for all records
+     * @return the current scan
+     */
+    CurScan filterByInstance(String instance) {
+        this.instances = instance == null || instance.isEmpty() ? null : SearchPattern.of(instance);
+        return this;
+    }
+
+    /**
+     * Sets a filter for the usage type
+     *
+     * @param usageType the search string for the usage types, null for all records
+     * @return the current scan
+     */
+    CurScan filterByUsageType(String usageType) {
+        this.usageTypes = usageType == null || usageType.isEmpty() ? null : SearchPattern.of(usageType);
+        return this;
+    }
+
+    /**
+     * Collects the distinct names of a column instead of summing up metrics
+     *
+     * @param column       the column
+     * @param searchString the search string for the names
+     * @return the current scan
+     */
+    CurScan collectNames(String column, String searchString) {
+        this.nameColumn = column;
+        this.names = SearchPattern.of(searchString);
+        return this;
+    }
+
+    /**
+     * Scans one file
+     *
+     * @param file the CSV file, optionally compressed with gzip
+     * @return the partial result of the file
+     * @throws IOException           if the file can not be read
+     * @throws IllegalStateException if the file is not a valid report file
+     */
+    Result scan(Path file) throws IOException {
+        FileScan fileScan = new FileScan(file);
+        CsvReader.read(file, fileScan);
+        return fileScan.result;
+    }
+
+    /**
+     * Creates an empty result, the neutral element of merging
+     *
+     * @return the empty result
+     */
+    Result emptyResult() {
+        return new Result(metrics.size(), granularity == Granularity.HOURLY ? days * HOURS_PER_DAY : days);
+    }
+
+    /**
+     * Converts the sums of a metric to a time series with one element per period of the time range
+     *
+     * @param result the result
+     * @param metric the metric
+     * @return the time series
+     */
+    TimeSeries toTimeSeries(Result result, Metric metric) {
+        int index = metrics.indexOf(metric);
+        double[] sums = result.sums[index];
+        String unit = result.units[index];
+        if (unit == null) {
+            unit = isCost(metric) ? DEFAULT_CURRENCY : MIXED_UNITS;
+        }
+
+        CompactTimeSeries.Builder builder;
+        if (granularity == Granularity.HOURLY) {
+            builder = CompactTimeSeries.hourlyBuilder(sums.length, unit);
+            for (int hour = 0; hour < sums.length; hour++) {
+                builder.add((int) (startDay * HOURS_PER_DAY + hour), sums[hour]);
+            }
+        } else if (granularity == Granularity.MONTHLY) {
+            builder = CompactTimeSeries.builder(days / 28 + 1, unit);
+            int first = 0;
+            double sum = 0.0;
+            for (int day = 0; day < days; day++) {
+                sum += sums[day];
+                LocalDate date = LocalDate.ofEpochDay(startDay + day);
+                if (day == days - 1 || date.getDayOfMonth() == date.lengthOfMonth()) {
+                    builder.add((int) (startDay + first), (int) (startDay + day), sum);
+                    first = day + 1;
+                    sum = 0.0;
+                }
+            }
+        } else {
+            builder = CompactTimeSeries.builder(days, unit);
+            for (int day = 0; day < days; day++) {
+                builder.add((int) (startDay + day), sums[day]);
+            }
+        }
+        return new TimeSeries().withElements(builder.build());
+    }
+
+    private static boolean isCost(Metric metric) {
+        return metric != Metric.USAGE_QUANTITY && metric != Metric.NORMALIZED_USAGE_AMOUNT;
+    }
+
+    /**
+     * The sums per metric and period, or the collected names
+     */
+    static final class Result {
+        private final double[][] sums;
+        private final String[] units;
+        private final Set<String> names = new TreeSet<>();
+        private boolean matched;
+
+        private Result(int metrics, int periods) {
+            this.sums = new double[metrics][periods];
+            this.units = new String[metrics];
+        }
+
+        /**
+         * Adds another result to this one
+         *
+         * @param other the other result
+         * @return this result
+         */
+        Result merge(Result other) {
+            for (int metric = 0; metric < sums.length; metric++) {
+                for (int period = 0; period < sums[metric].length; period++) {
+                    sums[metric][period] += other.sums[metric][period];
+                }
+                units[metric] = mergeUnit(units[metric], other.units[metric]);
+            }
+            names.addAll(other.names);
+            matched |= other.matched;
+            return this;
+        }
+
+        /**
+         * Returns the collected names
+         *
+         * @return the sorted names
+         */
+        List<String> getNames() {
+            return new ArrayList<>(names);
+        }
+
+        /**
+         * Whether any record matched the filters
+         *
+         * @return true if a record matched
+         */
+        boolean isMatched() {
+            return matched;
+        }
+
+        private static String mergeUnit(String unit, String other) {
+            if (unit == null) {
+                return other;
+            }
+            return other == null || unit.equals(other) ? unit : MIXED_UNITS;
+        }
+    }
+
+    /**
+     * Evaluates the scan on the records of one file
+     */
+    private final class FileScan implements CsvReader.Handler {
+        private final Path file;
+        private final Result result = emptyResult();
+        private final int[] metricSlots = new int[metrics.size()];
+        private final int[] unitSlots = new int[metrics.size()];
+        private int startSlot;
+        private int serviceSlot;
+        private int tagSlot;
+        private int usageTypeSlot;
+        private int nameSlot;
+        private int slots;
+        private Predicate<String> serviceFilter;
+        private Predicate<String> instanceFilter;
+        private Predicate<String> usageTypeFilter;
+        private Predicate<String> nameFilter;
+
+        private FileScan(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public int[] project(List<String> header) {
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.putIfAbsent(header.get(i), i);
+            }
+            int[] slotByColumn = new int[header.size()];
+            Arrays.fill(slotByColumn, -1);
+
+            startSlot = slot(USAGE_START_DATE, columns, slotByColumn, true);
+            for (int i = 0; i < metrics.size(); i++) {
+                Metric metric = metrics.get(i);
+                metricSlots[i] = slot(METRIC_COLUMNS.get(metric), columns, slotByColumn, true);
+                unitSlots[i] = slot(isCost(metric) ? CURRENCY_CODE : PRICING_UNIT, columns, slotByColumn, false);
+            }
+            serviceSlot = slot(PRODUCT_NAME, columns, slotByColumn, service != null);
+            tagSlot = slot(TAG_NAME, columns, slotByColumn, false);
+            usageTypeSlot = slot(USAGE_TYPE, columns, slotByColumn, usageTypes != null);
+            nameSlot = nameColumn == null ? -1 : slot(nameColumn, columns, slotByColumn, false);
+
+            serviceFilter = service == null ? null : SearchPattern.cached(service::equals);
+            instanceFilter = instances == null ? null : SearchPattern.cached(instances);
+            usageTypeFilter = usageTypes == null ? null : SearchPattern.cached(usageTypes);
+            nameFilter = names == null ? null : SearchPattern.cached(names);
+            return slotByColumn;
+        }
+
+        private int slot(String column, Map<String, Integer> columns, int[] slotByColumn, boolean required) {
+            Integer index = columns.get(column);
+            if (index == null) {
+                if (required) {
+                    throw new IllegalStateException("Column " + column + " missing in " + file);
+                }
+                return -1;
+            }
+            if (slotByColumn[index] < 0) {
+                slotByColumn[index] = slots++;
+            }
+            return slotByColumn[index];
+        }
+
+        @Override
+        public void accept(CsvReader.Record record) {
+            if (record.isEmpty(startSlot)) {
+                return;
+            }
+            long hour = record.getEpochHour(startSlot);
+            long day = Math.floorDiv(hour, HOURS_PER_DAY) - startDay;
+            if (day < 0 || day >= days) {
+                return;
+            }
+            if (serviceFilter != null && !serviceFilter.test(record.getString(serviceSlot))) {
+                return;
+            }
+            if (instanceFilter != null && (tagSlot < 0 || !instanceFilter.test(record.getString(tagSlot)))) {
+                return;
+            }
+            if (usageTypeFilter != null && !usageTypeFilter.test(record.getString(usageTypeSlot))) {
+                return;
+            }
+
+            result.matched = true;
+            if (nameFilter != null) {
+                if (nameSlot >= 0 && !record.isEmpty(nameSlot)) {
+                    String name = record.getString(nameSlot);
+                    if (nameFilter.test(name)) {
+                        result.names.add(name);
+                    }
+                }
+                return;
+            }
+
+            int period = (int) (granularity == Granularity.HOURLY ? hour - startDay * HOURS_PER_DAY : day);
+            for (int i = 0; i < metricSlots.length; i++) {
+                result.sums[i][period] += record.getDouble(metricSlots[i]);
+                if (unitSlots[i] >= 0 && !record.isEmpty(unitSlots[i])) {
+                    String unit = record.getString(unitSlots[i]);
+                    String current = result.units[i];
+                    if (current == null) {
+                        result.units[i] = unit;
+                    } else if (current != unit && !Objects.equals(current, unit)) {
+                        result.units[i] = MIXED_UNITS;
+                    }
+                }
+            }
+        }
+    }
+}
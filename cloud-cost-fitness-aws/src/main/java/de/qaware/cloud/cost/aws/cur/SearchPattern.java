@@ -0,0 +1,81 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Matches names the way the Cost Explorer search does: * matches any characters,
+ * search strings without wildcard match all names containing them, ignoring the case.
+ */
+final class SearchPattern implements Predicate<String> {
+    private final Pattern pattern;
+
+    private SearchPattern(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Creates the pattern of a search string
+     *
+     * @param searchString the search string, null or empty to match all names
+     * @return the pattern
+     */
+    static SearchPattern of(String searchString) {
+        if (searchString == null || searchString.isEmpty()) {
+            return new SearchPattern(null);
+        }
+
+        StringBuilder regex = new StringBuilder();
+        if (searchString.indexOf('*') < 0) {
+            regex.append(".*").append(Pattern.quote(searchString)).append(".*");
+        } else {
+            for (String part : searchString.split("\\*", -1)) {
+                if (regex.length() > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+        }
+        return new SearchPattern(Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE));
+    }
+
+    @Override
+    public boolean test(String name) {
+        return pattern == null || pattern.matcher(name).matches();
+    }
+
+    /**
+     * Remembers the result per name, for names repeated in many records
+     *
+     * @param predicate the predicate
+     * @return a predicate caching the results, not thread-safe
+     */
+    static Predicate<String> cached(Predicate<String> predicate) {
+        Map<String, Boolean> results = new HashMap<>();
+        return name -> {
+            Boolean result = results.get(name);
+            if (result == null) {
+                result = predicate.test(name);
+                results.put(name, result);
+            }
+            return result;
+        };
+    }
+}
@@ -15,30 +15,48 @@
  */
 package de.qaware.cloud.cost.aws.fetcher;
 
+import de.qaware.cloud.cost.Granularity;
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.RankedCost;
 import de.qaware.cloud.cost.TimeRange;
 import de.qaware.cloud.cost.TimeSeries;
 import de.qaware.cloud.cost.Usage;
+import de.qaware.cloud.cost.ValueWithUnit;
+import de.qaware.cloud.cost.aws.cache.CostStore;
 import de.qaware.cloud.cost.aws.converter.RequestConverter;
 import de.qaware.cloud.cost.aws.converter.ResponseConverter;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient;
 import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
 import software.amazon.awssdk.services.costexplorer.model.*;
 import software.amazon.awssdk.utils.StringUtils;
 
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 /**
  * Fetcher for the CostAndUsage AWS API
  */
 public class CostAndUsageFetcher {
-    private static final Granularity GRANULARITY = Granularity.DAILY;
     private static final String METRIC_COST = "UnblendedCost";
     private static final String METRIC_USAGE = "UsageQuantity";
     private static final String TAG_NAME = "Name";
 
-    private final RequestConverter requestConverter = new RequestConverter();
+    private RequestConverter requestConverter = new RequestConverter();
     private final ResponseConverter responseConverter = new ResponseConverter();
 
     private CostExplorerClient client;
+    private CostExplorerAsyncClient asyncClient;
     private TimeRange timeRange;
+    private Granularity granularity = Granularity.DAILY;
     private Expression filter;
+    private final List<GroupDefinition> groupBy = new ArrayList<>();
+    private Executor executor;
+    private CostStore store;
 
     /**
      * Set the cost explorer client
@@ -52,6 +70,18 @@ public class CostAndUsageFetcher {
         return fetcher;
     }
 
+    /**
+     * Set the non-blocking cost explorer client, used by the asynchronous fetch methods
+     *
+     * @param asyncClient the non-blocking cost explorer client
+     * @return a new instance of the fetcher
+     */
+    public static CostAndUsageFetcher withAsyncClient(CostExplorerAsyncClient asyncClient) {
+        CostAndUsageFetcher fetcher = new CostAndUsageFetcher();
+        fetcher.asyncClient = asyncClient;
+        return fetcher;
+    }
+
     /**
      * Sets the time range
      *
@@ -63,6 +93,45 @@ public class CostAndUsageFetcher {
         return this;
     }
 
+    /**
+     * Sets the granularity, daily by default
+     *
+     * @param granularity the granularity
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher withGranularity(Granularity granularity) {
+        this.granularity = granularity;
+        return this;
+    }
+
+    /**
+     * Sets an executor for requesting the next page in the background while the current page is processed
+     *
+     * @param executor the executor
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets a persistent store for daily values, so only missing and recent days are fetched.
+     * Hourly and monthly values are always fetched, since the periods at both ends of their time range are partial.
+     *
+     * @param store the cost store, may be null
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher withStore(CostStore store) {
+        this.store = store;
+        return this;
+    }
+
+    CostAndUsageFetcher withClock(Clock clock) {
+        this.requestConverter = new RequestConverter(clock);
+        return this;
+    }
+
     /**
      * Sets a filter for the AWS service
      *
@@ -84,6 +153,27 @@ public class CostAndUsageFetcher {
         return this;
     }
 
+    /**
+     * Sets a filter for several AWS services
+     *
+     * @param services the AWS services
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher filterByServices(Collection<String> services) {
+        if (services == null || services.isEmpty()) {
+            return this;
+        }
+        Expression expr = Expression.builder()
+                .dimensions(DimensionValues.builder().key(Dimension.SERVICE).values(services).build())
+                .build();
+        if (filter == null) {
+            filter = expr;
+        } else {
+            filter = Expression.builder().and(filter, expr).build();
+        }
+        return this;
+    }
+
     /**
      * Sets a filter for the tag "Name" (=instance name)
      *
@@ -105,6 +195,27 @@ public class CostAndUsageFetcher {
         return this;
     }
 
+    /**
+     * Sets a filter for several values of the tag "Name" (=instance names)
+     *
+     * @param tagNames the values of the tag "Name"
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher filterByTagNames(Collection<String> tagNames) {
+        if (tagNames == null || tagNames.isEmpty()) {
+            return this;
+        }
+        Expression expr = Expression.builder()
+                .tags(TagValues.builder().key(TAG_NAME).values(tagNames).build())
+                .build();
+        if (filter == null) {
+            filter = expr;
+        } else {
+            filter = Expression.builder().and(filter, expr).build();
+        }
+        return this;
+    }
+
     /**
      * Sets a filter for the usage
      *
@@ -126,6 +237,37 @@ public class CostAndUsageFetcher {
         return this;
     }
 
+    /**
+     * Groups the results by the values of a tag
+     *
+     * @param tagKey the key of the tag
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher groupByTag(String tagKey) {
+        groupBy.add(GroupDefinition.builder().type(GroupDefinitionType.TAG).key(tagKey).build());
+        return this;
+    }
+
+    /**
+     * Groups the results by the values of the tag "Name" (=instance name)
+     *
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher groupByTagName() {
+        return groupByTag(TAG_NAME);
+    }
+
+    /**
+     * Groups the results by the values of a dimension
+     *
+     * @param dimension the dimension, e.g. the AWS service
+     * @return the current instance of the fetcher
+     */
+    public CostAndUsageFetcher groupByDimension(Dimension dimension) {
+        groupBy.add(GroupDefinition.builder().type(GroupDefinitionType.DIMENSION).key(dimension.toString()).build());
+        return this;
+    }
+
     /**
      * Fetch all costs given the filters
      *
@@ -144,22 +286,231 @@ public class CostAndUsageFetcher {
         return fetch(METRIC_USAGE);
     }
 
+    /**
+     * Fetch all costs given the filters, grouped by the group definitions
+     *
+     * @return the resulting time series by group key
+     */
+    public Map<String, TimeSeries> fetchGroupedCost() {
+        return fetchGrouped(METRIC_COST);
+    }
+
+    /**
+     * Fetch all usage data given the filters, grouped by the group definitions
+     *
+     * @return the resulting time series by group key
+     */
+    public Map<String, TimeSeries> fetchGroupedUsage() {
+        return fetchGrouped(METRIC_USAGE);
+    }
+
+    /**
+     * Fetch the groups with the highest costs in a single period, given the filters and group definitions.
+     * The pages are streamed and only the candidates are kept in memory.
+     *
+     * @param limit the maximum number of groups
+     * @return the groups with their highest costs, highest first
+     * @throws IllegalStateException    if no group definition is given
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public List<RankedCost> fetchTopCost(int limit) {
+        if (groupBy.isEmpty()) {
+            throw new IllegalStateException("No group definition given");
+        }
+
+        return responseConverter.selectTopGroups(stream(METRIC_COST), METRIC_COST, granularity, limit);
+    }
+
+    /**
+     * Fetch several metrics given the filters with one request
+     *
+     * @param metrics the metrics to fetch
+     * @return the resulting time series by metric
+     */
+    public Map<Metric, TimeSeries> fetchMetrics(Collection<Metric> metrics) {
+        List<ResultByTime> results = streamMetrics(metrics).collect(Collectors.toList());
+
+        Map<Metric, TimeSeries> timeSeriesByMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : metrics) {
+            timeSeriesByMetric.put(metric, responseConverter.extractValues(results, requestConverter.convertMetric(metric), granularity));
+        }
+        return timeSeriesByMetric;
+    }
+
+    /**
+     * Fetch several metrics given the filters, grouped by the group definitions, with one request
+     *
+     * @param metrics the metrics to fetch
+     * @return the resulting time series by metric and group key
+     */
+    public Map<Metric, Map<String, TimeSeries>> fetchGroupedMetrics(Collection<Metric> metrics) {
+        if (groupBy.isEmpty()) {
+            throw new IllegalStateException("No group definition given");
+        }
+
+        List<ResultByTime> results = streamMetrics(metrics).collect(Collectors.toList());
+
+        Map<Metric, Map<String, TimeSeries>> timeSeriesByMetric = new EnumMap<>(Metric.class);
+        for (Metric metric : metrics) {
+            timeSeriesByMetric.put(metric, responseConverter.extractGroupedValues(results, requestConverter.convertMetric(metric), granularity));
+        }
+        return timeSeriesByMetric;
+    }
+
+    /**
+     * Fetch all costs given the filters without blocking
+     *
+     * @return a future of the resulting time series, failed with an IllegalStateException if no non-blocking client is set
+     */
+    public CompletableFuture<TimeSeries> fetchCostAsync() {
+        return fetchAsync(METRIC_COST).thenApply(results -> responseConverter.extractValues(results, METRIC_COST, granularity));
+    }
+
+    /**
+     * Fetch all usage data given the filters without blocking
+     *
+     * @return a future of the resulting time series, failed with an IllegalStateException if no non-blocking client is set
+     */
+    public CompletableFuture<TimeSeries> fetchUsageAsync() {
+        return fetchAsync(METRIC_USAGE).thenApply(results -> responseConverter.extractValues(results, METRIC_USAGE, granularity));
+    }
+
+    /**
+     * Fetch all costs given the filters, grouped by the group definitions, without blocking
+     *
+     * @return a future of the resulting time series by group key,
+     * failed with an IllegalStateException if no non-blocking client or no group definition is set
+     */
+    public CompletableFuture<Map<String, TimeSeries>> fetchGroupedCostAsync() {
+        if (groupBy.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No group definition given"));
+        }
+        return fetchAsync(METRIC_COST).thenApply(results -> responseConverter.extractGroupedValues(results, METRIC_COST, granularity));
+    }
+
+    /**
+     * Lazily streams the results of all pages of the cost request given the filters and group definitions.
+     * The pages are requested while the stream is consumed.
+     *
+     * @return a stream of the results by time
+     */
+    public Stream<ResultByTime> streamCost() {
+        return stream(METRIC_COST);
+    }
+
+    /**
+     * Lazily streams the results of all pages of the usage request given the filters and group definitions.
+     * The pages are requested while the stream is consumed.
+     *
+     * @return a stream of the results by time
+     */
+    public Stream<ResultByTime> streamUsage() {
+        return stream(METRIC_USAGE);
+    }
+
     protected Expression getFilter() {
         return filter;
     }
 
     private TimeSeries fetch(String metric) {
+        if (store != null && granularity == Granularity.DAILY) {
+            return fetchWithStore(metric);
+        }
+        return responseConverter.extractValues(stream(metric).collect(Collectors.toList()), metric, granularity);
+    }
+
+    private TimeSeries fetchWithStore(String metric) {
+        DateInterval interval = requestConverter.createDateInterval(timeRange, granularity);
+        LocalDate start = LocalDate.parse(interval.start(), ValueWithUnit.DATE_FORMATTER);
+        LocalDate end = LocalDate.parse(interval.end(), ValueWithUnit.DATE_FORMATTER);
+
+        String key = metric + "|" + granularity + "|" + filter;
+        NavigableMap<LocalDate, ValueWithUnit> values = store.load(key);
+
+        // stored days before the first missing or mutable day are not fetched again
+        LocalDate firstMutableDay = store.getFirstMutableDay(end);
+        LocalDate fetchStart = start;
+        while (values.containsKey(fetchStart) && values.get(fetchStart).getDateTo().isBefore(firstMutableDay)) {
+            fetchStart = values.get(fetchStart).getDateTo().plusDays(1);
+        }
+
+        if (fetchStart.isBefore(end)) {
+            GetCostAndUsageRequest request = createRequest(requestConverter.createDateInterval(fetchStart, end), List.of(metric));
+            TimeSeries fetched = responseConverter.extractValues(stream(request).collect(Collectors.toList()), metric, granularity);
+            for (ValueWithUnit value : fetched.getElements()) {
+                values.put(value.getDateFrom(), value);
+            }
+            store.store(key, values.values());
+        }
+
+        return new TimeSeries().withElements(new ArrayList<>(values.subMap(start, end).values()));
+    }
+
+    private Map<String, TimeSeries> fetchGrouped(String metric) {
+        if (groupBy.isEmpty()) {
+            throw new IllegalStateException("No group definition given");
+        }
+
+        return responseConverter.extractGroupedValues(stream(metric).collect(Collectors.toList()), metric, granularity);
+    }
+
+    private CompletableFuture<List<ResultByTime>> fetchAsync(String metric) {
+        if (asyncClient == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No async client given"));
+        }
+
+        GetCostAndUsageRequest request;
+        try {
+            request = createRequest(requestConverter.createDateInterval(timeRange, granularity), List.of(metric));
+        } catch (IllegalArgumentException e) {
+            // e.g. hourly values requested for a too long time range
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return PageIterator.collectAsync(
+                pageToken -> asyncClient.getCostAndUsage(request.toBuilder().nextPageToken(pageToken).build()),
+                GetCostAndUsageResponse::nextPageToken)
+                .thenApply(responses -> responses.stream()
+                        .flatMap(response -> response.resultsByTime().stream())
+                        .collect(Collectors.toList()));
+    }
+
+    private Stream<ResultByTime> stream(String metric) {
+        return stream(createRequest(requestConverter.createDateInterval(timeRange, granularity), List.of(metric)));
+    }
+
+    private Stream<ResultByTime> streamMetrics(Collection<Metric> metrics) {
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("No metric given");
+        }
+
+        List<String> metricNames = metrics.stream()
+                .map(requestConverter::convertMetric)
+                .collect(Collectors.toList());
+        return stream(createRequest(requestConverter.createDateInterval(timeRange, granularity), metricNames));
+    }
+
+    private Stream<ResultByTime> stream(GetCostAndUsageRequest request) {
+        return PageIterator.stream(
+                pageToken -> client.getCostAndUsage(request.toBuilder().nextPageToken(pageToken).build()),
+                GetCostAndUsageResponse::nextPageToken,
+                executor)
+                .flatMap(response -> response.resultsByTime().stream());
+    }
+
+    private GetCostAndUsageRequest createRequest(DateInterval timePeriod, List<String> metrics) {
         GetCostAndUsageRequest.Builder requestBuilder = GetCostAndUsageRequest.builder()
-                .granularity(GRANULARITY)
-                .metrics(metric)
-                .timePeriod(requestConverter.createDateInterval(timeRange));
+                .granularity(requestConverter.convertGranularity(granularity))
+                .metrics(metrics)
+                .timePeriod(timePeriod);
 
         if (filter != null) {
             requestBuilder.filter(filter);
         }
+        if (!groupBy.isEmpty()) {
+            requestBuilder.groupBy(groupBy);
+        }
 
-        GetCostAndUsageResponse response = client.getCostAndUsage(requestBuilder.build());
-
-        return responseConverter.extractValues(response.resultsByTime(), metric);
+        return requestBuilder.build();
     }
 }
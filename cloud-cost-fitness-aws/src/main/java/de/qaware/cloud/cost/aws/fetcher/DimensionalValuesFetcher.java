@@ -17,6 +17,7 @@ package de.qaware.cloud.cost.aws.fetcher;
 
 import de.qaware.cloud.cost.TimeRange;
 import de.qaware.cloud.cost.aws.converter.RequestConverter;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient;
 import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
 import software.amazon.awssdk.services.costexplorer.model.Dimension;
 import software.amazon.awssdk.services.costexplorer.model.DimensionValuesWithAttributes;
@@ -24,7 +25,10 @@ import software.amazon.awssdk.services.costexplorer.model.GetDimensionValuesRequ
 import software.amazon.awssdk.services.costexplorer.model.GetDimensionValuesResponse;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Fetcher for the DimensionalValues AWS API
@@ -33,8 +37,10 @@ public class DimensionalValuesFetcher {
     private final RequestConverter requestConverter = new RequestConverter();
 
     private CostExplorerClient client;
+    private CostExplorerAsyncClient asyncClient;
     private TimeRange timeRange;
     private String query;
+    private Executor executor;
 
     /**
      * Set the cost explorer client
@@ -48,6 +54,18 @@ public class DimensionalValuesFetcher {
         return fetcher;
     }
 
+    /**
+     * Set the non-blocking cost explorer client, used by the asynchronous fetch methods
+     *
+     * @param asyncClient the non-blocking cost explorer client
+     * @return a new instance of the fetcher
+     */
+    public static DimensionalValuesFetcher withAsyncClient(CostExplorerAsyncClient asyncClient) {
+        DimensionalValuesFetcher fetcher = new DimensionalValuesFetcher();
+        fetcher.asyncClient = asyncClient;
+        return fetcher;
+    }
+
     /**
      * Sets the time range
      *
@@ -59,6 +77,17 @@ public class DimensionalValuesFetcher {
         return this;
     }
 
+    /**
+     * Sets an executor for requesting the next page in the background while the current page is processed
+     *
+     * @param executor the executor
+     * @return the current instance of the fetcher
+     */
+    public DimensionalValuesFetcher withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
     /**
      * Sets a search query
      *
@@ -76,6 +105,48 @@ public class DimensionalValuesFetcher {
      * @return a list of service names
      */
     public List<String> fetchServices() {
+        return streamServices().collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily streams the services of all pages given the filters.
+     * The pages are requested while the stream is consumed.
+     *
+     * @return a stream of service names
+     */
+    public Stream<String> streamServices() {
+        GetDimensionValuesRequest request = createRequest();
+
+        return PageIterator.stream(
+                pageToken -> client.getDimensionValues(request.toBuilder().nextPageToken(pageToken).build()),
+                GetDimensionValuesResponse::nextPageToken,
+                executor)
+                .flatMap(response -> response.dimensionValues().stream())
+                .map(DimensionValuesWithAttributes::value);
+    }
+
+    /**
+     * Fetch the service names given the filters without blocking
+     *
+     * @return a future of the list of service names, failed with an IllegalStateException if no non-blocking client is set
+     */
+    public CompletableFuture<List<String>> fetchServicesAsync() {
+        if (asyncClient == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No async client given"));
+        }
+
+        GetDimensionValuesRequest request = createRequest();
+
+        return PageIterator.collectAsync(
+                pageToken -> asyncClient.getDimensionValues(request.toBuilder().nextPageToken(pageToken).build()),
+                GetDimensionValuesResponse::nextPageToken)
+                .thenApply(responses -> responses.stream()
+                        .flatMap(response -> response.dimensionValues().stream())
+                        .map(DimensionValuesWithAttributes::value)
+                        .collect(Collectors.toList()));
+    }
+
+    private GetDimensionValuesRequest createRequest() {
         GetDimensionValuesRequest.Builder requestBuilder = GetDimensionValuesRequest.builder()
                 .dimension(Dimension.SERVICE)
                 .timePeriod(requestConverter.createDateInterval(timeRange));
@@ -84,8 +155,6 @@ public class DimensionalValuesFetcher {
             requestBuilder.searchString(query);
         }
 
-        GetDimensionValuesResponse response = client.getDimensionValues(requestBuilder.build());
-
-        return response.dimensionValues().stream().map(DimensionValuesWithAttributes::value).collect(Collectors.toList());
+        return requestBuilder.build();
     }
 }
@@ -0,0 +1,128 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.fetcher;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy iterator over the pages of a paginated AWS API.
+ * The first page is requested on first access, each further page when the previous one has been handed out.
+ * If an executor is given, the next page is already requested in the background while the current one is processed.
+ *
+ * @param <T> the type of the responses
+ */
+class PageIterator<T> implements Iterator<T> {
+    private final Function<String, T> pageFetcher;
+    private final Function<T, String> nextPageToken;
+    private final Executor executor;
+
+    private CompletableFuture<T> nextPage;
+    private String pageToken;
+    private boolean lastPage;
+
+    PageIterator(Function<String, T> pageFetcher, Function<T, String> nextPageToken, Executor executor) {
+        this.pageFetcher = pageFetcher;
+        this.nextPageToken = nextPageToken;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a lazy stream over all pages
+     *
+     * @param pageFetcher   fetches the page for a page token, the first page is fetched with a null token
+     * @param nextPageToken extracts the token of the next page from a response
+     * @param executor      the executor for requesting the next page in the background, may be null
+     * @param <T>           the type of the responses
+     * @return a sequential stream of all pages
+     */
+    static <T> Stream<T> stream(Function<String, T> pageFetcher, Function<T, String> nextPageToken, Executor executor) {
+        PageIterator<T> iterator = new PageIterator<>(pageFetcher, nextPageToken, executor);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Requests all pages one after another without blocking
+     *
+     * @param pageFetcher   requests the page for a page token, the first page is requested with a null token
+     * @param nextPageToken extracts the token of the next page from a response
+     * @param <T>           the type of the responses
+     * @return a future of all pages in order
+     */
+    static <T> CompletableFuture<List<T>> collectAsync(Function<String, CompletableFuture<T>> pageFetcher, Function<T, String> nextPageToken) {
+        return collectAsync(pageFetcher, nextPageToken, null, new ArrayList<>());
+    }
+
+    private static <T> CompletableFuture<List<T>> collectAsync(Function<String, CompletableFuture<T>> pageFetcher, Function<T, String> nextPageToken,
+                                                               String pageToken, List<T> pages) {
+        return pageFetcher.apply(pageToken).thenCompose(page -> {
+            pages.add(page);
+            String token = nextPageToken.apply(page);
+            if (token == null || token.isEmpty()) {
+                return CompletableFuture.completedFuture(pages);
+            }
+            return collectAsync(pageFetcher, nextPageToken, token, pages);
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage == null && !lastPage) {
+            nextPage = CompletableFuture.completedFuture(pageFetcher.apply(pageToken));
+        }
+        return nextPage != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more pages");
+        }
+
+        T page = join(nextPage);
+        nextPage = null;
+        pageToken = nextPageToken.apply(page);
+
+        if (pageToken == null || pageToken.isEmpty()) {
+            lastPage = true;
+        } else if (executor != null) {
+            String token = pageToken;
+            nextPage = CompletableFuture.supplyAsync(() -> pageFetcher.apply(token), executor);
+        }
+        return page;
+    }
+
+    private T join(CompletableFuture<T> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -17,12 +17,16 @@ package de.qaware.cloud.cost.aws.fetcher;
 
 import de.qaware.cloud.cost.TimeRange;
 import de.qaware.cloud.cost.aws.converter.RequestConverter;
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient;
 import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
 import software.amazon.awssdk.services.costexplorer.model.GetTagsRequest;
 import software.amazon.awssdk.services.costexplorer.model.GetTagsResponse;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Fetcher for the Tags AWS API
@@ -32,8 +36,10 @@ public class TagNamesFetcher {
     private final RequestConverter requestConverter = new RequestConverter();
 
     private CostExplorerClient client;
+    private CostExplorerAsyncClient asyncClient;
     private TimeRange timeRange;
     private String query;
+    private Executor executor;
 
     /**
      * Set the cost explorer client
@@ -47,6 +53,18 @@ public class TagNamesFetcher {
         return fetcher;
     }
 
+    /**
+     * Set the non-blocking cost explorer client, used by the asynchronous fetch methods
+     *
+     * @param asyncClient the non-blocking cost explorer client
+     * @return a new instance of the fetcher
+     */
+    public static TagNamesFetcher withAsyncClient(CostExplorerAsyncClient asyncClient) {
+        TagNamesFetcher fetcher = new TagNamesFetcher();
+        fetcher.asyncClient = asyncClient;
+        return fetcher;
+    }
+
     /**
      * Sets the time range
      *
@@ -58,6 +76,17 @@ public class TagNamesFetcher {
         return this;
     }
 
+    /**
+     * Sets an executor for requesting the next page in the background while the current page is processed
+     *
+     * @param executor the executor
+     * @return the current instance of the fetcher
+     */
+    public TagNamesFetcher withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
     /**
      * Sets a search query
      *
@@ -75,6 +104,48 @@ public class TagNamesFetcher {
      * @return a list of tag names
      */
     public List<String> fetch() {
+        return stream().collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily streams the tag names of all pages given the filters.
+     * The pages are requested while the stream is consumed.
+     *
+     * @return a stream of tag names
+     */
+    public Stream<String> stream() {
+        GetTagsRequest request = createRequest();
+
+        return PageIterator.stream(
+                pageToken -> client.getTags(request.toBuilder().nextPageToken(pageToken).build()),
+                GetTagsResponse::nextPageToken,
+                executor)
+                .flatMap(response -> response.tags().stream())
+                .filter(tag -> !tag.isBlank());
+    }
+
+    /**
+     * Fetch the tag names given the filters without blocking
+     *
+     * @return a future of the list of tag names, failed with an IllegalStateException if no non-blocking client is set
+     */
+    public CompletableFuture<List<String>> fetchAsync() {
+        if (asyncClient == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No async client given"));
+        }
+
+        GetTagsRequest request = createRequest();
+
+        return PageIterator.collectAsync(
+                pageToken -> asyncClient.getTags(request.toBuilder().nextPageToken(pageToken).build()),
+                GetTagsResponse::nextPageToken)
+                .thenApply(responses -> responses.stream()
+                        .flatMap(response -> response.tags().stream())
+                        .filter(tag -> !tag.isBlank())
+                        .collect(Collectors.toList()));
+    }
+
+    private GetTagsRequest createRequest() {
         GetTagsRequest.Builder requestBuilder = GetTagsRequest.builder()
                 .tagKey(TAG_NAME)
                 .timePeriod(requestConverter.createDateInterval(timeRange));
@@ -83,8 +154,6 @@ public class TagNamesFetcher {
             requestBuilder.searchString(query);
         }
 
-        GetTagsResponse response = client.getTags(requestBuilder.build());
-
-        return response.tags().stream().filter(tag -> !tag.isBlank()).collect(Collectors.toList());
+        return requestBuilder.build();
     }
 }
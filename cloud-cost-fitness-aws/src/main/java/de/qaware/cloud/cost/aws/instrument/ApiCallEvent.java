@@ -0,0 +1,48 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a request to the Cost Explorer API, a retry or a cache hit.
+ * Only requests have a duration.
+ */
+@Name("de.qaware.cloud.cost.ApiCall")
+@Label("Cost Explorer API Call")
+@Category({"Cloud Cost Fitness"})
+@Description("A request to the AWS Cost Explorer API, a retry or a request answered from a cache")
+class ApiCallEvent extends Event {
+    static final String SUCCESS = "success";
+    static final String FAILURE = "failure";
+    static final String RETRY = "retry";
+    static final String THROTTLED_RETRY = "throttled retry";
+    static final String CACHE_HIT = "cache hit";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Estimated Cost")
+    @Description("The estimated cost of the request in USD")
+    double estimatedCost;
+}
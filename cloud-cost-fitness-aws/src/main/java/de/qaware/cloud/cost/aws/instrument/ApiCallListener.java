@@ -0,0 +1,52 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument;
+
+/**
+ * Listener for the requests sent to the Cost Explorer API.
+ * Implementations registered as service in META-INF/services are added to the shared instrumentation, others can be
+ * added with {@link Instrumentation#addListener(ApiCallListener)}. The methods are called concurrently and should
+ * return quickly.
+ */
+public interface ApiCallListener {
+    /**
+     * Called after each request sent to the API. Every page of a paginated query is a request of its own.
+     *
+     * @param operation     the operation
+     * @param durationNanos the duration of the request in nanoseconds
+     * @param successful    false if the request failed, e.g. because it was throttled
+     */
+    default void onRequest(ApiOperation operation, long durationNanos, boolean successful) {
+    }
+
+    /**
+     * Called before a failed request is retried
+     *
+     * @param operation the operation
+     * @param throttled true if the request was throttled, false for a transient error
+     */
+    default void onRetry(ApiOperation operation, boolean throttled) {
+    }
+
+    /**
+     * Called when a request is answered without calling the API,
+     * either from the query cache or by an equal request in flight
+     *
+     * @param operation the operation
+     */
+    default void onCacheHit(ApiOperation operation) {
+    }
+}
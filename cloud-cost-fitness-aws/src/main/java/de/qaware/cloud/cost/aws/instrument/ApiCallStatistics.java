@@ -0,0 +1,166 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Listener collecting the number of requests, retries and cache hits as well as the latency per operation.
+ * It can be added to the shared {@link Instrumentation} for a whole test suite or a single test.
+ */
+public class ApiCallStatistics implements ApiCallListener {
+    private final Map<ApiOperation, OperationStatistics> operations = new EnumMap<>(ApiOperation.class);
+
+    /**
+     * Construct empty statistics.
+     */
+    public ApiCallStatistics() {
+        for (ApiOperation operation : ApiOperation.values()) {
+            operations.put(operation, new OperationStatistics());
+        }
+    }
+
+    @Override
+    public void onRequest(ApiOperation operation, long durationNanos, boolean successful) {
+        OperationStatistics statistics = operations.get(operation);
+        statistics.requests.increment();
+        if (!successful) {
+            statistics.failures.increment();
+        }
+        statistics.latency.record(durationNanos);
+    }
+
+    @Override
+    public void onRetry(ApiOperation operation, boolean throttled) {
+        OperationStatistics statistics = operations.get(operation);
+        statistics.retries.increment();
+        if (throttled) {
+            statistics.throttledRetries.increment();
+        }
+    }
+
+    @Override
+    public void onCacheHit(ApiOperation operation) {
+        operations.get(operation).cacheHits.increment();
+    }
+
+    /**
+     * Returns the number of requests sent to the API, including failed ones
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return sum(statistics -> statistics.requests);
+    }
+
+    /**
+     * Returns the number of requests of an operation sent to the API, including failed ones
+     *
+     * @param operation the operation
+     * @return the number of requests
+     */
+    public long getRequests(ApiOperation operation) {
+        return operations.get(operation).requests.sum();
+    }
+
+    /**
+     * Returns the number of failed requests
+     *
+     * @return the number of failed requests
+     */
+    public long getFailedRequests() {
+        return sum(statistics -> statistics.failures);
+    }
+
+    /**
+     * Returns the number of retries
+     *
+     * @return the number of retries
+     */
+    public long getRetries() {
+        return sum(statistics -> statistics.retries);
+    }
+
+    /**
+     * Returns the number of retries of throttled requests
+     *
+     * @return the number of throttled retries
+     */
+    public long getThrottledRetries() {
+        return sum(statistics -> statistics.throttledRetries);
+    }
+
+    /**
+     * Returns the number of requests answered without calling the API
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return sum(statistics -> statistics.cacheHits);
+    }
+
+    /**
+     * Returns the estimated cost of the successful requests
+     *
+     * @return the estimated cost in USD
+     */
+    public double getEstimatedCost() {
+        return (getRequests() - getFailedRequests()) * Instrumentation.COST_PER_REQUEST;
+    }
+
+    /**
+     * Returns the latency histogram of an operation
+     *
+     * @param operation the operation
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency(ApiOperation operation) {
+        return operations.get(operation).latency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<ApiOperation, OperationStatistics> entry : operations.entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            builder.append(String.format("%s : %d requests, %d cache hits, p50 %d ms, p99 %d ms%n",
+                    entry.getKey().getApiName(), entry.getValue().requests.sum(), entry.getValue().cacheHits.sum(),
+                    latency.getPercentile(0.5).toMillis(), latency.getPercentile(0.99).toMillis()));
+        }
+        builder.append(String.format("%d retries, estimated cost %.2f USD%n", getRetries(), getEstimatedCost()));
+        return builder.toString();
+    }
+
+    private long sum(Function<OperationStatistics, LongAdder> counter) {
+        long sum = 0;
+        for (OperationStatistics statistics : operations.values()) {
+            sum += counter.apply(statistics).sum();
+        }
+        return sum;
+    }
+
+    private static final class OperationStatistics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder throttledRetries = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument;
+
+/**
+ * The operations of the Cost Explorer API used by the fetchers
+ */
+public enum ApiOperation {
+    GET_COST_AND_USAGE("GetCostAndUsage"),
+    GET_TAGS("GetTags"),
+    GET_DIMENSION_VALUES("GetDimensionValues");
+
+    private final String apiName;
+
+    ApiOperation(String apiName) {
+        this.apiName = apiName;
+    }
+
+    /**
+     * Returns the name of the operation in the Cost Explorer API
+     *
+     * @return the API name
+     */
+    public String getApiName() {
+        return apiName;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument;
+
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Instrumentation of the requests to the Cost Explorer API.
+ * Each request, retry and cache hit is passed to the registered listeners and recorded as flight recorder event
+ * de.qaware.cloud.cost.ApiCall, if the flight recorder is enabled.
+ */
+public class Instrumentation {
+    /**
+     * The price of a request to the Cost Explorer API in USD, each page of a paginated query is billed
+     */
+    public static final double COST_PER_REQUEST = 0.01;
+
+    private final List<ApiCallListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the instrumentation used by all cost explorers of the process,
+     * with the listeners registered as service in META-INF/services
+     *
+     * @return the shared instrumentation
+     */
+    public static Instrumentation shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Adds a listener for all following requests
+     *
+     * @param listener the listener
+     */
+    public void addListener(ApiCallListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     *
+     * @param listener the listener
+     */
+    public void removeListener(ApiCallListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sends a request to the API and records its duration and outcome
+     *
+     * @param operation the operation
+     * @param request   the request
+     * @param <T>       the type of the response
+     * @return the response
+     */
+    public <T> T record(ApiOperation operation, Supplier<T> request) {
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean successful = false;
+        try {
+            T response = request.get();
+            successful = true;
+            return response;
+        } finally {
+            complete(operation, event, start, successful);
+        }
+    }
+
+    /**
+     * Sends a non-blocking request to the API and records its duration and outcome when the response arrives
+     *
+     * @param operation the operation
+     * @param request   the request
+     * @param <T>       the type of the response
+     * @return the response, completed after the listeners have been called
+     */
+    public <T> CompletableFuture<T> recordAsync(ApiOperation operation, Supplier<CompletableFuture<T>> request) {
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            complete(operation, event, start, false);
+            throw e;
+        }
+        return response.whenComplete((result, failure) -> complete(operation, event, start, failure == null));
+    }
+
+    /**
+     * Records that a failed request is retried
+     *
+     * @param operation the operation
+     * @param throttled true if the request was throttled, false for a transient error
+     */
+    public void retry(ApiOperation operation, boolean throttled) {
+        commitInstant(operation, throttled ? ApiCallEvent.THROTTLED_RETRY : ApiCallEvent.RETRY);
+        for (ApiCallListener listener : listeners) {
+            listener.onRetry(operation, throttled);
+        }
+    }
+
+    /**
+     * Records that a request is answered without calling the API
+     *
+     * @param operation the operation
+     */
+    public void cacheHit(ApiOperation operation) {
+        commitInstant(operation, ApiCallEvent.CACHE_HIT);
+        for (ApiCallListener listener : listeners) {
+            listener.onCacheHit(operation);
+        }
+    }
+
+    private void complete(ApiOperation operation, ApiCallEvent event, long start, boolean successful) {
+        long duration = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation.getApiName();
+            event.outcome = successful ? ApiCallEvent.SUCCESS : ApiCallEvent.FAILURE;
+            event.estimatedCost = successful ? COST_PER_REQUEST : 0.0;
+            event.commit();
+        }
+        for (ApiCallListener listener : listeners) {
+            listener.onRequest(operation, duration, successful);
+        }
+    }
+
+    private static void commitInstant(ApiOperation operation, String outcome) {
+        ApiCallEvent event = new ApiCallEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation.getApiName();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private static final class Shared {
+        private static final Instrumentation INSTANCE = new Instrumentation();
+
+        static {
+            ServiceLoader.load(ApiCallListener.class).forEach(INSTANCE::addListener);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of request durations with a relative precision of 1/8.
+ * Each power of two is divided into eight buckets, so recording is a few bit operations without locking.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration
+     *
+     * @param nanos the duration in nanoseconds, negative durations count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded durations
+     *
+     * @return the number of durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean duration
+     *
+     * @return the mean duration, zero if nothing is recorded
+     */
+    public Duration getMean() {
+        long n = count.sum();
+        return n == 0 ? Duration.ZERO : Duration.ofNanos(total.sum() / n);
+    }
+
+    /**
+     * Returns the longest duration
+     *
+     * @return the maximum duration, zero if nothing is recorded
+     */
+    public Duration getMax() {
+        return Duration.ofNanos(max.get());
+    }
+
+    /**
+     * Returns the duration which the given share of the recorded durations does not exceed, e.g. 0.99 for the
+     * 99th percentile. The result is the upper bound of the bucket, so it overestimates by at most 1/8.
+     *
+     * @param quantile the quantile between 0 and 1
+     * @return the duration, zero if nothing is recorded
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    public Duration getPercentile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        long n = count.sum();
+        if (n == 0) {
+            return Duration.ZERO;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(upperBoundOf(index), max.get()));
+            }
+        }
+        return getMax();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long upper = ((long) SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+        // the last bucket ends at the largest long value
+        return upper <= 0 ? Long.MAX_VALUE : upper - 1;
+    }
+}
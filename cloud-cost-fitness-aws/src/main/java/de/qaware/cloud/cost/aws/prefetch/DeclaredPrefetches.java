@@ -0,0 +1,81 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.CostQuery;
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.aws.AwsCostExplorer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the prefetch declarations of a test class and executes them, shared by the test framework extensions
+ */
+final class DeclaredPrefetches {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeclaredPrefetches.class);
+
+    private final List<CostQuery> queries = new ArrayList<>();
+    private final Set<Metric> metrics = EnumSet.noneOf(Metric.class);
+
+    private DeclaredPrefetches() {
+    }
+
+    static DeclaredPrefetches of(Class<?> testClass) {
+        DeclaredPrefetches declared = new DeclaredPrefetches();
+        for (PrefetchCosts prefetch : testClass.getAnnotationsByType(PrefetchCosts.class)) {
+            CostQuery query = CostQuery.create().during(prefetch.during());
+            if (!prefetch.instance().isEmpty()) {
+                query = query.forInstance(prefetch.instance());
+            }
+            if (!prefetch.service().isEmpty()) {
+                query = query.forService(prefetch.service());
+            }
+            declared.queries.add(query);
+            declared.metrics.addAll(Arrays.asList(prefetch.metrics()));
+        }
+        return declared;
+    }
+
+    List<CostQuery> getQueries() {
+        return queries;
+    }
+
+    Set<Metric> getMetrics() {
+        return metrics;
+    }
+
+    boolean isEmpty() {
+        return queries.isEmpty();
+    }
+
+    void prefetch() {
+        if (isEmpty()) {
+            return;
+        }
+        // prefetching only saves requests, the tests query the cost explorer themselves if it fails
+        try {
+            new AwsCostExplorer().prefetch(queries, metrics);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Prefetching costs failed, the queries are sent one by one", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeRange;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a cost query of a test class which is fetched before the first test.
+ * All declared queries are merged into the fewest requests and the cost explorers answer them from memory.
+ * Works with JUnit 5 and Spock without further registration.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(PrefetchCosts.List.class)
+@ExtendWith(PrefetchCostsExtension.class)
+public @interface PrefetchCosts {
+
+    /**
+     * The time range of the query
+     *
+     * @return the time range
+     */
+    TimeRange during() default TimeRange.LAST_30_DAYS;
+
+    /**
+     * Any instance of the query, the costs of all instances are fetched
+     *
+     * @return an instance name or empty
+     */
+    String instance() default "";
+
+    /**
+     * Any service of the query, the costs of all services are fetched
+     *
+     * @return a service name or empty
+     */
+    String service() default "";
+
+    /**
+     * The metrics to fetch
+     *
+     * @return the metrics
+     */
+    Metric[] metrics() default Metric.UNBLENDED_COST;
+
+    /**
+     * Container of repeated prefetch declarations
+     */
+    @Documented
+    @Inherited
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @ExtendWith(PrefetchCostsExtension.class)
+    @interface List {
+        PrefetchCosts[] value();
+    }
+}
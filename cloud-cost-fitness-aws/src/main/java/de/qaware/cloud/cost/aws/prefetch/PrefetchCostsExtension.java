@@ -0,0 +1,33 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.aws.budget.ApiCallBudgetExtension;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * JUnit 5 extension prefetching the costs declared with {@link PrefetchCosts} before the first test of a class
+ */
+public class PrefetchCostsExtension implements BeforeAllCallback {
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        // the API call budget of the class covers the prefetching, even if its extension is registered afterwards
+        new ApiCallBudgetExtension().beforeAll(context);
+        DeclaredPrefetches.of(context.getRequiredTestClass()).prefetch();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import org.spockframework.runtime.extension.IGlobalExtension;
+import org.spockframework.runtime.model.SpecInfo;
+
+/**
+ * Spock global extension prefetching the costs declared with {@link PrefetchCosts} before the first feature of a spec
+ */
+public class PrefetchCostsSpockExtension implements IGlobalExtension {
+
+    @Override
+    public void start() {
+        // the declared prefetches are read per spec
+    }
+
+    @Override
+    public void visitSpec(SpecInfo spec) {
+        DeclaredPrefetches declared = DeclaredPrefetches.of(spec.getReflection());
+        if (declared.isEmpty()) {
+            return;
+        }
+        spec.addSetupSpecInterceptor(invocation -> {
+            declared.prefetch();
+            invocation.proceed();
+        });
+    }
+
+    @Override
+    public void stop() {
+        // nothing to release
+    }
+}
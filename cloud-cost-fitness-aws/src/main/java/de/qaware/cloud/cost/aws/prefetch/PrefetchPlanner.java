@@ -0,0 +1,89 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.CostQuery;
+import de.qaware.cloud.cost.Granularity;
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeRange;
+import de.qaware.cloud.cost.aws.converter.RequestConverter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the cost queries of a test class into the fewest GetCostAndUsage requests.
+ * All queries of the same grouping share one request over the widest time range, fetching all metrics at once.
+ * The total is derived from the service groups if both are requested.
+ */
+public class PrefetchPlanner {
+    private final RequestConverter requestConverter = new RequestConverter();
+
+    /**
+     * Plans the requests for the given queries, queries with other than daily granularity are not prefetched
+     *
+     * @param queries the queries to answer from memory
+     * @param metrics the metrics to fetch for each query
+     * @return the planned requests, at most one per grouping
+     * @throws IllegalArgumentException if no metric is given
+     */
+    public List<PrefetchRequest> plan(Collection<CostQuery> queries, Collection<Metric> metrics) {
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("No metric given");
+        }
+
+        Map<Grouping, TimeRange> timeRanges = new EnumMap<>(Grouping.class);
+        for (CostQuery query : queries) {
+            if (query.getGranularity() != Granularity.DAILY) {
+                continue;
+            }
+            timeRanges.merge(getGrouping(query), query.getTimeRange(), this::widest);
+        }
+
+        // the service groups add up to the total, so the total needs no request of its own
+        boolean includingTotal = timeRanges.containsKey(Grouping.TOTAL) && timeRanges.containsKey(Grouping.SERVICE);
+        if (includingTotal) {
+            timeRanges.merge(Grouping.SERVICE, timeRanges.remove(Grouping.TOTAL), this::widest);
+        }
+
+        EnumSet<Metric> metricSet = EnumSet.copyOf(metrics);
+        List<PrefetchRequest> requests = new ArrayList<>();
+        timeRanges.forEach((grouping, timeRange) -> requests.add(
+                new PrefetchRequest(grouping, timeRange, metricSet, includingTotal && grouping == Grouping.SERVICE)));
+        return requests;
+    }
+
+    static Grouping getGrouping(CostQuery query) {
+        if (query.getInstance() != null) {
+            return Grouping.INSTANCE;
+        }
+        if (query.getService() != null) {
+            return Grouping.SERVICE;
+        }
+        return Grouping.TOTAL;
+    }
+
+    private TimeRange widest(TimeRange first, TimeRange second) {
+        // all time ranges end today, so the earliest start is the union
+        Comparator<TimeRange> byStart = Comparator.comparing(timeRange -> requestConverter.createDateInterval(timeRange).start());
+        return byStart.compare(first, second) <= 0 ? first : second;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeRange;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * One GetCostAndUsage request of a prefetch plan
+ */
+public final class PrefetchRequest {
+    private final Grouping grouping;
+    private final TimeRange timeRange;
+    private final Set<Metric> metrics;
+    private final boolean includingTotal;
+
+    PrefetchRequest(Grouping grouping, TimeRange timeRange, Set<Metric> metrics, boolean includingTotal) {
+        this.grouping = grouping;
+        this.timeRange = timeRange;
+        this.metrics = Collections.unmodifiableSet(EnumSet.copyOf(metrics));
+        this.includingTotal = includingTotal;
+    }
+
+    /**
+     * Returns the grouping of the request
+     *
+     * @return the grouping
+     */
+    public Grouping getGrouping() {
+        return grouping;
+    }
+
+    /**
+     * Returns the time range of the request
+     *
+     * @return the time range
+     */
+    public TimeRange getTimeRange() {
+        return timeRange;
+    }
+
+    /**
+     * Returns the metrics fetched with the request
+     *
+     * @return the metrics
+     */
+    public Set<Metric> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns whether the total is derived from the groups of this request instead of an own request
+     *
+     * @return true if the total is included
+     */
+    public boolean isIncludingTotal() {
+        return includingTotal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PrefetchRequest that = (PrefetchRequest) o;
+        return includingTotal == that.includingTotal
+                && grouping == that.grouping
+                && timeRange == that.timeRange
+                && metrics.equals(that.metrics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(grouping, timeRange, metrics, includingTotal);
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchRequest{grouping=" + grouping + ", timeRange=" + timeRange
+                + ", metrics=" + metrics + ", includingTotal=" + includingTotal + "}";
+    }
+}
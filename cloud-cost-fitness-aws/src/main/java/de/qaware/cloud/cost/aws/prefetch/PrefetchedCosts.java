@@ -0,0 +1,224 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.CompactTimeSeries;
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeRange;
+import de.qaware.cloud.cost.TimeSeries;
+import de.qaware.cloud.cost.ValueWithUnit;
+import de.qaware.cloud.cost.aws.converter.RequestConverter;
+import software.amazon.awssdk.services.costexplorer.model.DateInterval;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory daily values fetched ahead by a prefetch plan.
+ * A grouping is complete for its time range: groups without data had no costs, so they are answered with zeros.
+ */
+public class PrefetchedCosts {
+    private static final Map<List<Object>, PrefetchedCosts> SHARED = new ConcurrentHashMap<>();
+    private static final String TOTAL = "";
+
+    private final RequestConverter requestConverter = new RequestConverter();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the prefetched costs shared by all cost explorers of the process sending requests with the same
+     * access key to the same endpoint, since the costs of different accounts must not be mixed up
+     *
+     * @param accessKey the AWS access key
+     * @param endpoint  the endpoint of the Cost Explorer API, null for the AWS default
+     * @return the shared prefetched costs
+     */
+    public static PrefetchedCosts shared(String accessKey, URI endpoint) {
+        return SHARED.computeIfAbsent(Arrays.asList(accessKey, endpoint), key -> new PrefetchedCosts());
+    }
+
+    /**
+     * Stores the ungrouped values of a metric, replacing previous values
+     *
+     * @param metric the metric
+     * @param start  the first day of the fetched time range
+     * @param end    the day after the fetched time range
+     * @param total  the daily values
+     */
+    public void putTotal(Metric metric, LocalDate start, LocalDate end, TimeSeries total) {
+        put(Grouping.TOTAL, metric, start, end, Collections.singletonMap(TOTAL, total));
+    }
+
+    /**
+     * Stores the grouped values of a metric, replacing previous values
+     *
+     * @param grouping      the grouping of the values
+     * @param metric        the metric
+     * @param start         the first day of the fetched time range
+     * @param end           the day after the fetched time range
+     * @param valuesByGroup the daily values by group key
+     */
+    public void put(Grouping grouping, Metric metric, LocalDate start, LocalDate end, Map<String, TimeSeries> valuesByGroup) {
+        Map<String, CompactTimeSeries> compactByGroup = new HashMap<>();
+        valuesByGroup.forEach((group, values) -> compactByGroup.put(group, toCompact(values)));
+        entries.put(key(grouping, metric), new Entry(start.toEpochDay(), end.toEpochDay(), compactByGroup));
+    }
+
+    /**
+     * Checks whether the values of a metric are available for a time range
+     *
+     * @param grouping  the grouping
+     * @param metric    the metric
+     * @param timeRange the time range
+     * @return true if the time range is covered
+     */
+    public boolean covers(Grouping grouping, Metric metric, TimeRange timeRange) {
+        Entry entry = entries.get(key(grouping, metric));
+        return entry != null && entry.covers(toEpochDays(timeRange));
+    }
+
+    /**
+     * Returns the prefetched ungrouped values of a metric
+     *
+     * @param metric    the metric
+     * @param timeRange the time range
+     * @return the daily values or empty if they were not prefetched
+     */
+    public Optional<TimeSeries> getTotal(Metric metric, TimeRange timeRange) {
+        return get(Grouping.TOTAL, List.of(TOTAL), metric, timeRange);
+    }
+
+    /**
+     * Returns the sum of the prefetched values of several groups
+     *
+     * @param grouping  the grouping
+     * @param groups    the group keys, e.g. instance or service names
+     * @param metric    the metric
+     * @param timeRange the time range
+     * @return the summed daily values or empty if they were not prefetched
+     */
+    public Optional<TimeSeries> get(Grouping grouping, Collection<String> groups, Metric metric, TimeRange timeRange) {
+        if (entries.isEmpty()) {
+            return Optional.empty();
+        }
+        Entry entry = entries.get(key(grouping, metric));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        long[] days = toEpochDays(timeRange);
+        if (!entry.covers(days) || entry.reference == null) {
+            return Optional.empty();
+        }
+
+        List<TimeSeries> slices = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            CompactTimeSeries values = entry.valuesByGroup.get(group);
+            slices.add(new TimeSeries().withElements(slice(values == null ? entry.reference : values, days, values == null)));
+        }
+        return Optional.of(TimeSeries.sumOf(slices));
+    }
+
+    /**
+     * Returns the prefetched values of all groups which had costs
+     *
+     * @param grouping  the grouping
+     * @param metric    the metric
+     * @param timeRange the time range
+     * @return the daily values by group key, sorted by group key, or empty if they were not prefetched
+     */
+    public Optional<Map<String, TimeSeries>> getAll(Grouping grouping, Metric metric, TimeRange timeRange) {
+        Entry entry = entries.get(key(grouping, metric));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        long[] days = toEpochDays(timeRange);
+        if (!entry.covers(days)) {
+            return Optional.empty();
+        }
+
+        Map<String, TimeSeries> valuesByGroup = new TreeMap<>();
+        entry.valuesByGroup.forEach((group, values) ->
+                valuesByGroup.put(group, new TimeSeries().withElements(slice(values, days, false))));
+        return Optional.of(valuesByGroup);
+    }
+
+    /**
+     * Removes all prefetched values
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private long[] toEpochDays(TimeRange timeRange) {
+        DateInterval interval = requestConverter.createDateInterval(timeRange);
+        return new long[]{
+                LocalDate.parse(interval.start(), ValueWithUnit.DATE_FORMATTER).toEpochDay(),
+                LocalDate.parse(interval.end(), ValueWithUnit.DATE_FORMATTER).toEpochDay()};
+    }
+
+    private static CompactTimeSeries toCompact(TimeSeries timeSeries) {
+        List<ValueWithUnit> elements = timeSeries.getElements();
+        String unit = elements.isEmpty() ? null : elements.get(0).getUnit();
+        CompactTimeSeries.Builder builder = CompactTimeSeries.builder(elements.size(), unit);
+        for (ValueWithUnit element : elements) {
+            builder.add((int) element.getDateFrom().toEpochDay(), (int) element.getDateTo().toEpochDay(), element.getValue());
+        }
+        return builder.build();
+    }
+
+    private static CompactTimeSeries slice(CompactTimeSeries values, long[] days, boolean zero) {
+        CompactTimeSeries.Builder builder = CompactTimeSeries.builder(values.size(), values.getUnit());
+        for (int index = 0; index < values.size(); index++) {
+            int startDay = values.getStartDay(index);
+            if (startDay >= days[0] && startDay < days[1]) {
+                builder.add(startDay, values.getEndDay(index), zero ? 0.0 : values.getValue(index));
+            }
+        }
+        return builder.build();
+    }
+
+    private static String key(Grouping grouping, Metric metric) {
+        return grouping + "|" + metric;
+    }
+
+    private static final class Entry {
+        private final long start;
+        private final long end;
+        private final Map<String, CompactTimeSeries> valuesByGroup;
+        // days and unit of groups without data
+        private final CompactTimeSeries reference;
+
+        private Entry(long start, long end, Map<String, CompactTimeSeries> valuesByGroup) {
+            this.start = start;
+            this.end = end;
+            this.valuesByGroup = valuesByGroup;
+            this.reference = valuesByGroup.values().stream().findFirst().orElse(null);
+        }
+
+        private boolean covers(long[] days) {
+            return start <= days[0] && days[1] <= end;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch;
+
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeSeries;
+import de.qaware.cloud.cost.ValueWithUnit;
+import de.qaware.cloud.cost.aws.converter.RequestConverter;
+import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher;
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.DateInterval;
+import software.amazon.awssdk.services.costexplorer.model.Dimension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Executes the requests of a prefetch plan concurrently and keeps the results in memory
+ */
+public class Prefetcher {
+    private final RequestConverter requestConverter = new RequestConverter();
+
+    private CostExplorerClient client;
+    private PrefetchedCosts prefetchedCosts = new PrefetchedCosts();
+
+    /**
+     * Set the cost explorer client
+     *
+     * @param client the cost explorer client
+     * @return a new instance of the prefetcher
+     */
+    public static Prefetcher withClient(CostExplorerClient client) {
+        Prefetcher prefetcher = new Prefetcher();
+        prefetcher.client = client;
+        return prefetcher;
+    }
+
+    /**
+     * Sets the prefetched costs to fill, own ones of the prefetcher by default
+     *
+     * @param prefetchedCosts the prefetched costs
+     * @return the current instance of the prefetcher
+     */
+    public Prefetcher into(PrefetchedCosts prefetchedCosts) {
+        this.prefetchedCosts = prefetchedCosts;
+        return this;
+    }
+
+    /**
+     * Executes the requests which are not yet answered from memory and waits for all of them
+     *
+     * @param plan the planned requests
+     * @return the number of executed requests
+     */
+    public int execute(List<PrefetchRequest> plan) {
+        List<PrefetchRequest> missing = plan.stream()
+                .filter(request -> !isPrefetched(request))
+                .collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(missing.size());
+        try {
+            CompletableFuture.allOf(missing.stream()
+                    .map(request -> CompletableFuture.runAsync(() -> execute(request), executor))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        return missing.size();
+    }
+
+    private boolean isPrefetched(PrefetchRequest request) {
+        return request.getMetrics().stream().allMatch(metric ->
+                prefetchedCosts.covers(request.getGrouping(), metric, request.getTimeRange())
+                        && (!request.isIncludingTotal() || prefetchedCosts.covers(Grouping.TOTAL, metric, request.getTimeRange())));
+    }
+
+    private void execute(PrefetchRequest request) {
+        DateInterval interval = requestConverter.createDateInterval(request.getTimeRange());
+        LocalDate start = LocalDate.parse(interval.start(), ValueWithUnit.DATE_FORMATTER);
+        LocalDate end = LocalDate.parse(interval.end(), ValueWithUnit.DATE_FORMATTER);
+
+        CostAndUsageFetcher fetcher = CostAndUsageFetcher.withClient(client).during(request.getTimeRange());
+        switch (request.getGrouping()) {
+            case TOTAL:
+                fetcher.fetchMetrics(request.getMetrics())
+                        .forEach((metric, total) -> prefetchedCosts.putTotal(metric, start, end, total));
+                break;
+            case SERVICE:
+                fetcher.groupByDimension(Dimension.SERVICE);
+                putGrouped(request, start, end, fetcher.fetchGroupedMetrics(request.getMetrics()));
+                break;
+            case INSTANCE:
+                fetcher.groupByTagName();
+                putGrouped(request, start, end, fetcher.fetchGroupedMetrics(request.getMetrics()));
+                break;
+        }
+    }
+
+    private void putGrouped(PrefetchRequest request, LocalDate start, LocalDate end, Map<Metric, Map<String, TimeSeries>> valuesByMetric) {
+        valuesByMetric.forEach((metric, valuesByGroup) -> {
+            prefetchedCosts.put(request.getGrouping(), metric, start, end, valuesByGroup);
+            if (request.isIncludingTotal() && !valuesByGroup.isEmpty()) {
+                TimeSeries total = new TimeSeries();
+                for (TimeSeries values : valuesByGroup.values()) {
+                    total = total.add(values);
+                }
+                prefetchedCosts.putTotal(metric, start, end, total);
+            }
+        });
+    }
+}
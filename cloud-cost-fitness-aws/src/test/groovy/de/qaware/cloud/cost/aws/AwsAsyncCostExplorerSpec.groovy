@@ -0,0 +1,137 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws
+
+import de.qaware.cloud.cost.CloudProvider
+import de.qaware.cloud.cost.CostQuery
+import de.qaware.cloud.cost.TimeRange
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.Specification
+import spock.lang.Title
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+
+@Title("Test specification for the non-blocking AWS cost explorer implementation")
+class AwsAsyncCostExplorerSpec extends Specification {
+
+    CostExplorerAsyncClient client
+    AwsAsyncCostExplorer costExplorer
+
+    void setup() {
+        client = Mock(CostExplorerAsyncClient)
+        costExplorer = new AwsAsyncCostExplorer(client)
+    }
+
+    def "Check invalid default initialization"() {
+        when:
+        new AwsAsyncCostExplorer()
+
+        then:
+        thrown(NullPointerException)
+    }
+
+    def "Check filters"() {
+        when:
+        def filtered = costExplorer.during(TimeRange.YESTERDAY).forInstance("test-service").forService("EC2")
+
+        then:
+        filtered.query == CostQuery.create().during(TimeRange.YESTERDAY).forInstance("test-service").forService("EC2")
+        costExplorer.query == CostQuery.create()
+    }
+
+    def "Check getNames empty"() {
+        when:
+        costExplorer.getNames().get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalStateException
+    }
+
+    def "Check getNames for service"() {
+        when:
+        def names = costExplorer.forService("Amazon*").getNames().get()
+
+        then:
+        1 * client.getDimensionValues(_) >> CompletableFuture.completedFuture(GetDimensionValuesResponse.builder()
+                .dimensionValues(DimensionValuesWithAttributes.builder().value("Amazon EC2").build())
+                .build())
+
+        and:
+        names == ["Amazon EC2"]
+    }
+
+    def "Check get total costs of all pages"() {
+        when:
+        def costs = costExplorer.during(TimeRange.YESTERDAY).getCosts().get()
+
+        then:
+        1 * client.getCostAndUsage({ it.nextPageToken() == null }) >> CompletableFuture.completedFuture(
+                GetCostAndUsageResponse.builder().resultsByTime(resultByTime("2020-08-01", "1")).nextPageToken("page-2").build())
+        1 * client.getCostAndUsage({ it.nextPageToken() == "page-2" }) >> CompletableFuture.completedFuture(
+                GetCostAndUsageResponse.builder().resultsByTime(resultByTime("2020-08-02", "2")).build())
+
+        and:
+        costs.elements.collect { it.value } == [1.0d, 2.0d]
+    }
+
+    def "Check instance costs are fetched with one grouped request"() {
+        when:
+        def costs = costExplorer.forInstance("test-*").getCosts().get()
+
+        then:
+        1 * client.getTags(_) >> CompletableFuture.completedFuture(GetTagsResponse.builder().tags("test-0", "test-1").build())
+        1 * client.getCostAndUsage(_) >> CompletableFuture.completedFuture(GetCostAndUsageResponse.builder()
+                .resultsByTime(ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(AwsCostExplorerSpec.group('Name$test-0', "1"), AwsCostExplorerSpec.group('Name$test-1', "2"))
+                        .build())
+                .build())
+
+        and:
+        costs.sum().value == 3.0d
+    }
+
+    def "Check failures are propagated"() {
+        given:
+        client.getCostAndUsage(_) >> CompletableFuture.failedFuture(LimitExceededException.builder().message("throttled").build())
+
+        when:
+        costExplorer.getCosts().get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof LimitExceededException
+    }
+
+    def "Check supports AWS only"() {
+        expect:
+        costExplorer.supports(CloudProvider.AMAZON_AWS)
+        and:
+        !costExplorer.supports(CloudProvider.GOOGLE_CLOUD)
+        and:
+        !costExplorer.supports(CloudProvider.MICROSOFT_AZURE)
+    }
+
+    static ResultByTime resultByTime(String date, String amount) {
+        ResultByTime.builder()
+                .timePeriod(DateInterval.builder().start(date).end(date).build())
+                .total(Collections.singletonMap("UnblendedCost", MetricValue.builder().amount(amount).unit("USD").build()))
+                .build()
+    }
+}
@@ -16,12 +16,21 @@
 package de.qaware.cloud.cost.aws
 
 import de.qaware.cloud.cost.CloudProvider
+import de.qaware.cloud.cost.CostQuery
+import de.qaware.cloud.cost.Granularity as CostGranularity
+import de.qaware.cloud.cost.Metric
 import de.qaware.cloud.cost.TimeRange
 import de.qaware.cloud.cost.TimeSeries
+import de.qaware.cloud.cost.aws.prefetch.PrefetchedCosts
+import de.qaware.cloud.cost.aws.prefetch.PrefetcherSpec
 import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.*
 import spock.lang.Specification
 import spock.lang.Title
 
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
 @Title("Test specification for the AWS cost explorer implementation")
 class AwsCostExplorerSpec extends Specification {
 
@@ -50,18 +59,30 @@ class AwsCostExplorerSpec extends Specification {
     }
 
     def "Check during filter"() {
-        expect:
-        costExplorer.during(TimeRange.YESTERDAY) == costExplorer
+        when:
+        def filtered = costExplorer.during(TimeRange.YESTERDAY)
+
+        then:
+        filtered.query.timeRange == TimeRange.YESTERDAY
+        costExplorer.query.timeRange == TimeRange.LAST_30_DAYS
     }
 
     def "Check forInstance filter"() {
-        expect:
-        costExplorer.forInstance("test-service") == costExplorer
+        when:
+        def filtered = costExplorer.forInstance("test-service")
+
+        then:
+        filtered.query.instance == "test-service"
+        costExplorer.query.instance == null
     }
 
     def "Check forService filter"() {
-        expect:
-        costExplorer.forService("EC2") == costExplorer
+        when:
+        def filtered = costExplorer.forService("EC2")
+
+        then:
+        filtered.query.service == "EC2"
+        costExplorer.query.service == null
     }
 
     def "Check getNames empty"() {
@@ -73,7 +94,7 @@ class AwsCostExplorerSpec extends Specification {
 
     def "Check getNames for instance"() {
         given:
-        costExplorer.forInstance("test")
+        costExplorer = Spy(new AwsCostExplorer(client).forInstance("test"))
         costExplorer.getInstances() >> ["test"]
 
         when:
@@ -85,7 +106,7 @@ class AwsCostExplorerSpec extends Specification {
 
     def "Check getNames for service"() {
         given:
-        costExplorer.forService("test")
+        costExplorer = Spy(new AwsCostExplorer(client).forService("test"))
         costExplorer.getServices() >> ["test"]
 
         when:
@@ -97,7 +118,7 @@ class AwsCostExplorerSpec extends Specification {
 
     def "Check get costs for service"() {
         given:
-        costExplorer.forService("test")
+        costExplorer = Spy(new AwsCostExplorer(client).forService("test"))
         costExplorer.getServiceCosts() >> new TimeSeries()
 
         expect:
@@ -106,22 +127,340 @@ class AwsCostExplorerSpec extends Specification {
 
     def "Check get costs for instance"() {
         given:
-        costExplorer.forInstance("test")
+        costExplorer = Spy(new AwsCostExplorer(client).forInstance("test"))
         costExplorer.getInstanceCosts() >> new TimeSeries()
 
         expect:
         costExplorer.getCosts()
     }
 
+    def "Check instance costs are fetched with one grouped request"() {
+        when:
+        def costs = costExplorer.forInstance("test-*").getInstanceCosts()
+
+        then:
+        1 * client.getTags(_) >> GetTagsResponse.builder().tags("test-0", "test-1").build()
+        1 * client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            assert request.filter().tags().values() == ["test-0", "test-1"]
+            assert request.groupBy()[0].type() == GroupDefinitionType.TAG
+            assert request.groupBy()[0].key() == "Name"
+            GetCostAndUsageResponse.builder()
+                    .resultsByTime(ResultByTime.builder()
+                            .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                            .groups(group('Name$test-0', "1"), group('Name$test-1', "2"))
+                            .build())
+                    .build()
+        }
+
+        and:
+        costs.size() == 1
+        costs.sum().value == 3.0d
+    }
+
+    def "Check instance costs without matching instances"() {
+        when:
+        def costs = costExplorer.forInstance("test-*").getInstanceCosts()
+
+        then:
+        1 * client.getTags(_) >> GetTagsResponse.builder().build()
+        0 * client.getCostAndUsage(_)
+
+        and:
+        costs.size() == 0
+    }
+
+    def "Check get metrics for instances with one grouped request"() {
+        when:
+        def metrics = costExplorer.forInstance("test-*").getMetrics(Metric.UNBLENDED_COST, Metric.AMORTIZED_COST)
+
+        then:
+        1 * client.getTags(_) >> GetTagsResponse.builder().tags("test-0").build()
+        1 * client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            assert request.metrics() == ["UnblendedCost", "AmortizedCost"]
+            GetCostAndUsageResponse.builder()
+                    .resultsByTime(ResultByTime.builder()
+                            .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                            .groups(Group.builder()
+                                    .keys('Name$test-0')
+                                    .metrics([
+                                            UnblendedCost: MetricValue.builder().amount("1").unit("USD").build(),
+                                            AmortizedCost: MetricValue.builder().amount("2").unit("USD").build()
+                                    ])
+                                    .build())
+                            .build())
+                    .build()
+        }
+
+        and:
+        metrics[Metric.UNBLENDED_COST].sum().value == 1.0d
+        metrics[Metric.AMORTIZED_COST].sum().value == 2.0d
+    }
+
+    def "Check get metrics for service"() {
+        when:
+        def metrics = costExplorer.forService("EC2").getMetrics(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY)
+
+        then:
+        1 * client.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+
+        and:
+        metrics.keySet() == [Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY] as Set
+    }
+
     def "Check get total costs"() {
         given:
-        costExplorer.during(TimeRange.YESTERDAY)
+        costExplorer = Spy(new AwsCostExplorer(client).during(TimeRange.YESTERDAY))
         costExplorer.getTotalCosts() >> new TimeSeries()
 
         expect:
         costExplorer.getCosts()
     }
 
+    def "Check filters do not change the shared cost explorer"() {
+        given:
+        def serviceExplorer = costExplorer.forService("EC2")
+
+        when:
+        costExplorer.getCosts()
+
+        then:
+        1 * client.getCostAndUsage({ GetCostAndUsageRequest request -> request.filter() == null }) >>
+                GetCostAndUsageResponse.builder().build()
+
+        and:
+        serviceExplorer.query.service == "EC2"
+        costExplorer.query == CostQuery.create()
+    }
+
+    def "Check shared cost explorer with concurrent queries"() {
+        given:
+        def shared = new AwsCostExplorer(client).withCostStore(null)
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        def futures = (0..<8).collect { index ->
+            executor.submit({ shared.forService("service-" + index).getCosts() } as Callable)
+        }
+        futures*.get()
+
+        then:
+        8 * client.getCostAndUsage(_) >> { GetCostAndUsageRequest request ->
+            assert request.filter().dimensions().values().size() == 1
+            GetCostAndUsageResponse.builder().build()
+        }
+        shared.query == CostQuery.create()
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "Check granularity is used for the request"() {
+        when:
+        def explorer = costExplorer.during(TimeRange.LAST_12_MONTHS).withGranularity(CostGranularity.MONTHLY)
+        explorer.withCostStore(null).getCosts()
+
+        then:
+        1 * client.getCostAndUsage({ GetCostAndUsageRequest request -> request.granularity() == Granularity.MONTHLY }) >>
+                GetCostAndUsageResponse.builder().build()
+
+        and:
+        explorer.query.granularity == CostGranularity.MONTHLY
+        costExplorer.query.granularity == CostGranularity.DAILY
+    }
+
+    def "Check with query"() {
+        given:
+        def query = CostQuery.create().during(TimeRange.LAST_7_DAYS).forService("EC2")
+
+        expect:
+        costExplorer.withQuery(query).query == query
+    }
+
+    def "Check prefetched queries are answered from memory"() {
+        given:
+        def prefetching = new AwsCostExplorer(client).withCostStore(null).withPrefetchedCosts(new PrefetchedCosts())
+        def queries = [
+                CostQuery.create().during(TimeRange.YESTERDAY),
+                CostQuery.create().during(TimeRange.LAST_7_DAYS).forService("Amazon EC2")
+        ]
+
+        when:
+        prefetching.prefetch(queries, [Metric.UNBLENDED_COST])
+
+        then:
+        1 * client.getCostAndUsage({ GetCostAndUsageRequest request -> request.groupBy()[0].key() == "SERVICE" }) >>
+                PrefetcherSpec.response(TimeRange.LAST_7_DAYS, ["Amazon EC2": "1", "Amazon S3": "2"])
+
+        when:
+        def total = prefetching.during(TimeRange.YESTERDAY).getCosts()
+        def ec2 = prefetching.during(TimeRange.LAST_7_DAYS).forService("Amazon EC2").getCosts()
+        def metrics = prefetching.forService("Amazon S3").during(TimeRange.YESTERDAY).getMetrics(Metric.UNBLENDED_COST)
+
+        then:
+        0 * client.getCostAndUsage(_)
+        total.sum().value == 3.0d
+        ec2.sum().value == 7.0d
+        metrics[Metric.UNBLENDED_COST].sum().value == 2.0d
+    }
+
+    def "Check prefetched costs are not shared between clients"() {
+        given:
+        def otherClient = Mock(CostExplorerClient)
+        def prefetching = new AwsCostExplorer(client).withCostStore(null)
+        def other = new AwsCostExplorer(otherClient).withCostStore(null)
+        client.getCostAndUsage(_) >> PrefetcherSpec.response(TimeRange.YESTERDAY, ["Amazon EC2": "1"])
+        prefetching.prefetch([CostQuery.create().during(TimeRange.YESTERDAY).forService("Amazon EC2")], [Metric.UNBLENDED_COST])
+
+        when:
+        other.during(TimeRange.YESTERDAY).forService("Amazon EC2").getCosts()
+
+        then:
+        1 * otherClient.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+    }
+
+    def "Check queries beyond the prefetched time range are fetched"() {
+        given:
+        def prefetching = new AwsCostExplorer(client).withCostStore(null).withPrefetchedCosts(new PrefetchedCosts())
+        client.getCostAndUsage(_) >> PrefetcherSpec.response(TimeRange.YESTERDAY, ["Amazon EC2": "1"])
+        prefetching.prefetch([CostQuery.create().during(TimeRange.YESTERDAY).forService("Amazon EC2")], [Metric.UNBLENDED_COST])
+
+        when:
+        prefetching.during(TimeRange.LAST_7_DAYS).forService("Amazon EC2").getCosts()
+
+        then:
+        1 * client.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+    }
+
+    def "Check costs by service are fetched with one grouped request"() {
+        when:
+        def costs = costExplorer.withCostStore(null).withPrefetchedCosts(null).during(TimeRange.YESTERDAY).getCostsByService()
+
+        then:
+        1 * client.getCostAndUsage(_) >> { GetCostAndUsageRequest request ->
+            assert request.filter() == null
+            assert request.groupBy()[0].type() == GroupDefinitionType.DIMENSION
+            assert request.groupBy()[0].key() == "SERVICE"
+            response(group("Amazon S3", "2"), group("Amazon EC2", "1"))
+        }
+
+        and:
+        costs.keySet() as List == ["Amazon EC2", "Amazon S3"]
+        costs["Amazon EC2"].sum().value == 1.0d
+        costs["Amazon S3"].sum().value == 2.0d
+    }
+
+    def "Check costs by service are filtered by the matching services"() {
+        when:
+        def costs = costExplorer.withPrefetchedCosts(null).forService("Amazon Elastic").getCostsByService()
+
+        then:
+        1 * client.getDimensionValues(_) >> GetDimensionValuesResponse.builder()
+                .dimensionValues(
+                        DimensionValuesWithAttributes.builder().value("Amazon Elastic Compute Cloud - Compute").build(),
+                        DimensionValuesWithAttributes.builder().value("Amazon Elastic File System").build())
+                .build()
+        1 * client.getCostAndUsage(_) >> { GetCostAndUsageRequest request ->
+            assert request.filter().dimensions().values() == ["Amazon Elastic Compute Cloud - Compute", "Amazon Elastic File System"]
+            response(group("Amazon Elastic File System", "1"))
+        }
+
+        and:
+        costs.keySet() == ["Amazon Elastic File System"] as Set
+    }
+
+    def "Check costs by service without matching services"() {
+        when:
+        def costs = costExplorer.withPrefetchedCosts(null).forService("Unknown").getCostsByService()
+
+        then:
+        1 * client.getDimensionValues(_) >> GetDimensionValuesResponse.builder().build()
+        0 * client.getCostAndUsage(_)
+
+        and:
+        costs.isEmpty()
+    }
+
+    def "Check prefetched costs by service are answered from memory"() {
+        given:
+        def prefetching = new AwsCostExplorer(client).withCostStore(null).withPrefetchedCosts(new PrefetchedCosts())
+        client.getCostAndUsage(_) >> PrefetcherSpec.response(TimeRange.LAST_7_DAYS, ["Amazon EC2": "1", "Amazon S3": "2"])
+        prefetching.prefetch([CostQuery.create().during(TimeRange.LAST_7_DAYS).forService("Amazon EC2")], [Metric.UNBLENDED_COST])
+
+        when:
+        def costs = prefetching.during(TimeRange.YESTERDAY).getCostsByService()
+
+        then:
+        0 * client.getCostAndUsage(_)
+        costs.keySet() as List == ["Amazon EC2", "Amazon S3"]
+        costs["Amazon S3"].sum().value == 2.0d
+    }
+
+    def "Check costs by tag are fetched with one grouped request"() {
+        when:
+        def costs = costExplorer.during(TimeRange.YESTERDAY).getCostsByTag("team")
+
+        then:
+        1 * client.getCostAndUsage(_) >> { GetCostAndUsageRequest request ->
+            assert request.groupBy()[0].type() == GroupDefinitionType.TAG
+            assert request.groupBy()[0].key() == "team"
+            response(group('team$search', "1"), group('team$', "2"))
+        }
+
+        and: "costs without the tag have the empty value"
+        costs.keySet() as List == ["", "search"]
+        costs["search"].sum().value == 1.0d
+    }
+
+    def "Check costs by tag require a key"() {
+        when:
+        costExplorer.getCostsByTag("")
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * client.getCostAndUsage(_)
+    }
+
+    def "Check most expensive instances are selected from one grouped request"() {
+        when:
+        def instances = costExplorer.during(TimeRange.YESTERDAY).getMostExpensiveInstances(2)
+
+        then:
+        0 * client.getTags(_)
+        1 * client.getCostAndUsage(_) >> { GetCostAndUsageRequest request ->
+            assert request.filter() == null
+            assert request.groupBy()[0].type() == GroupDefinitionType.TAG
+            assert request.groupBy()[0].key() == "Name"
+            response(group('Name$test-0', "1"), group('Name$test-1', "3"), group('Name$test-2', "2"))
+        }
+
+        and:
+        instances*.name == ["test-1", "test-2"]
+        instances[0].cost.value == 3.0d
+    }
+
+    def "Check most expensive instances without matching instances"() {
+        when:
+        def instances = costExplorer.forInstance("test-*").getMostExpensiveInstances(10)
+
+        then:
+        1 * client.getTags(_) >> GetTagsResponse.builder().build()
+        0 * client.getCostAndUsage(_)
+
+        and:
+        instances.isEmpty()
+    }
+
+    def "Check most expensive instances require a positive limit"() {
+        when:
+        costExplorer.getMostExpensiveInstances(0)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * client.getCostAndUsage(_)
+    }
+
     def "Check supports AWS only"() {
         expect:
         costExplorer.supports(CloudProvider.AMAZON_AWS)
@@ -130,4 +469,20 @@ class AwsCostExplorerSpec extends Specification {
         and:
         !costExplorer.supports(CloudProvider.MICROSOFT_AZURE)
     }
+
+    static GetCostAndUsageResponse response(Group... groups) {
+        GetCostAndUsageResponse.builder()
+                .resultsByTime(ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(groups)
+                        .build())
+                .build()
+    }
+
+    static Group group(String key, String amount) {
+        Group.builder()
+                .keys(key)
+                .metrics(Collections.singletonMap("UnblendedCost", MetricValue.builder().amount(amount).unit("USD").build()))
+                .build()
+    }
 }
@@ -19,6 +19,7 @@ import de.qaware.cloud.cost.CloudProvider
 import de.qaware.cloud.cost.CostExplorer
 import de.qaware.cloud.cost.TimeSeries
 import de.qaware.cloud.cost.ValueWithUnit
+import de.qaware.cloud.cost.aws.prefetch.PrefetchCosts
 import spock.lang.Requires
 import spock.lang.Shared
 import spock.lang.Specification
@@ -30,6 +31,11 @@ import static de.qaware.cloud.cost.TimeRange.*
 import static de.qaware.cloud.cost.aws.AwsUsage.EC2_RUNNING_HOURS
 
 @Requires({ sys['aws.access.key'] && sys['aws.secret.key'] })
+@PrefetchCosts.List([
+        @PrefetchCosts(during = LAST_30_DAYS),
+        @PrefetchCosts(during = LAST_30_DAYS, instance = "pair-int-*"),
+        @PrefetchCosts(during = LAST_7_DAYS, service = "Amazon Elastic *")
+])
 class CloudCostFitnessSpec extends Specification {
 
     @Shared
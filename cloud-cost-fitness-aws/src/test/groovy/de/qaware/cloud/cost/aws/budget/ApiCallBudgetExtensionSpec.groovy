@@ -0,0 +1,128 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation
+import de.qaware.cloud.cost.aws.instrument.Instrumentation
+import de.qaware.cloud.cost.aws.prefetch.PrefetchCostsExtension
+import org.junit.jupiter.api.extension.ExtensionContext
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.function.Supplier
+
+class ApiCallBudgetExtensionSpec extends Specification {
+    @Subject
+    ApiCallBudgetExtension extension = new ApiCallBudgetExtension()
+
+    def "checks the budget of a test method"() {
+        given: "the context of a budgeted test"
+        def context = context(BudgetedTest, BudgetedTest.getDeclaredMethod("checksTheCosts"))
+
+        when: "the test sends the budgeted requests"
+        extension.beforeEach(context)
+        send(2)
+        extension.afterEach(context)
+
+        then: "the test passes"
+        notThrown(ApiCallBudgetExceededError)
+
+        when: "the test sends more requests"
+        extension.beforeEach(context)
+        send(3)
+        extension.afterEach(context)
+
+        then: "the test fails"
+        def e = thrown(ApiCallBudgetExceededError)
+        e.message.startsWith("checksTheCosts() sent 3 requests")
+    }
+
+    def "checks the budget of a test class after all tests"() {
+        given: "the context of a budgeted test class"
+        def context = context(BudgetedTest, null)
+
+        when: "the tests send more requests than the class budget"
+        extension.beforeAll(context)
+        send(6)
+
+        then: "the tests are not affected"
+        notThrown(ApiCallBudgetExceededError)
+
+        when: "all tests are done"
+        extension.afterAll(context)
+
+        then: "the test class fails"
+        thrown ApiCallBudgetExceededError
+    }
+
+    def "counts the requests of an extension running before all tests first"() {
+        given: "the context of a budgeted test class"
+        def context = context(BudgetedTest, null)
+
+        when: "the prefetching extension runs before the budget extension"
+        new PrefetchCostsExtension().beforeAll(context)
+        send(4)
+        extension.beforeAll(context)
+        send(2)
+        extension.afterAll(context)
+
+        then: "the requests of both are counted once"
+        def e = thrown(ApiCallBudgetExceededError)
+        e.message.startsWith("BudgetedTest sent 6 requests")
+    }
+
+    def "ignores tests without budget"() {
+        given: "the context of a test without budget"
+        def context = context(BudgetedTest, BudgetedTest.getDeclaredMethod("checksTheNames"))
+
+        when: "the test sends requests"
+        extension.beforeEach(context)
+        send(10)
+        extension.afterEach(context)
+
+        then: "the test passes"
+        notThrown(ApiCallBudgetExceededError)
+    }
+
+    ExtensionContext context(Class<?> testClass, java.lang.reflect.Method testMethod) {
+        def values = [:]
+        def store = Stub(ExtensionContext.Store)
+        store.put(_, _) >> { key, value -> values[key] = value }
+        store.remove(_, _) >> { key, type -> values.remove(key) }
+        store.getOrComputeIfAbsent(_, _, _) >> { key, creator, type -> values.computeIfAbsent(key, creator) }
+
+        def context = Stub(ExtensionContext)
+        context.getStore(_) >> store
+        context.getRequiredTestClass() >> testClass
+        context.getTestMethod() >> Optional.ofNullable(testMethod)
+        context.getDisplayName() >> (testMethod ? testMethod.name + "()" : testClass.simpleName)
+        context
+    }
+
+    static void send(int requests) {
+        requests.times { Instrumentation.shared().record(ApiOperation.GET_COST_AND_USAGE, { "response" } as Supplier) }
+    }
+
+    @ApiCallBudget(5)
+    static class BudgetedTest {
+        @ApiCallBudget(2)
+        void checksTheCosts() {
+        }
+
+        void checksTheNames() {
+        }
+    }
+}
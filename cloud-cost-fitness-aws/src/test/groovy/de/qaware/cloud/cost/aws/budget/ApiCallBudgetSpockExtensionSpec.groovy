@@ -0,0 +1,84 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget
+
+import spock.lang.Specification
+import spock.util.EmbeddedSpecRunner
+
+class ApiCallBudgetSpockExtensionSpec extends Specification {
+    EmbeddedSpecRunner runner = new EmbeddedSpecRunner(throwFailure: false)
+
+    def "fails the iterations exceeding the budget of a feature"() {
+        when: "a spec with a budgeted feature is run"
+        def result = runner.runWithImports("""
+            import de.qaware.cloud.cost.aws.budget.ApiCallBudget
+            import de.qaware.cloud.cost.aws.budget.ApiCallBudgetExtensionSpec
+
+            class BudgetedSpec extends Specification {
+                @Unroll
+                @ApiCallBudget(2)
+                def "sends #requests requests"() {
+                    when:
+                    ApiCallBudgetExtensionSpec.send(requests)
+
+                    then:
+                    noExceptionThrown()
+
+                    where:
+                    requests << [1, 2, 3]
+                }
+            }
+        """)
+
+        then: "only the iteration exceeding the budget fails"
+        result.runCount == 3
+        result.failureCount == 1
+        result.failures[0].exception instanceof ApiCallBudgetExceededError
+        result.failures[0].exception.message.contains("sent 3 requests")
+    }
+
+    def "fails a spec exceeding its budget"() {
+        when: "a budgeted spec is run"
+        def result = runner.runWithImports("""
+            import de.qaware.cloud.cost.aws.budget.ApiCallBudget
+            import de.qaware.cloud.cost.aws.budget.ApiCallBudgetExtensionSpec
+
+            @ApiCallBudget(3)
+            class BudgetedSpec extends Specification {
+                def "sends two requests"() {
+                    when:
+                    ApiCallBudgetExtensionSpec.send(2)
+
+                    then:
+                    noExceptionThrown()
+                }
+
+                def "sends two more requests"() {
+                    when:
+                    ApiCallBudgetExtensionSpec.send(2)
+
+                    then:
+                    noExceptionThrown()
+                }
+            }
+        """)
+
+        then: "the spec fails after all features passed"
+        result.failureCount == 1
+        result.failures[0].exception instanceof ApiCallBudgetExceededError
+        result.failures[0].exception.message.contains("sent 4 requests")
+    }
+}
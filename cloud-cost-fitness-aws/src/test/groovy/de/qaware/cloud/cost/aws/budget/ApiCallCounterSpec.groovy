@@ -0,0 +1,128 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.budget
+
+import de.qaware.cloud.cost.aws.instrument.ApiOperation
+import de.qaware.cloud.cost.aws.instrument.Instrumentation
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+class ApiCallCounterSpec extends Specification {
+    Instrumentation instrumentation = new Instrumentation()
+
+    def "counts the successful requests while started"() {
+        given: "a started counter"
+        def counter = ApiCallCounter.start(instrumentation, AllOperations, true, AllOperations.getAnnotation(ApiCallBudget))
+
+        when: "requests are sent before and after it is stopped"
+        send(ApiOperation.GET_COST_AND_USAGE)
+        send(ApiOperation.GET_TAGS)
+        send(ApiOperation.GET_TAGS, false)
+        counter.stop()
+        send(ApiOperation.GET_TAGS)
+
+        then: "only the successful requests in between are counted"
+        counter.requests == 2
+
+        when: "the budget is checked"
+        counter.check("test")
+
+        then: "it is not exceeded"
+        notThrown(ApiCallBudgetExceededError)
+    }
+
+    def "counts the declared operations only"() {
+        given: "a counter for cost requests"
+        def counter = ApiCallCounter.start(instrumentation, CostRequestsOnly, true, CostRequestsOnly.getAnnotation(ApiCallBudget))
+
+        when: "cost and tag requests are sent"
+        2.times { send(ApiOperation.GET_COST_AND_USAGE) }
+        5.times { send(ApiOperation.GET_TAGS) }
+
+        then: "only the cost requests are counted"
+        counter.requests == 2
+    }
+
+    def "fails if the budget is exceeded"() {
+        given: "a counter with a budget of two requests"
+        def counter = ApiCallCounter.start(instrumentation, AllOperations, true, AllOperations.getAnnotation(ApiCallBudget))
+
+        when: "three requests are sent"
+        2.times { send(ApiOperation.GET_COST_AND_USAGE) }
+        send(ApiOperation.GET_TAGS)
+        counter.check("checks the costs")
+
+        then: "the failure names the test and the requests per operation"
+        def e = thrown(ApiCallBudgetExceededError)
+        e.message == "checks the costs sent 3 requests to the Cost Explorer API, but the budget is 2 " +
+                "(GetCostAndUsage: 2, GetTags: 1)"
+    }
+
+    def "fails to count the requests of tests running concurrently"() {
+        given: "the budget of a test class"
+        def budget = AllOperations.getAnnotation(ApiCallBudget)
+        def classCounter = ApiCallCounter.start(instrumentation, AllOperations, false, budget)
+
+        when: "a test of the class is counted"
+        def testCounter = ApiCallCounter.start(instrumentation, AllOperations, true, budget)
+
+        then: "the counters overlap"
+        notThrown(IllegalStateException)
+
+        when: "a test of another class is counted concurrently"
+        ApiCallCounter.start(instrumentation, CostRequestsOnly, true, budget)
+
+        then: "an exception is thrown"
+        def e = thrown(IllegalStateException)
+        e.message.contains("runs concurrently")
+
+        when: "another test of the class is counted concurrently"
+        ApiCallCounter.start(instrumentation, AllOperations, true, budget)
+
+        then: "an exception is thrown"
+        thrown IllegalStateException
+
+        when: "the counters are stopped"
+        testCounter.stop()
+        classCounter.stop()
+        ApiCallCounter.start(instrumentation, CostRequestsOnly, false, budget).stop()
+
+        then: "the requests of another class are counted"
+        notThrown(IllegalStateException)
+    }
+
+    void send(ApiOperation operation, boolean successful = true) {
+        try {
+            instrumentation.record(operation, {
+                if (!successful) {
+                    throw new IllegalStateException("throttled")
+                }
+                "response"
+            } as Supplier)
+        } catch (IllegalStateException ignored) {
+            // failed requests are rethrown by the instrumentation
+        }
+    }
+
+    @ApiCallBudget(2)
+    static class AllOperations {
+    }
+
+    @ApiCallBudget(value = 2, operations = ApiOperation.GET_COST_AND_USAGE)
+    static class CostRequestsOnly {
+    }
+}
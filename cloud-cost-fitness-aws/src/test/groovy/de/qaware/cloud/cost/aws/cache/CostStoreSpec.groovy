@@ -0,0 +1,114 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cache
+
+import de.qaware.cloud.cost.ValueWithUnit
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.LocalDate
+
+class CostStoreSpec extends Specification {
+    Path directory = Files.createTempDirectory("cost-store")
+
+    @Subject
+    CostStore store = new CostStore(directory, 2)
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "loads nothing for an unknown key"() {
+        expect: "an empty result"
+        store.load("unknown").isEmpty()
+    }
+
+    def "stores and loads daily values"() {
+        given: "some daily values"
+        def values = [
+                new ValueWithUnit(LocalDate.parse("2020-08-01"), 10.5d, "USD"),
+                new ValueWithUnit(LocalDate.parse("2020-08-02"), 0.25d, "USD")
+        ]
+
+        when: "the values are stored and loaded again"
+        store.store("key", values)
+        def result = store.load("key")
+
+        then: "the values are loaded by day"
+        result.keySet().toList() == [LocalDate.parse("2020-08-01"), LocalDate.parse("2020-08-02")]
+        result[LocalDate.parse("2020-08-01")].value == 10.5d
+        result[LocalDate.parse("2020-08-02")].unit == "USD"
+
+        and: "other keys are not affected"
+        store.load("other").isEmpty()
+    }
+
+    def "stores and loads monthly values"() {
+        given: "a monthly value"
+        def values = [new ValueWithUnit(LocalDate.parse("2020-08-01"), LocalDate.parse("2020-08-31"), 10.5d, "USD")]
+
+        when: "the value is stored and loaded again"
+        store.store("key", values)
+        def result = store.load("key")
+
+        then: "the value keeps its date interval"
+        result[LocalDate.parse("2020-08-01")].dateFrom == LocalDate.parse("2020-08-01")
+        result[LocalDate.parse("2020-08-01")].dateTo == LocalDate.parse("2020-08-31")
+        result[LocalDate.parse("2020-08-01")].value == 10.5d
+    }
+
+    def "treats a corrupt file like a missing one"() {
+        given: "a stored value"
+        store.store("key", [new ValueWithUnit(LocalDate.parse("2020-08-01"), 1.0d, "USD")])
+
+        when: "the file is corrupted"
+        Files.list(directory).each { it.text = "garbage" }
+
+        then: "nothing is loaded"
+        store.load("key").isEmpty()
+    }
+
+    def "keeps the values of different accounts apart"() {
+        given: "the stores of two access keys and a simulator sharing one directory"
+        def production = store.forAccount("production", null)
+        def staging = store.forAccount("staging", null)
+        def simulator = store.forAccount("production", URI.create("http://localhost:4566"))
+
+        when: "the values of one account are stored"
+        production.store("key", [new ValueWithUnit(LocalDate.parse("2020-08-01"), 1.0d, "USD")])
+
+        then: "they are loaded for this account only"
+        production.load("key").size() == 1
+        staging.load("key").isEmpty()
+        simulator.load("key").isEmpty()
+        store.load("key").isEmpty()
+
+        and: "the same account finds them again"
+        store.forAccount("production", null).load("key").size() == 1
+    }
+
+    def "determines the first mutable day"() {
+        expect: "the number of mutable days before the end"
+        store.getFirstMutableDay(LocalDate.parse("2020-08-10")) == LocalDate.parse("2020-08-08")
+    }
+
+    def "is not configured without system property"() {
+        expect: "no default store"
+        CostStore.fromSystemProperties() == null
+    }
+}
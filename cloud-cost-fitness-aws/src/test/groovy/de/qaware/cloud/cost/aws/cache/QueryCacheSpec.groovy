@@ -0,0 +1,113 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cache
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+
+class QueryCacheSpec extends Specification {
+    Instant now = Instant.parse("2021-01-01T00:00:00Z")
+    Clock clock = Stub() {
+        instant() >> { now }
+    }
+
+    @Subject
+    QueryCache<String, String> cache = new QueryCache<>(Duration.ofMinutes(10), 2, clock)
+
+    def "loads a value only once"() {
+        given: "a loader"
+        def loader = Mock(java.util.function.Supplier)
+
+        when: "the same key is requested twice"
+        def first = cache.get("key", loader)
+        def second = cache.get("key", loader)
+
+        then: "the loader is called once"
+        1 * loader.get() >> "value"
+
+        and: "both requests return the value"
+        first == "value"
+        second == "value"
+
+        and: "the statistics are correct"
+        cache.statistics.hits == 1
+        cache.statistics.misses == 1
+        cache.statistics.hitRate == 0.5d
+    }
+
+    def "reloads expired values"() {
+        given: "a cached value"
+        cache.get("key") { "old" }
+
+        when: "the value expires"
+        now = now.plus(Duration.ofMinutes(11))
+
+        then: "it is loaded again"
+        cache.get("key") { "new" } == "new"
+        cache.statistics.evictions == 1
+    }
+
+    def "evicts the least recently used value"() {
+        given: "a full cache"
+        cache.get("a") { "1" }
+        cache.get("b") { "2" }
+
+        and: "a recently used value"
+        cache.get("a") { "unused" }
+
+        when: "another value is cached"
+        cache.get("c") { "3" }
+
+        then: "the least recently used value is evicted"
+        cache.size() == 2
+        cache.get("a") { "reloaded" } == "1"
+        cache.get("b") { "reloaded" } == "reloaded"
+    }
+
+    def "caches nothing with maximum size zero"() {
+        given: "a disabled cache"
+        def disabled = new QueryCache<String, String>(Duration.ofMinutes(10), 0)
+
+        when: "a value is requested"
+        disabled.get("key") { "value" }
+
+        then: "nothing is cached"
+        disabled.size() == 0
+    }
+
+    def "rejects a negative maximum size"() {
+        when: "a cache with negative size is created"
+        new QueryCache<String, String>(Duration.ofMinutes(10), -1)
+
+        then: "an exception is thrown"
+        thrown(IllegalArgumentException)
+    }
+
+    def "clears all values"() {
+        given: "a cached value"
+        cache.get("key") { "value" }
+
+        when: "the cache is cleared"
+        cache.clear()
+
+        then: "the cache is empty"
+        cache.size() == 0
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import de.qaware.cloud.cost.TimeRange
+import de.qaware.cloud.cost.aws.cache.QueryCache
+import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher
+import de.qaware.cloud.cost.aws.fetcher.DimensionalValuesFetcher
+import de.qaware.cloud.cost.aws.fetcher.TagNamesFetcher
+import de.qaware.cloud.cost.aws.instrument.ApiCallListener
+import de.qaware.cloud.cost.aws.instrument.ApiOperation
+import de.qaware.cloud.cost.aws.instrument.Instrumentation
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.Specification
+import spock.lang.Subject
+
+class CachingCostExplorerClientSpec extends Specification {
+    CostExplorerClient delegate = Mock()
+
+    @Subject
+    CachingCostExplorerClient client = new CachingCostExplorerClient(delegate, new QueryCache<>())
+
+    def "answers repeated cost queries from the cache"() {
+        when: "the same costs are fetched twice"
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+
+        then: "the delegate is called once"
+        1 * delegate.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+
+        and: "the statistics are correct"
+        client.cache.statistics.hits == 1
+        client.cache.statistics.misses == 1
+    }
+
+    def "distinguishes different queries"() {
+        when: "costs with different filters are fetched"
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+        CostAndUsageFetcher.withClient(client).filterByService("EC2").during(TimeRange.LAST_30_DAYS).fetchCost()
+
+        then: "the delegate is called for each query"
+        2 * delegate.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+    }
+
+    def "answers repeated name queries from the cache"() {
+        when: "the same names are fetched twice"
+        2.times {
+            TagNamesFetcher.withClient(client).searchFor("test").during(TimeRange.YESTERDAY).fetch()
+            DimensionalValuesFetcher.withClient(client).searchFor("EC2").during(TimeRange.YESTERDAY).fetchServices()
+        }
+
+        then: "the delegate is called once per query"
+        1 * delegate.getTags(_) >> GetTagsResponse.builder().build()
+        1 * delegate.getDimensionValues(_) >> GetDimensionValuesResponse.builder().build()
+    }
+
+    def "reports the cache hits to the instrumentation"() {
+        given: "a client with its own instrumentation"
+        def listener = Mock(ApiCallListener)
+        def instrumentation = new Instrumentation()
+        instrumentation.addListener(listener)
+        client = new CachingCostExplorerClient(delegate, new QueryCache<>(), instrumentation)
+
+        when: "the same costs are fetched three times"
+        3.times { CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost() }
+
+        then: "the requests answered from the cache are reported"
+        1 * delegate.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+        2 * listener.onCacheHit(ApiOperation.GET_COST_AND_USAGE)
+    }
+
+    def "forwards service name and close"() {
+        when: "the client is closed"
+        client.close()
+
+        then: "the delegate is closed"
+        1 * delegate.close()
+
+        when: "the service name is requested"
+        def name = client.serviceName()
+
+        then: "it is forwarded"
+        1 * delegate.serviceName() >> "ce"
+        name == "ce"
+    }
+}
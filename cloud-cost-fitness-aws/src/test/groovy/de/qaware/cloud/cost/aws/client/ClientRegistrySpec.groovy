@@ -0,0 +1,122 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials
+import software.amazon.awssdk.regions.Region
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.GetTagsRequest
+import software.amazon.awssdk.services.costexplorer.model.GetTagsResponse
+import spock.lang.Specification
+import spock.util.environment.RestoreSystemProperties
+
+class ClientRegistrySpec extends Specification {
+    def credentials = AwsBasicCredentials.create("access", "secret")
+    def clients = (0..<3).collect { Mock(CostExplorerClient) }
+    def created = []
+    def registry = new ClientRegistry(ClientRegistry.HttpClientType.APACHE, { key ->
+        def client = clients[created.size()]
+        created << client
+        client
+    })
+
+    def "creates the client on the first request"() {
+        given: "a client of the registry"
+        def client = registry.getClient(credentials, Region.US_EAST_1, null)
+
+        expect: "no client is created up front"
+        created.isEmpty()
+        registry.size() == 0
+
+        when: "the first request is sent"
+        client.getTags(GetTagsRequest.builder().build())
+
+        then: "the client is created and called"
+        created.size() == 1
+        1 * clients[0].getTags(_) >> GetTagsResponse.builder().build()
+    }
+
+    def "shares the client of equal credentials"() {
+        given: "two clients with equal credentials"
+        def first = registry.getClient(credentials, Region.US_EAST_1, null)
+        def second = registry.getClient(AwsBasicCredentials.create("access", "secret"), Region.US_EAST_1, null)
+
+        when: "both send requests"
+        first.getTags(GetTagsRequest.builder().build())
+        second.getTags(GetTagsRequest.builder().build())
+
+        then: "one client is created for both"
+        created.size() == 1
+        2 * clients[0].getTags(_) >> GetTagsResponse.builder().build()
+    }
+
+    def "creates separate clients per credentials and endpoint"() {
+        when: "clients with different credentials and endpoints send requests"
+        [
+                registry.getClient(credentials, Region.US_EAST_1, null),
+                registry.getClient(AwsBasicCredentials.create("other", "secret"), Region.US_EAST_1, null),
+                registry.getClient(credentials, Region.US_EAST_1, URI.create("http://localhost:4566"))
+        ].each { it.getTags(GetTagsRequest.builder().build()) }
+
+        then: "each gets its own client"
+        created.size() == 3
+        registry.size() == 3
+    }
+
+    def "closes the created clients with the registry"() {
+        given: "a client which was used"
+        def client = registry.getClient(credentials, Region.US_EAST_1, null)
+        client.serviceName()
+        client.getTags(GetTagsRequest.builder().build())
+
+        when: "the client itself is closed"
+        client.close()
+
+        then: "the shared client stays open"
+        0 * clients[0].close()
+
+        when: "the registry is closed"
+        registry.close()
+
+        then: "the shared client is closed"
+        1 * clients[0].close()
+        registry.size() == 0
+
+        when: "a new client is used"
+        registry.getClient(credentials, Region.US_EAST_1, URI.create("http://localhost:4566"))
+                .getTags(GetTagsRequest.builder().build())
+
+        then: "an exception is thrown"
+        thrown IllegalStateException
+    }
+
+    @RestoreSystemProperties
+    def "reads the HTTP client type from the system properties"() {
+        given: "the system property"
+        if (property != null) {
+            System.setProperty(ClientRegistry.HTTP_CLIENT_PROPERTY, property)
+        }
+
+        expect: "the configured HTTP client type"
+        ClientRegistry.HttpClientType.fromSystemProperties() == type
+
+        where:
+        property         || type
+        null             || ClientRegistry.HttpClientType.APACHE
+        "apache"         || ClientRegistry.HttpClientType.APACHE
+        "url-connection" || ClientRegistry.HttpClientType.URL_CONNECTION
+    }
+}
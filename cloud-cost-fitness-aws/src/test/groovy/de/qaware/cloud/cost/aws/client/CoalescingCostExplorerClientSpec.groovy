@@ -0,0 +1,121 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+class CoalescingCostExplorerClientSpec extends Specification {
+    CostExplorerClient delegate = Mock()
+
+    @Subject
+    CoalescingCostExplorerClient client = new CoalescingCostExplorerClient(delegate)
+
+    @AutoCleanup("shutdownNow")
+    ExecutorService executor = Executors.newFixedThreadPool(2)
+
+    CountDownLatch started = new CountDownLatch(1)
+    CountDownLatch release = new CountDownLatch(1)
+
+    GetCostAndUsageRequest request = GetCostAndUsageRequest.builder()
+            .timePeriod(DateInterval.builder().start("2020-11-09").end("2020-11-10").build())
+            .build()
+
+    def "shares one call between concurrent equal requests"() {
+        given: "a response"
+        def response = GetCostAndUsageResponse.builder().build()
+
+        when: "two equal requests are sent while the first one is in flight"
+        def first = executor.submit({ client.getCostAndUsage(request) } as Callable)
+        started.await()
+        def second = executor.submit({ client.getCostAndUsage(request.toBuilder().build()) } as Callable)
+        awaitCoalesced()
+        release.countDown()
+
+        then: "the delegate is called once"
+        1 * delegate.getCostAndUsage(request) >> { started.countDown(); release.await(); response }
+
+        and: "both requests get the same response"
+        first.get().is(response)
+        second.get().is(response)
+        client.coalescedCount == 1
+    }
+
+    def "shares the exception between concurrent equal requests"() {
+        when: "two equal requests are sent while the first one is in flight"
+        def first = executor.submit({ client.getCostAndUsage(request) } as Callable)
+        started.await()
+        def second = executor.submit({ client.getCostAndUsage(request) } as Callable)
+        awaitCoalesced()
+        release.countDown()
+
+        then: "the delegate is called once and fails"
+        1 * delegate.getCostAndUsage(request) >> {
+            started.countDown()
+            release.await()
+            throw LimitExceededException.builder().message("Rate exceeded").build()
+        }
+
+        when: "the results are requested"
+        first.get()
+
+        then: "the first request fails"
+        def firstException = thrown(ExecutionException)
+        firstException.cause instanceof LimitExceededException
+
+        when: "the result of the second request is requested"
+        second.get()
+
+        then: "the second request fails with the same exception"
+        def secondException = thrown(ExecutionException)
+        secondException.cause.is(firstException.cause)
+    }
+
+    def "calls the delegate again for subsequent requests"() {
+        when: "two equal requests are sent one after another"
+        client.getCostAndUsage(request)
+        client.getCostAndUsage(request)
+
+        then: "the delegate is called twice"
+        2 * delegate.getCostAndUsage(request) >> GetCostAndUsageResponse.builder().build()
+        client.coalescedCount == 0
+    }
+
+    def "does not share calls between different requests"() {
+        when: "tag and service names are requested"
+        client.getTags(GetTagsRequest.builder().tagKey("Name").build())
+        client.getDimensionValues(GetDimensionValuesRequest.builder().dimension(Dimension.SERVICE).build())
+
+        then: "the delegate is called for each request"
+        1 * delegate.getTags(_) >> GetTagsResponse.builder().build()
+        1 * delegate.getDimensionValues(_) >> GetDimensionValuesResponse.builder().build()
+    }
+
+    void awaitCoalesced() {
+        while (client.coalescedCount == 0) {
+            Thread.sleep(1)
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import de.qaware.cloud.cost.TimeRange
+import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher
+import de.qaware.cloud.cost.aws.fetcher.DimensionalValuesFetcher
+import de.qaware.cloud.cost.aws.fetcher.TagNamesFetcher
+import de.qaware.cloud.cost.aws.instrument.ApiCallListener
+import de.qaware.cloud.cost.aws.instrument.ApiOperation
+import de.qaware.cloud.cost.aws.instrument.Instrumentation
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.CompletableFuture
+
+class InstrumentedCostExplorerAsyncClientSpec extends Specification {
+    CostExplorerAsyncClient delegate = Mock()
+    ApiCallListener listener = Mock()
+    Instrumentation instrumentation = new Instrumentation()
+
+    @Subject
+    InstrumentedCostExplorerAsyncClient client = new InstrumentedCostExplorerAsyncClient(delegate, instrumentation)
+
+    void setup() {
+        instrumentation.addListener(listener)
+    }
+
+    def "records every request"() {
+        when: "costs and names are fetched"
+        CostAndUsageFetcher.withAsyncClient(client).during(TimeRange.LAST_30_DAYS).fetchCostAsync().join()
+        TagNamesFetcher.withAsyncClient(client).during(TimeRange.LAST_30_DAYS).fetchAsync().join()
+        DimensionalValuesFetcher.withAsyncClient(client).during(TimeRange.LAST_30_DAYS).fetchServicesAsync().join()
+
+        then: "each request is forwarded and recorded"
+        1 * delegate.getCostAndUsage(_) >> CompletableFuture.completedFuture(GetCostAndUsageResponse.builder().build())
+        1 * delegate.getTags(_) >> CompletableFuture.completedFuture(GetTagsResponse.builder().build())
+        1 * delegate.getDimensionValues(_) >> CompletableFuture.completedFuture(GetDimensionValuesResponse.builder().build())
+        1 * listener.onRequest(ApiOperation.GET_COST_AND_USAGE, { it >= 0 }, true)
+        1 * listener.onRequest(ApiOperation.GET_TAGS, { it >= 0 }, true)
+        1 * listener.onRequest(ApiOperation.GET_DIMENSION_VALUES, { it >= 0 }, true)
+    }
+
+    def "records failed requests"() {
+        when: "the request fails"
+        def response = client.getTags(GetTagsRequest.builder().build())
+
+        then: "the failure is recorded and passed on"
+        1 * delegate.getTags(_) >> CompletableFuture.failedFuture(new IllegalStateException("failed"))
+        1 * listener.onRequest(ApiOperation.GET_TAGS, _, false)
+        response.isCompletedExceptionally()
+    }
+}
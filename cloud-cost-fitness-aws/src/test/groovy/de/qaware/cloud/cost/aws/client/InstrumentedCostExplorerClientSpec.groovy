@@ -0,0 +1,78 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import de.qaware.cloud.cost.TimeRange
+import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher
+import de.qaware.cloud.cost.aws.fetcher.DimensionalValuesFetcher
+import de.qaware.cloud.cost.aws.fetcher.TagNamesFetcher
+import de.qaware.cloud.cost.aws.instrument.ApiCallListener
+import de.qaware.cloud.cost.aws.instrument.ApiOperation
+import de.qaware.cloud.cost.aws.instrument.Instrumentation
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.Specification
+import spock.lang.Subject
+
+class InstrumentedCostExplorerClientSpec extends Specification {
+    CostExplorerClient delegate = Mock()
+    ApiCallListener listener = Mock()
+    Instrumentation instrumentation = new Instrumentation()
+
+    @Subject
+    InstrumentedCostExplorerClient client = new InstrumentedCostExplorerClient(delegate, instrumentation)
+
+    void setup() {
+        instrumentation.addListener(listener)
+    }
+
+    def "records every request"() {
+        when: "costs and names are fetched"
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+        TagNamesFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetch()
+        DimensionalValuesFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchServices()
+
+        then: "each request is forwarded and recorded"
+        1 * delegate.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+        1 * delegate.getTags(_) >> GetTagsResponse.builder().build()
+        1 * delegate.getDimensionValues(_) >> GetDimensionValuesResponse.builder().build()
+        1 * listener.onRequest(ApiOperation.GET_COST_AND_USAGE, { it >= 0 }, true)
+        1 * listener.onRequest(ApiOperation.GET_TAGS, { it >= 0 }, true)
+        1 * listener.onRequest(ApiOperation.GET_DIMENSION_VALUES, { it >= 0 }, true)
+    }
+
+    def "records every page"() {
+        when: "the tags are fetched"
+        def tags = TagNamesFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetch()
+
+        then: "each page is recorded"
+        2 * delegate.getTags(_) >>
+                GetTagsResponse.builder().tags("a").nextPageToken("next").build() >>
+                GetTagsResponse.builder().tags("b").build()
+        2 * listener.onRequest(ApiOperation.GET_TAGS, _, true)
+        tags == ["a", "b"]
+    }
+
+    def "records failed requests"() {
+        when: "the request fails"
+        client.getTags(GetTagsRequest.builder().build())
+
+        then: "the failure is recorded and rethrown"
+        1 * delegate.getTags(_) >> { throw new IllegalStateException("failed") }
+        1 * listener.onRequest(ApiOperation.GET_TAGS, _, false)
+        thrown IllegalStateException
+    }
+}
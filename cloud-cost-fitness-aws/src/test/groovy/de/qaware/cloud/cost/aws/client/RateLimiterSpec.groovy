@@ -0,0 +1,118 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.TimeUnit
+import java.util.function.LongConsumer
+import java.util.function.LongSupplier
+
+class RateLimiterSpec extends Specification {
+    long now = 0
+    List<Long> sleeps = []
+
+    @Subject
+    RateLimiter rateLimiter = new RateLimiter(2.0d, 0.5d, 4.0d, 2,
+            { now } as LongSupplier,
+            { long nanos -> sleeps << nanos; now += nanos } as LongConsumer)
+
+    def "sends a burst of requests without waiting"() {
+        when: "two requests are sent"
+        2.times { rateLimiter.acquire() }
+
+        then: "no request waits"
+        sleeps.isEmpty()
+    }
+
+    def "limits the rate after a burst"() {
+        when: "four requests are sent"
+        4.times { rateLimiter.acquire() }
+
+        then: "the requests after the burst wait for the rate"
+        sleeps == [TimeUnit.MILLISECONDS.toNanos(500), TimeUnit.MILLISECONDS.toNanos(500)]
+    }
+
+    def "refills the tokens over time"() {
+        given: "an exhausted burst"
+        2.times { rateLimiter.acquire() }
+
+        when: "one second passes"
+        now += TimeUnit.SECONDS.toNanos(1)
+        2.times { rateLimiter.acquire() }
+
+        then: "the requests do not wait"
+        sleeps.isEmpty()
+    }
+
+    def "halves the rate when throttled"() {
+        when: "two requests are throttled one after another"
+        rateLimiter.onThrottle(rateLimiter.acquire())
+        rateLimiter.onThrottle(rateLimiter.acquire())
+
+        then: "the rate is reduced to the minimum"
+        rateLimiter.rate == 0.5d
+
+        when: "another request is throttled"
+        rateLimiter.onThrottle(rateLimiter.acquire())
+
+        then: "the rate does not fall below the minimum"
+        rateLimiter.rate == 0.5d
+    }
+
+    def "halves the rate only once for simultaneous throttles"() {
+        given: "a rate limiter with a low minimum"
+        RateLimiter limiter = new RateLimiter(8.0d, 0.2d, 20.0d, 8,
+                { now } as LongSupplier, { long nanos -> now += nanos } as LongConsumer)
+
+        and: "eight requests sent at once"
+        List<Long> permits = (1..8).collect { limiter.acquire() }
+
+        when: "all of them are throttled"
+        permits.each { limiter.onThrottle(it) }
+
+        then: "the rate is halved once"
+        limiter.rate == 4.0d
+
+        when: "a request sent after the decrease is throttled"
+        limiter.onThrottle(limiter.acquire())
+
+        then: "the rate is halved again"
+        limiter.rate == 2.0d
+    }
+
+    def "increases the rate after successful requests"() {
+        when: "many requests succeed"
+        100.times { rateLimiter.onSuccess() }
+
+        then: "the rate is increased up to the maximum"
+        rateLimiter.rate == 4.0d
+    }
+
+    def "throws an exception for invalid limits"() {
+        when: "a rate limiter with a minimum above the maximum is created"
+        new RateLimiter(1.0d, 5.0d, 2.0d, 1)
+
+        then: "an exception is thrown"
+        thrown IllegalArgumentException
+    }
+
+    def "provides a shared instance"() {
+        expect: "the same instance"
+        RateLimiter.shared().is(RateLimiter.shared())
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.client
+
+import de.qaware.cloud.cost.TimeRange
+import de.qaware.cloud.cost.aws.fetcher.CostAndUsageFetcher
+import de.qaware.cloud.cost.aws.fetcher.DimensionalValuesFetcher
+import de.qaware.cloud.cost.aws.fetcher.TagNamesFetcher
+import de.qaware.cloud.cost.aws.instrument.ApiCallListener
+import de.qaware.cloud.cost.aws.instrument.ApiOperation
+import de.qaware.cloud.cost.aws.instrument.Instrumentation
+import software.amazon.awssdk.core.exception.SdkClientException
+import software.amazon.awssdk.core.exception.SdkServiceException
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.util.function.LongConsumer
+
+class ThrottlingCostExplorerClientSpec extends Specification {
+    CostExplorerClient delegate = Mock()
+    RateLimiter rateLimiter = Mock()
+    List<Long> sleeps = []
+
+    @Subject
+    ThrottlingCostExplorerClient client = new ThrottlingCostExplorerClient(delegate, rateLimiter, 3,
+            Duration.ofMillis(100), Duration.ofMillis(150), { long nanos -> sleeps << nanos } as LongConsumer)
+
+    def "sends the requests through the rate limiter"() {
+        when: "costs and names are fetched"
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+        TagNamesFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetch()
+        DimensionalValuesFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchServices()
+
+        then: "each request acquires a permit and reports its success"
+        3 * rateLimiter.acquire()
+        3 * rateLimiter.onSuccess()
+        1 * delegate.getCostAndUsage(_) >> GetCostAndUsageResponse.builder().build()
+        1 * delegate.getTags(_) >> GetTagsResponse.builder().build()
+        1 * delegate.getDimensionValues(_) >> GetDimensionValuesResponse.builder().build()
+    }
+
+    def "retries throttled requests with backoff"() {
+        when: "the costs are fetched"
+        def costs = CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+
+        then: "the throttled request is retried"
+        2 * delegate.getCostAndUsage(_) >>
+                { throw LimitExceededException.builder().message("Rate exceeded").build() } >>
+                GetCostAndUsageResponse.builder().build()
+        1 * rateLimiter.onThrottle(_)
+        1 * rateLimiter.onSuccess()
+        costs.size() == 0
+
+        and: "the backoff is jittered below the base delay"
+        sleeps.size() == 1
+        sleeps[0] <= Duration.ofMillis(100).toNanos()
+    }
+
+    def "retries server and I/O errors"() {
+        when: "the tags are fetched"
+        TagNamesFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetch()
+
+        then: "the failed requests are retried without reducing the rate"
+        3 * delegate.getTags(_) >>
+                { throw SdkServiceException.builder().statusCode(503).build() } >>
+                { throw SdkClientException.builder().cause(new IOException("Connection reset")).build() } >>
+                GetTagsResponse.builder().build()
+        0 * rateLimiter.onThrottle(_)
+        sleeps.size() == 2
+        sleeps.every { it <= Duration.ofMillis(150).toNanos() }
+    }
+
+    def "gives up after the maximum number of attempts"() {
+        when: "the costs are fetched"
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+
+        then: "the request is attempted three times"
+        3 * delegate.getCostAndUsage(_) >> { throw LimitExceededException.builder().message("Rate exceeded").build() }
+        3 * rateLimiter.onThrottle(_)
+
+        and: "the exception is thrown"
+        thrown LimitExceededException
+    }
+
+    def "does not retry invalid requests"() {
+        when: "the costs are fetched"
+        CostAndUsageFetcher.withClient(client).during(TimeRange.LAST_30_DAYS).fetchCost()
+
+        then: "the request is attempted once"
+        1 * delegate.getCostAndUsage(_) >> { throw SdkServiceException.builder().statusCode(400).build() }
+        sleeps.isEmpty()
+
+        and: "the exception is thrown"
+        thrown SdkServiceException
+    }
+}
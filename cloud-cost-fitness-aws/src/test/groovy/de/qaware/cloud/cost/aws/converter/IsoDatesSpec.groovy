@@ -0,0 +1,56 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.converter
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Instant
+import java.time.LocalDate
+
+class IsoDatesSpec extends Specification {
+
+    def "parses dates like LocalDate"() {
+        expect: "the same epoch days for every day of several leap cycles"
+        (0..<3000).every {
+            def date = LocalDate.parse("1998-01-01").plusDays(it * 7)
+            IsoDates.toEpochDay(date.toString()) == date.toEpochDay()
+        }
+    }
+
+    @Unroll
+    def "leaves #date to the java.time parser"() {
+        expect:
+        IsoDates.toEpochDay(date) == IsoDates.NO_MATCH
+
+        where:
+        date << ["2021-02-29", "2020-04-31", "2020-13-01", "2020-00-10", "2020-1-01", "2020/01/01", "20x0-01-01"]
+    }
+
+    def "parses full hours"() {
+        expect:
+        IsoDates.toEpochHour("2020-08-01T13:00:00Z") == Instant.parse("2020-08-01T13:00:00Z").epochSecond.intdiv(3600)
+    }
+
+    @Unroll
+    def "leaves the timestamp #time to the java.time parser"() {
+        expect:
+        IsoDates.toEpochHour(time) == IsoDates.NO_MATCH
+
+        where:
+        time << ["2020-08-01T13:30:00Z", "2020-08-01T24:00:00Z", "2020-08-01T13:00:00+01:00", "2020-08-01"]
+    }
+}
@@ -15,6 +15,8 @@
  */
 package de.qaware.cloud.cost.aws.converter
 
+import de.qaware.cloud.cost.Granularity
+import de.qaware.cloud.cost.Metric
 import de.qaware.cloud.cost.TimeRange
 import de.qaware.cloud.cost.ValueWithUnit
 import software.amazon.awssdk.services.costexplorer.model.DateInterval
@@ -46,11 +48,64 @@ class RequestConverterSpec extends Specification {
         interval.end() == "2020-10-10"
 
         where:
-        timeRange               | start
-        TimeRange.LAST_6_MONTHS | "2020-04-10"
-        TimeRange.LAST_30_DAYS  | "2020-09-10"
-        TimeRange.LAST_7_DAYS   | "2020-10-03"
-        TimeRange.YESTERDAY     | "2020-10-09"
+        timeRange                | start
+        TimeRange.LAST_12_MONTHS | "2019-10-10"
+        TimeRange.LAST_6_MONTHS  | "2020-04-10"
+        TimeRange.LAST_30_DAYS   | "2020-09-10"
+        TimeRange.LAST_14_DAYS   | "2020-09-26"
+        TimeRange.LAST_7_DAYS    | "2020-10-03"
+        TimeRange.YESTERDAY      | "2020-10-09"
+    }
+
+    def "creates hourly date intervals with timestamps"() {
+        when: "an hourly date interval is created"
+        DateInterval interval = converter.createDateInterval(TimeRange.LAST_7_DAYS, Granularity.HOURLY)
+
+        then: "start and end are midnight timestamps"
+        interval.start() == LocalDate.now().minusDays(7).toString() + "T00:00:00Z"
+        interval.end() == LocalDate.now().toString() + "T00:00:00Z"
+    }
+
+    def "rejects hourly granularity beyond the last 14 days"() {
+        when:
+        converter.createDateInterval(TimeRange.LAST_30_DAYS, Granularity.HOURLY)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    @Unroll
+    def "converts granularity #granularity"() {
+        expect:
+        converter.convertGranularity(granularity).toString() == granularity.name()
+
+        where:
+        granularity << Granularity.values()
+    }
+
+    def "creates date intervals from explicit dates"() {
+        when: "a date interval is created"
+        DateInterval interval = converter.createDateInterval(parseDate("2020-10-01"), parseDate("2020-10-10"))
+
+        then: "the dates are correct"
+        interval.start() == "2020-10-01"
+        interval.end() == "2020-10-10"
+    }
+
+    @Unroll
+    def "converts metric #metric"() {
+        expect:
+        converter.convertMetric(metric) == name
+
+        where:
+        metric                         | name
+        Metric.UNBLENDED_COST          | "UnblendedCost"
+        Metric.BLENDED_COST            | "BlendedCost"
+        Metric.AMORTIZED_COST          | "AmortizedCost"
+        Metric.NET_UNBLENDED_COST      | "NetUnblendedCost"
+        Metric.NET_AMORTIZED_COST      | "NetAmortizedCost"
+        Metric.USAGE_QUANTITY          | "UsageQuantity"
+        Metric.NORMALIZED_USAGE_AMOUNT | "NormalizedUsageAmount"
     }
 
     private static LocalDate parseDate(String date) {
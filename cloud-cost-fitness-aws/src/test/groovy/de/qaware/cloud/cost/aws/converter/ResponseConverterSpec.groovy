@@ -15,13 +15,18 @@
  */
 package de.qaware.cloud.cost.aws.converter
 
+import de.qaware.cloud.cost.Granularity
 import de.qaware.cloud.cost.ValueWithUnit
 import software.amazon.awssdk.services.costexplorer.model.DateInterval
+import software.amazon.awssdk.services.costexplorer.model.Group
 import software.amazon.awssdk.services.costexplorer.model.MetricValue
 import software.amazon.awssdk.services.costexplorer.model.ResultByTime
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.time.LocalDate
+import java.time.LocalDateTime
+
 class ResponseConverterSpec extends Specification {
     @Subject
     ResponseConverter converter = new ResponseConverter()
@@ -67,6 +72,156 @@ class ResponseConverterSpec extends Specification {
         result.getElements()[1].getUnit() == "USD"
     }
 
+    def "extracts grouped values aligned to all dates"() {
+        given: "a grouped response where one group is missing on the first day"
+        def grouped = [
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(group('Name$b', "2"))
+                        .build(),
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-02").end("2020-08-03").build())
+                        .groups(group('Name$b', "3"), group('Name$a', "5"))
+                        .build()
+        ]
+
+        when: "the converter is invoked"
+        def result = converter.extractGroupedValues(grouped, "blended")
+
+        then: "the groups are sorted by key and the tag key prefix is removed"
+        result.keySet().toList() == ["a", "b"]
+
+        and: "all series are aligned with zero for missing days"
+        result["a"].getElements().collect { it.value } == [0.0d, 5.0d]
+        result["a"].getElements().every { it.unit == "EUR" }
+        result["b"].getElements().collect { it.value } == [2.0d, 3.0d]
+        result["b"].getElements()[1].getDate().format(ValueWithUnit.DATE_FORMATTER) == "2020-08-02"
+    }
+
+    def "merges the groups of one period split across pages"() {
+        given: "a grouped response with the groups of the first day on two pages"
+        def grouped = [
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(group('Name$a', "1"))
+                        .build(),
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(group('Name$b', "2"))
+                        .build(),
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-02").end("2020-08-03").build())
+                        .groups(group('Name$a', "3"))
+                        .build()
+        ]
+
+        when: "the converter is invoked"
+        def result = converter.extractGroupedValues(grouped, "blended")
+
+        then: "each period appears once per group"
+        result["a"].getElements().collect { it.value } == [1.0d, 3.0d]
+        result["b"].getElements().collect { it.value } == [2.0d, 0.0d]
+    }
+
+    def "selects the groups with the highest value in a single period"() {
+        given: "a grouped response of two days, partly without the tag"
+        def grouped = [
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(group('Name$a', "1"), group('Name$b', "4"), group('Name$c', "2"), group('Name$', "9"))
+                        .build(),
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-02").end("2020-08-03").build())
+                        .groups(group('Name$a', "5"), group('Name$b', "3"), group('Name$c', "1"))
+                        .build()
+        ]
+
+        when: "the two most expensive groups are selected from the stream"
+        def result = converter.selectTopGroups(grouped.stream(), "blended", Granularity.DAILY, 2)
+
+        then: "each group is ranked by its most expensive day, without the untagged costs"
+        result*.name == ["a", "b"]
+        result*.cost*.value == [5.0d, 4.0d]
+        result[0].cost.date == LocalDate.parse("2020-08-02")
+        result[1].cost.date == LocalDate.parse("2020-08-01")
+        result[0].cost.unit == "EUR"
+    }
+
+    def "selects fewer groups than the limit"() {
+        given: "a grouped response with one group"
+        def grouped = [
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                        .groups(group('Name$a', "1"))
+                        .build()
+        ]
+
+        expect:
+        converter.selectTopGroups(grouped.stream(), "blended", Granularity.DAILY, 10)*.name == ["a"]
+    }
+
+    def "requires a positive limit for the selection"() {
+        when:
+        converter.selectTopGroups([].stream(), "blended", Granularity.DAILY, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "extracts hourly values"() {
+        given: "an hourly response"
+        def hourly = [
+                result("2020-08-01T00:00:00Z", "2020-08-01T01:00:00Z", "1"),
+                result("2020-08-01T01:00:00Z", "2020-08-01T02:00:00Z", "2")
+        ]
+
+        when: "the converter is invoked"
+        def result = converter.extractValues(hourly, "blended", Granularity.HOURLY)
+
+        then: "the elements carry their hour"
+        result.getElements().collect { it.hour } == [LocalDateTime.of(2020, 8, 1, 0, 0), LocalDateTime.of(2020, 8, 1, 1, 0)]
+        result.getElements().collect { it.value } == [1.0d, 2.0d]
+
+        and: "the sum of one day has the date of that day"
+        result.sum().getDate() == LocalDate.of(2020, 8, 1)
+        result.sum().value == 3.0d
+    }
+
+    def "extracts monthly values with date intervals"() {
+        given: "a monthly response starting in the middle of a month"
+        def monthly = [
+                result("2020-07-17", "2020-08-01", "5"),
+                result("2020-08-01", "2020-09-01", "9")
+        ]
+
+        when: "the converter is invoked"
+        def result = converter.extractValues(monthly, "blended", Granularity.MONTHLY)
+
+        then: "each element covers its month"
+        result.getElements()[0].dateFrom == LocalDate.of(2020, 7, 17)
+        result.getElements()[0].dateTo == LocalDate.of(2020, 7, 31)
+        result.getElements()[1].dateFrom == LocalDate.of(2020, 8, 1)
+        result.getElements()[1].dateTo == LocalDate.of(2020, 8, 31)
+        result.sum().value == 14.0d
+    }
+
+    def "extracts grouped hourly values"() {
+        given: "a grouped hourly response"
+        def grouped = [
+                ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start("2020-08-01T05:00:00Z").end("2020-08-01T06:00:00Z").build())
+                        .groups(group('Name$a', "2"))
+                        .build()
+        ]
+
+        when: "the converter is invoked"
+        def result = converter.extractGroupedValues(grouped, "blended", Granularity.HOURLY)
+
+        then:
+        result["a"].getElements()[0].hour == LocalDateTime.of(2020, 8, 1, 5, 0)
+        result["a"].getElements()[0].value == 2.0d
+    }
+
     def "Invalid amount"() {
         given:
         resultsByTime = [
@@ -112,4 +267,18 @@ class ResponseConverterSpec extends Specification {
         then:
         thrown(IllegalStateException)
     }
+
+    static ResultByTime result(String start, String end, String amount) {
+        ResultByTime.builder()
+                .timePeriod(DateInterval.builder().start(start).end(end).build())
+                .total(Collections.singletonMap("blended", MetricValue.builder().amount(amount).unit("EUR").build()))
+                .build()
+    }
+
+    static Group group(String key, String amount) {
+        Group.builder()
+                .keys(key)
+                .metrics(Collections.singletonMap("blended", MetricValue.builder().amount(amount).unit("EUR").build()))
+                .build()
+    }
 }
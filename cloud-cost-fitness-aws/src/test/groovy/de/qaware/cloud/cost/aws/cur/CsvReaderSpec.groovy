@@ -0,0 +1,110 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.GZIPOutputStream
+
+class CsvReaderSpec extends Specification {
+    Path directory = Files.createTempDirectory("csv")
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "reads the projected columns of plain files"() {
+        given: "a file with quoted values and different line endings"
+        def file = directory.resolve("report.csv")
+        file.text = 'a,b,c\r\n1,"x, ""quoted""",0.5\n2,plain,-1.25E-2\n\n3,,7'
+
+        when: "the file is read"
+        def records = read(file, ["c", "b"])
+
+        then: "the projected values are decoded"
+        records == [["0.5", 'x, "quoted"'], ["-1.25E-2", "plain"], ["7", ""]]
+    }
+
+    def "reads records spanning several chunks of compressed files"() {
+        given: "a compressed file larger than the buffer"
+        def file = directory.resolve("report.csv.gz")
+        new GZIPOutputStream(Files.newOutputStream(file)).withWriter { writer ->
+            writer << "id,value\n"
+            (0..<100000).each { writer << "${it},\"${'v' * (it % 50)}\"\n" }
+        }
+
+        when: "the file is read"
+        def records = read(file, ["id", "value"])
+
+        then: "all records are complete"
+        records.size() == 100000
+        records.every { it[1] == 'v' * ((it[0] as int) % 50) }
+    }
+
+    def "parses numbers and timestamps"() {
+        given: "a file with numbers and timestamps"
+        def file = directory.resolve("report.csv")
+        file.text = "value,time\n0.0104000000,2020-08-01T13:00:00Z\n-12,2020-08-01T13:59:59Z\n1e3,2020-08-01T00:00:00.000Z\n"
+
+        when: "the file is read"
+        def values = []
+        def hours = []
+        CsvReader.read(file, handler(["value", "time"]) { record ->
+            values << record.getDouble(0)
+            hours << record.getEpochHour(1)
+        })
+
+        then: "the values are parsed like Double.parseDouble and Instant.parse"
+        values == [0.0104d, -12.0d, 1000.0d]
+        hours == [443413L, 443413L, 443400L]
+    }
+
+    def "fails for unterminated quoted values"() {
+        given: "a file with an unterminated quoted value"
+        def file = directory.resolve("report.csv")
+        file.text = 'a\n"open'
+
+        when: "the file is read"
+        read(file, ["a"])
+
+        then: "an exception is thrown"
+        thrown IllegalStateException
+    }
+
+    private static List<List<String>> read(Path file, List<String> columns) {
+        def records = []
+        CsvReader.read(file, handler(columns) { record ->
+            records << (0..<columns.size()).collect { record.getString(it) }
+        })
+        records
+    }
+
+    private static CsvReader.Handler handler(List<String> columns, Closure accept) {
+        new CsvReader.Handler() {
+            @Override
+            int[] project(List<String> header) {
+                header.collect { columns.indexOf(it) } as int[]
+            }
+
+            @Override
+            void accept(CsvReader.Record record) {
+                accept.call(record)
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.cur
+
+import de.qaware.cloud.cost.CloudProvider
+import de.qaware.cloud.cost.Granularity
+import de.qaware.cloud.cost.Metric
+import de.qaware.cloud.cost.TimeRange
+import de.qaware.cloud.cost.Usage
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.LocalDate
+import java.util.zip.GZIPOutputStream
+
+class CurCostExplorerSpec extends Specification {
+    static final String HEADER = "lineItem/UsageStartDate,lineItem/UsageType,lineItem/UsageAmount,lineItem/CurrencyCode," +
+            "lineItem/UnblendedCost,lineItem/BlendedCost,product/ProductName,pricing/unit,resourceTags/user:Name"
+
+    Path directory = Files.createTempDirectory("cur")
+    CurCostExplorer costExplorer
+
+    def setup() {
+        // each day of the last 40 days: 24 hours of an EC2 instance and one S3 storage record
+        def lines = (1..40).collectMany { daysAgo ->
+            def day = LocalDate.now().minusDays(daysAgo)
+            (0..<24).collect { hour ->
+                "${day}T${String.format('%02d', hour)}:00:00Z,USE1-BoxUsage:t3.micro,1,USD,0.5,0.4,Amazon Elastic Compute Cloud,Hrs,web-1"
+            } + ["${day}T00:00:00Z,USE1-TimedStorage,2,USD,1.0,1.0,\"Amazon Simple Storage Service\",GB-Mo,"]
+        }
+        directory.resolve("report-1.csv").text = ([HEADER] + lines[0..<500]).join("\n")
+        new GZIPOutputStream(Files.newOutputStream(directory.resolve("report-2.csv.gz"))).withWriter { writer ->
+            writer << ([HEADER] + lines[500..<lines.size()]).join("\r\n")
+        }
+        directory.resolve("manifest.json").text = "{}"
+        costExplorer = new CurCostExplorer(directory)
+    }
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "finds the CSV files of a report directory"() {
+        expect:
+        CurReport.of(directory).files*.fileName*.toString() == ["report-1.csv", "report-2.csv.gz"]
+    }
+
+    def "rejects Parquet files"() {
+        given:
+        directory.resolve("report-3.snappy.parquet").text = ""
+
+        when:
+        CurReport.of(directory)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "sums the total costs of all files by day"() {
+        when:
+        def costs = costExplorer.during(TimeRange.LAST_30_DAYS).getCosts()
+
+        then:
+        costs.size() == 30
+        costs.elements.every { it.value == 13.0d && it.unit == "USD" }
+        costs.elements[0].date == LocalDate.now().minusDays(30)
+    }
+
+    def "filters the costs by service and instance"() {
+        expect:
+        costExplorer.during(TimeRange.LAST_7_DAYS).forService("Amazon Simple Storage Service").getCosts().sum().value == 7.0d
+        costExplorer.during(TimeRange.LAST_7_DAYS).forInstance("web-*").getCosts().sum().value == 84.0d
+        costExplorer.during(TimeRange.LAST_7_DAYS).forInstance("db-*").getCosts().size() == 0
+    }
+
+    def "finds the names of services and instances"() {
+        expect:
+        costExplorer.forService("amazon").getNames() == ["Amazon Elastic Compute Cloud", "Amazon Simple Storage Service"]
+        costExplorer.forInstance("web").getNames() == ["web-1"]
+
+        when:
+        costExplorer.getNames()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "sums the costs by hour and month"() {
+        when:
+        def hourly = costExplorer.during(TimeRange.YESTERDAY).withGranularity(Granularity.HOURLY).getCosts()
+        def monthly = costExplorer.during(TimeRange.LAST_30_DAYS).withGranularity(Granularity.MONTHLY).getCosts()
+
+        then:
+        hourly.size() == 24
+        hourly.elements[0].value == 1.5d
+        hourly.elements[1].value == 0.5d
+        monthly.elements.sum { it.value } == 390.0d
+        monthly.elements.every { it.dateFrom.month == it.dateTo.month }
+    }
+
+    def "sums several metrics in one scan"() {
+        when:
+        def metrics = costExplorer.during(TimeRange.YESTERDAY).forService("Amazon Elastic Compute Cloud")
+                .getMetrics(Metric.BLENDED_COST, Metric.USAGE_QUANTITY)
+
+        then:
+        Math.abs(metrics[Metric.BLENDED_COST].sum().value - 9.6d) < 1e-9
+        metrics[Metric.USAGE_QUANTITY].sum().value == 24.0d
+        metrics[Metric.USAGE_QUANTITY].sum().unit == "Hrs"
+    }
+
+    def "matches usage filters against the usage type"() {
+        given:
+        def usage = new Usage() {
+            @Override
+            String toString() {
+                "*TimedStorage"
+            }
+        }
+
+        expect:
+        costExplorer.during(TimeRange.LAST_7_DAYS).getUsage(usage).sum().value == 14.0d
+    }
+
+    def "rejects metrics missing in the reports"() {
+        when:
+        costExplorer.getMetrics(Metric.AMORTIZED_COST)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "supports AWS only"() {
+        expect:
+        costExplorer.supports(CloudProvider.AMAZON_AWS)
+        !costExplorer.supports(CloudProvider.GOOGLE_CLOUD)
+    }
+}
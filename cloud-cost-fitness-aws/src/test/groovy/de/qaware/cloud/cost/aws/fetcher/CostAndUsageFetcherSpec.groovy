@@ -15,13 +15,23 @@
  */
 package de.qaware.cloud.cost.aws.fetcher
 
+import de.qaware.cloud.cost.Metric
+import de.qaware.cloud.cost.Granularity as CostGranularity
 import de.qaware.cloud.cost.TimeRange
 import de.qaware.cloud.cost.aws.AwsUsage
+import de.qaware.cloud.cost.aws.cache.CostStore
+import software.amazon.awssdk.services.costexplorer.CostExplorerAsyncClient
 import software.amazon.awssdk.services.costexplorer.CostExplorerClient
 import software.amazon.awssdk.services.costexplorer.model.*
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Clock
+import java.time.LocalDate
+import java.time.ZoneOffset
+
 class CostAndUsageFetcherSpec extends Specification {
     @Subject
     CostAndUsageFetcher fetcher
@@ -68,6 +78,318 @@ class CostAndUsageFetcherSpec extends Specification {
         result.elements[0].unit == "EUR"
     }
 
+    def "fetches grouped data"() {
+        given: "a time range and a grouping"
+        fetcher.during(TimeRange.YESTERDAY).groupByDimension(Dimension.SERVICE)
+
+        and: "an example response"
+        CostExplorerResponse response = GetCostAndUsageResponse.builder()
+                .resultsByTime(ResultByTime.builder()
+                        .timePeriod(DateInterval.builder()
+                                .start("2020-08-01")
+                                .end("2020-08-02")
+                                .build())
+                        .groups(Group.builder()
+                                .keys("Amazon EC2")
+                                .metrics(Collections.singletonMap("UnblendedCost",
+                                        MetricValue.builder()
+                                                .amount("10")
+                                                .unit("EUR")
+                                                .build()))
+                                .build())
+                        .build())
+                .build()
+
+        when: "the fetcher is invoked"
+        def result = fetcher.fetchGroupedCost()
+
+        then: "the client is called with a correct request"
+        1 * client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            assert request.groupBy()[0].type() == GroupDefinitionType.DIMENSION
+            assert request.groupBy()[0].key() == "SERVICE"
+            return response
+        }
+
+        and: "the response is converted correctly"
+        result.size() == 1
+        result["Amazon EC2"].elements[0].value == 10.0d
+    }
+
+    def "fails to fetch grouped data without group definition"() {
+        when: "the fetcher is invoked without grouping"
+        fetcher.during(TimeRange.YESTERDAY).fetchGroupedCost()
+
+        then: "an exception is thrown"
+        thrown(IllegalStateException)
+    }
+
+    def "fetches the top costs of all pages"() {
+        given: "a time range and a grouping"
+        fetcher.during(TimeRange.YESTERDAY).groupByTagName()
+
+        when: "the most expensive instance is fetched"
+        def result = fetcher.fetchTopCost(1)
+
+        then: "the client is called for every page"
+        1 * client.getCostAndUsage({ it.nextPageToken() == null }) >> GetCostAndUsageResponse.builder()
+                .resultsByTime(groupedResultByTime("2020-08-01", 'Name$solr-0', "10"))
+                .nextPageToken("page-2")
+                .build()
+        1 * client.getCostAndUsage({ it.nextPageToken() == "page-2" }) >> GetCostAndUsageResponse.builder()
+                .resultsByTime(groupedResultByTime("2020-08-01", 'Name$solr-1', "20"))
+                .build()
+
+        and: "the most expensive instance of all pages is returned"
+        result*.name == ["solr-1"]
+        result[0].cost.value == 20.0d
+    }
+
+    def "fails to fetch the top costs without group definition"() {
+        when: "the fetcher is invoked without grouping"
+        fetcher.during(TimeRange.YESTERDAY).fetchTopCost(10)
+
+        then: "an exception is thrown"
+        thrown(IllegalStateException)
+    }
+
+    def "returns failed futures instead of throwing"() {
+        given: "a non-blocking fetcher"
+        def asyncFetcher = CostAndUsageFetcher.withAsyncClient(Mock(CostExplorerAsyncClient)).during(TimeRange.LAST_30_DAYS)
+
+        expect: "a missing client, group definition or invalid time range fail the future"
+        fetcher.during(TimeRange.YESTERDAY).fetchCostAsync().isCompletedExceptionally()
+        asyncFetcher.fetchGroupedCostAsync().isCompletedExceptionally()
+        asyncFetcher.withGranularity(CostGranularity.HOURLY).fetchCostAsync().isCompletedExceptionally()
+    }
+
+    def "filters by several tag names"() {
+        when: "the filter is set"
+        fetcher.filterByTagNames(["pair-int-solr-cloud-0", "pair-int-solr-cloud-1"])
+
+        then: "the filter is applied"
+        fetcher.filter.tags().key() == "Name"
+        fetcher.filter.tags().values() == ["pair-int-solr-cloud-0", "pair-int-solr-cloud-1"]
+    }
+
+    def "fetches all pages lazily"() {
+        given: "a time range"
+        fetcher.during(TimeRange.YESTERDAY)
+
+        when: "only the first result is consumed"
+        def result = fetcher.streamCost().findFirst()
+
+        then: "only the first page is requested"
+        1 * client.getCostAndUsage({ it.nextPageToken() == null }) >> GetCostAndUsageResponse.builder()
+                .resultsByTime(resultByTime("2020-08-01", "10"))
+                .nextPageToken("page-2")
+                .build()
+        0 * client.getCostAndUsage(_)
+
+        and: "the result is returned"
+        result.get().timePeriod().start() == "2020-08-01"
+    }
+
+    def "fetches costs of all pages"() {
+        given: "a time range"
+        fetcher.during(TimeRange.YESTERDAY)
+
+        when: "the fetcher is invoked"
+        def result = fetcher.fetchCost()
+
+        then: "the client is called for every page"
+        1 * client.getCostAndUsage({ it.nextPageToken() == null }) >> GetCostAndUsageResponse.builder()
+                .resultsByTime(resultByTime("2020-08-01", "10"))
+                .nextPageToken("page-2")
+                .build()
+        1 * client.getCostAndUsage({ it.nextPageToken() == "page-2" }) >> GetCostAndUsageResponse.builder()
+                .resultsByTime(resultByTime("2020-08-02", "5"))
+                .build()
+
+        and: "the values of all pages are returned"
+        result.elements.collect { it.value } == [10.0d, 5.0d]
+    }
+
+    def "fetches only missing and mutable days with a cost store"() {
+        given: "a cost store with two mutable days"
+        def directory = Files.createTempDirectory("cost-store")
+        fetcher.withStore(new CostStore(directory, 2)).during(TimeRange.LAST_7_DAYS)
+
+        and: "a client returning one value per requested day"
+        def requests = []
+        client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            requests << request.timePeriod()
+            def results = []
+            for (def day = LocalDate.parse(request.timePeriod().start()); day.isBefore(LocalDate.parse(request.timePeriod().end())); day = day.plusDays(1)) {
+                results << resultByTime(day.toString(), "1")
+            }
+            GetCostAndUsageResponse.builder().resultsByTime(results).build()
+        }
+
+        when: "the costs are fetched twice"
+        def first = fetcher.fetchCost()
+        def second = CostAndUsageFetcher.withClient(client)
+                .withStore(new CostStore(directory, 2))
+                .during(TimeRange.LAST_7_DAYS)
+                .fetchCost()
+
+        then: "the whole range is fetched first and only the mutable days afterwards"
+        requests.size() == 2
+        requests[0].start() == LocalDate.now().minusDays(7).toString()
+        requests[1].start() == LocalDate.now().minusDays(2).toString()
+
+        and: "both results contain all days"
+        first.size() == 7
+        second.size() == 7
+        second.sum().value == 7.0d
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "fetches only the new days with a cost store on the next day"() {
+        given: "a cost store with two mutable days"
+        def directory = Files.createTempDirectory("cost-store")
+        def today = LocalDate.parse("2021-07-17")
+
+        and: "a client returning one value per requested day"
+        def requests = []
+        client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            requests << request.timePeriod()
+            def results = []
+            for (def day = LocalDate.parse(request.timePeriod().start()); day.isBefore(LocalDate.parse(request.timePeriod().end())); day = day.plusDays(1)) {
+                results << resultByTime(day.toString(), "1")
+            }
+            GetCostAndUsageResponse.builder().resultsByTime(results).build()
+        }
+
+        when: "the costs are fetched on two consecutive days"
+        def first = fetchFromStore(directory, today, TimeRange.LAST_7_DAYS, CostGranularity.DAILY)
+        def second = fetchFromStore(directory, today.plusDays(1), TimeRange.LAST_7_DAYS, CostGranularity.DAILY)
+
+        then: "only the mutable and the new day are fetched on the next day"
+        requests.size() == 2
+        requests[1].start() == "2021-07-16"
+        requests[1].end() == "2021-07-18"
+
+        and: "both results contain each day of their time range once"
+        first.elements*.dateFrom == (7..1).collect { today.minusDays(it) }
+        second.elements*.dateFrom == (6..0).collect { today.minusDays(it) }
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "fetches monthly data without the cost store on different days"() {
+        given: "a cost store"
+        def directory = Files.createTempDirectory("cost-store")
+
+        and: "a client returning one value per month of the requested period"
+        def requests = []
+        client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            requests << request.timePeriod()
+            def results = []
+            def end = LocalDate.parse(request.timePeriod().end())
+            for (def from = LocalDate.parse(request.timePeriod().start()); from.isBefore(end); from = from.plusMonths(1).withDayOfMonth(1)) {
+                def to = [from.plusMonths(1).withDayOfMonth(1), end].min()
+                results << ResultByTime.builder()
+                        .timePeriod(DateInterval.builder().start(from.toString()).end(to.toString()).build())
+                        .total(Collections.singletonMap("UnblendedCost", MetricValue.builder().amount("1").unit("EUR").build()))
+                        .build()
+            }
+            GetCostAndUsageResponse.builder().resultsByTime(results).build()
+        }
+
+        when: "the monthly costs are fetched in the middle of July and on the next day"
+        def first = fetchFromStore(directory, LocalDate.parse("2021-07-17"), TimeRange.LAST_30_DAYS, CostGranularity.MONTHLY)
+        def second = fetchFromStore(directory, LocalDate.parse("2021-07-18"), TimeRange.LAST_30_DAYS, CostGranularity.MONTHLY)
+
+        then: "the whole time range is fetched each day"
+        requests*.start() == ["2021-06-17", "2021-06-18"]
+
+        and: "the partial months are returned once"
+        first.elements*.dateFrom*.toString() == ["2021-06-17", "2021-07-01"]
+        second.elements*.dateFrom*.toString() == ["2021-06-18", "2021-07-01"]
+        second.elements[1].dateTo.toString() == "2021-07-17"
+
+        and: "nothing is stored"
+        !Files.list(directory).findAny().isPresent()
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "fetches hourly data without the cost store"() {
+        given: "an hourly fetcher with a cost store"
+        def directory = Files.createTempDirectory("cost-store")
+        fetcher.withStore(new CostStore(directory, 2))
+                .during(TimeRange.YESTERDAY)
+                .withGranularity(CostGranularity.HOURLY)
+
+        when: "the fetcher is invoked"
+        def result = fetcher.fetchCost()
+
+        then: "the client is called with an hourly request"
+        1 * client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            assert request.granularity() == Granularity.HOURLY
+            assert request.timePeriod().start() == LocalDate.now().minusDays(1).toString() + "T00:00:00Z"
+            GetCostAndUsageResponse.builder()
+                    .resultsByTime(ResultByTime.builder()
+                            .timePeriod(DateInterval.builder().start("2020-08-01T13:00:00Z").end("2020-08-01T14:00:00Z").build())
+                            .total(Collections.singletonMap("UnblendedCost", MetricValue.builder().amount("1").unit("USD").build()))
+                            .build())
+                    .build()
+        }
+
+        and: "the values are hourly and nothing is stored"
+        result.elements[0].hour.hour == 13
+        !Files.list(directory).findAny().isPresent()
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "fetches several metrics with one request"() {
+        given: "a time range"
+        fetcher.during(TimeRange.YESTERDAY)
+
+        when: "the fetcher is invoked"
+        def result = fetcher.fetchMetrics([Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY])
+
+        then: "the client is called once with all metrics"
+        1 * client.getCostAndUsage(_) >> { arguments ->
+            GetCostAndUsageRequest request = arguments.get(0)
+            assert request.metrics() == ["UnblendedCost", "UsageQuantity"]
+            GetCostAndUsageResponse.builder()
+                    .resultsByTime(ResultByTime.builder()
+                            .timePeriod(DateInterval.builder().start("2020-08-01").end("2020-08-02").build())
+                            .total([
+                                    UnblendedCost: MetricValue.builder().amount("10").unit("USD").build(),
+                                    UsageQuantity: MetricValue.builder().amount("24").unit("Hrs").build()
+                            ])
+                            .build())
+                    .build()
+        }
+
+        and: "a time series is returned per metric"
+        result[Metric.UNBLENDED_COST].elements[0].value == 10.0d
+        result[Metric.UNBLENDED_COST].elements[0].unit == "USD"
+        result[Metric.USAGE_QUANTITY].elements[0].value == 24.0d
+        result[Metric.USAGE_QUANTITY].elements[0].unit == "Hrs"
+    }
+
+    def "fails to fetch without metrics"() {
+        when: "no metric is requested"
+        fetcher.during(TimeRange.YESTERDAY).fetchMetrics([])
+
+        then: "an exception is thrown"
+        thrown(IllegalArgumentException)
+    }
+
     def "filters by service name"() {
         when: "the filter is set"
         fetcher.filterByService("EC2")
@@ -77,6 +399,15 @@ class CostAndUsageFetcherSpec extends Specification {
         fetcher.filter.dimensions().values() == ["EC2"]
     }
 
+    def "filters by several service names"() {
+        when: "the filter is set"
+        fetcher.filterByServices(["Amazon Elastic Compute Cloud - Compute", "Amazon Elastic File System"])
+
+        then: "the filter is applied"
+        fetcher.filter.dimensions().key() == Dimension.SERVICE
+        fetcher.filter.dimensions().values() == ["Amazon Elastic Compute Cloud - Compute", "Amazon Elastic File System"]
+    }
+
     def "filters by tag name"() {
         when: "the filter is set"
         fetcher.filterByTagName("pair-int-solr-cloud-0")
@@ -100,4 +431,44 @@ class CostAndUsageFetcherSpec extends Specification {
         fetcher.filter.and()[1].dimensions().key() == Dimension.USAGE_TYPE_GROUP
         fetcher.filter.and()[1].dimensions().values() == ["EC2: Running Hours"]
     }
+
+    static ResultByTime groupedResultByTime(String date, String key, String amount) {
+        ResultByTime.builder()
+                .timePeriod(DateInterval.builder()
+                        .start(date)
+                        .end(date)
+                        .build())
+                .groups(Group.builder()
+                        .keys(key)
+                        .metrics(Collections.singletonMap("UnblendedCost",
+                                MetricValue.builder()
+                                        .amount(amount)
+                                        .unit("EUR")
+                                        .build()))
+                        .build())
+                .build()
+    }
+
+    def fetchFromStore(Path directory, LocalDate today, TimeRange timeRange, CostGranularity granularity) {
+        CostAndUsageFetcher.withClient(client)
+                .withClock(Clock.fixed(today.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC))
+                .withStore(new CostStore(directory, 2))
+                .during(timeRange)
+                .withGranularity(granularity)
+                .fetchCost()
+    }
+
+    static ResultByTime resultByTime(String date, String amount) {
+        ResultByTime.builder()
+                .timePeriod(DateInterval.builder()
+                        .start(date)
+                        .end(date)
+                        .build())
+                .total(Collections.singletonMap("UnblendedCost",
+                        MetricValue.builder()
+                                .amount(amount)
+                                .unit("EUR")
+                                .build()))
+                .build()
+    }
 }
@@ -69,4 +69,33 @@ class DimensionalValuesFetcherSpec extends Specification {
         null       | null
         ""         | null
     }
+
+    def "fetches all pages"() {
+        given: "a time range"
+        fetcher.during(TimeRange.YESTERDAY)
+
+        when: "the fetcher is invoked"
+        def result = fetcher.fetchServices()
+
+        then: "the client is called for every page"
+        1 * client.getDimensionValues({ it.nextPageToken() == null }) >> GetDimensionValuesResponse.builder()
+                .dimensionValues(DimensionValuesWithAttributes.builder().value("EC2").build())
+                .nextPageToken("page-2")
+                .build()
+        1 * client.getDimensionValues({ it.nextPageToken() == "page-2" }) >> GetDimensionValuesResponse.builder()
+                .dimensionValues(DimensionValuesWithAttributes.builder().value("S3").build())
+                .build()
+
+        and: "the services of all pages are returned"
+        result == ["EC2", "S3"]
+    }
+
+    def "returns a failed future without non-blocking client"() {
+        when: "the non-blocking fetch is invoked on a blocking fetcher"
+        def future = fetcher.during(TimeRange.YESTERDAY).fetchServicesAsync()
+
+        then: "the future fails instead of throwing"
+        future.isCompletedExceptionally()
+        0 * client._
+    }
 }
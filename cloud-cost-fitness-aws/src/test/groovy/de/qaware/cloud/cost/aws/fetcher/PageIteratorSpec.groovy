@@ -0,0 +1,107 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.fetcher
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.stream.Collectors
+
+class PageIteratorSpec extends Specification {
+    def requested = Collections.synchronizedList([])
+
+    def fetchPage = { String token ->
+        requested << token
+        token == null ? "1" : token
+    }
+    def nextPageToken = { String page -> page == "3" ? null : String.valueOf(page.toInteger() + 1) }
+
+    def "iterates lazily over all pages"() {
+        when: "the stream is created"
+        def stream = PageIterator.stream(fetchPage, nextPageToken, null)
+
+        then: "no page is requested yet"
+        requested.isEmpty()
+
+        when: "the stream is consumed"
+        def result = stream.collect(Collectors.toList())
+
+        then: "all pages are requested in order"
+        result == ["1", "2", "3"]
+        requested == [null, "2", "3"]
+    }
+
+    def "requests the next page in the background"() {
+        given: "an executor"
+        def executor = Executors.newSingleThreadExecutor()
+        def iterator = new PageIterator(fetchPage, nextPageToken, executor)
+
+        when: "the first two pages are consumed"
+        def first = iterator.next()
+        def second = iterator.next()
+
+        then: "the pages are returned in order"
+        first == "1"
+        second == "2"
+
+        and: "the third page is requested before it is consumed"
+        iterator.hasNext()
+        iterator.next() == "3"
+        !iterator.hasNext()
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "throws if there are no more pages"() {
+        given: "a consumed iterator"
+        def iterator = new PageIterator(fetchPage, nextPageToken, null)
+        3.times { iterator.next() }
+
+        when: "the next page is requested"
+        iterator.next()
+
+        then: "an exception is thrown"
+        thrown(NoSuchElementException)
+    }
+
+    def "rethrows failures of background requests"() {
+        given: "a failing request for the second page"
+        def executor = Executors.newSingleThreadExecutor()
+        def failing = { String token -> if (token != null) throw new IllegalStateException("failed"); "1" }
+        def iterator = new PageIterator(failing, nextPageToken, executor)
+        iterator.next()
+
+        when: "the second page is consumed"
+        iterator.next()
+
+        then: "the original exception is thrown"
+        thrown(IllegalStateException)
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "collects all pages without blocking"() {
+        when: "all pages are collected"
+        def result = PageIterator.collectAsync({ String token -> CompletableFuture.supplyAsync { fetchPage(token) } }, nextPageToken)
+
+        then: "all pages are requested in order"
+        result.get() == ["1", "2", "3"]
+        requested == [null, "2", "3"]
+    }
+}
@@ -68,4 +68,33 @@ class TagNamesFetcherSpec extends Specification {
         null                    | null
         ""                      | null
     }
+
+    def "fetches all pages"() {
+        given: "a time range"
+        fetcher.during(TimeRange.YESTERDAY)
+
+        when: "the fetcher is invoked"
+        def result = fetcher.fetch()
+
+        then: "the client is called for every page"
+        1 * client.getTags({ it.nextPageToken() == null }) >> GetTagsResponse.builder()
+                .tags("pair-int-solr-cloud-0")
+                .nextPageToken("page-2")
+                .build()
+        1 * client.getTags({ it.nextPageToken() == "page-2" }) >> GetTagsResponse.builder()
+                .tags("pair-int-solr-cloud-1")
+                .build()
+
+        and: "the tags of all pages are returned"
+        result == ["pair-int-solr-cloud-0", "pair-int-solr-cloud-1"]
+    }
+
+    def "returns a failed future without non-blocking client"() {
+        when: "the non-blocking fetch is invoked on a blocking fetcher"
+        def future = fetcher.during(TimeRange.YESTERDAY).fetchAsync()
+
+        then: "the future fails instead of throwing"
+        future.isCompletedExceptionally()
+        0 * client._
+    }
 }
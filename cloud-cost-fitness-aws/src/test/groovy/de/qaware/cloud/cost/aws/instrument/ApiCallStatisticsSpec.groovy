@@ -0,0 +1,75 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+
+class ApiCallStatisticsSpec extends Specification {
+    @Subject
+    ApiCallStatistics statistics = new ApiCallStatistics()
+
+    def "counts the requests per operation"() {
+        when: "requests are recorded"
+        statistics.onRequest(ApiOperation.GET_COST_AND_USAGE, Duration.ofMillis(100).toNanos(), true)
+        statistics.onRequest(ApiOperation.GET_COST_AND_USAGE, Duration.ofMillis(300).toNanos(), false)
+        statistics.onRequest(ApiOperation.GET_TAGS, Duration.ofMillis(50).toNanos(), true)
+
+        then: "they are counted per operation and in total"
+        statistics.getRequests(ApiOperation.GET_COST_AND_USAGE) == 2
+        statistics.getRequests(ApiOperation.GET_TAGS) == 1
+        statistics.getRequests(ApiOperation.GET_DIMENSION_VALUES) == 0
+        statistics.requests == 3
+        statistics.failedRequests == 1
+
+        and: "the latency is recorded per operation"
+        statistics.getLatency(ApiOperation.GET_COST_AND_USAGE).count == 2
+        statistics.getLatency(ApiOperation.GET_COST_AND_USAGE).max == Duration.ofMillis(300)
+    }
+
+    def "estimates the cost of the successful requests"() {
+        when: "successful and failed requests are recorded"
+        5.times { statistics.onRequest(ApiOperation.GET_COST_AND_USAGE, 1000, true) }
+        statistics.onRequest(ApiOperation.GET_TAGS, 1000, false)
+
+        then: "each successful request costs one cent"
+        Math.abs(statistics.estimatedCost - 0.05d) < 1e-9
+    }
+
+    def "counts retries and cache hits"() {
+        when: "retries and cache hits are recorded"
+        statistics.onRetry(ApiOperation.GET_COST_AND_USAGE, true)
+        statistics.onRetry(ApiOperation.GET_TAGS, false)
+        statistics.onCacheHit(ApiOperation.GET_TAGS)
+
+        then: "they are counted"
+        statistics.retries == 2
+        statistics.throttledRetries == 1
+        statistics.cacheHits == 1
+        statistics.requests == 0
+    }
+
+    def "summarizes the statistics"() {
+        given: "a recorded request"
+        statistics.onRequest(ApiOperation.GET_TAGS, Duration.ofMillis(20).toNanos(), true)
+
+        expect: "a line per operation and the estimated cost"
+        statistics.toString().contains("GetTags : 1 requests, 0 cache hits")
+        statistics.toString().contains("estimated cost 0.01 USD")
+    }
+}
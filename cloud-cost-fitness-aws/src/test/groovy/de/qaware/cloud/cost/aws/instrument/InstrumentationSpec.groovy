@@ -0,0 +1,128 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.file.Files
+import java.util.concurrent.CompletableFuture
+import java.util.function.Supplier
+
+class InstrumentationSpec extends Specification {
+    ApiCallListener listener = Mock()
+
+    @Subject
+    Instrumentation instrumentation = new Instrumentation()
+
+    void setup() {
+        instrumentation.addListener(listener)
+    }
+
+    def "passes requests, retries and cache hits to the listeners"() {
+        when: "a request, a retry and a cache hit are recorded"
+        def response = instrumentation.record(ApiOperation.GET_TAGS, { "response" } as Supplier)
+        instrumentation.retry(ApiOperation.GET_TAGS, true)
+        instrumentation.cacheHit(ApiOperation.GET_COST_AND_USAGE)
+
+        then: "the listener is called for each"
+        1 * listener.onRequest(ApiOperation.GET_TAGS, { it >= 0 }, true)
+        1 * listener.onRetry(ApiOperation.GET_TAGS, true)
+        1 * listener.onCacheHit(ApiOperation.GET_COST_AND_USAGE)
+        response == "response"
+    }
+
+    def "records failed requests and rethrows the exception"() {
+        when: "a failing request is recorded"
+        instrumentation.record(ApiOperation.GET_COST_AND_USAGE, { throw new IllegalStateException() } as Supplier)
+
+        then: "the failure is passed to the listener"
+        1 * listener.onRequest(ApiOperation.GET_COST_AND_USAGE, _, false)
+        thrown IllegalStateException
+    }
+
+    def "records non-blocking requests when they complete"() {
+        given: "a pending response"
+        def pending = new CompletableFuture<String>()
+
+        when: "the request is recorded"
+        def response = instrumentation.recordAsync(ApiOperation.GET_TAGS, { pending } as Supplier)
+
+        then: "nothing is recorded yet"
+        0 * listener._
+
+        when: "the response arrives"
+        pending.complete("response")
+
+        then: "the request is passed to the listener"
+        1 * listener.onRequest(ApiOperation.GET_TAGS, { it >= 0 }, true)
+        response.get() == "response"
+    }
+
+    def "records failed non-blocking requests"() {
+        given: "a failed response"
+        def failed = new CompletableFuture<String>()
+        failed.completeExceptionally(new IllegalStateException())
+
+        when: "the request is recorded"
+        def response = instrumentation.recordAsync(ApiOperation.GET_COST_AND_USAGE, { failed } as Supplier)
+
+        then: "the failure is passed to the listener"
+        1 * listener.onRequest(ApiOperation.GET_COST_AND_USAGE, _, false)
+        response.isCompletedExceptionally()
+    }
+
+    def "does not call removed listeners"() {
+        given: "the listener is removed"
+        instrumentation.removeListener(listener)
+
+        when: "a cache hit is recorded"
+        instrumentation.cacheHit(ApiOperation.GET_TAGS)
+
+        then: "the listener is not called"
+        0 * listener._
+    }
+
+    def "records flight recorder events"() {
+        given: "a running recording"
+        def recording = new Recording()
+        recording.enable("de.qaware.cloud.cost.ApiCall")
+        recording.start()
+
+        when: "a request and a cache hit are recorded"
+        instrumentation.record(ApiOperation.GET_COST_AND_USAGE, { "response" } as Supplier)
+        instrumentation.cacheHit(ApiOperation.GET_COST_AND_USAGE)
+        recording.stop()
+        def file = Files.createTempFile("api-calls", ".jfr")
+        recording.dump(file)
+        def events = RecordingFile.readAllEvents(file)
+
+        then: "an event is recorded for each"
+        events.collect { [it.getString("operation"), it.getString("outcome"), it.getDouble("estimatedCost")] } as Set ==
+                [["GetCostAndUsage", "success", 0.01d], ["GetCostAndUsage", "cache hit", 0.0d]] as Set
+
+        cleanup:
+        recording.close()
+        Files.deleteIfExists(file)
+    }
+
+    def "returns the shared instrumentation"() {
+        expect:
+        Instrumentation.shared().is(Instrumentation.shared())
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.instrument
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import java.time.Duration
+
+class LatencyHistogramSpec extends Specification {
+    @Subject
+    LatencyHistogram histogram = new LatencyHistogram()
+
+    def "is empty initially"() {
+        expect: "no durations"
+        histogram.count == 0
+        histogram.mean == Duration.ZERO
+        histogram.max == Duration.ZERO
+        histogram.getPercentile(0.99) == Duration.ZERO
+    }
+
+    def "computes the percentiles with a relative error of at most 1/8"() {
+        given: "the durations from 1 to 1000 ms"
+        (1..1000).each { histogram.record(Duration.ofMillis(it).toNanos()) }
+
+        expect: "the statistics are close to the exact values"
+        histogram.count == 1000
+        histogram.max == Duration.ofMillis(1000)
+        histogram.mean.toNanos() == 500_500_000
+        within(histogram.getPercentile(0.5), Duration.ofMillis(500))
+        within(histogram.getPercentile(0.99), Duration.ofMillis(990))
+        histogram.getPercentile(1.0) == Duration.ofMillis(1000)
+    }
+
+    @Unroll
+    def "maps #value to a bucket containing it"() {
+        when: "the bucket is determined"
+        def index = LatencyHistogram.indexOf(value)
+
+        then: "its upper bound is not below the value and at most 1/8 above"
+        LatencyHistogram.upperBoundOf(index) >= value
+        LatencyHistogram.upperBoundOf(index) <= value + value / 8
+
+        and: "the previous bucket ends below the value"
+        index == 0 || LatencyHistogram.upperBoundOf(index - 1) < value
+
+        where:
+        value << [0L, 1L, 7L, 8L, 15L, 16L, 17L, 1000L, 123_456_789L, Long.MAX_VALUE]
+    }
+
+    def "rejects invalid quantiles"() {
+        when: "a quantile above 1 is requested"
+        histogram.getPercentile(1.5)
+
+        then: "an exception is thrown"
+        thrown IllegalArgumentException
+    }
+
+    static boolean within(Duration actual, Duration expected) {
+        actual >= expected && actual.toNanos() <= expected.toNanos() * 9 / 8
+    }
+}
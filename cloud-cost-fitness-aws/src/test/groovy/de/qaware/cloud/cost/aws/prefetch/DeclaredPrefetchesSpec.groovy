@@ -0,0 +1,68 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch
+
+import de.qaware.cloud.cost.CostQuery
+import de.qaware.cloud.cost.Metric
+import spock.lang.Specification
+
+import static de.qaware.cloud.cost.TimeRange.*
+
+class DeclaredPrefetchesSpec extends Specification {
+
+    def "reads the declared queries and metrics of a test class"() {
+        when:
+        def declared = DeclaredPrefetches.of(AnnotatedTest)
+
+        then:
+        declared.queries == [
+                CostQuery.create(),
+                CostQuery.create().during(LAST_7_DAYS).forService("Amazon Elastic *"),
+                CostQuery.create().during(YESTERDAY).forInstance("ignite-*")
+        ]
+        declared.metrics == EnumSet.of(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY)
+    }
+
+    def "inherits the declarations"() {
+        expect:
+        DeclaredPrefetches.of(InheritingTest).queries.size() == 3
+    }
+
+    def "ignores test classes without declarations"() {
+        when:
+        def declared = DeclaredPrefetches.of(DeclaredPrefetchesSpec)
+
+        then:
+        declared.isEmpty()
+
+        when: "nothing is prefetched"
+        declared.prefetch()
+
+        then:
+        notThrown(Exception)
+    }
+
+    @PrefetchCosts.List([
+            @PrefetchCosts,
+            @PrefetchCosts(during = LAST_7_DAYS, service = "Amazon Elastic *"),
+            @PrefetchCosts(during = YESTERDAY, instance = "ignite-*", metrics = [Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY])
+    ])
+    static class AnnotatedTest {
+    }
+
+    static class InheritingTest extends AnnotatedTest {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch
+
+import de.qaware.cloud.cost.CostQuery
+import de.qaware.cloud.cost.Metric
+import spock.lang.Specification
+import spock.lang.Subject
+
+import static de.qaware.cloud.cost.TimeRange.*
+
+class PrefetchPlannerSpec extends Specification {
+    @Subject
+    PrefetchPlanner planner = new PrefetchPlanner()
+
+    def "merges the queries of a grouping into one request over the widest time range"() {
+        given: "instance queries with different time ranges"
+        def queries = [
+                CostQuery.create().during(YESTERDAY).forInstance("ignite-0"),
+                CostQuery.create().during(LAST_30_DAYS).forInstance("ignite-*"),
+                CostQuery.create().during(LAST_7_DAYS).forInstance("kafka-*")
+        ]
+
+        when: "the requests are planned"
+        def plan = planner.plan(queries, [Metric.UNBLENDED_COST])
+
+        then: "one request covers all of them"
+        plan == [new PrefetchRequest(Grouping.INSTANCE, LAST_30_DAYS, EnumSet.of(Metric.UNBLENDED_COST), false)]
+    }
+
+    def "derives the total from the service groups"() {
+        given: "total and service queries"
+        def queries = [
+                CostQuery.create().during(LAST_6_MONTHS),
+                CostQuery.create().during(LAST_7_DAYS).forService("Amazon EC2")
+        ]
+
+        when: "the requests are planned"
+        def plan = planner.plan(queries, [Metric.UNBLENDED_COST])
+
+        then: "one service request covers the total as well"
+        plan == [new PrefetchRequest(Grouping.SERVICE, LAST_6_MONTHS, EnumSet.of(Metric.UNBLENDED_COST), true)]
+    }
+
+    def "plans one request per grouping with all metrics"() {
+        given: "queries of all groupings"
+        def queries = [
+                CostQuery.create().during(YESTERDAY),
+                CostQuery.create().forInstance("ignite-*"),
+                CostQuery.create().during(LAST_7_DAYS).forInstance("kafka-*").forService("Amazon EC2")
+        ]
+
+        when: "the requests are planned for two metrics"
+        def plan = planner.plan(queries, [Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY])
+
+        then: "the instance query wins over the service and each request fetches both metrics"
+        plan*.grouping == [Grouping.TOTAL, Grouping.INSTANCE]
+        plan*.timeRange == [YESTERDAY, LAST_30_DAYS]
+        plan.every { it.metrics == EnumSet.of(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY) }
+    }
+
+    def "plans nothing without queries"() {
+        expect:
+        planner.plan([], [Metric.UNBLENDED_COST]).isEmpty()
+    }
+
+    def "requires a metric"() {
+        when:
+        planner.plan([CostQuery.create()], [])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch
+
+import de.qaware.cloud.cost.Metric
+import de.qaware.cloud.cost.TimeSeries
+import de.qaware.cloud.cost.ValueWithUnit
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.LocalDate
+
+import static de.qaware.cloud.cost.TimeRange.*
+
+class PrefetchedCostsSpec extends Specification {
+    @Subject
+    PrefetchedCosts prefetchedCosts = new PrefetchedCosts()
+
+    LocalDate today = LocalDate.now()
+
+    def "answers a narrower time range from memory"() {
+        given: "the total of the last 7 days"
+        prefetchedCosts.putTotal(Metric.UNBLENDED_COST, today.minusDays(7), today, daily(7, 1.0))
+
+        when: "the costs of yesterday are requested"
+        def costs = prefetchedCosts.getTotal(Metric.UNBLENDED_COST, YESTERDAY)
+
+        then: "the last day is returned"
+        costs.get().size() == 1
+        costs.get().elements[0].date == today.minusDays(1)
+        costs.get().sum().value == 1.0d
+    }
+
+    def "does not answer a wider time range or another metric"() {
+        given: "the total of the last 7 days"
+        prefetchedCosts.putTotal(Metric.UNBLENDED_COST, today.minusDays(7), today, daily(7, 1.0))
+
+        expect:
+        !prefetchedCosts.getTotal(Metric.UNBLENDED_COST, LAST_30_DAYS).isPresent()
+        !prefetchedCosts.getTotal(Metric.AMORTIZED_COST, YESTERDAY).isPresent()
+        prefetchedCosts.covers(Grouping.TOTAL, Metric.UNBLENDED_COST, LAST_7_DAYS)
+        !prefetchedCosts.covers(Grouping.SERVICE, Metric.UNBLENDED_COST, LAST_7_DAYS)
+    }
+
+    def "sums several groups and answers groups without data with zeros"() {
+        given: "the costs of two instances"
+        prefetchedCosts.put(Grouping.INSTANCE, Metric.UNBLENDED_COST, today.minusDays(7), today,
+                ["ignite-0": daily(7, 1.0), "ignite-1": daily(7, 2.0)])
+
+        when: "the costs of the instances and one without costs are requested"
+        def costs = prefetchedCosts.get(Grouping.INSTANCE, ["ignite-0", "ignite-1", "ignite-2"], Metric.UNBLENDED_COST, LAST_7_DAYS)
+        def unknown = prefetchedCosts.get(Grouping.INSTANCE, ["ignite-2"], Metric.UNBLENDED_COST, LAST_7_DAYS)
+
+        then: "the costs are added up"
+        costs.get().size() == 7
+        costs.get().sum().value == 21.0d
+        costs.get().sum().unit == "USD"
+
+        and: "the instance without costs has zero costs each day"
+        unknown.get().size() == 7
+        unknown.get().sum().value == 0.0d
+    }
+
+    def "returns the values of all groups"() {
+        given: "the costs of two services"
+        prefetchedCosts.put(Grouping.SERVICE, Metric.UNBLENDED_COST, today.minusDays(7), today,
+                ["Amazon S3": daily(7, 2.0), "Amazon EC2": daily(7, 1.0)])
+
+        when: "the costs of all services of yesterday are requested"
+        def costs = prefetchedCosts.getAll(Grouping.SERVICE, Metric.UNBLENDED_COST, YESTERDAY)
+
+        then: "the last day of each service is returned, sorted by service"
+        costs.get().keySet() as List == ["Amazon EC2", "Amazon S3"]
+        costs.get()["Amazon EC2"].sum().value == 1.0d
+        costs.get()["Amazon S3"].size() == 1
+
+        and: "a wider time range is not answered"
+        !prefetchedCosts.getAll(Grouping.SERVICE, Metric.UNBLENDED_COST, LAST_30_DAYS).isPresent()
+        !prefetchedCosts.getAll(Grouping.INSTANCE, Metric.UNBLENDED_COST, YESTERDAY).isPresent()
+    }
+
+    def "removes all values"() {
+        given:
+        prefetchedCosts.putTotal(Metric.UNBLENDED_COST, today.minusDays(7), today, daily(7, 1.0))
+
+        when:
+        prefetchedCosts.clear()
+
+        then:
+        !prefetchedCosts.getTotal(Metric.UNBLENDED_COST, YESTERDAY).isPresent()
+    }
+
+    def "shares the prefetched costs per access key and endpoint"() {
+        given: "the endpoint of a simulator"
+        def endpoint = URI.create("http://localhost:4566")
+
+        expect: "the same prefetched costs for the same access key and endpoint only"
+        PrefetchedCosts.shared("production", endpoint).is(PrefetchedCosts.shared("production", endpoint))
+        !PrefetchedCosts.shared("production", endpoint).is(PrefetchedCosts.shared("staging", endpoint))
+        !PrefetchedCosts.shared("production", endpoint).is(PrefetchedCosts.shared("production", null))
+    }
+
+    TimeSeries daily(int days, double value) {
+        new TimeSeries().withElements((days..1).collect { new ValueWithUnit(today.minusDays(it), value, "USD") })
+    }
+}
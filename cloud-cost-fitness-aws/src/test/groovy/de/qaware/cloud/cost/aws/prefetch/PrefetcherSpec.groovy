@@ -0,0 +1,116 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.prefetch
+
+import de.qaware.cloud.cost.Metric
+import de.qaware.cloud.cost.TimeRange
+import de.qaware.cloud.cost.aws.converter.RequestConverter
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient
+import software.amazon.awssdk.services.costexplorer.model.*
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.LocalDate
+
+import static de.qaware.cloud.cost.TimeRange.*
+
+class PrefetcherSpec extends Specification {
+    CostExplorerClient client = Mock()
+    PrefetchedCosts prefetchedCosts = new PrefetchedCosts()
+
+    @Subject
+    Prefetcher prefetcher = Prefetcher.withClient(client).into(prefetchedCosts)
+
+    def "executes the planned requests and answers the queries from memory"() {
+        given: "a plan for services including the total and for instances"
+        def plan = [
+                new PrefetchRequest(Grouping.SERVICE, LAST_7_DAYS, EnumSet.of(Metric.UNBLENDED_COST), true),
+                new PrefetchRequest(Grouping.INSTANCE, YESTERDAY, EnumSet.of(Metric.UNBLENDED_COST), false)
+        ]
+
+        when: "the plan is executed"
+        def executed = prefetcher.execute(plan)
+
+        then: "one grouped request is sent per grouping"
+        1 * client.getCostAndUsage({ it.groupBy()[0].key() == "SERVICE" }) >>
+                response(LAST_7_DAYS, ["Amazon EC2": "1", "Amazon S3": "2"])
+        1 * client.getCostAndUsage({ it.groupBy()[0].key() == "Name" }) >>
+                response(YESTERDAY, ['Name$ignite-0': "3"])
+        executed == 2
+
+        and: "the total, services and instances are answered from memory"
+        prefetchedCosts.getTotal(Metric.UNBLENDED_COST, LAST_7_DAYS).get().sum().value == 21.0d
+        prefetchedCosts.get(Grouping.SERVICE, ["Amazon S3"], Metric.UNBLENDED_COST, YESTERDAY).get().sum().value == 2.0d
+        prefetchedCosts.get(Grouping.INSTANCE, ["ignite-0"], Metric.UNBLENDED_COST, YESTERDAY).get().sum().value == 3.0d
+    }
+
+    def "skips requests which are already answered from memory"() {
+        given: "a prefetched total"
+        client.getCostAndUsage(_) >> totalResponse(LAST_7_DAYS, "1")
+        def plan = [new PrefetchRequest(Grouping.TOTAL, LAST_7_DAYS, EnumSet.of(Metric.UNBLENDED_COST), false)]
+        prefetcher.execute(plan)
+
+        when: "the plan is executed again"
+        def executed = prefetcher.execute(plan)
+
+        then: "no request is sent"
+        0 * client.getCostAndUsage(_)
+        executed == 0
+    }
+
+    def "propagates failed requests"() {
+        when:
+        prefetcher.execute([new PrefetchRequest(Grouping.TOTAL, YESTERDAY, EnumSet.of(Metric.UNBLENDED_COST), false)])
+
+        then:
+        1 * client.getCostAndUsage(_) >> { throw CostExplorerException.builder().message("Access denied").build() }
+        thrown(CostExplorerException)
+    }
+
+    static GetCostAndUsageResponse response(TimeRange timeRange, Map<String, String> amountsByGroup) {
+        GetCostAndUsageResponse.builder()
+                .resultsByTime(days(timeRange).collect { interval ->
+                    ResultByTime.builder()
+                            .timePeriod(interval)
+                            .groups(amountsByGroup.collect { key, amount ->
+                                Group.builder().keys(key).metrics([UnblendedCost: value(amount)]).build()
+                            })
+                            .build()
+                })
+                .build()
+    }
+
+    static GetCostAndUsageResponse totalResponse(TimeRange timeRange, String amount) {
+        GetCostAndUsageResponse.builder()
+                .resultsByTime(days(timeRange).collect { interval ->
+                    ResultByTime.builder().timePeriod(interval).total([UnblendedCost: value(amount)]).build()
+                })
+                .build()
+    }
+
+    static List<DateInterval> days(TimeRange timeRange) {
+        def interval = new RequestConverter().createDateInterval(timeRange)
+        def start = LocalDate.parse(interval.start())
+        def end = LocalDate.parse(interval.end())
+        (0..<(end.toEpochDay() - start.toEpochDay())).collect { offset ->
+            DateInterval.builder().start(start.plusDays(offset).toString()).end(start.plusDays(offset + 1).toString()).build()
+        }
+    }
+
+    static MetricValue value(String amount) {
+        MetricValue.builder().amount(amount).unit("USD").build()
+    }
+}
@@ -19,6 +19,7 @@ import de.qaware.cloud.cost.CloudProvider;
 import de.qaware.cloud.cost.CostExplorer;
 import de.qaware.cloud.cost.TimeSeries;
 import de.qaware.cloud.cost.ValueWithUnit;
+import de.qaware.cloud.cost.aws.prefetch.PrefetchCosts;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
@@ -34,6 +35,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @EnabledIfSystemProperty(named = "aws.access.key", matches = ".*")
 @EnabledIfSystemProperty(named = "aws.secret.key", matches = ".*")
+@PrefetchCosts(during = LAST_30_DAYS)
+@PrefetchCosts(during = LAST_7_DAYS, service = "Amazon Elastic *")
 class CloudCostFitnessTest {
 
     private static CostExplorer costExplorer;
@@ -0,0 +1,138 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the aggregations of time series.
+ * The series contain daily values over six months or hourly values over 14 days.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimeSeriesBenchmark {
+    private static final int NUMBER_OF_SERIES = 1000;
+    private static final LocalDate START = LocalDate.of(2020, 11, 9);
+    private static final int DAYS = 182;
+    private static final int HOURS = 14 * 24;
+
+    @Param({"DAILY", "HOURLY"})
+    private String granularity;
+
+    @Param({"LIST", "COMPACT"})
+    private String representation;
+
+    private TimeSeries series;
+    private TimeSeries other;
+    private List<TimeSeries> manySeries;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        series = createTimeSeries(random);
+        other = createTimeSeries(random);
+        manySeries = new ArrayList<>(NUMBER_OF_SERIES);
+        for (int i = 0; i < NUMBER_OF_SERIES; i++) {
+            manySeries.add(createTimeSeries(random));
+        }
+    }
+
+    private TimeSeries createTimeSeries(Random random) {
+        boolean hourly = "HOURLY".equals(granularity);
+        int size = hourly ? HOURS : DAYS;
+        if ("COMPACT".equals(representation)) {
+            CompactTimeSeries.Builder builder = hourly
+                    ? CompactTimeSeries.hourlyBuilder(size, "USD")
+                    : CompactTimeSeries.builder(size, "USD");
+            int start = (int) (hourly ? START.toEpochDay() * 24 : START.toEpochDay());
+            for (int i = 0; i < size; i++) {
+                builder.add(start + i, 100.0 * random.nextDouble());
+            }
+            return new TimeSeries().withElements(builder.build());
+        }
+
+        List<ValueWithUnit> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            double value = 100.0 * random.nextDouble();
+            elements.add(hourly
+                    ? ValueWithUnit.ofHour(START.atStartOfDay().plusHours(i), value, "USD")
+                    : new ValueWithUnit(START.plusDays(i), value, "USD"));
+        }
+        return new TimeSeries().withElements(elements);
+    }
+
+    @Benchmark
+    public ValueWithUnit sum() {
+        return series.sum();
+    }
+
+    @Benchmark
+    public ValueWithUnit mean() {
+        return series.mean();
+    }
+
+    @Benchmark
+    public ValueWithUnit max() {
+        return series.max();
+    }
+
+    @Benchmark
+    public TimeSeries add() {
+        return series.add(other);
+    }
+
+    @Benchmark
+    public ValueWithUnit extrapolate() {
+        return series.extrapolate("2021-12-24");
+    }
+
+    @Benchmark
+    public TimeSeries addThousandSeries() {
+        TimeSeries total = new TimeSeries();
+        for (TimeSeries timeSeries : manySeries) {
+            total = total.add(timeSeries);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public TimeSeries sumOfThousandSeries() {
+        return TimeSeries.sumOf(manySeries);
+    }
+
+    @Benchmark
+    public double sumThousandSeries() {
+        double total = 0.0;
+        for (TimeSeries timeSeries : manySeries) {
+            total += timeSeries.sum().getValue();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws;
+
+import de.qaware.cloud.cost.Metric;
+import de.qaware.cloud.cost.TimeSeries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static de.qaware.cloud.cost.TimeRange.LAST_30_DAYS;
+
+/**
+ * End-to-end benchmarks for queries of the AWS cost explorer against a stubbed client with latency.
+ * The benchmark is located in the package of the cost explorer to use its client constructor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AwsCostExplorerBenchmark {
+    private static final int DAYS = 30;
+
+    @Param({"0", "20"})
+    private long latencyMillis;
+
+    @Param({"20"})
+    private int instances;
+
+    private StubCostExplorerClient client;
+
+    @Setup
+    public void setUp() {
+        client = new StubCostExplorerClient(latencyMillis, DAYS, instances);
+    }
+
+    private AwsCostExplorer costExplorer() {
+        // without query cache and cost store, so every query reaches the client
+        return new AwsCostExplorer(client).withCostStore(null).during(LAST_30_DAYS);
+    }
+
+    @Benchmark
+    public TimeSeries totalCosts() {
+        return costExplorer().getCosts();
+    }
+
+    @Benchmark
+    public TimeSeries serviceCosts() {
+        return costExplorer().forService("Amazon Elastic Compute Cloud - Compute").getCosts();
+    }
+
+    @Benchmark
+    public TimeSeries instanceCosts() {
+        return costExplorer().forInstance("instance-*").getCosts();
+    }
+
+    @Benchmark
+    public Map<Metric, TimeSeries> instanceMetrics() {
+        return costExplorer().forInstance("instance-*").getMetrics(Metric.UNBLENDED_COST, Metric.USAGE_QUANTITY);
+    }
+
+    @Benchmark
+    public List<String> serviceNames() {
+        return costExplorer().forService("Amazon *").getNames();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws;
+
+import software.amazon.awssdk.services.costexplorer.model.DateInterval;
+import software.amazon.awssdk.services.costexplorer.model.Group;
+import software.amazon.awssdk.services.costexplorer.model.MetricValue;
+import software.amazon.awssdk.services.costexplorer.model.ResultByTime;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates AWS API results with random amounts for the benchmarks
+ */
+public final class ResultGenerator {
+    private static final LocalDate START = LocalDate.of(2020, 11, 9);
+
+    private ResultGenerator() {
+    }
+
+    /**
+     * Generates daily results with a total value
+     *
+     * @param days    the number of days
+     * @param seed    the seed of the random amounts
+     * @param metrics the metric names, e.g. UnblendedCost
+     * @return the results
+     */
+    public static List<ResultByTime> createResults(int days, long seed, String... metrics) {
+        Random random = new Random(seed);
+        List<ResultByTime> results = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            results.add(ResultByTime.builder()
+                    .timePeriod(createDateInterval(i))
+                    .total(createMetricValues(random, metrics))
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * Generates daily results with grouped values, e.g. by instance name
+     *
+     * @param days    the number of days
+     * @param groups  the number of groups
+     * @param seed    the seed of the random amounts
+     * @param metrics the metric names, e.g. UnblendedCost
+     * @return the results
+     */
+    public static List<ResultByTime> createGroupedResults(int days, int groups, long seed, String... metrics) {
+        Random random = new Random(seed);
+        List<ResultByTime> results = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            List<Group> groupList = new ArrayList<>(groups);
+            for (int j = 0; j < groups; j++) {
+                groupList.add(Group.builder()
+                        .keys("Name$instance-" + j)
+                        .metrics(createMetricValues(random, metrics))
+                        .build());
+            }
+            results.add(ResultByTime.builder()
+                    .timePeriod(createDateInterval(i))
+                    .groups(groupList)
+                    .build());
+        }
+        return results;
+    }
+
+    private static DateInterval createDateInterval(int day) {
+        return DateInterval.builder()
+                .start(START.plusDays(day).toString())
+                .end(START.plusDays(day + 1L).toString())
+                .build();
+    }
+
+    private static Map<String, MetricValue> createMetricValues(Random random, String... metrics) {
+        Map<String, MetricValue> metricValues = new HashMap<>();
+        for (String metric : metrics) {
+            metricValues.put(metric, MetricValue.builder()
+                    .amount(String.format(Locale.ROOT, "%.10f", 100.0 * random.nextDouble()))
+                    .unit("USD")
+                    .build());
+        }
+        return metricValues;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws;
+
+import software.amazon.awssdk.services.costexplorer.CostExplorerClient;
+import software.amazon.awssdk.services.costexplorer.model.DimensionValuesWithAttributes;
+import software.amazon.awssdk.services.costexplorer.model.GetCostAndUsageRequest;
+import software.amazon.awssdk.services.costexplorer.model.GetCostAndUsageResponse;
+import software.amazon.awssdk.services.costexplorer.model.GetDimensionValuesRequest;
+import software.amazon.awssdk.services.costexplorer.model.GetDimensionValuesResponse;
+import software.amazon.awssdk.services.costexplorer.model.GetTagsRequest;
+import software.amazon.awssdk.services.costexplorer.model.GetTagsResponse;
+import software.amazon.awssdk.services.costexplorer.model.ResultByTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cost explorer client answering with generated data after a fixed latency, replacing the round trip to AWS
+ */
+public class StubCostExplorerClient implements CostExplorerClient {
+    private static final String[] METRICS = {"UnblendedCost", "UsageQuantity"};
+
+    private final long latencyNanos;
+    private final List<ResultByTime> results;
+    private final List<ResultByTime> groupedResults;
+    private final List<String> tags = new ArrayList<>();
+    private final List<DimensionValuesWithAttributes> services = new ArrayList<>();
+
+    /**
+     * Creates the client
+     *
+     * @param latencyMillis the latency of each request in milliseconds
+     * @param days          the number of days per response
+     * @param groups        the number of instances and services
+     */
+    public StubCostExplorerClient(long latencyMillis, int days, int groups) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.results = ResultGenerator.createResults(days, 42, METRICS);
+        this.groupedResults = ResultGenerator.createGroupedResults(days, groups, 42, METRICS);
+        for (int i = 0; i < groups; i++) {
+            tags.add("instance-" + i);
+            services.add(DimensionValuesWithAttributes.builder().value("Service " + i).build());
+        }
+    }
+
+    @Override
+    public GetCostAndUsageResponse getCostAndUsage(GetCostAndUsageRequest request) {
+        simulateLatency();
+        return GetCostAndUsageResponse.builder()
+                .resultsByTime(request.groupBy().isEmpty() ? results : groupedResults)
+                .build();
+    }
+
+    @Override
+    public GetTagsResponse getTags(GetTagsRequest request) {
+        simulateLatency();
+        return GetTagsResponse.builder()
+                .tags(tags)
+                .build();
+    }
+
+    @Override
+    public GetDimensionValuesResponse getDimensionValues(GetDimensionValuesRequest request) {
+        simulateLatency();
+        return GetDimensionValuesResponse.builder()
+                .dimensionValues(services)
+                .build();
+    }
+
+    private void simulateLatency() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
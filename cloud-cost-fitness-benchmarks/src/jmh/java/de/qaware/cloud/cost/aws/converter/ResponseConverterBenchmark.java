@@ -0,0 +1,69 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.aws.converter;
+
+import de.qaware.cloud.cost.TimeSeries;
+import de.qaware.cloud.cost.aws.ResultGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import software.amazon.awssdk.services.costexplorer.model.ResultByTime;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for converting large AWS API responses into time series
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseConverterBenchmark {
+    private static final String METRIC = "UnblendedCost";
+
+    private final ResponseConverter responseConverter = new ResponseConverter();
+
+    @Param({"182", "3650"})
+    private int days;
+
+    @Param({"50"})
+    private int groups;
+
+    private List<ResultByTime> results;
+    private List<ResultByTime> groupedResults;
+
+    @Setup
+    public void setUp() {
+        results = ResultGenerator.createResults(days, 42, METRIC);
+        groupedResults = ResultGenerator.createGroupedResults(days, groups, 42, METRIC);
+    }
+
+    @Benchmark
+    public TimeSeries extractValues() {
+        return responseConverter.extractValues(results, METRIC);
+    }
+
+    @Benchmark
+    public Map<String, TimeSeries> extractGroupedValues() {
+        return responseConverter.extractGroupedValues(groupedResults, METRIC);
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handles the requests of the Cost Explorer JSON protocol.
+ * The operation is given by the header X-Amz-Target, request and response are JSON documents.
+ */
+class CostExplorerHandler implements HttpHandler {
+    private static final String TARGET_HEADER = "X-Amz-Target";
+    private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+    private static final String TAG_NAME = "Name";
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    private final SyntheticCostData data;
+    private final int pageSize;
+    private final long latencyMillis;
+    private final int requestLimit;
+    private final Clock clock;
+
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private long currentSecond;
+    private int requestsInCurrentSecond;
+
+    CostExplorerHandler(SyntheticCostData data, int pageSize, long latencyMillis, int requestLimit, Clock clock) {
+        this.data = data;
+        this.pageSize = pageSize;
+        this.latencyMillis = latencyMillis;
+        this.requestLimit = requestLimit;
+        this.clock = clock;
+    }
+
+    long getRequestCount(String operation) {
+        AtomicLong count = requestCounts.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    long getRequestCount() {
+        return requestCounts.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String target = exchange.getRequestHeaders().getFirst(TARGET_HEADER);
+            String operation = target == null ? "" : target.substring(target.indexOf('.') + 1);
+            requestCounts.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+
+            simulateLatency();
+
+            if (isThrottled()) {
+                throttledCount.incrementAndGet();
+                sendError(exchange, "LimitExceededException", "Rate exceeded");
+                return;
+            }
+
+            Map<String, Object> request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = asMap(Json.parse(new String(body.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+
+            Map<String, Object> response;
+            switch (operation) {
+                case "GetCostAndUsage":
+                    response = getCostAndUsage(request);
+                    break;
+                case "GetTags":
+                    response = getTags(request);
+                    break;
+                case "GetDimensionValues":
+                    response = getDimensionValues(request);
+                    break;
+                default:
+                    sendError(exchange, "UnknownOperationException", "Unknown operation " + operation);
+                    return;
+            }
+            send(exchange, 200, response);
+        } catch (IllegalArgumentException | DateTimeParseException | ClassCastException e) {
+            sendError(exchange, "ValidationException", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean isThrottled() {
+        if (requestLimit <= 0) {
+            return false;
+        }
+        long second = clock.millis() / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            requestsInCurrentSecond = 0;
+        }
+        requestsInCurrentSecond++;
+        return requestsInCurrentSecond > requestLimit;
+    }
+
+    private Map<String, Object> getCostAndUsage(Map<String, Object> request) {
+        Map<String, Object> timePeriod = asMap(request.get("TimePeriod"));
+        LocalDateTime start = parseTime((String) timePeriod.get("Start"));
+        LocalDateTime end = parseTime((String) timePeriod.get("End"));
+        String granularity = (String) request.getOrDefault("Granularity", "DAILY");
+        List<String> metrics = asStrings(request.get("Metrics"));
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("Metrics must not be empty");
+        }
+
+        Filter filter = new Filter();
+        if (request.get("Filter") != null) {
+            filter.add(asMap(request.get("Filter")));
+        }
+
+        List<Object> groupBy = request.get("GroupBy") == null ? Collections.emptyList() : asList(request.get("GroupBy"));
+        if (groupBy.size() > 1) {
+            throw new IllegalArgumentException("The simulator supports at most one group definition");
+        }
+        String groupType = null;
+        if (!groupBy.isEmpty()) {
+            Map<String, Object> groupDefinition = asMap(groupBy.get(0));
+            groupType = (String) groupDefinition.get("Type") + ":" + groupDefinition.get("Key");
+        }
+
+        List<LocalDateTime[]> periods = createPeriods(start, end, granularity);
+        int first = parsePageToken(request.get("NextPageToken"));
+        int last = Math.min(periods.size(), first + pageSize);
+
+        LocalDate today = LocalDate.now(clock);
+        List<Object> resultsByTime = new ArrayList<>();
+        for (LocalDateTime[] period : periods.subList(Math.min(first, last), last)) {
+            resultsByTime.add(createResultByTime(period[0], period[1], "HOURLY".equals(granularity), metrics, filter, groupType, today));
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("GroupDefinitions", groupBy);
+        response.put("ResultsByTime", resultsByTime);
+        if (last < periods.size()) {
+            response.put("NextPageToken", Integer.toString(last));
+        }
+        return response;
+    }
+
+    private Map<String, Object> createResultByTime(LocalDateTime start, LocalDateTime end, boolean hourly, List<String> metrics,
+                                                   Filter filter, String groupType, LocalDate today) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("TimePeriod", Map.of("Start", formatTime(start, hourly), "End", formatTime(end, hourly)));
+
+        List<String> keys = filter.selectKeys(groupType);
+        double share = filter.share(groupType);
+        Map<String, Object> total = new LinkedHashMap<>();
+        List<Object> groups = new ArrayList<>();
+
+        if (groupType == null) {
+            for (String metric : metrics) {
+                double amount = 0.0;
+                for (String key : keys) {
+                    amount += amount(key, metric, start, end, today);
+                }
+                total.put(metric, createMetricValue(metric, amount * share));
+            }
+        } else {
+            for (String key : keys) {
+                Map<String, Object> metricValues = new LinkedHashMap<>();
+                for (String metric : metrics) {
+                    metricValues.put(metric, createMetricValue(metric, amount(key, metric, start, end, today) * share));
+                }
+                String groupKey = groupType.startsWith("TAG:") ? TAG_NAME + "$" + key : key;
+                groups.add(Map.of("Keys", List.of(groupKey), "Metrics", metricValues));
+            }
+        }
+
+        result.put("Total", total);
+        result.put("Groups", groups);
+        result.put("Estimated", !end.toLocalDate().isBefore(today));
+        return result;
+    }
+
+    private double amount(String key, String metric, LocalDateTime start, LocalDateTime end, LocalDate today) {
+        if (start.plusHours(1).equals(end)) {
+            return data.hasData(start.toLocalDate(), today) ? data.hourlyAmount(key, metric, start) : 0.0;
+        }
+        double amount = 0.0;
+        for (LocalDate day = start.toLocalDate(); day.isBefore(end.toLocalDate()); day = day.plusDays(1)) {
+            if (data.hasData(day, today)) {
+                amount += data.amount(key, metric, day);
+            }
+        }
+        return amount;
+    }
+
+    private static Map<String, Object> createMetricValue(String metric, double amount) {
+        String unit = metric.endsWith("Cost") ? "USD" : "N/A";
+        return Map.of("Amount", SyntheticCostData.format(amount), "Unit", unit);
+    }
+
+    private static List<LocalDateTime[]> createPeriods(LocalDateTime start, LocalDateTime end, String granularity) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Start must be before end");
+        }
+
+        List<LocalDateTime[]> periods = new ArrayList<>();
+        LocalDateTime periodStart = start;
+        while (periodStart.isBefore(end)) {
+            LocalDateTime periodEnd;
+            if ("HOURLY".equals(granularity)) {
+                periodEnd = periodStart.plusHours(1);
+            } else if ("DAILY".equals(granularity)) {
+                periodEnd = periodStart.plusDays(1);
+            } else if ("MONTHLY".equals(granularity)) {
+                periodEnd = periodStart.withDayOfMonth(1).plusMonths(1);
+            } else {
+                throw new IllegalArgumentException("Unsupported granularity " + granularity);
+            }
+            if (periodEnd.isAfter(end)) {
+                periodEnd = end;
+            }
+            periods.add(new LocalDateTime[]{periodStart, periodEnd});
+            periodStart = periodEnd;
+        }
+        return periods;
+    }
+
+    private static LocalDateTime parseTime(String time) {
+        // hourly requests give times of day in UTC, the others dates
+        if (time.indexOf('T') >= 0) {
+            return LocalDateTime.ofInstant(Instant.parse(time), ZoneOffset.UTC);
+        }
+        return LocalDate.parse(time).atStartOfDay();
+    }
+
+    private static String formatTime(LocalDateTime time, boolean hourly) {
+        return hourly ? time.format(HOUR_FORMATTER) : time.toLocalDate().toString();
+    }
+
+    private Map<String, Object> getTags(Map<String, Object> request) {
+        String tagKey = (String) request.get("TagKey");
+        List<String> tags = TAG_NAME.equals(tagKey) || tagKey == null
+                ? SyntheticCostData.search(data.getTags(), (String) request.get("SearchString"))
+                : Collections.emptyList();
+
+        int first = parsePageToken(request.get("NextPageToken"));
+        int last = Math.min(tags.size(), first + pageSize);
+        List<String> page = tags.subList(Math.min(first, last), last);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("Tags", page);
+        response.put("ReturnSize", page.size());
+        response.put("TotalSize", tags.size());
+        if (last < tags.size()) {
+            response.put("NextPageToken", Integer.toString(last));
+        }
+        return response;
+    }
+
+    private Map<String, Object> getDimensionValues(Map<String, Object> request) {
+        List<String> values = "SERVICE".equals(request.get("Dimension"))
+                ? SyntheticCostData.search(data.getServices(), (String) request.get("SearchString"))
+                : Collections.emptyList();
+
+        int first = parsePageToken(request.get("NextPageToken"));
+        int last = Math.min(values.size(), first + pageSize);
+        List<Object> page = new ArrayList<>();
+        for (String value : values.subList(Math.min(first, last), last)) {
+            page.add(Map.of("Value", value, "Attributes", Collections.emptyMap()));
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("DimensionValues", page);
+        response.put("ReturnSize", page.size());
+        response.put("TotalSize", values.size());
+        if (last < values.size()) {
+            response.put("NextPageToken", Integer.toString(last));
+        }
+        return response;
+    }
+
+    private static int parsePageToken(Object pageToken) {
+        if (pageToken == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt((String) pageToken);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token " + pageToken, e);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Map<String, Object> response) throws IOException {
+        byte[] body = Json.write(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, String type, String message) throws IOException {
+        exchange.getResponseHeaders().set("x-amzn-ErrorType", type);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("__type", type);
+        response.put("message", message);
+        send(exchange, 400, response);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected an object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Expected an array");
+        }
+        return (List<Object>) value;
+    }
+
+    private static List<String> asStrings(Object value) {
+        List<String> strings = new ArrayList<>();
+        if (value != null) {
+            for (Object element : asList(value)) {
+                strings.add((String) element);
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * The conjunction of the tag and dimension filters of a request
+     */
+    private class Filter {
+        private Collection<String> tags;
+        private Collection<String> services;
+        private final List<String> others = new ArrayList<>();
+
+        void add(Map<String, Object> expression) {
+            if (expression.get("And") != null) {
+                for (Object operand : asList(expression.get("And"))) {
+                    add(asMap(operand));
+                }
+            } else if (expression.get("Tags") != null) {
+                Map<String, Object> tagValues = asMap(expression.get("Tags"));
+                if (!TAG_NAME.equals(tagValues.get("Key"))) {
+                    throw new IllegalArgumentException("The simulator supports only the tag " + TAG_NAME);
+                }
+                tags = asStrings(tagValues.get("Values"));
+            } else if (expression.get("Dimensions") != null) {
+                Map<String, Object> dimensionValues = asMap(expression.get("Dimensions"));
+                if ("SERVICE".equals(dimensionValues.get("Key"))) {
+                    services = asStrings(dimensionValues.get("Values"));
+                } else {
+                    others.addAll(asStrings(dimensionValues.get("Values")));
+                }
+            } else {
+                throw new IllegalArgumentException("The simulator supports only And, Tags and Dimensions filters");
+            }
+        }
+
+        List<String> selectKeys(String groupType) {
+            List<String> keys = new ArrayList<>(isByTag(groupType) ? data.getTags() : data.getServices());
+            Collection<String> selected = isByTag(groupType) ? tags : services;
+            if (selected != null) {
+                keys.retainAll(selected);
+            }
+            return keys;
+        }
+
+        double share(String groupType) {
+            // the filter of the other key population reduces the amounts
+            double share = others.isEmpty() ? 1.0 : data.share(others);
+            Collection<String> other = isByTag(groupType) ? services : tags;
+            if (other != null) {
+                share *= data.share(other);
+            }
+            return share;
+        }
+
+        private boolean isByTag(String groupType) {
+            // the costs are distributed over the instances if these are grouped or filtered, otherwise over the services
+            if (groupType == null) {
+                return tags != null;
+            }
+            if (groupType.startsWith("TAG:")) {
+                return true;
+            }
+            if ("DIMENSION:SERVICE".equals(groupType)) {
+                return false;
+            }
+            throw new IllegalArgumentException("The simulator supports grouping by tags and services only");
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.simulator;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the AWS Cost Explorer API speaking its JSON protocol.
+ * It answers GetCostAndUsage, GetTags and GetDimensionValues with synthetic data, supports pagination
+ * and can simulate latency and throttling. Point the cost explorer to it with the system property
+ * aws.cost.explorer.endpoint, e.g. for load tests without AWS access.
+ */
+public class CostExplorerSimulator implements AutoCloseable {
+    private int port;
+    private int tags = 20;
+    private int services = 10;
+    private int days = 400;
+    private int pageSize = 100;
+    private Duration latency = Duration.ZERO;
+    private int requestLimit;
+    private Clock clock = Clock.systemDefaultZone();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private CostExplorerHandler handler;
+
+    /**
+     * Creates a simulator with 20 instances, 10 services, data for the last 400 days, and 100 items per page
+     *
+     * @return a new instance of the simulator
+     */
+    public static CostExplorerSimulator create() {
+        return new CostExplorerSimulator();
+    }
+
+    /**
+     * Sets the port, 0 chooses a free port
+     *
+     * @param port the port
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * Sets the number of values of the tag "Name" (=instance names)
+     *
+     * @param tags the number of tag values
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withTags(int tags) {
+        this.tags = tags;
+        return this;
+    }
+
+    /**
+     * Sets the number of services
+     *
+     * @param services the number of services
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withServices(int services) {
+        this.services = services;
+        return this;
+    }
+
+    /**
+     * Sets the number of days before today with costs and usage
+     *
+     * @param days the number of days
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withDays(int days) {
+        this.days = days;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of results, tags or dimension values per page
+     *
+     * @param pageSize the page size
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Sets the latency added to each request
+     *
+     * @param latency the latency
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Sets the number of requests per second, further requests fail with a LimitExceededException
+     *
+     * @param requestLimit the requests per second, 0 for no limit
+     * @return the current instance of the simulator
+     */
+    public CostExplorerSimulator withRequestLimit(int requestLimit) {
+        this.requestLimit = requestLimit;
+        return this;
+    }
+
+    CostExplorerSimulator withClock(Clock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Starts the simulator on the loopback address
+     *
+     * @return the current instance of the simulator
+     * @throws UncheckedIOException  if the server could not be started
+     * @throws IllegalStateException if the simulator is already running
+     */
+    public CostExplorerSimulator start() {
+        if (server != null) {
+            throw new IllegalStateException("Simulator already running");
+        }
+
+        handler = new CostExplorerHandler(new SyntheticCostData(tags, services, days), pageSize,
+                latency.toMillis(), requestLimit, clock);
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start the simulator", e);
+        }
+        // a thread per request, so the latency does not serialize concurrent requests
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", handler);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Returns the endpoint of the running simulator
+     *
+     * @return the endpoint URI
+     * @throws IllegalStateException if the simulator is not running
+     */
+    public URI getEndpoint() {
+        if (server == null) {
+            throw new IllegalStateException("Simulator not running");
+        }
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    /**
+     * Returns the number of received requests including throttled ones
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return handler == null ? 0 : handler.getRequestCount();
+    }
+
+    /**
+     * Returns the number of received requests of an operation including throttled ones
+     *
+     * @param operation the operation, e.g. GetCostAndUsage
+     * @return the number of requests
+     */
+    public long getRequestCount(String operation) {
+        return handler == null ? 0 : handler.getRequestCount(operation);
+    }
+
+    /**
+     * Returns the number of requests rejected with a LimitExceededException
+     *
+     * @return the number of throttled requests
+     */
+    public long getThrottledCount() {
+        return handler == null ? 0 : handler.getThrottledCount();
+    }
+
+    /**
+     * Stops the simulator
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Runs the simulator until the process is terminated.
+     * It is configured by the system properties simulator.port (default 4566), simulator.tags, simulator.services,
+     * simulator.days, simulator.pageSize, simulator.latency (milliseconds), and simulator.requestLimit.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        CostExplorerSimulator simulator = create()
+                .withPort(Integer.getInteger("simulator.port", 4566))
+                .withTags(Integer.getInteger("simulator.tags", 20))
+                .withServices(Integer.getInteger("simulator.services", 10))
+                .withDays(Integer.getInteger("simulator.days", 400))
+                .withPageSize(Integer.getInteger("simulator.pageSize", 100))
+                .withLatency(Duration.ofMillis(Long.getLong("simulator.latency", 0)))
+                .withRequestLimit(Integer.getInteger("simulator.requestLimit", 0))
+                .start();
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::close));
+        System.out.println("Cost Explorer simulator listening on " + simulator.getEndpoint());
+    }
+}
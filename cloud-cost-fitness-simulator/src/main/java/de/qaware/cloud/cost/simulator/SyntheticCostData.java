@@ -0,0 +1,198 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.simulator;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic synthetic cost and usage data.
+ * Every tag value and service has a base amount that varies from day to day,
+ * the same query always returns the same amounts.
+ */
+final class SyntheticCostData {
+    private static final double HOURS_PER_DAY = 24.0;
+    private static final String[] SERVICE_NAMES = {
+            "Amazon Elastic Compute Cloud - Compute",
+            "Amazon Simple Storage Service",
+            "Amazon Relational Database Service",
+            "Amazon DynamoDB",
+            "AWS Lambda",
+            "Amazon Elastic Load Balancing",
+            "Amazon Elastic Container Service",
+            "Amazon CloudFront",
+            "Amazon Elasticsearch Service",
+            "Amazon Simple Queue Service"
+    };
+
+    private final List<String> tags;
+    private final List<String> services;
+    private final int days;
+
+    /**
+     * Creates the data
+     *
+     * @param tags     the number of values of the tag "Name"
+     * @param services the number of services
+     * @param days     the number of days with data before today
+     */
+    SyntheticCostData(int tags, int services, int days) {
+        this.days = days;
+
+        List<String> tagList = new ArrayList<>(tags);
+        for (int i = 0; i < tags; i++) {
+            tagList.add("instance-" + i);
+        }
+        this.tags = Collections.unmodifiableList(tagList);
+
+        List<String> serviceList = new ArrayList<>(services);
+        for (int i = 0; i < services; i++) {
+            serviceList.add(i < SERVICE_NAMES.length ? SERVICE_NAMES[i] : "Amazon Service " + i);
+        }
+        this.services = Collections.unmodifiableList(serviceList);
+    }
+
+    List<String> getTags() {
+        return tags;
+    }
+
+    List<String> getServices() {
+        return services;
+    }
+
+    /**
+     * Whether data exists for a day
+     *
+     * @param day   the day
+     * @param today the current day
+     * @return true if the day lies within the configured number of days before today
+     */
+    boolean hasData(LocalDate day, LocalDate today) {
+        return day.isBefore(today) && !day.isBefore(today.minusDays(days));
+    }
+
+    /**
+     * Returns the amount of a tag value or a service on a day
+     *
+     * @param key    the tag value or service
+     * @param metric the metric, e.g. UnblendedCost
+     * @param day    the day
+     * @return the amount
+     */
+    double amount(String key, String metric, LocalDate day) {
+        double base = 1.0 + 99.0 * uniform(hash(key, metric));
+        double variation = 0.8 + 0.4 * uniform(hash(key, metric, day.toString()));
+        return base * variation;
+    }
+
+    /**
+     * Returns the amount of a tag value or a service in an hour, an equal share of the amount of the day
+     *
+     * @param key    the tag value or service
+     * @param metric the metric, e.g. UnblendedCost
+     * @param hour   the beginning of the hour
+     * @return the amount
+     */
+    double hourlyAmount(String key, String metric, LocalDateTime hour) {
+        return amount(key, metric, hour.toLocalDate()) / HOURS_PER_DAY;
+    }
+
+    /**
+     * Returns the share of a set of filter values (e.g. usage types) of the amounts
+     *
+     * @param values the filter values
+     * @return the share between 0 and 1
+     */
+    double share(Collection<String> values) {
+        double share = 0.0;
+        for (String value : values) {
+            share += 0.05 + 0.45 * uniform(hash(value));
+        }
+        return Math.min(1.0, share);
+    }
+
+    /**
+     * Selects the values matching a search string, where * matches any characters.
+     * Search strings without wildcard match all values containing it.
+     *
+     * @param values       the values
+     * @param searchString the search string, null or empty to match all values
+     * @return the matching values
+     */
+    static List<String> search(List<String> values, String searchString) {
+        if (searchString == null || searchString.isEmpty()) {
+            return values;
+        }
+
+        StringBuilder regex = new StringBuilder();
+        if (searchString.indexOf('*') < 0) {
+            regex.append(".*").append(Pattern.quote(searchString)).append(".*");
+        } else {
+            for (String part : searchString.split("\\*", -1)) {
+                if (regex.length() > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+        }
+        Pattern pattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+
+        List<String> matches = new ArrayList<>();
+        for (String value : values) {
+            if (pattern.matcher(value).matches()) {
+                matches.add(value);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Formats an amount like the AWS API
+     *
+     * @param amount the amount
+     * @return the formatted amount
+     */
+    static String format(double amount) {
+        return String.format(Locale.ROOT, "%.10f", amount);
+    }
+
+    private static long hash(String... parts) {
+        long hash = 1125899906842597L;
+        for (String part : parts) {
+            for (int i = 0; i < part.length(); i++) {
+                hash = 31 * hash + part.charAt(i);
+            }
+            hash = 31 * hash + '|';
+        }
+        // finalizer of MurmurHash3 to spread the bits
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static double uniform(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+}
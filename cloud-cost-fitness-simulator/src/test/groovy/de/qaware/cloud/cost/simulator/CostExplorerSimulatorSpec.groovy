@@ -0,0 +1,135 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.simulator
+
+import de.qaware.cloud.cost.Granularity
+import de.qaware.cloud.cost.aws.AwsCostExplorer
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneOffset
+
+import static de.qaware.cloud.cost.TimeRange.LAST_12_MONTHS
+import static de.qaware.cloud.cost.TimeRange.LAST_7_DAYS
+import static de.qaware.cloud.cost.TimeRange.YESTERDAY
+
+class CostExplorerSimulatorSpec extends Specification {
+    @AutoCleanup
+    CostExplorerSimulator simulator = CostExplorerSimulator.create()
+            .withTags(5)
+            .withServices(12)
+            .withPageSize(3)
+            .start()
+
+    AwsCostExplorer costExplorer = new AwsCostExplorer("access", "secret", simulator.endpoint).withCostStore(null)
+
+    def "answers cost requests of the cost explorer"() {
+        when: "the total costs are requested"
+        def costs = costExplorer.during(LAST_7_DAYS).getCosts()
+
+        then: "all pages are fetched"
+        costs.size() == 7
+        costs.elements.every { it.unit == "USD" && it.value > 0.0d }
+        simulator.getRequestCount("GetCostAndUsage") == 3
+    }
+
+    def "answers hourly and monthly cost requests of the cost explorer"() {
+        when: "the costs of yesterday are requested by hour"
+        def hourly = costExplorer.during(YESTERDAY).withGranularity(Granularity.HOURLY).getCosts()
+
+        then: "one value per hour is returned"
+        hourly.size() == 24
+        hourly.elements.every { it.hour != null && it.value > 0.0d }
+
+        when: "the costs of the last year are requested by month"
+        def monthly = costExplorer.during(LAST_12_MONTHS).withGranularity(Granularity.MONTHLY).getCosts()
+
+        then: "one value per month is returned"
+        monthly.size() >= 12
+        monthly.elements.every { it.dateFrom.month == it.dateTo.month }
+    }
+
+    def "answers tag and service requests of the cost explorer"() {
+        expect: "the matching names of all pages"
+        costExplorer.forInstance("instance-*").getNames() == (0..4).collect { "instance-" + it }
+        costExplorer.forInstance(null).forService("Amazon Elastic *").getNames() == [
+                "Amazon Elastic Compute Cloud - Compute",
+                "Amazon Elastic Load Balancing",
+                "Amazon Elastic Container Service"
+        ]
+    }
+
+    def "answers grouped cost requests of the cost explorer"() {
+        when: "the costs of all instances are requested"
+        def costs = costExplorer.during(LAST_7_DAYS).forInstance("instance-*").getCosts()
+
+        then: "the costs of the instances are summed up"
+        costs.size() == 7
+        costs.sum().value > 0.0d
+    }
+
+    def "throttles requests above the request limit"() {
+        given: "a simulator with a request limit and a fixed clock"
+        def limited = CostExplorerSimulator.create()
+                .withRequestLimit(2)
+                .withClock(Clock.fixed(Instant.parse("2020-11-09T12:00:00Z"), ZoneOffset.UTC))
+                .start()
+
+        when: "three requests are sent within one second"
+        def responses = (1..3).collect { post(limited, "GetTags", '{"TagKey": "Name"}') }
+
+        then: "the third one is throttled"
+        responses.collect { it.statusCode() } == [200, 200, 400]
+        responses[2].body().contains("LimitExceededException")
+        limited.requestCount == 3
+        limited.throttledCount == 1
+
+        cleanup:
+        limited.close()
+    }
+
+    def "rejects unknown operations"() {
+        when: "an unknown operation is requested"
+        def response = post(simulator, "GetReservationUtilization", '{}')
+
+        then: "an error is returned"
+        response.statusCode() == 400
+        response.body().contains("UnknownOperationException")
+    }
+
+    def "rejects invalid requests"() {
+        when: "a request without metrics is sent"
+        def response = post(simulator, "GetCostAndUsage", '{"TimePeriod": {"Start": "2020-11-09", "End": "2020-11-10"}}')
+
+        then: "an error is returned"
+        response.statusCode() == 400
+        response.body().contains("ValidationException")
+    }
+
+    static HttpResponse<String> post(CostExplorerSimulator simulator, String operation, String body) {
+        HttpRequest request = HttpRequest.newBuilder(simulator.endpoint)
+                .header("X-Amz-Target", "AWSInsightsIndexService." + operation)
+                .header("Content-Type", "application/x-amz-json-1.1")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build()
+        HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString())
+    }
+}
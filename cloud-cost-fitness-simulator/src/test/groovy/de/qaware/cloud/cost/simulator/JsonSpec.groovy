@@ -0,0 +1,56 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.simulator
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class JsonSpec extends Specification {
+
+    def "parses a document"() {
+        when: "a document is parsed"
+        def value = Json.parse('{"Key": "Name", "Values": ["a", "b\\"c"], "Size": 2, "Estimated": false, "Token": null}')
+
+        then: "the values are read"
+        value == [Key: "Name", Values: ["a", 'b"c'], Size: 2.0d, Estimated: false, Token: null]
+    }
+
+    def "writes a document"() {
+        given: "a value"
+        def value = [Tags: ["instance-0", 'quote"'], ReturnSize: 2, Nested: [Empty: [:]]]
+
+        when: "the value is written"
+        def json = Json.write(value)
+
+        then: "the document is correct"
+        json == '{"Tags":["instance-0","quote\\""],"ReturnSize":2,"Nested":{"Empty":{}}}'
+
+        and: "it can be parsed again"
+        Json.parse(json) == [Tags: ["instance-0", 'quote"'], ReturnSize: 2.0d, Nested: [Empty: [:]]]
+    }
+
+    @Unroll
+    def "throws an exception for the malformed document #document"() {
+        when: "the document is parsed"
+        Json.parse(document)
+
+        then: "an exception is thrown"
+        thrown IllegalArgumentException
+
+        where:
+        document << ['{"Key"', '{"Key": }', '[1, 2', '"open', 'nope', '{} {}']
+    }
+}
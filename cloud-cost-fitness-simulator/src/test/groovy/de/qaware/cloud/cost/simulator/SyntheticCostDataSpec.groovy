@@ -0,0 +1,70 @@
+/*
+ *    Copyright (C) 2021 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.cloud.cost.simulator
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import java.time.LocalDate
+
+class SyntheticCostDataSpec extends Specification {
+    @Subject
+    SyntheticCostData data = new SyntheticCostData(3, 12, 30)
+
+    def "creates tags and services"() {
+        expect: "the configured numbers of names"
+        data.tags == ["instance-0", "instance-1", "instance-2"]
+        data.services.size() == 12
+        data.services.first() == "Amazon Elastic Compute Cloud - Compute"
+        data.services.last() == "Amazon Service 11"
+    }
+
+    def "generates deterministic positive amounts"() {
+        given: "a day"
+        def day = LocalDate.parse("2020-11-09")
+
+        expect: "the same amount for the same query"
+        data.amount("instance-0", "UnblendedCost", day) == new SyntheticCostData(1, 1, 1).amount("instance-0", "UnblendedCost", day)
+        data.amount("instance-0", "UnblendedCost", day) > 0.0d
+        data.amount("instance-0", "UnblendedCost", day) != data.amount("instance-0", "UnblendedCost", day.plusDays(1))
+    }
+
+    def "has data for the configured days before today"() {
+        given: "today"
+        def today = LocalDate.parse("2020-12-09")
+
+        expect: "data only within the days"
+        data.hasData(today.minusDays(1), today)
+        data.hasData(today.minusDays(30), today)
+        !data.hasData(today.minusDays(31), today)
+        !data.hasData(today, today)
+    }
+
+    @Unroll
+    def "searches for #searchString"() {
+        expect: "the matching values"
+        SyntheticCostData.search(["Amazon DynamoDB", "Amazon Elastic Compute Cloud - Compute", "AWS Lambda"], searchString) == result
+
+        where:
+        searchString       | result
+        null               | ["Amazon DynamoDB", "Amazon Elastic Compute Cloud - Compute", "AWS Lambda"]
+        "Amazon Elastic *" | ["Amazon Elastic Compute Cloud - Compute"]
+        "lambda"           | ["AWS Lambda"]
+        "*Dynamo*"         | ["Amazon DynamoDB"]
+        "Google"           | []
+    }
+}